@@ -0,0 +1,91 @@
+package com.ollama.plugin.client;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end request latency through OllamaClient against an in-process mock Ollama server.
+ * Sample mode reports percentiles, so client-side regressions show up in the tail as well as the mean.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class OllamaClientLatencyBenchmark {
+
+    @Param({"1", "200"})
+    public int tokens;
+
+    private MockWebServer server;
+    private OllamaClient client;
+    private String baseUrl;
+
+    @Setup
+    public void setUp() throws IOException {
+        StringBuilder stream = new StringBuilder();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < tokens; i++) {
+            stream.append("{\"model\":\"llama2\",\"response\":\" tok").append(i).append("\",\"done\":false}\n");
+            text.append(" tok").append(i);
+        }
+        String counters = "\"done\":true,\"total_duration\":1000,\"eval_count\":" + tokens + ",\"eval_duration\":1000";
+        String streamBody = stream.append("{\"model\":\"llama2\",\"response\":\"\",").append(counters).append("}\n").toString();
+        String generateBody = "{\"model\":\"llama2\",\"response\":\"" + text + "\"," + counters + "}";
+
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                if ("/api/tags".equals(path)) {
+                    return new MockResponse().setBody("{\"models\":[{\"name\":\"llama2:latest\",\"size\":1}]}");
+                }
+                if ("/api/ps".equals(path)) {
+                    return new MockResponse().setBody("{\"models\":[]}");
+                }
+                boolean streaming = request.getBody().readUtf8().contains("\"stream\":true");
+                return new MockResponse().setBody(streaming ? streamBody : generateBody);
+            }
+        });
+        server.start();
+        baseUrl = server.url("").toString().replaceAll("/$", "");
+
+        // Callbacks run inline: there is no EDT outside the IDE
+        client = new OllamaClient(new OllamaExecutor(4, 32), Runnable::run, () -> Collections.singletonList(baseUrl));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        client.dispose();
+        server.shutdown();
+    }
+
+    @Benchmark
+    public OllamaResponse generate() throws Exception {
+        return client.sendPrompt(baseUrl, "llama2", "Explain this code", null).get();
+    }
+
+    @Benchmark
+    public OllamaResponse stream() throws Exception {
+        return client.streamPrompt(baseUrl, "llama2", "Explain this code", null).get();
+    }
+
+    @Benchmark
+    public OllamaResponse streamRouted() throws Exception {
+        return client.streamPrompt("llama2", "Explain this code", null).get();
+    }
+}
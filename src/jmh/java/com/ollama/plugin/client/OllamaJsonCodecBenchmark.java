@@ -0,0 +1,187 @@
+package com.ollama.plugin.client;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding and encoding cost of the Ollama wire format, without any network I/O.
+ * The tree* methods do the same work the way the client did before OllamaJsonCodec: the whole body as a String,
+ * parsed into a JsonObject, fields copied out. Run with -PjmhProfilers=gc and compare gc.alloc.rate.norm of each
+ * pair to see the bytes allocated per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class OllamaJsonCodecBenchmark {
+
+    @Param({"10", "500"})
+    public int chunks;
+
+    @Param({"1024", "16384"})
+    public int promptChars;
+
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    private Gson gson;
+    private OllamaJsonCodec codec;
+    private byte[] tagsBody;
+    private byte[] generateBody;
+    private byte[] streamBody;
+    private OllamaGenerateRequest request;
+
+    @Setup
+    public void setUp() {
+        gson = new Gson();
+        codec = new OllamaJsonCodec(gson);
+
+        StringBuilder tags = new StringBuilder("{\"models\":[");
+        for (int i = 0; i < 40; i++) {
+            if (i > 0) {
+                tags.append(',');
+            }
+            tags.append("{\"name\":\"model-").append(i).append(":7b\",\"model\":\"model-").append(i)
+                .append(":7b\",\"modified_at\":\"2024-05-01T10:00:00.000000000Z\",\"size\":3826793677,")
+                .append("\"digest\":\"sha256:").append(String.format("%064d", i)).append("\",")
+                .append("\"details\":{\"parent_model\":\"\",\"format\":\"gguf\",\"family\":\"llama\",")
+                .append("\"families\":[\"llama\"],\"parameter_size\":\"7B\",\"quantization_level\":\"Q4_0\"}}");
+        }
+        tagsBody = tags.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+
+        StringBuilder text = new StringBuilder();
+        StringBuilder stream = new StringBuilder();
+        for (int i = 0; i < chunks; i++) {
+            String token = i % 7 == 0 ? "\\n" : " token" + i;
+            text.append(token);
+            stream.append("{\"model\":\"llama2\",\"created_at\":\"2024-05-01T10:00:00.000000000Z\",\"response\":\"")
+                .append(token).append("\",\"done\":false}\n");
+        }
+        String counters = "\"done\":true,\"context\":[1,2,3,4,5,6,7,8],\"total_duration\":5043500667,"
+            + "\"load_duration\":5025959,\"prompt_eval_count\":26,\"prompt_eval_duration\":325953000,"
+            + "\"eval_count\":" + chunks + ",\"eval_duration\":4709213000";
+        stream.append("{\"model\":\"llama2\",\"created_at\":\"2024-05-01T10:00:05.000000000Z\",\"response\":\"\",")
+            .append(counters).append("}\n");
+        streamBody = stream.toString().getBytes(StandardCharsets.UTF_8);
+        generateBody = ("{\"model\":\"llama2\",\"created_at\":\"2024-05-01T10:00:05.000000000Z\",\"response\":\""
+            + text + "\"," + counters + "}").getBytes(StandardCharsets.UTF_8);
+
+        StringBuilder prompt = new StringBuilder("Explain this php code in simple terms:\n\n```php\n");
+        while (prompt.length() < promptChars) {
+            prompt.append("    $total += $item->getPrice() * $item->getQuantity(); // \"quoted\"\n");
+        }
+        request = new OllamaGenerateRequest("llama2", prompt.append("```").toString(), true, "15m");
+    }
+
+    @Benchmark
+    public List<OllamaModel> decodeModels() throws IOException {
+        return codec.readModels(new Buffer().write(tagsBody));
+    }
+
+    @Benchmark
+    public OllamaResponse decodeGenerate() throws IOException {
+        OllamaGenerateChunk chunk = new OllamaGenerateChunk();
+        try (JsonReader reader = codec.openReader(new Buffer().write(generateBody))) {
+            codec.readGenerateChunk(reader, chunk);
+        }
+        return chunk.toResponse(chunk.response, 0);
+    }
+
+    @Benchmark
+    public OllamaResponse decodeStream(Blackhole blackhole) throws IOException {
+        OllamaGenerateChunk chunk = new OllamaGenerateChunk();
+        StringBuilder text = new StringBuilder();
+        try (JsonReader reader = codec.openReader(new Buffer().write(streamBody))) {
+            while (codec.readGenerateChunk(reader, chunk)) {
+                if (chunk.response != null) {
+                    blackhole.consume(chunk.response);
+                    text.append(chunk.response);
+                }
+                if (chunk.done) {
+                    break;
+                }
+            }
+        }
+        return chunk.toResponse(text.toString(), 0);
+    }
+
+    @Benchmark
+    public Buffer encodeGenerateRequest() throws IOException {
+        Buffer sink = new Buffer();
+        codec.encode(request).writeTo(sink);
+        return sink;
+    }
+
+    @Benchmark
+    public List<OllamaModel> treeDecodeModels() {
+        JsonObject json = gson.fromJson(new Buffer().write(tagsBody).readUtf8(), JsonObject.class);
+        List<OllamaModel> models = new ArrayList<>();
+        for (JsonElement element : json.getAsJsonArray("models")) {
+            JsonObject model = element.getAsJsonObject();
+            models.add(new OllamaModel(model.get("name").getAsString(), model.get("size").getAsLong()));
+        }
+        return models;
+    }
+
+    @Benchmark
+    public OllamaResponse treeDecodeGenerate() {
+        return treeResponse(gson.fromJson(new Buffer().write(generateBody).readUtf8(), JsonObject.class), null);
+    }
+
+    @Benchmark
+    public OllamaResponse treeDecodeStream(Blackhole blackhole) throws IOException {
+        Buffer source = new Buffer().write(streamBody);
+        StringBuilder text = new StringBuilder();
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            JsonObject json = gson.fromJson(line, JsonObject.class);
+            if (json.has("response")) {
+                String token = json.get("response").getAsString();
+                blackhole.consume(token);
+                text.append(token);
+            }
+            if (json.has("done") && json.get("done").getAsBoolean()) {
+                return treeResponse(json, text.toString());
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Buffer treeEncodeGenerateRequest() throws IOException {
+        JsonObject json = new JsonObject();
+        json.addProperty("model", request.getModel());
+        json.addProperty("prompt", request.getPrompt());
+        json.addProperty("stream", true);
+        json.addProperty("keep_alive", request.getKeepAlive());
+        Buffer sink = new Buffer();
+        RequestBody.create(json.toString(), JSON).writeTo(sink);
+        return sink;
+    }
+
+    private static OllamaResponse treeResponse(JsonObject json, String text) {
+        return new OllamaResponse(
+            text != null ? text : json.has("response") ? json.get("response").getAsString() : "",
+            json.has("eval_count") ? json.get("eval_count").getAsLong() : 0,
+            json.has("eval_duration") ? json.get("eval_duration").getAsLong() : 0,
+            json.has("total_duration") ? json.get("total_duration").getAsLong() : 0);
+    }
+}
@@ -0,0 +1,59 @@
+package com.ollama.plugin.service;
+
+import com.ollama.plugin.settings.ActionProfile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Work done on the caller's thread before a request is sent: rendering the prompt template and detecting the language
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class CodeAnalysisBenchmark {
+
+    private static final String[] FILE_NAMES = {
+        "Controller.php", "Service.java", "main.py", "index.js", "app.ts",
+        "server.go", "lib.rs", "engine.cpp", "README.md", "Makefile"
+    };
+
+    @Param({"EXPLAIN", "REFACTOR"})
+    public AnalysisAction action;
+
+    @Param({"20", "400"})
+    public int lines;
+
+    private String code;
+    private ActionProfile profile;
+
+    @Setup
+    public void setUp() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            source.append("    $total += $items[").append(i).append("]->getPrice() * $items[").append(i).append("]->getQuantity();\n");
+        }
+        code = source.toString();
+        profile = action.getDefaultProfile();
+    }
+
+    @Benchmark
+    public String buildPrompt() {
+        return action.buildPrompt(action.getTemplate(profile), "php", code);
+    }
+
+    @Benchmark
+    public void detectLanguage(Blackhole blackhole) {
+        for (String fileName : FILE_NAMES) {
+            blackhole.consume(CodeAnalysisService.detectLanguage(fileName));
+        }
+    }
+}
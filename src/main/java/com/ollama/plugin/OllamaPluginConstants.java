@@ -9,4 +9,16 @@ public class OllamaPluginConstants {
     public static final String OLLAMA_API_PS = "/api/ps";
     public static final int CONNECTION_TIMEOUT_SECONDS = 30;
     public static final int READ_TIMEOUT_SECONDS = 60;
+    // Consecutive failures after which an endpoint's circuit opens and requests to it fail fast
+    public static final int CIRCUIT_FAILURE_THRESHOLD = 3;
+    public static final int MAX_CONCURRENT_REQUESTS = 4;
+    public static final int MAX_QUEUED_REQUESTS = 32;
+    // Generations one Ollama server runs at once before further ones queue in the scheduler
+    public static final int MAX_GENERATIONS_PER_ENDPOINT = 2;
+    // Executor threads generations never take, so health probes, /api/tags, /api/ps and embeddings do not wait behind them
+    public static final int RESERVED_METADATA_SLOTS = 1;
+    public static final int MODEL_CATALOG_TTL_SECONDS = 60;
+    public static final int DEFAULT_NUM_CTX = 2048;
+    // Model for analysis actions when neither their profile nor the settings name one
+    public static final String FALLBACK_MODEL = "llama2";
 }
@@ -0,0 +1,57 @@
+package com.ollama.plugin.action;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.ollama.plugin.service.AnalysisAction;
+import com.ollama.plugin.service.BatchAnalysisState;
+import com.ollama.plugin.service.BatchAnalysisTask;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Run an analysis over the files and directories selected in the Project view
+ */
+public class BatchAnalysisAction extends AnAction {
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        Project project = event.getProject();
+        VirtualFile[] files = event.getData(CommonDataKeys.VIRTUAL_FILE_ARRAY);
+
+        if (project == null || files == null || files.length == 0) {
+            return;
+        }
+
+        AnalysisAction[] actions = AnalysisAction.values();
+        String[] names = new String[actions.length];
+        for (int i = 0; i < actions.length; i++) {
+            names[i] = actions[i].getDisplayName();
+        }
+        int choice = Messages.showChooseDialog(project, "Analysis to run on every selected file:",
+                "Batch Analysis with Ollama", Messages.getQuestionIcon(), names, names[0]);
+        if (choice < 0) {
+            return;
+        }
+
+        if (BatchAnalysisState.getInstance(project).isActive()) {
+            int option = Messages.showYesNoDialog(project,
+                    "A batch analysis has not finished yet. Discard it and start a new one?",
+                    "Batch Analysis with Ollama", Messages.getQuestionIcon());
+            if (option != Messages.YES) {
+                return;
+            }
+        }
+
+        BatchAnalysisTask.start(project, actions[choice], Arrays.asList(files));
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent event) {
+        VirtualFile[] files = event.getData(CommonDataKeys.VIRTUAL_FILE_ARRAY);
+        event.getPresentation().setEnabled(event.getProject() != null && files != null && files.length > 0);
+    }
+}
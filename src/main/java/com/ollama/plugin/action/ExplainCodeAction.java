@@ -8,6 +8,7 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
 import com.ollama.plugin.client.OllamaClient;
 import com.ollama.plugin.service.CodeAnalysisService;
+import com.ollama.plugin.ui.ActionOutput;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -23,7 +24,7 @@ public class ExplainCodeAction extends AnAction {
             return;
         }
 
-        CodeAnalysisService analysisService = new CodeAnalysisService(OllamaClient.getInstance());
+        CodeAnalysisService analysisService = new CodeAnalysisService(OllamaClient.getInstance(), project);
         String selectedCode = analysisService.getSelectedCode(editor);
 
         if (selectedCode == null || selectedCode.isEmpty()) {
@@ -32,17 +33,24 @@ public class ExplainCodeAction extends AnAction {
         }
 
         String language = analysisService.detectLanguage(editor);
+        ActionOutput output = ActionOutput.open(project, "Explain", editor);
         analysisService.explainCode(selectedCode, language, new CodeAnalysisService.RefactoringCallback() {
+            @Override
+            public void onToken(String token) {
+                output.append(token);
+            }
+
             @Override
             public void onSuccess(String result) {
-                Messages.showInfoMessage(project, result, "Code Explanation");
+                output.finish(result);
             }
 
             @Override
             public void onError(String error) {
+                output.fail(error);
                 Messages.showErrorDialog(project, "Error: " + error, "Explanation Failed");
             }
-        });
+        }).cancelOnDispose(project).cancelOnDispose(output.getDisposable());
     }
 
     @Override
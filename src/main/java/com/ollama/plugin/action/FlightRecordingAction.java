@@ -0,0 +1,38 @@
+package com.ollama.plugin.action;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.ui.Messages;
+import com.ollama.plugin.service.FlightRecording;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+
+/**
+ * Start a flight recording of Ollama requests, or stop the running one and save it to a .jfr file
+ */
+public class FlightRecordingAction extends AnAction {
+    @Override
+    public void update(@NotNull AnActionEvent event) {
+        event.getPresentation().setText(FlightRecording.getInstance().isRecording()
+                ? "Save Ollama Flight Recording" : "Start Ollama Flight Recording");
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        FlightRecording recording = FlightRecording.getInstance();
+        try {
+            if (!recording.isRecording()) {
+                recording.start();
+                return;
+            }
+            Path file = recording.dump();
+            Messages.showInfoMessage(event.getProject(),
+                    "Recording saved to " + file + "\nOpen it in JDK Mission Control or IntelliJ's profiler.",
+                    "Ollama Flight Recording");
+        } catch (Exception e) {
+            Messages.showErrorDialog(event.getProject(), "Flight recording failed: " + e.getMessage(),
+                    "Ollama Flight Recording");
+        }
+    }
+}
@@ -8,6 +8,8 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
 import com.ollama.plugin.client.OllamaClient;
 import com.ollama.plugin.service.CodeAnalysisService;
+import com.ollama.plugin.service.CodeSuggestion;
+import com.ollama.plugin.ui.ActionOutput;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -23,7 +25,7 @@ public class GenerateTestsAction extends AnAction {
             return;
         }
 
-        CodeAnalysisService analysisService = new CodeAnalysisService(OllamaClient.getInstance());
+        CodeAnalysisService analysisService = new CodeAnalysisService(OllamaClient.getInstance(), project);
         String selectedCode = analysisService.getSelectedCode(editor);
 
         if (selectedCode == null || selectedCode.isEmpty()) {
@@ -32,9 +34,16 @@ public class GenerateTestsAction extends AnAction {
         }
 
         String language = analysisService.detectLanguage(editor);
+        ActionOutput output = ActionOutput.open(project, "Tests", editor);
         analysisService.generateTests(selectedCode, language, new CodeAnalysisService.RefactoringCallback() {
+            @Override
+            public void onToken(String token) {
+                output.append(token);
+            }
+
             @Override
             public void onSuccess(String result) {
+                output.finish(result);
                 int option = Messages.showOkCancelDialog(project,
                         result,
                         "Generated Tests",
@@ -42,15 +51,16 @@ public class GenerateTestsAction extends AnAction {
                         Messages.getInformationIcon());
 
                 if (option == Messages.OK) {
-                    analysisService.insertCodeAtCursor(editor, result);
+                    analysisService.insertCodeAtCursor(editor, CodeSuggestion.parse(result).getCode());
                 }
             }
 
             @Override
             public void onError(String error) {
+                output.fail(error);
                 Messages.showErrorDialog(project, "Error: " + error, "Test Generation Failed");
             }
-        });
+        }).cancelOnDispose(project).cancelOnDispose(output.getDisposable());
     }
 
     @Override
@@ -0,0 +1,37 @@
+package com.ollama.plugin.action;
+
+import com.intellij.openapi.actionSystem.DataContext;
+import com.intellij.openapi.editor.Caret;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.actionSystem.EditorActionHandler;
+import com.ollama.plugin.service.InlineCompletionService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Escape hides the inline completion before doing whatever else it does in the editor
+ */
+public class InlineCompletionEscapeHandler extends EditorActionHandler {
+
+    private final EditorActionHandler originalHandler;
+
+    public InlineCompletionEscapeHandler(EditorActionHandler originalHandler) {
+        this.originalHandler = originalHandler;
+    }
+
+    @Override
+    protected boolean isEnabledForCaret(@NotNull Editor editor, @NotNull Caret caret, DataContext dataContext) {
+        return InlineCompletionService.getInstance().hasSuggestion(editor)
+                || originalHandler.isEnabled(editor, caret, dataContext);
+    }
+
+    @Override
+    protected void doExecute(@NotNull Editor editor, @Nullable Caret caret, DataContext dataContext) {
+        InlineCompletionService service = InlineCompletionService.getInstance();
+        if (service.hasSuggestion(editor)) {
+            service.dismiss();
+            return;
+        }
+        originalHandler.execute(editor, caret, dataContext);
+    }
+}
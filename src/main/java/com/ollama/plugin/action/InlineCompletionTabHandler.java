@@ -0,0 +1,34 @@
+package com.ollama.plugin.action;
+
+import com.intellij.openapi.actionSystem.DataContext;
+import com.intellij.openapi.editor.Caret;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.actionSystem.EditorActionHandler;
+import com.ollama.plugin.service.InlineCompletionService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Tab accepts the inline completion shown in the editor and indents as usual otherwise
+ */
+public class InlineCompletionTabHandler extends EditorActionHandler {
+
+    private final EditorActionHandler originalHandler;
+
+    public InlineCompletionTabHandler(EditorActionHandler originalHandler) {
+        this.originalHandler = originalHandler;
+    }
+
+    @Override
+    protected boolean isEnabledForCaret(@NotNull Editor editor, @NotNull Caret caret, DataContext dataContext) {
+        return InlineCompletionService.getInstance().hasSuggestion(editor)
+                || originalHandler.isEnabled(editor, caret, dataContext);
+    }
+
+    @Override
+    protected void doExecute(@NotNull Editor editor, @Nullable Caret caret, DataContext dataContext) {
+        if (!InlineCompletionService.getInstance().accept(editor)) {
+            originalHandler.execute(editor, caret, dataContext);
+        }
+    }
+}
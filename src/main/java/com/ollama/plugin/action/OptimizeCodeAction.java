@@ -4,10 +4,14 @@ import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.CommonDataKeys;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.RangeMarker;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
 import com.ollama.plugin.client.OllamaClient;
 import com.ollama.plugin.service.CodeAnalysisService;
+import com.ollama.plugin.service.CodeSuggestion;
+import com.ollama.plugin.ui.ActionOutput;
+import com.ollama.plugin.ui.SuggestionPreviewDialog;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -23,7 +27,7 @@ public class OptimizeCodeAction extends AnAction {
             return;
         }
 
-        CodeAnalysisService analysisService = new CodeAnalysisService(OllamaClient.getInstance());
+        CodeAnalysisService analysisService = new CodeAnalysisService(OllamaClient.getInstance(), project);
         String selectedCode = analysisService.getSelectedCode(editor);
 
         if (selectedCode == null || selectedCode.isEmpty()) {
@@ -32,25 +36,37 @@ public class OptimizeCodeAction extends AnAction {
         }
 
         String language = analysisService.detectLanguage(editor);
+        RangeMarker range = analysisService.markSelection(editor);
+        ActionOutput output = ActionOutput.open(project, "Optimize", editor);
         analysisService.optimizeCode(selectedCode, language, new CodeAnalysisService.RefactoringCallback() {
+            @Override
+            public void onToken(String token) {
+                output.append(token);
+            }
+
             @Override
             public void onSuccess(String result) {
-                int option = Messages.showOkCancelDialog(project,
-                        result,
-                        "Code Optimization",
-                        "Replace", "Cancel",
-                        Messages.getInformationIcon());
-
-                if (option == Messages.OK) {
-                    analysisService.replaceSelectedCode(editor, result);
+                output.finish(result);
+                CodeSuggestion suggestion = CodeSuggestion.parse(result);
+                String code = suggestion.fitTo(selectedCode);
+                SuggestionPreviewDialog preview = new SuggestionPreviewDialog(project, "Code Optimization",
+                        selectedCode, code, suggestion.getExplanation());
+
+                if (preview.showAndGet() && !analysisService.replaceCode(editor, range, selectedCode, code)) {
+                    Messages.showWarningDialog(project,
+                            "The code was edited while the suggestion was generated, so it was not replaced.",
+                            "Code Changed");
                 }
+                range.dispose();
             }
 
             @Override
             public void onError(String error) {
+                output.fail(error);
+                range.dispose();
                 Messages.showErrorDialog(project, "Error: " + error, "Optimization Failed");
             }
-        });
+        }).cancelOnDispose(project).cancelOnDispose(output.getDisposable());
     }
 
     @Override
@@ -0,0 +1,14 @@
+package com.ollama.plugin.client;
+
+import com.intellij.util.messages.Topic;
+
+import java.util.List;
+
+/**
+ * Notified on the EDT when the set of installed models (names or digests) changes
+ */
+public interface ModelCatalogListener {
+    Topic<ModelCatalogListener> TOPIC = Topic.create("Ollama model catalog", ModelCatalogListener.class);
+
+    void modelsChanged(List<OllamaModel> models);
+}
@@ -0,0 +1,110 @@
+package com.ollama.plugin.client;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+
+/**
+ * Per-call OkHttp listener measuring how long it took to get a connection: DNS and TCP connect for a new one,
+ * nothing for a pooled one. Attached to a request as a tag and picked up by the client's listener factory,
+ * which also creates one for any other call while a flight recording wants OllamaHttpEvent; the event is then
+ * filled in along the way and committed when the call ends.
+ */
+class OllamaCallTiming extends EventListener {
+
+    private volatile long connectStart;
+    private volatile long connectDuration;
+    private volatile long callStart;
+    private volatile OllamaHttpEvent event;
+
+    @Override
+    public void callStart(Call call) {
+        callStart = System.nanoTime();
+        if (OllamaHttpEvent.isTypeEnabled()) {
+            OllamaHttpEvent started = new OllamaHttpEvent();
+            started.method = call.request().method();
+            started.url = call.request().url().toString();
+            started.begin();
+            event = started;
+        }
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        connectStart = System.nanoTime();
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        if (connectStart == 0) {
+            connectStart = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        if (connectStart != 0) {
+            connectDuration = System.nanoTime() - connectStart;
+        }
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        OllamaHttpEvent current = event;
+        if (current != null) {
+            current.requestBytes = byteCount;
+        }
+    }
+
+    @Override
+    public void responseHeadersEnd(Call call, Response response) {
+        OllamaHttpEvent current = event;
+        if (current != null) {
+            current.status = response.code();
+            current.timeToHeaders = System.nanoTime() - callStart;
+        }
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        OllamaHttpEvent current = event;
+        if (current != null) {
+            current.responseBytes = byteCount;
+        }
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        commit(null);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        commit(ioe.getMessage() != null ? ioe.getMessage() : ioe.getClass().getSimpleName());
+    }
+
+    private void commit(String error) {
+        OllamaHttpEvent current = event;
+        if (current != null) {
+            event = null;
+            current.end();
+            if (current.shouldCommit()) {
+                current.connect = connectDuration;
+                current.error = error;
+                current.commit();
+            }
+        }
+    }
+
+    /**
+     * Nanoseconds spent resolving and connecting, 0 if a pooled connection was reused
+     */
+    long getConnectDuration() {
+        return connectDuration;
+    }
+}
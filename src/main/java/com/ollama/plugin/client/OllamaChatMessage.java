@@ -0,0 +1,26 @@
+package com.ollama.plugin.client;
+
+/**
+ * One message of an /api/chat conversation
+ */
+public class OllamaChatMessage {
+    public static final String USER = "user";
+    public static final String ASSISTANT = "assistant";
+    public static final String SYSTEM = "system";
+
+    private final String role;
+    private final String content;
+
+    public OllamaChatMessage(String role, String content) {
+        this.role = role;
+        this.content = content;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public String getContent() {
+        return content;
+    }
+}
@@ -0,0 +1,41 @@
+package com.ollama.plugin.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Body of an /api/chat request
+ */
+public class OllamaChatRequest {
+    private final String model;
+    private final List<OllamaChatMessage> messages;
+    private final boolean stream;
+    private final String keepAlive;
+
+    public OllamaChatRequest(String model, List<OllamaChatMessage> messages, boolean stream, String keepAlive) {
+        this.model = model;
+        this.messages = Collections.unmodifiableList(new ArrayList<>(messages));
+        this.stream = stream;
+        this.keepAlive = keepAlive;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public List<OllamaChatMessage> getMessages() {
+        return messages;
+    }
+
+    public boolean isStream() {
+        return stream;
+    }
+
+    /**
+     * How long the server keeps the model loaded after this request; null for the server default
+     */
+    public String getKeepAlive() {
+        return keepAlive;
+    }
+}
@@ -0,0 +1,125 @@
+package com.ollama.plugin.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Message history of one multi-turn conversation, with an estimate of how much prefill the server skipped.
+ * Ollama keeps the previous prompt in its KV cache, so when the next prompt starts with the same history only
+ * the new tokens are evaluated; prompt_eval_count then drops to roughly the size of the new message.
+ */
+public class OllamaChatSession {
+
+    // Rough size of a message in tokens, including the chat template's role markers
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int TEMPLATE_TOKENS_PER_MESSAGE = 8;
+
+    private final String model;
+    private final List<OllamaChatMessage> messages = new ArrayList<>();
+    private String endpoint;
+    private long contextTokens;
+    private long lastPromptEvalCount;
+    private long lastReusedTokens;
+    private long totalReusedTokens;
+
+    public OllamaChatSession(String model) {
+        this.model = model;
+    }
+
+    /**
+     * Continue a conversation restored from history; no server has it cached yet, so nothing counts as reused
+     * until the first new turn has been evaluated
+     */
+    public OllamaChatSession(String model, List<OllamaChatMessage> history) {
+        this(model);
+        messages.addAll(history);
+        discardPendingQuestion();
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * Server that answered the last turn and holds the conversation in its cache, or null before the first turn
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public List<OllamaChatMessage> getMessages() {
+        return Collections.unmodifiableList(messages);
+    }
+
+    public int getTurnCount() {
+        return messages.size() / 2;
+    }
+
+    /**
+     * Append the user's next message and return the history to send
+     */
+    public List<OllamaChatMessage> ask(String prompt) {
+        messages.add(new OllamaChatMessage(OllamaChatMessage.USER, prompt));
+        return getMessages();
+    }
+
+    /**
+     * Append the assistant's answer and update the prefill accounting from its counters
+     */
+    public void complete(OllamaResponse response) {
+        OllamaChatMessage question = messages.get(messages.size() - 1);
+        messages.add(new OllamaChatMessage(OllamaChatMessage.ASSISTANT, response.getResponse()));
+
+        // Whatever part of history plus question was not evaluated came from the cache
+        long newTokens = question.getContent().length() / CHARS_PER_TOKEN + TEMPLATE_TOKENS_PER_MESSAGE;
+        long evaluated = response.getPromptEvalCount();
+        long reused = Math.max(0, Math.min(contextTokens, contextTokens + newTokens - evaluated));
+        if (response.getEndpoint() != null && endpoint != null && !response.getEndpoint().equals(endpoint)) {
+            // A different server had nothing cached for this conversation
+            reused = 0;
+        }
+
+        lastPromptEvalCount = evaluated;
+        lastReusedTokens = reused;
+        totalReusedTokens += reused;
+        contextTokens = evaluated + reused + response.getTokenCount();
+        if (response.getEndpoint() != null) {
+            endpoint = response.getEndpoint();
+        }
+    }
+
+    /**
+     * Drop an unanswered question, e.g. after an error or when the user stopped the generation
+     */
+    public void discardPendingQuestion() {
+        if (messages.size() % 2 == 1) {
+            messages.remove(messages.size() - 1);
+        }
+    }
+
+    /**
+     * Prompt tokens the server evaluated for the last turn
+     */
+    public long getLastPromptEvalCount() {
+        return lastPromptEvalCount;
+    }
+
+    /**
+     * Estimated prompt tokens of the last turn served from the server's cache instead of being evaluated again
+     */
+    public long getLastReusedTokens() {
+        return lastReusedTokens;
+    }
+
+    public long getTotalReusedTokens() {
+        return totalReusedTokens;
+    }
+
+    /**
+     * Estimated tokens the conversation occupies in the model's context
+     */
+    public long getContextTokens() {
+        return contextTokens;
+    }
+}
@@ -0,0 +1,16 @@
+package com.ollama.plugin.client;
+
+import java.io.IOException;
+
+/**
+ * The endpoint failed too often in a row and its circuit breaker is open, so the request was not even sent.
+ * Callers get this within milliseconds instead of waiting for a connect timeout.
+ */
+public class OllamaCircuitOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public OllamaCircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -1,48 +1,133 @@
 package com.ollama.plugin.client;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.Service;
+import com.ollama.plugin.OllamaPluginConstants;
+import com.ollama.plugin.settings.OllamaSettingsService;
 import okhttp3.*;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
 
 @Service
-public class OllamaClient {
+public class OllamaClient implements Disposable {
 
-    private final OkHttpClient httpClient;
+    private static final String GENERATE_PATH = "/api/generate";
+    private static final String CHAT_PATH = "/api/chat";
+    // Error Ollama returns when a suffix is sent to a model whose template has no fill-in-the-middle support
+    private static final String INSERT_UNSUPPORTED = "does not support insert";
+    // Idempotent requests are tried this often, waiting a jittered, doubling delay from RETRY_BASE_MILLIS between tries
+    private static final int IDEMPOTENT_ATTEMPTS = 3;
+    private static final long RETRY_BASE_MILLIS = 200;
+
+    // Rebuilt when the timeouts change; the rebuilt client shares the connection pool and dispatcher
+    private volatile OkHttpClient httpClient;
     private final Gson gson;
+    private final OllamaJsonCodec codec;
+    private final OllamaExecutor executor;
+    private final Executor callbackExecutor;
+    private final OllamaEndpointPool endpointPool;
+    private final OllamaModelLifecycle modelLifecycle;
+    private final OllamaRequestMetrics requestMetrics = new OllamaRequestMetrics();
+    private final OllamaRequestCoalescer coalescer;
+    private final OllamaScheduler scheduler;
+    private final Set<String> noInsertModels = ConcurrentHashMap.newKeySet();
+    private volatile boolean monitoring;
 
     public OllamaClient() {
+        // Callbacks drive Swing components and Messages dialogs, so they are always delivered on the EDT
+        this(new OllamaExecutor(OllamaPluginConstants.MAX_CONCURRENT_REQUESTS, OllamaPluginConstants.MAX_QUEUED_REQUESTS),
+                runnable -> ApplicationManager.getApplication().invokeLater(runnable),
+                () -> OllamaSettingsService.getInstance().getEndpointUrls(),
+                () -> OllamaSettingsService.getInstance().idleUnloadMinutes);
+        OllamaSettingsService settings = OllamaSettingsService.getInstance();
+        setTimeouts(settings.connectTimeoutSeconds, settings.readTimeoutSeconds);
+    }
+
+    public OllamaClient(OllamaExecutor executor, Executor callbackExecutor, Supplier<List<String>> endpointUrls) {
+        this(executor, callbackExecutor, endpointUrls, () -> 0);
+    }
+
+    public OllamaClient(OllamaExecutor executor, Executor callbackExecutor, Supplier<List<String>> endpointUrls,
+                        IntSupplier idleUnloadMinutes) {
         this.httpClient = new OkHttpClient.Builder()
-                .connectTimeout(30, java.util.concurrent.TimeUnit.SECONDS)
-                .readTimeout(60, java.util.concurrent.TimeUnit.SECONDS)
+                .connectTimeout(OllamaPluginConstants.CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(OllamaPluginConstants.READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .eventListenerFactory(call -> {
+                    OllamaCallTiming timing = call.request().tag(OllamaCallTiming.class);
+                    if (timing != null) {
+                        return timing;
+                    }
+                    return OllamaHttpEvent.isTypeEnabled() ? new OllamaCallTiming() : okhttp3.EventListener.NONE;
+                })
                 .build();
         this.gson = new Gson();
+        this.codec = new OllamaJsonCodec(gson);
+        this.executor = executor;
+        this.callbackExecutor = callbackExecutor;
+        this.endpointPool = new OllamaEndpointPool(this, endpointUrls);
+        this.modelLifecycle = new OllamaModelLifecycle(this, endpointPool, idleUnloadMinutes);
+        this.coalescer = new OllamaRequestCoalescer(callbackExecutor, requestMetrics);
+        this.scheduler = new OllamaScheduler(executor, this::getGenerationCapacity,
+                OllamaPluginConstants.MAX_QUEUED_REQUESTS, requestMetrics);
+    }
+
+    /**
+     * Generations running at once: two per endpoint, but always leaving executor threads for metadata calls,
+     * which would otherwise queue behind minute-long generations and make healthy endpoints look down
+     */
+    private int getGenerationCapacity() {
+        int perEndpoints = endpointPool.getEndpoints().size() * OllamaPluginConstants.MAX_GENERATIONS_PER_ENDPOINT;
+        int executorLimit = executor.getMaxConcurrent() - OllamaPluginConstants.RESERVED_METADATA_SLOTS;
+        return Math.max(1, Math.min(perEndpoints, executorLimit));
     }
 
     public static OllamaClient getInstance() {
         return ApplicationManager.getApplication().getService(OllamaClient.class);
     }
 
+    /**
+     * Apply new connect and read timeouts to requests started from now on
+     */
+    public void setTimeouts(int connectSeconds, int readSeconds) {
+        httpClient = httpClient.newBuilder()
+                .connectTimeout(Math.max(1, connectSeconds), TimeUnit.SECONDS)
+                .readTimeout(Math.max(1, readSeconds), TimeUnit.SECONDS)
+                .build();
+    }
+
     /**
      * Check if Ollama is accessible
      */
     public CompletableFuture<Boolean> isConnected(String baseUrl) {
-        return CompletableFuture.supplyAsync(() -> {
+        return executor.supply(() -> {
             try {
                 Request request = new Request.Builder()
                         .url(baseUrl + "/api/tags")
                         .get()
                         .build();
-                
-                try (Response response = httpClient.newCall(request).execute()) {
-                    return response.isSuccessful();
-                }
+
+                return callIdempotent(baseUrl, IDEMPOTENT_ATTEMPTS, () -> {
+                    try (Response response = httpClient.newCall(request).execute()) {
+                        checkSuccessful(response);
+                        return true;
+                    }
+                });
             } catch (Exception e) {
                 return false;
             }
@@ -50,132 +135,702 @@ public class OllamaClient {
     }
 
     /**
-     * Fetch available models from Ollama
+     * Fetch available models from Ollama. The future fails if the server cannot be reached,
+     * so callers can tell an unreachable server from one without models.
      */
     public CompletableFuture<List<OllamaModel>> fetchModels(String baseUrl) {
-        return CompletableFuture.supplyAsync(() -> {
-            List<OllamaModel> models = new ArrayList<>();
+        return fetchModels(baseUrl, IDEMPOTENT_ATTEMPTS);
+    }
+
+    CompletableFuture<List<OllamaModel>> fetchModels(String baseUrl, int attempts) {
+        return executor.supply(() -> {
             try {
                 Request request = new Request.Builder()
                         .url(baseUrl + "/api/tags")
                         .get()
                         .build();
-                
-                try (Response response = httpClient.newCall(request).execute()) {
-                    if (response.isSuccessful() && response.body() != null) {
-                        String responseBody = response.body().string();
-                        JsonObject jsonResponse = gson.fromJson(responseBody, JsonObject.class);
-                        
-                        if (jsonResponse.has("models")) {
-                            JsonArray modelsArray = jsonResponse.getAsJsonArray("models");
-                            for (var modelElement : modelsArray) {
-                                JsonObject modelObj = modelElement.getAsJsonObject();
-                                OllamaModel model = new OllamaModel(
-                                    modelObj.get("name").getAsString(),
-                                    modelObj.get("size").getAsLong()
-                                );
-                                models.add(model);
-                            }
-                        }
+
+                return callIdempotent(baseUrl, attempts, () -> {
+                    try (Response response = httpClient.newCall(request).execute()) {
+                        checkSuccessful(response);
+                        return codec.readModels(response.body().source());
                     }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Send prompt to Ollama and get response. Cancelling the returned handle aborts the generation.
+     */
+    public OllamaRequestHandle sendPrompt(String baseUrl, String model, String prompt, OllamaResponseCallback callback) {
+        OllamaGenerateRequest request = new OllamaGenerateRequest(model, prompt, false, modelLifecycle.getKeepAlive());
+        OllamaStreamCallback subscriber = callback == null ? null : new OllamaStreamCallback() {
+            @Override
+            public void onToken(String token) {
+            }
+
+            @Override
+            public void onComplete(OllamaResponse response) {
+                callback.onSuccess(response);
+            }
+
+            @Override
+            public void onError(String error) {
+                callback.onError(error);
+            }
+        };
+        return coalescer.execute(new OllamaRequestCoalescer.Key(baseUrl, GENERATE_PATH, request), subscriber, shared -> {
+            OllamaRequestHandle handle = new OllamaRequestHandle();
+            OllamaResponseCallback responseCallback = new OllamaResponseCallback() {
+                @Override
+                public void onSuccess(OllamaResponse response) {
+                    shared.onComplete(response);
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
+
+                @Override
+                public void onError(String error) {
+                    shared.onError(error);
+                }
+            };
+            dispatch(OllamaPriority.INTERACTIVE, OllamaRequestMetrics.CHAT, model, handle,
+                    () -> executePrompt(baseUrl, request, handle, responseCallback), shared::onError);
+            return handle;
+        });
+    }
+
+    private OllamaResponse executePrompt(String baseUrl, OllamaGenerateRequest generateRequest,
+                                         OllamaRequestHandle handle, OllamaResponseCallback callback) {
+        try {
+            endpointPool.checkCircuit(baseUrl);
+            OllamaResponse ollamaResponse = generate(baseUrl, generateRequest, handle);
+            endpointPool.recordSuccess(baseUrl);
+            requestMetrics.record(generateRequest.getModel(), OllamaRequestMetrics.CHAT, ollamaResponse);
+            if (callback != null) {
+                deliver(handle, () -> callback.onSuccess(ollamaResponse));
+            }
+            return ollamaResponse;
+        } catch (Exception e) {
+            if (handle.isPreempted()) {
+                throw new OllamaPreemptedException();
+            }
+            recordFailure(baseUrl, handle, e);
+            handle.noteError(e.getMessage());
+            // A cancelled call fails with "Canceled"; the caller asked for that, so it is not an error
+            if (callback != null) {
+                deliver(handle, () -> callback.onError(e.getMessage()));
+            }
+            return new OllamaResponse("Error: " + e.getMessage(), 0, 0, 0);
+        }
+    }
+
+    /**
+     * Run a non-streaming generation and decode its single response message
+     */
+    private OllamaResponse generate(String baseUrl, OllamaGenerateRequest generateRequest,
+                                    OllamaRequestHandle handle) throws IOException {
+        long startNanos = System.nanoTime();
+        OllamaCallTiming timing = new OllamaCallTiming();
+        Request request = new Request.Builder()
+                .url(baseUrl + "/api/generate")
+                .post(codec.encode(generateRequest))
+                .tag(OllamaCallTiming.class, timing)
+                .build();
+
+        Call call = httpClient.newCall(request);
+        if (handle != null) {
+            handle.attach(call);
+        }
+        try (Response response = call.execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                String error = response.body() != null ? codec.readError(response.body().source()) : null;
+                throw new OllamaServerException(response.code(),
+                        error != null ? error : "Failed to get response from Ollama (HTTP " + response.code() + ")");
+            }
+            OllamaGenerateChunk chunk = new OllamaGenerateChunk();
+            try (JsonReader reader = codec.openReader(response.body().source())) {
+                if (!codec.readGenerateChunk(reader, chunk)) {
+                    throw new IOException("Empty response from Ollama");
+                }
+            }
+            if (chunk.error != null) {
+                throw new OllamaServerException(200, chunk.error);
+            }
+            OllamaResponse ollamaResponse = chunk.toResponse(chunk.response != null ? chunk.response : "", 0);
+            ollamaResponse.setClientTimings(handle != null ? handle.getQueueWait() : 0,
+                    timing.getConnectDuration(), System.nanoTime() - startNanos);
+            return ollamaResponse;
+        }
+    }
+
+    /**
+     * Load model into memory without generating anything and keep it resident for keepAlive.
+     * The response's load duration is the time the server spent loading the weights.
+     */
+    public CompletableFuture<OllamaResponse> loadModel(String baseUrl, String model, String keepAlive) {
+        return loadModel(baseUrl, model, null, keepAlive);
+    }
+
+    /**
+     * Load model with options that decide how it is loaded, such as num_ctx, so the generation that follows
+     * with the same options does not make the server load it again
+     */
+    public CompletableFuture<OllamaResponse> loadModel(String baseUrl, String model, Map<String, Object> options,
+                                                       String keepAlive) {
+        return executor.supply(() -> {
+            try {
+                return generate(baseUrl, new OllamaGenerateRequest(model, "", null, options, false, keepAlive), null);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-            return models;
         });
     }
 
     /**
-     * Send prompt to Ollama and get response
+     * Ask the server to free the memory held by model right away
+     */
+    public CompletableFuture<OllamaResponse> unloadModel(String baseUrl, String model) {
+        return loadModel(baseUrl, model, "0");
+    }
+
+    /**
+     * Stream prompt to Ollama, delivering each token fragment as soon as it is generated.
+     * Cancelling the returned handle closes the stream, which makes Ollama stop generating.
+     */
+    public OllamaRequestHandle streamPrompt(String baseUrl, String model, String prompt, OllamaStreamCallback callback) {
+        OllamaGenerateRequest request = new OllamaGenerateRequest(model, prompt, true, modelLifecycle.getKeepAlive());
+        return coalescer.execute(new OllamaRequestCoalescer.Key(baseUrl, GENERATE_PATH, request), callback, shared -> {
+            OllamaRequestHandle handle = new OllamaRequestHandle();
+            dispatch(OllamaPriority.INTERACTIVE, OllamaRequestMetrics.CHAT, model, handle,
+                    () -> executeStream(baseUrl, model, codec.encode(request), handle, shared), shared::onError);
+            return handle;
+        });
+    }
+
+    /**
+     * Stream prompt to whichever configured endpoint the pool picks for model, failing over to the next
+     * endpoint if one cannot be reached before the first token arrives
+     */
+    public OllamaRequestHandle streamPrompt(String model, String prompt, OllamaStreamCallback callback) {
+        return streamPromptFor(OllamaRequestMetrics.CHAT, OllamaPriority.INTERACTIVE, model, prompt, callback);
+    }
+
+    /**
+     * Routed streaming generation whose timings are recorded under action as well as under model
      */
-    public CompletableFuture<OllamaResponse> sendPrompt(String baseUrl, String model, String prompt, OllamaResponseCallback callback) {
-        return CompletableFuture.supplyAsync(() -> {
+    public OllamaRequestHandle streamPromptFor(String action, String model, String prompt, OllamaStreamCallback callback) {
+        return streamPromptFor(action, OllamaPriority.EDITOR_ACTION, model, prompt, callback);
+    }
+
+    /**
+     * Routed streaming generation scheduled in the given priority class
+     */
+    public OllamaRequestHandle streamPromptFor(String action, OllamaPriority priority, String model, String prompt,
+                                               OllamaStreamCallback callback) {
+        return streamPromptFor(action, priority, model, prompt, null, null, callback);
+    }
+
+    /**
+     * Routed streaming generation with model options such as num_predict or temperature, and a keep_alive
+     * that overrides the idle unload setting unless it is null
+     */
+    public OllamaRequestHandle streamPromptFor(String action, OllamaPriority priority, String model, String prompt,
+                                               Map<String, Object> options, String keepAlive, OllamaStreamCallback callback) {
+        OllamaGenerateRequest request = new OllamaGenerateRequest(model, prompt, null, options, true,
+                keepAlive != null ? keepAlive : modelLifecycle.getKeepAlive());
+        return coalescer.execute(new OllamaRequestCoalescer.Key(null, GENERATE_PATH, request), callback, shared -> {
+            OllamaRequestHandle handle = new OllamaRequestHandle();
+            dispatch(priority, action, model, handle,
+                    () -> executeRouted(GENERATE_PATH, model, codec.encode(request), action, null, handle, shared),
+                    shared::onError);
+            return handle;
+        });
+    }
+
+    /**
+     * Stream a code completion for the gap between prefix and suffix. A model that rejects the suffix because
+     * it has no fill-in-the-middle support is remembered and gets the prefix alone from then on.
+     * Completions are not coalesced: they are cancelled on almost every keystroke and rarely repeat while running.
+     */
+    public OllamaRequestHandle streamCompletion(String model, String prefix, String suffix, Map<String, Object> options,
+                                                OllamaStreamCallback callback) {
+        OllamaRequestHandle handle = new OllamaRequestHandle();
+        String keepAlive = modelLifecycle.getKeepAlive();
+        dispatch(OllamaPriority.INTERACTIVE, OllamaRequestMetrics.COMPLETION, model, handle, () -> {
+            if (suffix != null && !noInsertModels.contains(model)) {
+                OllamaGenerateRequest request = new OllamaGenerateRequest(model, prefix, suffix, options, true, keepAlive);
+                OllamaResponse response = executeRouted(GENERATE_PATH, model, codec.encode(request),
+                        OllamaRequestMetrics.COMPLETION, null, handle, new InsertAwareCallback(callback));
+                if (!isInsertUnsupported(response.getResponse())) {
+                    return response;
+                }
+                noInsertModels.add(model);
+            }
+            OllamaGenerateRequest request = new OllamaGenerateRequest(model, prefix, null, options, true, keepAlive);
+            return executeRouted(GENERATE_PATH, model, codec.encode(request), OllamaRequestMetrics.COMPLETION, null,
+                    handle, callback);
+        }, callback == null ? null : callback::onError);
+        return handle;
+    }
+
+    private static boolean isInsertUnsupported(String error) {
+        return error != null && error.contains(INSERT_UNSUPPORTED);
+    }
+
+    /**
+     * Stream the next assistant message of a conversation through /api/chat. Sending the whole history
+     * keeps the prompt a prefix of the previous one, so the server reuses its KV cache and only evaluates
+     * the new messages; preferredEndpoint keeps the conversation on the server that holds that cache.
+     */
+    public OllamaRequestHandle streamChat(String model, List<OllamaChatMessage> messages, String preferredEndpoint,
+                                          OllamaStreamCallback callback) {
+        OllamaRequestHandle handle = new OllamaRequestHandle();
+        OllamaChatRequest request = new OllamaChatRequest(model, messages, true, modelLifecycle.getKeepAlive());
+        dispatch(OllamaPriority.INTERACTIVE, OllamaRequestMetrics.CHAT, model, handle,
+                () -> executeRouted(CHAT_PATH, model, codec.encode(request), OllamaRequestMetrics.CHAT, preferredEndpoint,
+                        handle, callback),
+                callback == null ? null : callback::onError);
+        return handle;
+    }
+
+    private OllamaResponse executeStream(String baseUrl, String model, RequestBody body,
+                                         OllamaRequestHandle handle, OllamaStreamCallback callback) {
+        try {
+            endpointPool.checkCircuit(baseUrl);
+            OllamaResponse response = stream(baseUrl, GENERATE_PATH, model, body, OllamaRequestMetrics.CHAT, handle, callback, new StreamState());
+            endpointPool.recordSuccess(baseUrl);
+            return response;
+        } catch (Exception e) {
+            if (handle.isPreempted()) {
+                throw new OllamaPreemptedException();
+            }
+            recordFailure(baseUrl, handle, e);
+            return fail(handle, callback, e.getMessage());
+        }
+    }
+
+    /**
+     * Count a failed generation sent straight to baseUrl against its circuit if the server could not be reached
+     */
+    private void recordFailure(String baseUrl, OllamaRequestHandle handle, Exception e) {
+        if (e instanceof IOException && !(e instanceof OllamaServerException) && !(e instanceof OllamaCircuitOpenException)
+                && !handle.isCancelled()) {
+            endpointPool.recordFailure(baseUrl, e.getMessage());
+        }
+    }
+
+    private OllamaResponse executeRouted(String path, String model, RequestBody body, String action, String preferredEndpoint,
+                                         OllamaRequestHandle handle, OllamaStreamCallback callback) {
+        List<OllamaEndpoint> tried = new ArrayList<>();
+        String lastError = "No Ollama endpoint configured";
+        while (!handle.isCancelled()) {
+            if (handle.isPreempted()) {
+                throw new OllamaPreemptedException();
+            }
+            OllamaEndpoint endpoint = endpointPool.acquire(model, tried, preferredEndpoint);
+            if (endpoint == null) {
+                String openCircuits = endpointPool.describeOpenCircuits();
+                if (tried.isEmpty() && openCircuits != null) {
+                    lastError = openCircuits;
+                }
+                break;
+            }
+            tried.add(endpoint);
+
+            StreamState state = new StreamState();
             try {
-                JsonObject requestBody = new JsonObject();
-                requestBody.addProperty("model", model);
-                requestBody.addProperty("prompt", prompt);
-                requestBody.addProperty("stream", false);
+                OllamaResponse response = stream(endpoint.getUrl(), path, model, body, action, handle, callback, state);
+                endpointPool.release(endpoint, false, null);
+                endpoint.markLoaded(model);
+                return response;
+            } catch (Exception e) {
+                if (handle.isPreempted()) {
+                    // Not the endpoint's fault, and the scheduler will run the request again
+                    endpointPool.release(endpoint, false, null);
+                    throw new OllamaPreemptedException();
+                }
+                boolean transportFailure = !(e instanceof OllamaServerException) && !handle.isCancelled();
+                endpointPool.release(endpoint, transportFailure, e.getMessage());
+                lastError = endpoint.getUrl() + ": " + e.getMessage();
+                // Once tokens reached the caller a retry elsewhere would duplicate them
+                if (state.timeToFirstToken != 0 || !isRetryable(e)) {
+                    break;
+                }
+            }
+        }
+        return fail(handle, callback, lastError);
+    }
 
-                RequestBody body = RequestBody.create(
-                        requestBody.toString(),
-                        MediaType.get("application/json")
-                );
+    /**
+     * Transport failures, missing models and server-side errors may succeed on another endpoint
+     */
+    private static boolean isRetryable(Exception e) {
+        if (!(e instanceof OllamaServerException)) {
+            return e instanceof IOException;
+        }
+        int status = ((OllamaServerException) e).getStatusCode();
+        return status == 404 || status >= 500;
+    }
 
-                Request request = new Request.Builder()
-                        .url(baseUrl + "/api/generate")
-                        .post(body)
-                        .build();
+    private OllamaResponse stream(String baseUrl, String path, String model, RequestBody body, String action,
+                                  OllamaRequestHandle handle, OllamaStreamCallback callback, StreamState state) throws IOException {
+        long startNanos = System.nanoTime();
+        OllamaCallTiming timing = new OllamaCallTiming();
+        Request request = new Request.Builder()
+                .url(baseUrl + path)
+                .post(body)
+                .tag(OllamaCallTiming.class, timing)
+                .build();
 
-                try (Response response = httpClient.newCall(request).execute()) {
-                    if (response.isSuccessful() && response.body() != null) {
-                        String responseBody = response.body().string();
-                        JsonObject jsonResponse = gson.fromJson(responseBody, JsonObject.class);
-                        
-                        OllamaResponse ollamaResponse = new OllamaResponse(
-                            jsonResponse.has("response") ? jsonResponse.get("response").getAsString() : "",
-                            jsonResponse.has("eval_count") ? jsonResponse.get("eval_count").getAsLong() : 0,
-                            jsonResponse.has("eval_duration") ? jsonResponse.get("eval_duration").getAsLong() : 0,
-                            jsonResponse.has("total_duration") ? jsonResponse.get("total_duration").getAsLong() : 0
-                        );
+        Call call = httpClient.newCall(request);
+        handle.attach(call);
+        try (Response response = call.execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                String error = response.body() != null ? codec.readError(response.body().source()) : null;
+                throw new OllamaServerException(response.code(),
+                        error != null ? error : "Failed to get response from Ollama (HTTP " + response.code() + ")");
+            }
 
-                        if (callback != null) {
-                            callback.onSuccess(ollamaResponse);
+            // Ollama sends one JSON object per line; the last one carries done=true and the counters.
+            // The chunk is reused for every line, so only the token strings are allocated.
+            OllamaGenerateChunk chunk = new OllamaGenerateChunk();
+            boolean done = false;
+            try (JsonReader reader = codec.openReader(response.body().source())) {
+                while (!handle.isCancelled() && codec.readGenerateChunk(reader, chunk)) {
+                    if (chunk.error != null) {
+                        throw new OllamaServerException(200, chunk.error);
+                    }
+
+                    String token = chunk.response;
+                    if (token != null && !token.isEmpty()) {
+                        if (state.timeToFirstToken == 0) {
+                            state.timeToFirstToken = System.nanoTime() - startNanos;
+                            if (!handle.markStreaming()) {
+                                throw new OllamaPreemptedException();
+                            }
+                            OllamaFirstTokenEvent.emit(model, baseUrl, state.timeToFirstToken);
                         }
-                        return ollamaResponse;
-                    } else {
+                        state.text.append(token);
                         if (callback != null) {
-                            callback.onError("Failed to get response from Ollama");
+                            deliver(handle, () -> callback.onToken(token));
                         }
-                        return new OllamaResponse("Error: " + response.code(), 0, 0, 0);
+                    }
+
+                    if (chunk.done) {
+                        done = true;
+                        break;
                     }
                 }
-            } catch (Exception e) {
-                if (callback != null) {
-                    callback.onError(e.getMessage());
-                }
-                return new OllamaResponse("Error: " + e.getMessage(), 0, 0, 0);
             }
-        });
+
+            if (!done) {
+                throw new IOException(handle.isCancelled() ? "Canceled" : "Stream ended before generation completed");
+            }
+
+            OllamaResponse ollamaResponse = chunk.toResponse(state.text.toString(), state.timeToFirstToken);
+            ollamaResponse.setClientTimings(handle.getQueueWait(), timing.getConnectDuration(), System.nanoTime() - startNanos);
+            ollamaResponse.setEndpoint(baseUrl);
+            requestMetrics.record(model, action, ollamaResponse);
+            modelLifecycle.touch(baseUrl, model);
+            if (callback != null) {
+                deliver(handle, () -> callback.onComplete(ollamaResponse));
+            }
+            return ollamaResponse;
+        }
     }
 
     /**
-     * Get system metrics from Ollama
+     * Report a failed generation; a cancelled call fails with "Canceled", which the caller asked for, so it is not reported
      */
-    public CompletableFuture<OllamaMetrics> fetchMetrics(String baseUrl) {
-        return CompletableFuture.supplyAsync(() -> {
+    private OllamaResponse fail(OllamaRequestHandle handle, OllamaStreamCallback callback, String error) {
+        handle.noteError(error);
+        if (callback != null) {
+            deliver(handle, () -> callback.onError(error));
+        }
+        return new OllamaResponse("Error: " + error, 0, 0, 0);
+    }
+
+    /**
+     * Get models currently loaded in memory
+     */
+    public CompletableFuture<List<OllamaRunningModel>> fetchRunningModels(String baseUrl) {
+        return fetchRunningModels(baseUrl, IDEMPOTENT_ATTEMPTS);
+    }
+
+    CompletableFuture<List<OllamaRunningModel>> fetchRunningModels(String baseUrl, int attempts) {
+        return executor.supply(() -> {
             try {
                 Request request = new Request.Builder()
                         .url(baseUrl + "/api/ps")
                         .get()
                         .build();
-                
-                try (Response response = httpClient.newCall(request).execute()) {
-                    if (response.isSuccessful() && response.body() != null) {
-                        String responseBody = response.body().string();
-                        JsonObject jsonResponse = gson.fromJson(responseBody, JsonObject.class);
-                        
-                        // Parse memory info
-                        long memory = 0;
-                        if (jsonResponse.has("models") && jsonResponse.getAsJsonArray("models").size() > 0) {
-                            JsonObject modelInfo = jsonResponse.getAsJsonArray("models").get(0).getAsJsonObject();
-                            if (modelInfo.has("size")) {
-                                memory = modelInfo.get("size").getAsLong();
-                            }
+
+                return callIdempotent(baseUrl, attempts, () -> {
+                    try (Response response = httpClient.newCall(request).execute()) {
+                        checkSuccessful(response);
+                        return codec.readRunningModels(response.body().source());
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Get the context window facts of model from /api/show
+     */
+    public CompletableFuture<OllamaModelInfo> fetchModelInfo(String baseUrl, String model) {
+        return executor.supply(() -> {
+            try {
+                Request request = new Request.Builder()
+                        .url(baseUrl + "/api/show")
+                        .post(codec.encodeShowRequest(model))
+                        .build();
+
+                return callIdempotent(baseUrl, IDEMPOTENT_ATTEMPTS, () -> {
+                    try (Response response = httpClient.newCall(request).execute()) {
+                        checkSuccessful(response);
+                        return codec.readModelInfo(response.body().source());
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Embed inputs with an embedding model through /api/embed, returning one vector per input in the same order
+     */
+    public CompletableFuture<List<float[]>> fetchEmbeddings(String baseUrl, String model, List<String> inputs) {
+        return executor.supply(() -> {
+            try {
+                Request request = new Request.Builder()
+                        .url(baseUrl + "/api/embed")
+                        .post(codec.encodeEmbedRequest(model, inputs))
+                        .build();
+
+                return callIdempotent(baseUrl, IDEMPOTENT_ATTEMPTS, () -> {
+                    try (Response response = httpClient.newCall(request).execute()) {
+                        checkSuccessful(response);
+                        List<float[]> embeddings = codec.readEmbeddings(response.body().source());
+                        if (embeddings.size() != inputs.size()) {
+                            throw new OllamaServerException(200, "Expected " + inputs.size() + " embeddings, got " + embeddings.size());
                         }
-                        
-                        return new OllamaMetrics(memory, 0, 0);
+                        return embeddings;
                     }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Throw the server's error message, or its HTTP status if it sent none, unless response carries a body to read
+     */
+    private void checkSuccessful(Response response) throws IOException {
+        if (!response.isSuccessful() || response.body() == null) {
+            String error = response.body() != null ? codec.readError(response.body().source()) : null;
+            throw new OllamaServerException(response.code(), error != null ? error : "Ollama returned HTTP " + response.code());
+        }
+    }
+
+    /**
+     * Run an idempotent request against baseUrl. An open circuit fails it at once; otherwise transport
+     * failures and 5xx answers are retried with jittered exponential backoff, so a brief hiccup does not
+     * reach the caller while many clients retrying together do not hit the server in lockstep.
+     * Only the final outcome counts towards the endpoint's circuit breaker.
+     */
+    private <T> T callIdempotent(String baseUrl, int attempts, HttpCall<T> call) throws IOException {
+        endpointPool.checkCircuit(baseUrl);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T result = call.execute();
+                endpointPool.recordSuccess(baseUrl);
+                return result;
+            } catch (IOException e) {
+                boolean serverAnswered = e instanceof OllamaServerException
+                        && ((OllamaServerException) e).getStatusCode() < 500;
+                if (serverAnswered) {
+                    endpointPool.recordSuccess(baseUrl);
+                    throw e;
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
+                if (attempt >= attempts) {
+                    endpointPool.recordFailure(baseUrl, e.getMessage());
+                    throw e;
+                }
+            }
+            try {
+                Thread.sleep(retryDelay(attempt));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry");
+            }
+        }
+    }
+
+    /**
+     * Half the doubled base delay plus a random share of the other half
+     */
+    static long retryDelay(int attempt) {
+        long delay = RETRY_BASE_MILLIS << Math.min(attempt - 1, 10);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * Get the server's resource usage: every loaded model with its memory, VRAM share and expiry
+     */
+    public CompletableFuture<OllamaMetrics> fetchMetrics(String baseUrl) {
+        return fetchMetrics(baseUrl, IDEMPOTENT_ATTEMPTS);
+    }
+
+    CompletableFuture<OllamaMetrics> fetchMetrics(String baseUrl, int attempts) {
+        return fetchRunningModels(baseUrl, attempts).thenApply(OllamaMetrics::new);
+    }
+
+    /**
+     * Queue a generation with the scheduler; a full queue, or an executor that refuses the task when its turn
+     * comes, fails the handle and reports the rejection through onRejected.
+     * While a flight recording is running the request is also traced as an OllamaRequestEvent.
+     */
+    private void dispatch(OllamaPriority priority, String action, String model, OllamaRequestHandle handle,
+                          Supplier<OllamaResponse> task, Consumer<String> onRejected) {
+        OllamaRequestEvent event = OllamaRequestEvent.submitted(priority, action, model);
+        if (event != null) {
+            handle.setRequestEvent(event);
+            handle.whenComplete((response, failure) -> event.completed(handle, response, failure));
+        }
+        Consumer<String> reject = message -> {
+            if (onRejected != null) {
+                deliver(handle, () -> onRejected.accept(message));
+            }
+        };
+        try {
+            scheduler.submit(priority, handle, task, reject);
+        } catch (RejectedExecutionException e) {
+            reject.accept(e.getMessage());
+            handle.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Hand a callback to the EDT, dropping it if the request was cancelled in the meantime
+     */
+    private void deliver(OllamaRequestHandle handle, Runnable callback) {
+        callbackExecutor.execute(() -> {
+            if (!handle.isCancelled()) {
+                callback.run();
             }
-            return new OllamaMetrics(0, 0, 0);
         });
     }
 
+    public OllamaExecutor getExecutor() {
+        return executor;
+    }
+
+    public OllamaEndpointPool getEndpointPool() {
+        return endpointPool;
+    }
+
+    public OllamaModelLifecycle getModelLifecycle() {
+        return modelLifecycle;
+    }
+
+    public OllamaRequestMetrics getRequestMetrics() {
+        return requestMetrics;
+    }
+
+    /**
+     * Start the shared server monitor, whose polls keep the endpoint pool and the model lifecycle current;
+     * later calls do nothing
+     */
+    void startMonitoring() {
+        if (monitoring) {
+            return;
+        }
+        Application application = ApplicationManager.getApplication();
+        if (application == null) {
+            return;
+        }
+        monitoring = true;
+        application.getService(OllamaServerMonitor.class).start();
+    }
+
+    /**
+     * Feed the polls of monitor to the endpoint pool and the model lifecycle
+     */
+    void attachMonitor(OllamaServerMonitor monitor) {
+        monitor.addPollListener(endpointPool::polled);
+        monitor.addPollListener(modelLifecycle::polled);
+    }
+
+    @Override
+    public void dispose() {
+        executor.shutdown();
+    }
+
+    /**
+     * One HTTP exchange that may be repeated
+     */
+    private interface HttpCall<T> {
+        T execute() throws IOException;
+    }
+
+    /**
+     * Text and first-token time of one streaming attempt
+     */
+    private static class StreamState {
+        final StringBuilder text = new StringBuilder();
+        long timeToFirstToken;
+    }
+
+    /**
+     * Forwards a fill-in-the-middle attempt to the caller, except the rejection that triggers the prefix-only retry
+     */
+    private static class InsertAwareCallback implements OllamaStreamCallback {
+        private final OllamaStreamCallback callback;
+
+        InsertAwareCallback(OllamaStreamCallback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void onToken(String token) {
+            if (callback != null) {
+                callback.onToken(token);
+            }
+        }
+
+        @Override
+        public void onComplete(OllamaResponse response) {
+            if (callback != null) {
+                callback.onComplete(response);
+            }
+        }
+
+        @Override
+        public void onError(String error) {
+            if (callback != null && !isInsertUnsupported(error)) {
+                callback.onError(error);
+            }
+        }
+    }
+
     public interface OllamaResponseCallback {
         void onSuccess(OllamaResponse response);
         void onError(String error);
     }
+
+    /**
+     * Callback for streamed generations: tokens arrive incrementally, then the final counters
+     */
+    public interface OllamaStreamCallback {
+        void onToken(String token);
+        void onComplete(OllamaResponse response);
+        void onError(String error);
+    }
 }
@@ -0,0 +1,182 @@
+package com.ollama.plugin.client;
+
+import com.ollama.plugin.OllamaPluginConstants;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routing state of one Ollama server in the endpoint pool
+ */
+public class OllamaEndpoint {
+
+    /**
+     * Circuit breaker state: CLOSED lets requests through, OPEN fails them at once while the endpoint waits
+     * out its backoff, HALF_OPEN lets a single probe or request test whether the server is back
+     */
+    public enum CircuitState { CLOSED, OPEN, HALF_OPEN }
+
+    private final String url;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Set while the one request allowed through a half-open circuit runs
+    private final AtomicBoolean trialInFlight = new AtomicBoolean();
+
+    private volatile boolean healthy = true;
+    private volatile int consecutiveFailures;
+    private volatile long ejectedUntil;
+    private volatile String lastError = "";
+    private volatile Set<String> availableModels = Collections.emptySet();
+    private volatile Set<String> loadedModels = Collections.emptySet();
+    private volatile long lastProbeAt;
+
+    public OllamaEndpoint(String url) {
+        this.url = url;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    int incrementInFlight() {
+        return inFlight.incrementAndGet();
+    }
+
+    int decrementInFlight() {
+        return inFlight.decrementAndGet();
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * System.currentTimeMillis() until which this endpoint is skipped by routing
+     */
+    public long getEjectedUntil() {
+        return ejectedUntil;
+    }
+
+    public CircuitState getCircuitState() {
+        if (consecutiveFailures < OllamaPluginConstants.CIRCUIT_FAILURE_THRESHOLD) {
+            return CircuitState.CLOSED;
+        }
+        return System.currentTimeMillis() < ejectedUntil ? CircuitState.OPEN : CircuitState.HALF_OPEN;
+    }
+
+    /**
+     * Claim the single trial request of a half-open circuit; false if another one already runs
+     */
+    boolean tryStartTrial() {
+        return trialInFlight.compareAndSet(false, true);
+    }
+
+    void endTrial() {
+        trialInFlight.set(false);
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Models installed on this server (/api/tags); empty until the first probe
+     */
+    public Set<String> getAvailableModels() {
+        return availableModels;
+    }
+
+    /**
+     * Models currently loaded in memory (/api/ps)
+     */
+    public Set<String> getLoadedModels() {
+        return loadedModels;
+    }
+
+    public long getLastProbeAt() {
+        return lastProbeAt;
+    }
+
+    void markHealthy() {
+        healthy = true;
+        consecutiveFailures = 0;
+        ejectedUntil = 0;
+        lastError = "";
+        trialInFlight.set(false);
+    }
+
+    void markFailed(String error, long ejectMillis) {
+        healthy = false;
+        consecutiveFailures++;
+        ejectedUntil = System.currentTimeMillis() + ejectMillis;
+        lastError = error != null ? error : "";
+        trialInFlight.set(false);
+    }
+
+    void updateModels(Set<String> available, Set<String> loaded) {
+        availableModels = Collections.unmodifiableSet(available);
+        loadedModels = Collections.unmodifiableSet(loaded);
+        lastProbeAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Whether model is resident, treating a bare name as its ":latest" tag
+     */
+    public boolean isLoaded(String model) {
+        return loadedModels.contains(canonicalName(model));
+    }
+
+    void markLoaded(String model) {
+        model = canonicalName(model);
+        if (!loadedModels.contains(model)) {
+            Set<String> loaded = new HashSet<>(loadedModels);
+            loaded.add(model);
+            loadedModels = Collections.unmodifiableSet(loaded);
+        }
+    }
+
+    void markUnloaded(String model) {
+        model = canonicalName(model);
+        if (loadedModels.contains(model)) {
+            Set<String> loaded = new HashSet<>(loadedModels);
+            loaded.remove(model);
+            loadedModels = Collections.unmodifiableSet(loaded);
+        }
+    }
+
+    /**
+     * Ollama reports models with their tag, while users often name them without one
+     */
+    static String canonicalName(String model) {
+        return model.indexOf(':') >= 0 ? model : model + ":latest";
+    }
+
+    public String getStatusText() {
+        if (healthy) {
+            return "up, " + inFlight.get() + " in flight" + (loadedModels.isEmpty() ? "" : ", loaded: " + String.join(", ", loadedModels));
+        }
+        String error = lastError.isEmpty() ? "" : ": " + lastError;
+        switch (getCircuitState()) {
+            case OPEN:
+                long retrySeconds = TimeUnit.MILLISECONDS.toSeconds(ejectedUntil - System.currentTimeMillis()) + 1;
+                return "unreachable, circuit open after " + consecutiveFailures + " failures" + error
+                        + "; retrying in " + retrySeconds + " s";
+            case HALF_OPEN:
+                return "unreachable, probing after " + consecutiveFailures + " failures" + error;
+            default:
+                break;
+        }
+        return "down (" + consecutiveFailures + " failures" + error + ")";
+    }
+}
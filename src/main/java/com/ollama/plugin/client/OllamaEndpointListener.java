@@ -0,0 +1,14 @@
+package com.ollama.plugin.client;
+
+import com.intellij.util.messages.Topic;
+
+import java.util.List;
+
+/**
+ * Notified on the EDT when health, load or in-flight counts of the configured endpoints change
+ */
+public interface OllamaEndpointListener {
+    Topic<OllamaEndpointListener> TOPIC = Topic.create("Ollama endpoints", OllamaEndpointListener.class);
+
+    void endpointsChanged(List<OllamaEndpoint> endpoints);
+}
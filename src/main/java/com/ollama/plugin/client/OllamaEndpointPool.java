@@ -0,0 +1,232 @@
+package com.ollama.plugin.client;
+
+import com.intellij.openapi.application.ApplicationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Routes generations across the configured Ollama servers.
+ * Each request goes to the healthy endpoint with the fewest in-flight requests, preferring servers that
+ * already have the model loaded, then servers that have it installed. Failing endpoints are ejected with
+ * exponential backoff until a poll of the OllamaServerMonitor, which also keeps the model lists current,
+ * finds them answering again.
+ * After CIRCUIT_FAILURE_THRESHOLD failures in a row an endpoint's circuit opens: it is no longer used even
+ * as a last resort, and requests addressed to it fail at once. When the backoff runs out the circuit is
+ * half-open, and the next poll of /api/tags or a single request decides whether it closes again.
+ */
+public class OllamaEndpointPool {
+
+    private static final long BASE_EJECT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private static final long MAX_EJECT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final OllamaClient ollamaClient;
+    private final Supplier<List<String>> endpointUrls;
+    private final Map<String, OllamaEndpoint> endpoints = new LinkedHashMap<>();
+
+    public OllamaEndpointPool(OllamaClient ollamaClient, Supplier<List<String>> endpointUrls) {
+        this.ollamaClient = ollamaClient;
+        this.endpointUrls = endpointUrls;
+    }
+
+    /**
+     * Current endpoints in configuration order, picking up settings changes
+     */
+    public synchronized List<OllamaEndpoint> getEndpoints() {
+        List<String> urls = endpointUrls.get();
+        if (!urls.equals(new ArrayList<>(endpoints.keySet()))) {
+            Map<String, OllamaEndpoint> previous = new LinkedHashMap<>(endpoints);
+            endpoints.clear();
+            for (String url : urls) {
+                endpoints.put(url, previous.getOrDefault(url, new OllamaEndpoint(url)));
+            }
+        }
+        return new ArrayList<>(endpoints.values());
+    }
+
+    /**
+     * Pick an endpoint for model and count the request against it; release() must follow.
+     * Returns null when every endpoint has already been tried or has an open circuit.
+     */
+    public OllamaEndpoint acquire(String model, Collection<OllamaEndpoint> exclude) {
+        return acquire(model, exclude, null);
+    }
+
+    /**
+     * Like acquire(model, exclude), but stays on preferredUrl while that endpoint is healthy, e.g. to keep
+     * a conversation on the server whose KV cache already holds it
+     */
+    public OllamaEndpoint acquire(String model, Collection<OllamaEndpoint> exclude, String preferredUrl) {
+        ollamaClient.startMonitoring();
+        long now = System.currentTimeMillis();
+        OllamaEndpoint best = null;
+        int bestScore = Integer.MAX_VALUE;
+        OllamaEndpoint fallback = null;
+        List<OllamaEndpoint> halfOpen = new ArrayList<>();
+
+        synchronized (this) {
+            for (OllamaEndpoint endpoint : getEndpoints()) {
+                if (exclude.contains(endpoint)) {
+                    continue;
+                }
+                OllamaEndpoint.CircuitState circuit = endpoint.getCircuitState();
+                if (circuit == OllamaEndpoint.CircuitState.OPEN) {
+                    continue;
+                }
+                if (circuit == OllamaEndpoint.CircuitState.HALF_OPEN) {
+                    halfOpen.add(endpoint);
+                    continue;
+                }
+                if (!endpoint.isHealthy() && endpoint.getEjectedUntil() > now) {
+                    // Remember the one that comes back soonest in case everything is down
+                    if (fallback == null || endpoint.getEjectedUntil() < fallback.getEjectedUntil()) {
+                        fallback = endpoint;
+                    }
+                    continue;
+                }
+                int score = endpoint.getUrl().equals(preferredUrl) ? -1 : modelScore(endpoint, model) * 10_000 + endpoint.getInFlight();
+                if (score < bestScore) {
+                    best = endpoint;
+                    bestScore = score;
+                }
+            }
+            if (best == null) {
+                best = fallback;
+            }
+            // A half-open endpoint is only tried when nothing better is left, and by one request at a time
+            for (int i = 0; best == null && i < halfOpen.size(); i++) {
+                if (halfOpen.get(i).tryStartTrial()) {
+                    best = halfOpen.get(i);
+                }
+            }
+            if (best != null) {
+                best.incrementInFlight();
+            }
+        }
+        if (best != null) {
+            publish();
+        }
+        return best;
+    }
+
+    /**
+     * 0 if the model is loaded, 1 if installed, 2 if unknown (not probed yet), 3 if the server lacks it
+     */
+    private static int modelScore(OllamaEndpoint endpoint, String model) {
+        model = OllamaEndpoint.canonicalName(model);
+        if (endpoint.getLoadedModels().contains(model)) {
+            return 0;
+        }
+        if (endpoint.getAvailableModels().contains(model)) {
+            return 1;
+        }
+        return endpoint.getLastProbeAt() == 0 ? 2 : 3;
+    }
+
+    /**
+     * Finish a request started with acquire(); transport failures eject the endpoint
+     */
+    public void release(OllamaEndpoint endpoint, boolean transportFailure, String error) {
+        endpoint.decrementInFlight();
+        if (transportFailure) {
+            markFailed(endpoint, error);
+        } else if (!endpoint.isHealthy()) {
+            endpoint.markHealthy();
+        }
+        endpoint.endTrial();
+        publish();
+    }
+
+    /**
+     * Why acquire() found nothing: the open circuits with their retry times, or null if no endpoint is open
+     */
+    public String describeOpenCircuits() {
+        List<String> open = new ArrayList<>();
+        for (OllamaEndpoint endpoint : getEndpoints()) {
+            if (endpoint.getCircuitState() == OllamaEndpoint.CircuitState.OPEN) {
+                open.add("Ollama at " + endpoint.getUrl() + " is " + endpoint.getStatusText());
+            }
+        }
+        return open.isEmpty() ? null : String.join("\n", open);
+    }
+
+    /**
+     * Fail at once if baseUrl is a configured endpoint whose circuit is open
+     */
+    void checkCircuit(String baseUrl) throws OllamaCircuitOpenException {
+        OllamaEndpoint endpoint = find(baseUrl);
+        if (endpoint != null && endpoint.getCircuitState() == OllamaEndpoint.CircuitState.OPEN) {
+            throw new OllamaCircuitOpenException("Ollama at " + baseUrl + " is " + endpoint.getStatusText());
+        }
+    }
+
+    /**
+     * Record the outcome of a request sent straight to baseUrl rather than through acquire()
+     */
+    void recordSuccess(String baseUrl) {
+        OllamaEndpoint endpoint = find(baseUrl);
+        if (endpoint != null && !endpoint.isHealthy()) {
+            endpoint.markHealthy();
+            publish();
+        }
+    }
+
+    void recordFailure(String baseUrl, String error) {
+        OllamaEndpoint endpoint = find(baseUrl);
+        if (endpoint != null) {
+            markFailed(endpoint, error);
+            publish();
+        }
+    }
+
+    private synchronized OllamaEndpoint find(String baseUrl) {
+        getEndpoints();
+        return endpoints.get(baseUrl);
+    }
+
+    private void markFailed(OllamaEndpoint endpoint, String error) {
+        int failures = Math.min(endpoint.getConsecutiveFailures(), 6);
+        endpoint.markFailed(error, Math.min(BASE_EJECT_MILLIS << failures, MAX_EJECT_MILLIS));
+    }
+
+    /**
+     * Take the installed and loaded models of every endpoint the server monitor just polled. The poll requests
+     * recorded their own outcome, which is what re-admits an ejected endpoint or closes a half-open circuit.
+     */
+    void polled(List<OllamaServerStatus> round) {
+        for (OllamaServerStatus status : round) {
+            OllamaEndpoint endpoint = find(status.getBaseUrl());
+            if (endpoint == null || !status.isConnected()) {
+                continue;
+            }
+            Set<String> available = new HashSet<>();
+            for (OllamaModel model : status.getModels()) {
+                available.add(OllamaEndpoint.canonicalName(model.getName()));
+            }
+            Set<String> loaded = new HashSet<>();
+            for (OllamaRunningModel model : status.getMetrics().getRunningModels()) {
+                loaded.add(OllamaEndpoint.canonicalName(model.getName()));
+            }
+            endpoint.updateModels(available, loaded);
+        }
+        publish();
+    }
+
+    void publish() {
+        if (ApplicationManager.getApplication() == null) {
+            return;
+        }
+        List<OllamaEndpoint> snapshot = Collections.unmodifiableList(getEndpoints());
+        ApplicationManager.getApplication().invokeLater(() ->
+                ApplicationManager.getApplication().getMessageBus()
+                        .syncPublisher(OllamaEndpointListener.TOPIC).endpointsChanged(snapshot));
+    }
+}
@@ -0,0 +1,195 @@
+package com.ollama.plugin.client;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded executor for blocking Ollama HTTP calls, so they never run on the common ForkJoinPool.
+ * Uses a virtual thread per task when the JDK supports it, otherwise a fixed pool of named daemon threads.
+ * Either way at most maxConcurrent tasks run at once and at most queueCapacity wait; beyond that
+ * submissions are rejected with a RejectedExecutionException.
+ */
+public class OllamaExecutor implements Executor {
+
+    private static final String THREAD_NAME_PREFIX = "Ollama-Client-";
+
+    private final int maxConcurrent;
+    private final int queueCapacity;
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final boolean virtualThreads;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+
+    public OllamaExecutor(int maxConcurrent, int queueCapacity) {
+        this.maxConcurrent = maxConcurrent;
+        this.queueCapacity = queueCapacity;
+
+        ExecutorService virtual = createVirtualThreadExecutor();
+        if (virtual != null) {
+            this.delegate = virtual;
+            this.permits = new Semaphore(maxConcurrent, true);
+            this.virtualThreads = true;
+        } else {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                    maxConcurrent, maxConcurrent,
+                    60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    new NamedThreadFactory(),
+                    new ThreadPoolExecutor.AbortPolicy());
+            pool.allowCoreThreadTimeOut(true);
+            this.delegate = pool;
+            this.permits = null;
+            this.virtualThreads = false;
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        // Admission counts running tasks too, so a task that has not been picked up yet never causes a false rejection
+        if (outstanding.incrementAndGet() > maxConcurrent + queueCapacity) {
+            outstanding.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException(
+                    "Ollama request queue is full (" + queueCapacity + " waiting), try again later");
+        }
+        queued.incrementAndGet();
+
+        long submittedAt = System.nanoTime();
+        Runnable tracked = () -> {
+            try {
+                if (permits != null) {
+                    permits.acquireUninterruptibly();
+                }
+                recordQueueWait(System.nanoTime() - submittedAt);
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                    completed.incrementAndGet();
+                }
+            } finally {
+                if (permits != null) {
+                    permits.release();
+                }
+                outstanding.decrementAndGet();
+            }
+        };
+
+        try {
+            delegate.execute(tracked);
+        } catch (RejectedExecutionException e) {
+            outstanding.decrementAndGet();
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Run a blocking task, failing the returned future instead of throwing when the queue is full
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, this);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void recordQueueWait(long waitNanos) {
+        totalQueueWaitNanos.addAndGet(waitNanos);
+        maxQueueWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    public void shutdown() {
+        delegate.shutdownNow();
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Tasks submitted but not yet running
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public double getAverageQueueWaitMillis() {
+        long started = completed.get() + active.get();
+        return started == 0 ? 0 : totalQueueWaitNanos.get() / 1_000_000.0 / started;
+    }
+
+    public double getMaxQueueWaitMillis() {
+        return maxQueueWaitNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Thread.ofVirtual() is only available from JDK 21; look it up reflectively so the plugin still runs on older runtimes
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, THREAD_NAME_PREFIX, 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            Method perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) perTask.invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
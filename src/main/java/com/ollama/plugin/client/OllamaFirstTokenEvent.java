@@ -0,0 +1,42 @@
+package com.ollama.plugin.client;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder instant marking when the first token of a generation arrived, to line up with rendering
+ */
+@Name("com.ollama.FirstToken")
+@Label("Ollama First Token")
+@Category("Ollama")
+@StackTrace(false)
+class OllamaFirstTokenEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(OllamaFirstTokenEvent.class);
+
+    @Label("Model")
+    String model;
+
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("Time to First Token")
+    @Timespan(Timespan.NANOSECONDS)
+    long timeToFirstToken;
+
+    static void emit(String model, String endpoint, long timeToFirstToken) {
+        if (!TYPE.isEnabled()) {
+            return;
+        }
+        OllamaFirstTokenEvent event = new OllamaFirstTokenEvent();
+        event.model = model;
+        event.endpoint = endpoint;
+        event.timeToFirstToken = timeToFirstToken;
+        event.commit();
+    }
+}
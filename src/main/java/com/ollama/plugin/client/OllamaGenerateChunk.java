@@ -0,0 +1,34 @@
+package com.ollama.plugin.client;
+
+/**
+ * One decoded /api/generate message. A streamed generation reuses a single instance for every line,
+ * so only the token text itself is allocated per chunk.
+ */
+class OllamaGenerateChunk {
+    String response;
+    String error;
+    boolean done;
+    long evalCount;
+    long evalDuration;
+    long totalDuration;
+    long promptEvalCount;
+    long promptEvalDuration;
+    long loadDuration;
+
+    void reset() {
+        response = null;
+        error = null;
+        done = false;
+        evalCount = 0;
+        evalDuration = 0;
+        totalDuration = 0;
+        promptEvalCount = 0;
+        promptEvalDuration = 0;
+        loadDuration = 0;
+    }
+
+    OllamaResponse toResponse(String text, long timeToFirstToken) {
+        return new OllamaResponse(text, evalCount, evalDuration, totalDuration,
+                promptEvalCount, promptEvalDuration, loadDuration, timeToFirstToken);
+    }
+}
@@ -0,0 +1,66 @@
+package com.ollama.plugin.client;
+
+import java.util.Map;
+
+/**
+ * Body of an /api/generate request
+ */
+public class OllamaGenerateRequest {
+    private final String model;
+    private final String prompt;
+    private final boolean stream;
+    private final String keepAlive;
+    private final String suffix;
+    private final Map<String, Object> options;
+
+    public OllamaGenerateRequest(String model, String prompt, boolean stream) {
+        this(model, prompt, stream, null);
+    }
+
+    public OllamaGenerateRequest(String model, String prompt, boolean stream, String keepAlive) {
+        this(model, prompt, null, null, stream, keepAlive);
+    }
+
+    public OllamaGenerateRequest(String model, String prompt, String suffix, Map<String, Object> options,
+                                 boolean stream, String keepAlive) {
+        this.model = model;
+        this.prompt = prompt;
+        this.suffix = suffix;
+        this.options = options;
+        this.stream = stream;
+        this.keepAlive = keepAlive;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public String getPrompt() {
+        return prompt;
+    }
+
+    public boolean isStream() {
+        return stream;
+    }
+
+    /**
+     * How long the server keeps the model loaded after this request, e.g. "15m" or "0"; null for the server default
+     */
+    public String getKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * Text after the insertion point for fill-in-the-middle models, or null for a plain continuation of prompt
+     */
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * Model parameters such as num_predict or temperature, or null for the model's defaults
+     */
+    public Map<String, Object> getOptions() {
+        return options;
+    }
+}
@@ -0,0 +1,59 @@
+package com.ollama.plugin.client;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event for one HTTP exchange with an Ollama server, from the call starting until its body
+ * was read or it failed. Emitted by OllamaCallTiming, which the client only attaches while a recording has the
+ * event enabled or the call is a generation.
+ */
+@Name("com.ollama.Http")
+@Label("Ollama HTTP Call")
+@Category("Ollama")
+@Description("One HTTP exchange with an Ollama server")
+@StackTrace(false)
+class OllamaHttpEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(OllamaHttpEvent.class);
+
+    @Label("Method")
+    String method;
+
+    @Label("URL")
+    String url;
+
+    @Label("Status")
+    int status;
+
+    @Label("Connect")
+    @Description("Resolving and connecting, 0 for a pooled connection")
+    @Timespan(Timespan.NANOSECONDS)
+    long connect;
+
+    @Label("Time to Headers")
+    @Timespan(Timespan.NANOSECONDS)
+    long timeToHeaders;
+
+    @Label("Request Bytes")
+    @DataAmount(DataAmount.BYTES)
+    long requestBytes;
+
+    @Label("Response Bytes")
+    @DataAmount(DataAmount.BYTES)
+    long responseBytes;
+
+    @Label("Error")
+    String error;
+
+    static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+}
@@ -0,0 +1,524 @@
+package com.ollama.plugin.client;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typed codec for the Ollama wire protocol.
+ * Responses are decoded straight from the OkHttp source with a JsonReader and unknown fields are skipped,
+ * so no body String or JsonObject tree is built; request bodies are written straight to the sink.
+ */
+class OllamaJsonCodec {
+
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    private final Gson gson;
+
+    OllamaJsonCodec(Gson gson) {
+        this.gson = gson;
+    }
+
+    /**
+     * Request body that serializes the generate request while OkHttp writes it to the socket
+     */
+    RequestBody encode(OllamaGenerateRequest request) {
+        return body(writer -> writeGenerateRequest(writer, request));
+    }
+
+    /**
+     * Request body for an /api/chat request, written the same way
+     */
+    RequestBody encode(OllamaChatRequest request) {
+        return body(writer -> writeChatRequest(writer, request));
+    }
+
+    private RequestBody body(JsonBodyWriter bodyWriter) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return JSON;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                JsonWriter writer = gson.newJsonWriter(new SinkWriter(sink));
+                bodyWriter.write(writer);
+                writer.flush();
+            }
+        };
+    }
+
+    void writeGenerateRequest(JsonWriter writer, OllamaGenerateRequest request) throws IOException {
+        writer.beginObject();
+        writer.name("model").value(request.getModel());
+        writer.name("prompt").value(request.getPrompt());
+        if (request.getSuffix() != null) {
+            writer.name("suffix").value(request.getSuffix());
+        }
+        writer.name("stream").value(request.isStream());
+        if (request.getKeepAlive() != null) {
+            writer.name("keep_alive").value(request.getKeepAlive());
+        }
+        if (request.getOptions() != null && !request.getOptions().isEmpty()) {
+            writer.name("options").beginObject();
+            for (Map.Entry<String, Object> option : request.getOptions().entrySet()) {
+                writeValue(writer.name(option.getKey()), option.getValue());
+            }
+            writer.endObject();
+        }
+        writer.endObject();
+    }
+
+    /**
+     * Write an option value: a number, boolean, string or a collection of those, e.g. the stop sequences
+     */
+    private static void writeValue(JsonWriter writer, Object value) throws IOException {
+        if (value == null) {
+            writer.nullValue();
+        } else if (value instanceof Number) {
+            writer.value((Number) value);
+        } else if (value instanceof Boolean) {
+            writer.value((Boolean) value);
+        } else if (value instanceof Collection) {
+            writer.beginArray();
+            for (Object element : (Collection<?>) value) {
+                writeValue(writer, element);
+            }
+            writer.endArray();
+        } else {
+            writer.value(value.toString());
+        }
+    }
+
+    void writeChatRequest(JsonWriter writer, OllamaChatRequest request) throws IOException {
+        writer.beginObject();
+        writer.name("model").value(request.getModel());
+        writer.name("messages").beginArray();
+        for (OllamaChatMessage message : request.getMessages()) {
+            writer.beginObject();
+            writer.name("role").value(message.getRole());
+            writer.name("content").value(message.getContent());
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.name("stream").value(request.isStream());
+        if (request.getKeepAlive() != null) {
+            writer.name("keep_alive").value(request.getKeepAlive());
+        }
+        writer.endObject();
+    }
+
+    /**
+     * Body of an /api/show request; older servers read "name", newer ones "model"
+     */
+    RequestBody encodeShowRequest(String model) {
+        return body(writer -> writer.beginObject().name("model").value(model).name("name").value(model).endObject());
+    }
+
+    /**
+     * Body of an /api/embed request embedding every input with one call
+     */
+    RequestBody encodeEmbedRequest(String model, List<String> inputs) {
+        return body(writer -> {
+            writer.beginObject();
+            writer.name("model").value(model);
+            writer.name("input").beginArray();
+            for (String input : inputs) {
+                writer.value(input);
+            }
+            writer.endArray();
+            writer.endObject();
+        });
+    }
+
+    /**
+     * Open a reader over a response body. It is lenient so that an NDJSON stream reads as a sequence of top-level values.
+     */
+    JsonReader openReader(BufferedSource source) {
+        JsonReader reader = gson.newJsonReader(new InputStreamReader(source.inputStream(), StandardCharsets.UTF_8));
+        reader.setLenient(true);
+        return reader;
+    }
+
+    /**
+     * Read the next generate or chat message into chunk, returning false once the stream is exhausted.
+     * A chat message's content lands in chunk.response, so both endpoints stream through the same loop.
+     */
+    boolean readGenerateChunk(JsonReader reader, OllamaGenerateChunk chunk) throws IOException {
+        if (reader.peek() == JsonToken.END_DOCUMENT) {
+            return false;
+        }
+        chunk.reset();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "response":
+                    chunk.response = nextStringOrNull(reader);
+                    break;
+                case "message":
+                    chunk.response = readMessageContent(reader);
+                    break;
+                case "error":
+                    chunk.error = nextStringOrNull(reader);
+                    break;
+                case "done":
+                    chunk.done = reader.nextBoolean();
+                    break;
+                case "eval_count":
+                    chunk.evalCount = reader.nextLong();
+                    break;
+                case "eval_duration":
+                    chunk.evalDuration = reader.nextLong();
+                    break;
+                case "total_duration":
+                    chunk.totalDuration = reader.nextLong();
+                    break;
+                case "prompt_eval_count":
+                    chunk.promptEvalCount = reader.nextLong();
+                    break;
+                case "prompt_eval_duration":
+                    chunk.promptEvalDuration = reader.nextLong();
+                    break;
+                case "load_duration":
+                    chunk.loadDuration = reader.nextLong();
+                    break;
+                default:
+                    // model, created_at, context, ... are not needed
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return true;
+    }
+
+    private String readMessageContent(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+        String content = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("content".equals(reader.nextName())) {
+                content = nextStringOrNull(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return content;
+    }
+
+    /**
+     * Decode an /api/tags response
+     */
+    List<OllamaModel> readModels(BufferedSource source) throws IOException {
+        List<OllamaModel> models = new ArrayList<>();
+        try (JsonReader reader = openReader(source)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!"models".equals(reader.nextName()) || reader.peek() != JsonToken.BEGIN_ARRAY) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    models.add(readModel(reader));
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        }
+        return models;
+    }
+
+    private OllamaModel readModel(JsonReader reader) throws IOException {
+        String name = null;
+        long size = 0;
+        String digest = "";
+        String modifiedAt = "";
+        String[] details = {"", "", ""};
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name":
+                    name = nextStringOrNull(reader);
+                    break;
+                case "size":
+                    size = reader.nextLong();
+                    break;
+                case "digest":
+                    digest = nextStringOrEmpty(reader);
+                    break;
+                case "modified_at":
+                    modifiedAt = nextStringOrEmpty(reader);
+                    break;
+                case "details":
+                    readDetails(reader, details);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new OllamaModel(name, size, digest, modifiedAt, details[0], details[1], details[2]);
+    }
+
+    /**
+     * Read family, parameter_size and quantization_level of a model's details object
+     */
+    private void readDetails(JsonReader reader, String[] details) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "family":
+                    details[0] = nextStringOrEmpty(reader);
+                    break;
+                case "parameter_size":
+                    details[1] = nextStringOrEmpty(reader);
+                    break;
+                case "quantization_level":
+                    details[2] = nextStringOrEmpty(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Decode the models array of an /api/ps response
+     */
+    List<OllamaRunningModel> readRunningModels(BufferedSource source) throws IOException {
+        List<OllamaRunningModel> models = new ArrayList<>();
+        try (JsonReader reader = openReader(source)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!"models".equals(reader.nextName()) || reader.peek() != JsonToken.BEGIN_ARRAY) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    models.add(readRunningModel(reader));
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        }
+        return models;
+    }
+
+    private OllamaRunningModel readRunningModel(JsonReader reader) throws IOException {
+        String name = "";
+        long size = 0;
+        long sizeVram = 0;
+        String expiresAt = "";
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name":
+                    name = nextStringOrEmpty(reader);
+                    break;
+                case "size":
+                    size = reader.nextLong();
+                    break;
+                case "size_vram":
+                    sizeVram = reader.nextLong();
+                    break;
+                case "expires_at":
+                    expiresAt = nextStringOrEmpty(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new OllamaRunningModel(name, size, sizeVram, expiresAt);
+    }
+
+    /**
+     * Decode the context window facts of an /api/show response. model_info can hold the whole tokenizer
+     * vocabulary, so everything except the context length is skipped without being materialized.
+     */
+    OllamaModelInfo readModelInfo(BufferedSource source) throws IOException {
+        long contextLength = 0;
+        long numCtx = 0;
+        try (JsonReader reader = openReader(source)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("model_info".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName().endsWith(".context_length") && reader.peek() == JsonToken.NUMBER) {
+                            contextLength = reader.nextLong();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                } else if ("parameters".equals(name) && reader.peek() == JsonToken.STRING) {
+                    numCtx = parseNumCtx(reader.nextString());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        return new OllamaModelInfo(contextLength, numCtx);
+    }
+
+    /**
+     * Find "num_ctx <n>" among the Modelfile parameters, one per line
+     */
+    private static long parseNumCtx(String parameters) {
+        for (String line : parameters.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("num_ctx")) {
+                try {
+                    return Long.parseLong(trimmed.substring("num_ctx".length()).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Decode the embeddings array of an /api/embed response, one vector per input in request order
+     */
+    List<float[]> readEmbeddings(BufferedSource source) throws IOException {
+        List<float[]> embeddings = new ArrayList<>();
+        try (JsonReader reader = openReader(source)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!"embeddings".equals(reader.nextName()) || reader.peek() != JsonToken.BEGIN_ARRAY) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    embeddings.add(readVector(reader));
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        }
+        return embeddings;
+    }
+
+    private static float[] readVector(JsonReader reader) throws IOException {
+        float[] vector = new float[64];
+        int size = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (size == vector.length) {
+                vector = Arrays.copyOf(vector, size * 2);
+            }
+            vector[size++] = (float) reader.nextDouble();
+        }
+        reader.endArray();
+        return Arrays.copyOf(vector, size);
+    }
+
+    /**
+     * Read the "error" message of a failed response, if the body has one
+     */
+    String readError(BufferedSource source) {
+        try (JsonReader reader = openReader(source)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("error".equals(reader.nextName())) {
+                    return nextStringOrNull(reader);
+                }
+                reader.skipValue();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // not a JSON error body
+        }
+        return null;
+    }
+
+    private interface JsonBodyWriter {
+        void write(JsonWriter writer) throws IOException;
+    }
+
+    /**
+     * Encodes what JsonWriter writes straight into the sink. An OutputStreamWriter copies every string JsonWriter
+     * hands it into a new char array, and JsonWriter hands it one string per run between escapes, so a prompt
+     * full of quotes and newlines cost more than building the whole body as a String.
+     */
+    private static final class SinkWriter extends Writer {
+        private final BufferedSink sink;
+
+        SinkWriter(BufferedSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            if (c < 0x80) {
+                sink.writeByte(c);
+            } else {
+                sink.writeUtf8(String.valueOf((char) c));
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            // JsonWriter only splits strings at escaped characters, never inside a surrogate pair
+            sink.writeUtf8(str, off, off + len);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            sink.writeUtf8(new String(cbuf, off, len));
+        }
+
+        @Override
+        public void flush() throws IOException {
+            sink.flush();
+        }
+
+        @Override
+        public void close() {
+            // the sink belongs to OkHttp
+        }
+    }
+
+    private static String nextStringOrEmpty(JsonReader reader) throws IOException {
+        String value = nextStringOrNull(reader);
+        return value != null ? value : "";
+    }
+
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+}
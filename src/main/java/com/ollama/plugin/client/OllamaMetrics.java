@@ -1,33 +1,57 @@
 package com.ollama.plugin.client;
 
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Server-side resource usage: the models an Ollama server currently holds in memory (/api/ps)
+ */
 public class OllamaMetrics {
-    private long memoryUsage;
-    private double cpuUsage;
-    private double tokensPerSecond;
-
-    public OllamaMetrics(long memoryUsage, double cpuUsage, double tokensPerSecond) {
-        this.memoryUsage = memoryUsage;
-        this.cpuUsage = cpuUsage;
-        this.tokensPerSecond = tokensPerSecond;
+    private final List<OllamaRunningModel> runningModels;
+
+    public OllamaMetrics(List<OllamaRunningModel> runningModels) {
+        this.runningModels = Collections.unmodifiableList(runningModels);
+    }
+
+    public List<OllamaRunningModel> getRunningModels() {
+        return runningModels;
     }
 
+    /**
+     * Memory held by all loaded models, in bytes
+     */
     public long getMemoryUsage() {
-        return memoryUsage;
+        long total = 0;
+        for (OllamaRunningModel model : runningModels) {
+            total += model.getSize();
+        }
+        return total;
+    }
+
+    /**
+     * Part of getMemoryUsage() held in GPU memory, in bytes
+     */
+    public long getVramUsage() {
+        long total = 0;
+        for (OllamaRunningModel model : runningModels) {
+            total += model.getSizeVram();
+        }
+        return total;
     }
 
     public String getMemoryUsageFormatted() {
-        if (memoryUsage == 0) return "0 B";
-        long bytes = Math.abs(memoryUsage);
-        if (bytes < 1024) return bytes + " B";
-        int z = (63 - Long.numberOfLeadingZeros(bytes)) / 10;
-        return String.format("%.2f %sB", (double) bytes / (1L << (z * 10)), " KMGTPE".charAt(z));
+        return formatBytes(getMemoryUsage());
     }
 
-    public double getCpuUsage() {
-        return cpuUsage;
+    public String getVramUsageFormatted() {
+        return formatBytes(getVramUsage());
     }
 
-    public double getTokensPerSecond() {
-        return tokensPerSecond;
+    public static String formatBytes(long value) {
+        if (value == 0) return "0 B";
+        long bytes = Math.abs(value);
+        if (bytes < 1024) return bytes + " B";
+        int z = (63 - Long.numberOfLeadingZeros(bytes)) / 10;
+        return String.format("%.2f %sB", (double) bytes / (1L << (z * 10)), " KMGTPE".charAt(z));
     }
 }
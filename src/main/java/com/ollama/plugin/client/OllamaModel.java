@@ -3,10 +3,25 @@ package com.ollama.plugin.client;
 public class OllamaModel {
     private String name;
     private long size;
+    private String digest;
+    private String modifiedAt;
+    private String family;
+    private String parameterSize;
+    private String quantizationLevel;
 
     public OllamaModel(String name, long size) {
+        this(name, size, "", "", "", "", "");
+    }
+
+    public OllamaModel(String name, long size, String digest, String modifiedAt,
+                       String family, String parameterSize, String quantizationLevel) {
         this.name = name;
         this.size = size;
+        this.digest = digest;
+        this.modifiedAt = modifiedAt;
+        this.family = family;
+        this.parameterSize = parameterSize;
+        this.quantizationLevel = quantizationLevel;
     }
 
     public String getName() {
@@ -17,6 +32,29 @@ public class OllamaModel {
         return size;
     }
 
+    /**
+     * Content digest of the model weights; changes when a model is re-pulled under the same name
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    public String getModifiedAt() {
+        return modifiedAt;
+    }
+
+    public String getFamily() {
+        return family;
+    }
+
+    public String getParameterSize() {
+        return parameterSize;
+    }
+
+    public String getQuantizationLevel() {
+        return quantizationLevel;
+    }
+
     public String getSizeFormatted() {
         if (size == 0) return "0 B";
         long bytes = Math.abs(size);
@@ -0,0 +1,158 @@
+package com.ollama.plugin.client;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.ollama.plugin.OllamaPluginConstants;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Application-wide cache of the /api/tags model list.
+ * All chat panels and the settings page share one list; it is refetched at most once per TTL unless forced,
+ * concurrent refreshes share a single request, and listeners are told only when the name/digest set changes.
+ */
+@Service
+public class OllamaModelCatalog {
+
+    private static final long TTL_NANOS = TimeUnit.SECONDS.toNanos(OllamaPluginConstants.MODEL_CATALOG_TTL_SECONDS);
+
+    private final OllamaClient ollamaClient;
+
+    private List<OllamaModel> models = Collections.emptyList();
+    private Set<String> fingerprint = Collections.emptySet();
+    private String baseUrl;
+    private long fetchedAt;
+    private CompletableFuture<List<OllamaModel>> pendingRefresh;
+    // /api/show results per server and model; they only change when the model list does
+    private final Map<String, CompletableFuture<OllamaModelInfo>> modelInfo = new HashMap<>();
+
+    public OllamaModelCatalog() {
+        this(OllamaClient.getInstance());
+    }
+
+    public OllamaModelCatalog(OllamaClient ollamaClient) {
+        this.ollamaClient = ollamaClient;
+    }
+
+    public static OllamaModelCatalog getInstance() {
+        return ApplicationManager.getApplication().getService(OllamaModelCatalog.class);
+    }
+
+    /**
+     * Models from the last successful fetch, possibly stale; never blocks
+     */
+    public synchronized List<OllamaModel> getCachedModels() {
+        return models;
+    }
+
+    public synchronized boolean isFresh(String baseUrl) {
+        return Objects.equals(this.baseUrl, baseUrl) && fetchedAt != 0 && System.nanoTime() - fetchedAt < TTL_NANOS;
+    }
+
+    /**
+     * Models for baseUrl, served from cache while fresh. forceRefresh always goes to the server.
+     */
+    public synchronized CompletableFuture<List<OllamaModel>> getModels(String baseUrl, boolean forceRefresh) {
+        if (!forceRefresh && isFresh(baseUrl)) {
+            return CompletableFuture.completedFuture(models);
+        }
+        if (pendingRefresh != null && Objects.equals(this.baseUrl, baseUrl)) {
+            return pendingRefresh;
+        }
+
+        if (!Objects.equals(this.baseUrl, baseUrl)) {
+            // Different server: the cached list says nothing about it
+            this.baseUrl = baseUrl;
+            this.fetchedAt = 0;
+        }
+        CompletableFuture<List<OllamaModel>> refresh = ollamaClient.fetchModels(baseUrl)
+                .thenApply(fetched -> update(baseUrl, fetched));
+        pendingRefresh = refresh;
+        refresh.whenComplete((result, error) -> clearPending(refresh));
+        return refresh;
+    }
+
+    private synchronized void clearPending(CompletableFuture<List<OllamaModel>> refresh) {
+        if (pendingRefresh == refresh) {
+            pendingRefresh = null;
+        }
+    }
+
+    /**
+     * Take a model list someone else fetched from baseUrl, e.g. the server monitor's poll, as a refresh
+     */
+    void offer(String baseUrl, List<OllamaModel> fetched) {
+        synchronized (this) {
+            if (!Objects.equals(this.baseUrl, baseUrl)) {
+                this.baseUrl = baseUrl;
+                this.fetchedAt = 0;
+            }
+        }
+        update(baseUrl, fetched);
+    }
+
+    private List<OllamaModel> update(String baseUrl, List<OllamaModel> fetched) {
+        List<OllamaModel> snapshot = Collections.unmodifiableList(fetched);
+        Set<String> newFingerprint = fingerprintOf(fetched);
+        boolean changed;
+        synchronized (this) {
+            if (!Objects.equals(this.baseUrl, baseUrl)) {
+                // The user switched servers while this fetch was running
+                return snapshot;
+            }
+            changed = !newFingerprint.equals(fingerprint);
+            if (changed) {
+                // A re-pulled model may come with a different context length
+                modelInfo.clear();
+            }
+            models = snapshot;
+            fingerprint = newFingerprint;
+            fetchedAt = System.nanoTime();
+        }
+        if (changed) {
+            ApplicationManager.getApplication().invokeLater(() ->
+                    ApplicationManager.getApplication().getMessageBus()
+                            .syncPublisher(ModelCatalogListener.TOPIC).modelsChanged(snapshot));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Context window facts of model on baseUrl, fetched once per model until the model list changes
+     */
+    public synchronized CompletableFuture<OllamaModelInfo> getModelInfo(String baseUrl, String model) {
+        String key = baseUrl + " " + model;
+        CompletableFuture<OllamaModelInfo> info = modelInfo.get(key);
+        if (info == null || info.isCompletedExceptionally()) {
+            info = ollamaClient.fetchModelInfo(baseUrl, model);
+            modelInfo.put(key, info);
+        }
+        return info;
+    }
+
+    /**
+     * Name plus digest of every model, so a re-pulled model counts as a change even if its name did not
+     */
+    private static Set<String> fingerprintOf(List<OllamaModel> models) {
+        Set<String> result = new TreeSet<>();
+        for (OllamaModel model : models) {
+            result.add(model.getName() + "@" + model.getDigest());
+        }
+        return result;
+    }
+
+    /**
+     * Forget the cached list so the next request goes to the server
+     */
+    public synchronized void invalidate() {
+        fetchedAt = 0;
+    }
+}
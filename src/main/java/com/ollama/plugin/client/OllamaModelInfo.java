@@ -0,0 +1,39 @@
+package com.ollama.plugin.client;
+
+/**
+ * Context window facts about a model, from /api/show
+ */
+public class OllamaModelInfo {
+    private final long contextLength;
+    private final long numCtx;
+
+    public OllamaModelInfo(long contextLength, long numCtx) {
+        this.contextLength = contextLength;
+        this.numCtx = numCtx;
+    }
+
+    /**
+     * Context length the model was trained with (model_info.*.context_length), 0 if not reported
+     */
+    public long getContextLength() {
+        return contextLength;
+    }
+
+    /**
+     * num_ctx set in the model's Modelfile parameters, 0 if it uses the server default
+     */
+    public long getNumCtx() {
+        return numCtx;
+    }
+
+    /**
+     * Tokens Ollama will actually keep for a request: the Modelfile's num_ctx if set, otherwise the server
+     * default, which never exceeds what the model supports
+     */
+    public long getEffectiveContextLength(long serverDefault) {
+        if (numCtx > 0) {
+            return numCtx;
+        }
+        return contextLength > 0 ? Math.min(contextLength, serverDefault) : serverDefault;
+    }
+}
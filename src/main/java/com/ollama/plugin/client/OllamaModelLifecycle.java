@@ -0,0 +1,171 @@
+package com.ollama.plugin.client;
+
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Keeps the models the plugin works with resident while it is busy, and frees them once it goes idle.
+ * Selecting a model or starting an action preloads it with an empty prompt, every generation asks the server
+ * to keep the model for the configured idle timeout, and models the plugin has not used for that long are
+ * unloaded explicitly with keep_alive 0. What is resident is tracked from
+ * the /api/ps answers the OllamaServerMonitor polls.
+ */
+public class OllamaModelLifecycle {
+
+    private final OllamaClient ollamaClient;
+    private final OllamaEndpointPool endpointPool;
+    private final IntSupplier idleUnloadMinutes;
+
+    // endpoint URL -> model -> System.currentTimeMillis() of its last preload or generation
+    private final Map<String, Map<String, Long>> lastUsed = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Long>> warmUps = new ConcurrentHashMap<>();
+    private final Map<String, Long> loadDurations = new ConcurrentHashMap<>();
+
+    public OllamaModelLifecycle(OllamaClient ollamaClient, OllamaEndpointPool endpointPool, IntSupplier idleUnloadMinutes) {
+        this.ollamaClient = ollamaClient;
+        this.endpointPool = endpointPool;
+        this.idleUnloadMinutes = idleUnloadMinutes;
+    }
+
+    /**
+     * keep_alive to send with every request, or null to leave residency to the server default
+     */
+    public String getKeepAlive() {
+        int minutes = idleUnloadMinutes.getAsInt();
+        return minutes > 0 ? minutes + "m" : null;
+    }
+
+    /**
+     * Preload model on the endpoint routing would pick for it. Completes with the load time in nanoseconds,
+     * or 0 if the model was already resident; concurrent calls for the same model share one preload.
+     */
+    public CompletableFuture<Long> warmUp(String model) {
+        return warmUp(model, null, null);
+    }
+
+    /**
+     * Preload model with the options and keep_alive of the generation about to follow; a null keepAlive
+     * means the idle unload setting
+     */
+    public CompletableFuture<Long> warmUp(String model, Map<String, Object> options, String keepAlive) {
+        CompletableFuture<Long> pending = warmUps.get(model);
+        if (pending != null) {
+            return pending;
+        }
+        CompletableFuture<Long> warmUp = new CompletableFuture<>();
+        pending = warmUps.putIfAbsent(model, warmUp);
+        if (pending != null) {
+            return pending;
+        }
+        warmUp.whenComplete((load, error) -> warmUps.remove(model, warmUp));
+
+        OllamaEndpoint endpoint = endpointPool.acquire(model, Collections.emptyList());
+        if (endpoint == null) {
+            warmUp.completeExceptionally(new IllegalStateException("No Ollama endpoint configured"));
+            return warmUp;
+        }
+        if (endpoint.isLoaded(model)) {
+            endpointPool.release(endpoint, false, null);
+            touch(endpoint.getUrl(), model);
+            warmUp.complete(0L);
+            return warmUp;
+        }
+
+        String residency = keepAlive != null ? keepAlive : getKeepAlive();
+        ollamaClient.loadModel(endpoint.getUrl(), model, options, residency).whenComplete((response, error) -> {
+            if (error != null) {
+                Throwable cause = error;
+                while ((cause instanceof CompletionException || cause instanceof UncheckedIOException) && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                endpointPool.release(endpoint, !(cause instanceof OllamaServerException), cause.getMessage());
+                warmUp.completeExceptionally(cause);
+                return;
+            }
+            endpointPool.release(endpoint, false, null);
+            endpoint.markLoaded(model);
+            touch(endpoint.getUrl(), model);
+            loadDurations.put(model, response.getLoadDuration());
+            ollamaClient.getRequestMetrics().record(model, OllamaRequestMetrics.PRELOAD, response);
+            warmUp.complete(response.getLoadDuration());
+        });
+        return warmUp;
+    }
+
+    /**
+     * Record that model was just used on the endpoint at baseUrl, restarting its idle timer
+     */
+    public void touch(String baseUrl, String model) {
+        lastUsed.computeIfAbsent(baseUrl, url -> new ConcurrentHashMap<>())
+                .put(OllamaEndpoint.canonicalName(model), System.currentTimeMillis());
+    }
+
+    /**
+     * Load time of the last preload of model in nanoseconds, 0 if it has not been preloaded
+     */
+    public long getLastLoadDuration(String model) {
+        return loadDurations.getOrDefault(model, 0L);
+    }
+
+    /**
+     * Models this plugin has used on each endpoint and not unloaded yet
+     */
+    public Map<String, Set<String>> getTrackedModels() {
+        Map<String, Set<String>> tracked = new ConcurrentHashMap<>();
+        lastUsed.forEach((url, models) -> tracked.put(url, Collections.unmodifiableSet(new HashSet<>(models.keySet()))));
+        return tracked;
+    }
+
+    /**
+     * Take what is resident from the server monitor's poll of each endpoint, then unload the models whose idle
+     * timeout has passed
+     */
+    void polled(List<OllamaServerStatus> round) {
+        for (OllamaServerStatus status : round) {
+            Map<String, Long> models = lastUsed.get(status.getBaseUrl());
+            if (models == null || !status.isConnected()) {
+                continue;
+            }
+            // Models the server already expired on its own need no unload
+            Set<String> loaded = new HashSet<>();
+            for (OllamaRunningModel model : status.getMetrics().getRunningModels()) {
+                loaded.add(OllamaEndpoint.canonicalName(model.getName()));
+            }
+            models.keySet().retainAll(loaded);
+        }
+        unloadIdle();
+    }
+
+    private void unloadIdle() {
+        int minutes = idleUnloadMinutes.getAsInt();
+        if (minutes <= 0) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(minutes);
+        lastUsed.forEach((url, models) -> models.forEach((model, used) -> {
+            if (used < cutoff && models.remove(model, used)) {
+                unload(url, model);
+            }
+        }));
+    }
+
+    private void unload(String baseUrl, String model) {
+        ollamaClient.unloadModel(baseUrl, model).thenRun(() -> {
+            for (OllamaEndpoint endpoint : endpointPool.getEndpoints()) {
+                if (endpoint.getUrl().equals(baseUrl)) {
+                    endpoint.markUnloaded(model);
+                }
+            }
+            endpointPool.publish();
+        });
+    }
+}
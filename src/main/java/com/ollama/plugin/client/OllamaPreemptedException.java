@@ -0,0 +1,14 @@
+package com.ollama.plugin.client;
+
+/**
+ * Thrown out of a generation whose HTTP call the scheduler aborted to make room for an interactive request;
+ * the scheduler queues the generation again instead of reporting an error
+ */
+class OllamaPreemptedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    OllamaPreemptedException() {
+        super("Preempted by an interactive request");
+    }
+}
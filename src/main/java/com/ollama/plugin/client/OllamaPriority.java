@@ -0,0 +1,43 @@
+package com.ollama.plugin.client;
+
+/**
+ * Scheduling class of a generation, most urgent first. A local Ollama serves about one generation at a time,
+ * so a quick chat question must not wait behind a batch job; each class also has its own concurrency limit.
+ */
+public enum OllamaPriority {
+    /**
+     * Prompts the user typed and is waiting for
+     */
+    INTERACTIVE("Interactive", Integer.MAX_VALUE),
+    /**
+     * Analysis actions started from the editor
+     */
+    EDITOR_ACTION("Editor action", 2),
+    /**
+     * Batch analysis and other work nobody is watching
+     */
+    BACKGROUND("Background", 1),
+    /**
+     * Speculative requests whose result may never be used; cancelled when an interactive request needs the slot
+     */
+    PREFETCH("Prefetch", 1);
+
+    private final String displayName;
+    private final int maxRunning;
+
+    OllamaPriority(String displayName, int maxRunning) {
+        this.displayName = displayName;
+        this.maxRunning = maxRunning;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Generations of this class that may run at the same time
+     */
+    public int getMaxRunning() {
+        return maxRunning;
+    }
+}
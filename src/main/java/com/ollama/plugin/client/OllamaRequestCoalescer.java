@@ -0,0 +1,273 @@
+package com.ollama.plugin.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Single-flight for generations: a request identical to one still running attaches to it instead of starting
+ * a second generation that would compete for the same model. A subscriber that joins mid-stream first gets the
+ * text generated so far as one token, then the rest as it arrives. The shared generation is cancelled only
+ * when every subscriber has cancelled.
+ */
+class OllamaRequestCoalescer {
+
+    private final Map<Key, SharedGeneration> inFlight = new ConcurrentHashMap<>();
+    private final Executor callbackExecutor;
+    private final OllamaRequestMetrics requestMetrics;
+
+    OllamaRequestCoalescer(Executor callbackExecutor, OllamaRequestMetrics requestMetrics) {
+        this.callbackExecutor = callbackExecutor;
+        this.requestMetrics = requestMetrics;
+    }
+
+    /**
+     * Attach callback to the generation running for key, or start one; starter receives the callback that fans
+     * the generation out to all subscribers and returns the handle of the request it started
+     */
+    OllamaRequestHandle execute(Key key, OllamaClient.OllamaStreamCallback callback,
+                                Function<OllamaClient.OllamaStreamCallback, OllamaRequestHandle> starter) {
+        Subscriber subscriber = new Subscriber(callback);
+        SharedGeneration shared;
+        boolean leader = false;
+        synchronized (inFlight) {
+            shared = inFlight.get(key);
+            if (shared == null || !shared.add(subscriber)) {
+                shared = new SharedGeneration(key);
+                shared.add(subscriber);
+                inFlight.put(key, shared);
+                leader = true;
+            }
+        }
+
+        SharedGeneration generation = shared;
+        subscriber.handle.whenComplete((response, error) -> {
+            if (subscriber.handle.isCancelled()) {
+                generation.remove(subscriber);
+            }
+        });
+
+        if (leader) {
+            // The leader receives tokens directly, there is nothing to replay
+            subscriber.replayed = true;
+            generation.start(starter.apply(generation));
+        } else {
+            requestMetrics.recordCoalesced();
+            callbackExecutor.execute(() -> generation.replay(subscriber));
+        }
+        return subscriber.handle;
+    }
+
+    private void finished(SharedGeneration generation) {
+        synchronized (inFlight) {
+            inFlight.remove(generation.key, generation);
+        }
+    }
+
+    /**
+     * Identity of a generation: same endpoint (null when routed), model, prompt, suffix, options and streaming mode
+     */
+    static final class Key {
+        private final String endpoint;
+        private final String path;
+        private final OllamaGenerateRequest request;
+        private final int hash;
+
+        Key(String endpoint, String path, OllamaGenerateRequest request) {
+            this.endpoint = endpoint;
+            this.path = path;
+            this.request = request;
+            this.hash = Objects.hash(endpoint, path, request.getModel(), request.getPrompt(), request.getSuffix(),
+                    request.getOptions(), request.isStream());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash
+                    && Objects.equals(endpoint, other.endpoint)
+                    && path.equals(other.path)
+                    && request.isStream() == other.request.isStream()
+                    && request.getModel().equals(other.request.getModel())
+                    && request.getPrompt().equals(other.request.getPrompt())
+                    && Objects.equals(request.getSuffix(), other.request.getSuffix())
+                    && Objects.equals(request.getOptions(), other.request.getOptions());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class Subscriber {
+        final OllamaClient.OllamaStreamCallback callback;
+        final OllamaRequestHandle handle = new OllamaRequestHandle();
+        // Set once the subscriber has seen the text generated before it joined; guarded by the generation
+        boolean replayed;
+
+        Subscriber(OllamaClient.OllamaStreamCallback callback) {
+            this.callback = callback;
+        }
+
+        boolean isActive() {
+            return replayed && callback != null && !handle.isCancelled();
+        }
+    }
+
+    /**
+     * One running generation and everyone waiting for it. Callbacks arrive in order on the callback executor;
+     * the lock keeps the replay buffer and the subscriber list consistent, and subscribers are called only after
+     * it is released, since a subscriber may open a modal dialog and the completion path needs the same lock.
+     */
+    private class SharedGeneration implements OllamaClient.OllamaStreamCallback {
+        private final Key key;
+        private final List<Subscriber> subscribers = new ArrayList<>();
+        private final StringBuilder text = new StringBuilder();
+        private OllamaRequestHandle handle;
+        private OllamaResponse response;
+        private String error;
+        private boolean closed;
+
+        SharedGeneration(Key key) {
+            this.key = key;
+        }
+
+        synchronized boolean add(Subscriber subscriber) {
+            if (closed) {
+                return false;
+            }
+            subscribers.add(subscriber);
+            return true;
+        }
+
+        void start(OllamaRequestHandle started) {
+            synchronized (this) {
+                handle = started;
+                if (closed) {
+                    // Every subscriber cancelled before the request was even created
+                    started.cancel();
+                }
+            }
+            started.whenComplete((result, failure) -> {
+                finished(this);
+                List<Subscriber> waiting;
+                synchronized (this) {
+                    closed = true;
+                    waiting = new ArrayList<>(subscribers);
+                }
+                for (Subscriber subscriber : waiting) {
+                    if (failure != null) {
+                        subscriber.handle.completeExceptionally(failure);
+                    } else {
+                        subscriber.handle.complete(result);
+                    }
+                }
+            });
+        }
+
+        void remove(Subscriber subscriber) {
+            boolean abandoned = false;
+            OllamaRequestHandle toCancel;
+            synchronized (this) {
+                subscribers.remove(subscriber);
+                if (subscribers.isEmpty() && !closed) {
+                    closed = true;
+                    abandoned = true;
+                }
+                toCancel = handle;
+            }
+            if (abandoned) {
+                finished(this);
+                if (toCancel != null) {
+                    toCancel.cancel();
+                }
+            }
+        }
+
+        /**
+         * Bring a late subscriber up to date: the text so far, and the outcome if the generation already ended
+         */
+        void replay(Subscriber subscriber) {
+            String sofar;
+            OllamaResponse completed;
+            String failure;
+            synchronized (this) {
+                subscriber.replayed = true;
+                if (!subscriber.isActive()) {
+                    return;
+                }
+                sofar = text.toString();
+                completed = response;
+                failure = error;
+            }
+            if (!sofar.isEmpty()) {
+                subscriber.callback.onToken(sofar);
+            }
+            if (completed != null) {
+                subscriber.callback.onComplete(completed);
+            } else if (failure != null) {
+                subscriber.callback.onError(failure);
+            }
+        }
+
+        /**
+         * Subscribers to call now, taken under the lock
+         */
+        private List<Subscriber> activeSubscribers() {
+            List<Subscriber> active = new ArrayList<>(subscribers.size());
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.isActive()) {
+                    active.add(subscriber);
+                }
+            }
+            return active;
+        }
+
+        @Override
+        public void onToken(String token) {
+            List<Subscriber> active;
+            synchronized (this) {
+                text.append(token);
+                active = activeSubscribers();
+            }
+            for (Subscriber subscriber : active) {
+                subscriber.callback.onToken(token);
+            }
+        }
+
+        @Override
+        public void onComplete(OllamaResponse completed) {
+            List<Subscriber> active;
+            synchronized (this) {
+                response = completed;
+                active = activeSubscribers();
+            }
+            for (Subscriber subscriber : active) {
+                subscriber.callback.onComplete(completed);
+            }
+        }
+
+        @Override
+        public void onError(String message) {
+            List<Subscriber> active;
+            synchronized (this) {
+                error = message;
+                active = activeSubscribers();
+            }
+            for (Subscriber subscriber : active) {
+                subscriber.callback.onError(message);
+            }
+        }
+    }
+}
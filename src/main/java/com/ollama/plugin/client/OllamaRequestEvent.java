@@ -0,0 +1,121 @@
+package com.ollama.plugin.client;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event spanning one generation from submission to the scheduler until its result,
+ * including time queued, failover between endpoints and preempted runs.
+ * Only created while a recording has the event enabled, so it costs nothing otherwise.
+ */
+@Name("com.ollama.Request")
+@Label("Ollama Request")
+@Category("Ollama")
+@Description("A generation from submission until its result was delivered")
+@StackTrace(false)
+class OllamaRequestEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(OllamaRequestEvent.class);
+
+    @Label("Action")
+    String action;
+
+    @Label("Model")
+    String model;
+
+    @Label("Priority")
+    String priority;
+
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Queue Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    long queueWait;
+
+    @Label("Time to First Token")
+    @Timespan(Timespan.NANOSECONDS)
+    long timeToFirstToken;
+
+    @Label("Load Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long loadDuration;
+
+    @Label("Prompt Eval Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long promptEvalDuration;
+
+    @Label("Eval Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long evalDuration;
+
+    @Label("Prompt Tokens")
+    long promptTokens;
+
+    @Label("Generated Tokens")
+    long generatedTokens;
+
+    // Error reported to the caller, set before the handle completes
+    private volatile String error;
+
+    /**
+     * Start the event for a request being submitted, or return null if no recording wants it
+     */
+    static OllamaRequestEvent submitted(OllamaPriority priority, String action, String model) {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        OllamaRequestEvent event = new OllamaRequestEvent();
+        event.priority = priority.name();
+        event.action = action;
+        event.model = model;
+        event.begin();
+        return event;
+    }
+
+    void failed(String error) {
+        this.error = error;
+    }
+
+    /**
+     * End and commit the event once handle completed with response or failure
+     */
+    void completed(OllamaRequestHandle handle, OllamaResponse response, Throwable failure) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        queueWait = handle.getQueueWait();
+        if (handle.isCancelled()) {
+            outcome = "cancelled";
+        } else if (failure != null) {
+            outcome = "failed: " + failure.getMessage();
+        } else if (response != null && response.getEndpoint() != null) {
+            // Answered by a server, even if an earlier attempt reported an error, e.g. the fill-in-the-middle retry
+            outcome = "ok";
+        } else if (error != null) {
+            outcome = "error: " + error;
+        } else {
+            outcome = "ok";
+        }
+        if (response != null) {
+            endpoint = response.getEndpoint();
+            timeToFirstToken = response.getTimeToFirstToken();
+            loadDuration = response.getLoadDuration();
+            promptEvalDuration = response.getPromptEvalDuration();
+            evalDuration = response.getEvalDuration();
+            promptTokens = response.getPromptEvalCount();
+            generatedTokens = response.getTokenCount();
+        }
+        commit();
+    }
+}
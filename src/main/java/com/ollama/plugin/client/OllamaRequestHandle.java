@@ -0,0 +1,158 @@
+package com.ollama.plugin.client;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import okhttp3.Call;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Future for an in-flight Ollama request that aborts the underlying HTTP call when cancelled.
+ * Closing the connection makes Ollama stop evaluating, which frees the model for the next request.
+ */
+public class OllamaRequestHandle extends CompletableFuture<OllamaResponse> {
+
+    private volatile Call call;
+    private volatile OllamaRequestHandle delegate;
+    private volatile long queueWait;
+    private volatile boolean preempted;
+    private volatile boolean streaming;
+    // Only set while a flight recording traces requests
+    private volatile OllamaRequestEvent requestEvent;
+
+    /**
+     * Handle for a result that is already available, e.g. served from a cache
+     */
+    public static OllamaRequestHandle completed(OllamaResponse response) {
+        OllamaRequestHandle handle = new OllamaRequestHandle();
+        handle.complete(response);
+        return handle;
+    }
+
+    /**
+     * Nanoseconds the request waited for an executor slot before it started
+     */
+    long getQueueWait() {
+        return queueWait;
+    }
+
+    void setQueueWait(long queueWait) {
+        this.queueWait = queueWait;
+    }
+
+    void setRequestEvent(OllamaRequestEvent requestEvent) {
+        this.requestEvent = requestEvent;
+    }
+
+    /**
+     * Remember the error reported to the caller for the flight recording, if one traces this request
+     */
+    void noteError(String error) {
+        OllamaRequestEvent event = requestEvent;
+        if (event != null) {
+            event.failed(error);
+        }
+    }
+
+    void attach(Call call) {
+        this.call = call;
+        // cancel() or preempt() may have run before the call existed
+        if (isCancelled() || preempted) {
+            call.cancel();
+        }
+    }
+
+    /**
+     * Abort the current HTTP call without completing the handle, so the scheduler can run the request again.
+     * Returns false and leaves the request alone if it already delivered tokens, which a restart would repeat.
+     */
+    boolean preempt() {
+        synchronized (this) {
+            if (streaming) {
+                return false;
+            }
+            preempted = true;
+        }
+        Call current = call;
+        if (current != null) {
+            current.cancel();
+        }
+        return true;
+    }
+
+    boolean isPreempted() {
+        return preempted;
+    }
+
+    /**
+     * Clear the preemption before the request is started again
+     */
+    void resume() {
+        preempted = false;
+        call = null;
+    }
+
+    /**
+     * Record that tokens are about to reach the caller; from then on the request cannot be restarted
+     * transparently. Returns false if it was preempted first, in which case no token may be delivered.
+     */
+    synchronized boolean markStreaming() {
+        if (preempted) {
+            return false;
+        }
+        streaming = true;
+        return true;
+    }
+
+    boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Complete this handle with the outcome of a request started later, forwarding cancellation to it
+     */
+    public void follow(OllamaRequestHandle other) {
+        this.delegate = other;
+        if (isCancelled()) {
+            other.cancel();
+        }
+        other.whenComplete((response, error) -> {
+            if (error != null) {
+                completeExceptionally(error);
+            } else {
+                complete(response);
+            }
+        });
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        Call current = call;
+        if (current != null) {
+            current.cancel();
+        }
+        OllamaRequestHandle target = delegate;
+        if (target != null) {
+            target.cancel();
+        }
+        return cancelled;
+    }
+
+    /**
+     * Abort the request and close its connection
+     */
+    public void cancel() {
+        cancel(true);
+    }
+
+    /**
+     * Cancel this request when the given parent is disposed, e.g. a tool window or project
+     */
+    public OllamaRequestHandle cancelOnDispose(Disposable parent) {
+        Disposable disposable = this::cancel;
+        Disposer.register(parent, disposable);
+        whenComplete((response, error) -> Disposer.dispose(disposable));
+        return this;
+    }
+}
@@ -0,0 +1,186 @@
+package com.ollama.plugin.client;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client-side timings of completed generations, kept per model and per action.
+ * Durations are recorded in microseconds and rates in hundredths of a token per second.
+ */
+public class OllamaRequestMetrics {
+
+    /**
+     * Action label for prompts typed into the tool window
+     */
+    public static final String CHAT = "chat";
+
+    /**
+     * Action label for model preloads, which only contribute a load time
+     */
+    public static final String PRELOAD = "preload";
+
+    /**
+     * Action label for inline code completions
+     */
+    public static final String COMPLETION = "completion";
+
+    private final Map<String, Timings> byModel = new ConcurrentHashMap<>();
+    private final Map<String, Timings> byAction = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong preempted = new AtomicLong();
+    private final Map<OllamaPriority, Histogram> queueWaitByPriority = new EnumMap<>(OllamaPriority.class);
+
+    public OllamaRequestMetrics() {
+        for (OllamaPriority priority : OllamaPriority.values()) {
+            queueWaitByPriority.put(priority, new Histogram());
+        }
+    }
+
+    /**
+     * Record one finished request under its model and its action
+     */
+    public void record(String model, String action, OllamaResponse response) {
+        byModel.computeIfAbsent(model, key -> new Timings()).record(response);
+        byAction.computeIfAbsent(action, key -> new Timings()).record(response);
+    }
+
+    /**
+     * Timings per model, sorted by name
+     */
+    public Map<String, Timings> getByModel() {
+        return new TreeMap<>(byModel);
+    }
+
+    /**
+     * Timings per action, sorted by name
+     */
+    public Map<String, Timings> getByAction() {
+        return new TreeMap<>(byAction);
+    }
+
+    void recordCoalesced() {
+        coalesced.incrementAndGet();
+    }
+
+    /**
+     * Requests that attached to an identical generation already running instead of starting their own
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    void recordQueueWait(OllamaPriority priority, long nanos) {
+        queueWaitByPriority.get(priority).record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Microseconds generations of a priority class waited in the scheduler before they started
+     */
+    public Histogram getQueueWait(OllamaPriority priority) {
+        return queueWaitByPriority.get(priority);
+    }
+
+    void recordPreempted() {
+        preempted.incrementAndGet();
+    }
+
+    /**
+     * Lower-priority generations cancelled or restarted to make room for an interactive request
+     */
+    public long getPreemptedCount() {
+        return preempted.get();
+    }
+
+    public void reset() {
+        byModel.clear();
+        byAction.clear();
+        coalesced.set(0);
+        preempted.set(0);
+        for (Histogram histogram : queueWaitByPriority.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Histograms for one model or action
+     */
+    public static class Timings {
+        private final Histogram queueWait = new Histogram();
+        private final Histogram connect = new Histogram();
+        private final Histogram timeToFirstToken = new Histogram();
+        private final Histogram load = new Histogram();
+        private final Histogram total = new Histogram();
+        private final Histogram promptEvalRate = new Histogram();
+        // Prompt tokens the server evaluated; tokens it took from its cache of the previous prompt are not counted
+        private final Histogram promptTokens = new Histogram();
+        private final Histogram generationRate = new Histogram();
+
+        void record(OllamaResponse response) {
+            queueWait.record(micros(response.getQueueWait()));
+            connect.record(micros(response.getConnectDuration()));
+            load.record(micros(response.getLoadDuration()));
+            // A preload generates nothing, so it only says how long loading took
+            if (response.getTokenCount() == 0 && response.getPromptEvalCount() == 0) {
+                return;
+            }
+            if (response.getTimeToFirstToken() > 0) {
+                timeToFirstToken.record(micros(response.getTimeToFirstToken()));
+            }
+            total.record(micros(response.getClientDuration() > 0 ? response.getClientDuration() : response.getTotalDuration()));
+            promptTokens.record(response.getPromptEvalCount());
+            if (response.getPromptEvalDuration() > 0) {
+                promptEvalRate.record(Math.round(response.getPromptEvalsPerSecond() * 100));
+            }
+            if (response.getEvalDuration() > 0) {
+                generationRate.record(Math.round(response.getTokensPerSecond() * 100));
+            }
+        }
+
+        private static long micros(long nanos) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos);
+        }
+
+        /**
+         * Number of requests that generated tokens
+         */
+        public long getCount() {
+            return total.getCount();
+        }
+
+        public Histogram getQueueWait() {
+            return queueWait;
+        }
+
+        public Histogram getConnect() {
+            return connect;
+        }
+
+        public Histogram getTimeToFirstToken() {
+            return timeToFirstToken;
+        }
+
+        public Histogram getLoad() {
+            return load;
+        }
+
+        public Histogram getTotal() {
+            return total;
+        }
+
+        public Histogram getPromptEvalRate() {
+            return promptEvalRate;
+        }
+
+        public Histogram getGenerationRate() {
+            return generationRate;
+        }
+
+        public Histogram getPromptTokens() {
+            return promptTokens;
+        }
+    }
+}
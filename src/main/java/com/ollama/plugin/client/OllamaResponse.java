@@ -5,12 +5,29 @@ public class OllamaResponse {
     private long tokenCount;
     private long evalDuration;
     private long totalDuration;
+    private long promptEvalCount;
+    private long promptEvalDuration;
+    private long loadDuration;
+    private long timeToFirstToken;
+    private long queueWait;
+    private long connectDuration;
+    private long clientDuration;
+    private String endpoint;
 
     public OllamaResponse(String response, long tokenCount, long evalDuration, long totalDuration) {
+        this(response, tokenCount, evalDuration, totalDuration, 0, 0, 0, 0);
+    }
+
+    public OllamaResponse(String response, long tokenCount, long evalDuration, long totalDuration,
+                          long promptEvalCount, long promptEvalDuration, long loadDuration, long timeToFirstToken) {
         this.response = response;
         this.tokenCount = tokenCount;
         this.evalDuration = evalDuration;
         this.totalDuration = totalDuration;
+        this.promptEvalCount = promptEvalCount;
+        this.promptEvalDuration = promptEvalDuration;
+        this.loadDuration = loadDuration;
+        this.timeToFirstToken = timeToFirstToken;
     }
 
     public String getResponse() {
@@ -29,8 +46,73 @@ public class OllamaResponse {
         return totalDuration;
     }
 
+    public long getPromptEvalCount() {
+        return promptEvalCount;
+    }
+
+    public long getPromptEvalDuration() {
+        return promptEvalDuration;
+    }
+
+    public long getLoadDuration() {
+        return loadDuration;
+    }
+
+    /**
+     * Client-side time from sending the request to receiving the first token, in nanoseconds
+     */
+    public long getTimeToFirstToken() {
+        return timeToFirstToken;
+    }
+
+    /**
+     * Client-side time the request waited for an executor slot, in nanoseconds
+     */
+    public long getQueueWait() {
+        return queueWait;
+    }
+
+    /**
+     * Client-side time spent resolving and connecting, in nanoseconds; 0 when a pooled connection was reused
+     */
+    public long getConnectDuration() {
+        return connectDuration;
+    }
+
+    /**
+     * Client-side time from sending the request to the last message, in nanoseconds
+     */
+    public long getClientDuration() {
+        return clientDuration;
+    }
+
+    void setClientTimings(long queueWait, long connectDuration, long clientDuration) {
+        this.queueWait = queueWait;
+        this.connectDuration = connectDuration;
+        this.clientDuration = clientDuration;
+    }
+
+    /**
+     * Base URL of the server that produced this response, if known
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
     public double getTokensPerSecond() {
         if (evalDuration == 0) return 0;
         return (tokenCount * 1_000_000_000.0) / evalDuration;
     }
+
+    /**
+     * Prompt tokens evaluated per second
+     */
+    public double getPromptEvalsPerSecond() {
+        if (promptEvalDuration == 0) return 0;
+        return (promptEvalCount * 1_000_000_000.0) / promptEvalDuration;
+    }
 }
@@ -0,0 +1,43 @@
+package com.ollama.plugin.client;
+
+/**
+ * A model currently loaded by an Ollama server, as reported by /api/ps
+ */
+public class OllamaRunningModel {
+    private final String name;
+    private final long size;
+    private final long sizeVram;
+    private final String expiresAt;
+
+    public OllamaRunningModel(String name, long size, long sizeVram, String expiresAt) {
+        this.name = name;
+        this.size = size;
+        this.sizeVram = sizeVram;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Total memory used by the loaded model, in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Part of getSize() held in GPU memory; 0 on CPU-only machines
+     */
+    public long getSizeVram() {
+        return sizeVram;
+    }
+
+    /**
+     * When Ollama will unload the model if it stays idle (RFC 3339)
+     */
+    public String getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,196 @@
+package com.ollama.plugin.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Orders generations by OllamaPriority before they reach the executor. At most capacity generations run at
+ * once and each class stays within its own limit. A waiting request is promoted one class for every
+ * AGING_SECONDS it waits, so background work is delayed but never starved. When an interactive request finds
+ * every slot taken, a prefetch is cancelled, or a background generation that has not streamed anything yet is
+ * aborted and queued again.
+ */
+class OllamaScheduler {
+
+    private static final long AGING_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final Executor executor;
+    private final IntSupplier capacity;
+    private final int maxQueued;
+    private final OllamaRequestMetrics requestMetrics;
+    // Source of System.nanoTime() readings, replaceable so tests can age requests without waiting
+    private final LongSupplier clock;
+
+    private final List<Task> waiting = new ArrayList<>();
+    private final List<Task> running = new ArrayList<>();
+    private final int[] runningByClass = new int[OllamaPriority.values().length];
+    private long sequence;
+
+    OllamaScheduler(Executor executor, IntSupplier capacity, int maxQueued, OllamaRequestMetrics requestMetrics) {
+        this(executor, capacity, maxQueued, requestMetrics, System::nanoTime);
+    }
+
+    OllamaScheduler(Executor executor, IntSupplier capacity, int maxQueued, OllamaRequestMetrics requestMetrics,
+                    LongSupplier clock) {
+        this.executor = executor;
+        this.capacity = capacity;
+        this.maxQueued = maxQueued;
+        this.requestMetrics = requestMetrics;
+        this.clock = clock;
+    }
+
+    /**
+     * Queue a generation; handle completes with its result. Fails with RejectedExecutionException if the queue is full;
+     * if the executor refuses the task later, onRejected gets the reason before the handle fails.
+     */
+    void submit(OllamaPriority priority, OllamaRequestHandle handle, Supplier<OllamaResponse> work,
+                Consumer<String> onRejected) {
+        Task task = new Task(priority, handle, work, onRejected);
+        synchronized (this) {
+            if (waiting.size() >= maxQueued) {
+                throw new RejectedExecutionException(
+                        "Ollama request queue is full (" + maxQueued + " waiting), try again later");
+            }
+            task.sequence = sequence++;
+            task.enqueuedAt = clock.getAsLong();
+            waiting.add(task);
+            drain();
+            if (priority == OllamaPriority.INTERACTIVE && waiting.contains(task)) {
+                preemptForInteractive();
+            }
+        }
+        // A request cancelled while it waits gives up its place in the queue
+        handle.whenComplete((response, error) -> {
+            if (handle.isCancelled()) {
+                synchronized (this) {
+                    if (waiting.remove(task)) {
+                        drain();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Start waiting tasks while there are free slots
+     */
+    private void drain() {
+        while (running.size() < Math.max(1, capacity.getAsInt())) {
+            Task next = pickNext(clock.getAsLong());
+            if (next == null) {
+                return;
+            }
+            waiting.remove(next);
+            start(next);
+        }
+    }
+
+    /**
+     * The most urgent waiting task whose class has room, counting waiting time towards urgency
+     */
+    private Task pickNext(long now) {
+        Task best = null;
+        long bestRank = Long.MAX_VALUE;
+        for (Task task : waiting) {
+            if (runningByClass[task.priority.ordinal()] >= task.priority.getMaxRunning()) {
+                continue;
+            }
+            long rank = Math.max(0, task.priority.ordinal() - (now - task.enqueuedAt) / AGING_NANOS);
+            if (best == null || rank < bestRank || (rank == bestRank && task.sequence < best.sequence)) {
+                best = task;
+                bestRank = rank;
+            }
+        }
+        return best;
+    }
+
+    private void start(Task task) {
+        running.add(task);
+        runningByClass[task.priority.ordinal()]++;
+        long wait = clock.getAsLong() - task.enqueuedAt;
+        task.handle.setQueueWait(wait);
+        requestMetrics.recordQueueWait(task.priority, wait);
+
+        try {
+            executor.execute(() -> {
+                boolean preempted = false;
+                try {
+                    task.handle.complete(task.work.get());
+                } catch (OllamaPreemptedException e) {
+                    preempted = true;
+                } catch (RuntimeException e) {
+                    task.handle.completeExceptionally(e);
+                } finally {
+                    finished(task, preempted);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.remove(task);
+            runningByClass[task.priority.ordinal()]--;
+            task.onRejected.accept(e.getMessage());
+            task.handle.completeExceptionally(e);
+        }
+    }
+
+    private synchronized void finished(Task task, boolean preempted) {
+        running.remove(task);
+        runningByClass[task.priority.ordinal()]--;
+        if (preempted && !task.handle.isDone()) {
+            // Back in the queue with its original arrival time, so it keeps what it earned by aging
+            task.handle.resume();
+            waiting.add(task);
+        }
+        drain();
+    }
+
+    /**
+     * Free a slot for an interactive request: cancel a prefetch, or abort a background generation that has
+     * not delivered any tokens so it can simply run again later
+     */
+    private void preemptForInteractive() {
+        Task victim = null;
+        for (Task task : running) {
+            boolean eligible = task.priority == OllamaPriority.PREFETCH
+                    || (task.priority == OllamaPriority.BACKGROUND && !task.handle.isStreaming());
+            if (eligible && !task.handle.isPreempted()
+                    && (victim == null || task.priority.ordinal() > victim.priority.ordinal()
+                    || (task.priority == victim.priority && task.sequence > victim.sequence))) {
+                victim = task;
+            }
+        }
+        if (victim == null) {
+            return;
+        }
+        if (victim.priority == OllamaPriority.PREFETCH) {
+            victim.handle.cancel();
+        } else if (!victim.handle.preempt()) {
+            // Its first token got out since the check above
+            return;
+        }
+        requestMetrics.recordPreempted();
+    }
+
+    private static class Task {
+        final OllamaPriority priority;
+        final OllamaRequestHandle handle;
+        final Supplier<OllamaResponse> work;
+        final Consumer<String> onRejected;
+        long enqueuedAt;
+        long sequence;
+
+        Task(OllamaPriority priority, OllamaRequestHandle handle, Supplier<OllamaResponse> work,
+             Consumer<String> onRejected) {
+            this.priority = priority;
+            this.handle = handle;
+            this.work = work;
+            this.onRejected = onRejected;
+        }
+    }
+}
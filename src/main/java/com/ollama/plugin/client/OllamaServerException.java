@@ -0,0 +1,25 @@
+package com.ollama.plugin.client;
+
+import java.io.IOException;
+
+/**
+ * The server answered, but with an error status or an error message in the body.
+ * Unlike transport failures this does not mean the endpoint is down.
+ */
+public class OllamaServerException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public OllamaServerException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * HTTP status, or 200 when the error arrived inside a successful stream
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
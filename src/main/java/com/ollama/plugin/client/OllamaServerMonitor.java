@@ -0,0 +1,303 @@
+package com.ollama.plugin.client;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationActivationListener;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.wm.IdeFrame;
+import com.intellij.util.messages.MessageBusConnection;
+import com.ollama.plugin.settings.OllamaSettingsService;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Application-wide watcher of the configured Ollama servers, so chat panels, the metrics table, the status bar,
+ * the endpoint pool and the model lifecycle share one poller instead of each probing the servers. Every poll asks
+ * /api/tags and /api/ps once, without retries, of the primary server and of every other endpoint that is healthy
+ * or whose ejection ran out. Poll listeners get each round; topic listeners hear about the primary server only
+ * when the connection state, installed or loaded models changed.
+ * Polls come every ACTIVE_POLL_MILLIS while generations run and every FOCUSED_POLL_MILLIS otherwise; each poll
+ * that finds nothing new doubles the interval up to IDLE_POLL_MILLIS, which is also used while the IDE is in
+ * the background. Starting a generation, coming back to the IDE or an ejected endpoint becoming due brings the
+ * next poll forward.
+ * Nothing is polled until start() or refreshNow() is called.
+ */
+@Service
+public final class OllamaServerMonitor implements Disposable {
+
+    static final long ACTIVE_POLL_MILLIS = TimeUnit.SECONDS.toMillis(2);
+    static final long FOCUSED_POLL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    static final long IDLE_POLL_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+    private final OllamaClient ollamaClient;
+    private final OllamaModelCatalog modelCatalog;
+    private final Supplier<String> baseUrl;
+    private final ScheduledExecutorService poller;
+
+    private final List<Consumer<List<OllamaServerStatus>>> pollListeners = new CopyOnWriteArrayList<>();
+
+    private volatile OllamaServerStatus status;
+    // Guarded by this
+    private final List<CompletableFuture<OllamaServerStatus>> waiters = new ArrayList<>();
+    private ScheduledFuture<?> nextPoll;
+    private long pollInterval;
+    // Polls in a row that found nothing new, each of which doubles the interval
+    private int quietPolls;
+    private boolean started;
+
+    public OllamaServerMonitor() {
+        this(OllamaClient.getInstance(), OllamaModelCatalog.getInstance(),
+                () -> OllamaSettingsService.getInstance().getBaseUrl());
+    }
+
+    public OllamaServerMonitor(OllamaClient ollamaClient, OllamaModelCatalog modelCatalog, Supplier<String> baseUrl) {
+        this.ollamaClient = ollamaClient;
+        this.modelCatalog = modelCatalog;
+        this.baseUrl = baseUrl;
+        this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Ollama-Server-Monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static OllamaServerMonitor getInstance() {
+        return ApplicationManager.getApplication().getService(OllamaServerMonitor.class);
+    }
+
+    /**
+     * Result of the last poll, or null before the first one finished
+     */
+    public OllamaServerStatus getStatus() {
+        return status;
+    }
+
+    public synchronized boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Delay before the poll that is scheduled now
+     */
+    public synchronized long getPollIntervalMillis() {
+        return pollInterval;
+    }
+
+    /**
+     * Hand every poll round, one status per endpoint polled, to listener on the poller thread
+     */
+    public void addPollListener(Consumer<List<OllamaServerStatus>> listener) {
+        pollListeners.add(listener);
+    }
+
+    /**
+     * Start polling in the background; later calls do nothing
+     */
+    public void start() {
+        synchronized (this) {
+            if (started) {
+                return;
+            }
+            started = true;
+        }
+        ollamaClient.attachMonitor(this);
+        Application application = ApplicationManager.getApplication();
+        if (application != null) {
+            MessageBusConnection connection = application.getMessageBus().connect(this);
+            connection.subscribe(ApplicationActivationListener.TOPIC, new ApplicationActivationListener() {
+                @Override
+                public void applicationActivated(IdeFrame ideFrame) {
+                    pollSoon();
+                }
+            });
+            connection.subscribe(OllamaEndpointListener.TOPIC, endpoints -> {
+                if (countInFlight(endpoints) > 0) {
+                    schedule(ACTIVE_POLL_MILLIS);
+                }
+            });
+        }
+        schedule(0);
+    }
+
+    /**
+     * Poll now, starting the monitor if needed, and complete with the result
+     */
+    public CompletableFuture<OllamaServerStatus> refreshNow() {
+        CompletableFuture<OllamaServerStatus> result = new CompletableFuture<>();
+        synchronized (this) {
+            waiters.add(result);
+        }
+        start();
+        pollSoon();
+        return result;
+    }
+
+    /**
+     * Poll right away if the monitor is running, e.g. after the server address changed
+     */
+    public void pollSoon() {
+        synchronized (this) {
+            if (!started) {
+                return;
+            }
+            quietPolls = 0;
+        }
+        schedule(0);
+    }
+
+    /**
+     * Run the next poll after delayMillis, unless one is already due sooner
+     */
+    private synchronized void schedule(long delayMillis) {
+        if (poller.isShutdown()) {
+            return;
+        }
+        if (nextPoll != null) {
+            if (nextPoll.getDelay(TimeUnit.MILLISECONDS) <= delayMillis) {
+                return;
+            }
+            nextPoll.cancel(false);
+        }
+        nextPoll = poller.schedule(this::poll, delayMillis, TimeUnit.MILLISECONDS);
+        pollInterval = delayMillis;
+    }
+
+    private void poll() {
+        List<CompletableFuture<OllamaServerStatus>> waiting;
+        synchronized (this) {
+            // From here on schedule() plans the poll after this one
+            nextPoll = null;
+            waiting = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        String url = baseUrl.get();
+        OllamaServerStatus polled = pollServer(url);
+        List<OllamaServerStatus> round = new ArrayList<>();
+        round.add(polled);
+        long now = System.currentTimeMillis();
+        for (OllamaEndpoint endpoint : ollamaClient.getEndpointPool().getEndpoints()) {
+            // An ejected endpoint is left alone until its backoff runs out
+            if (!endpoint.getUrl().equals(url) && (endpoint.isHealthy() || endpoint.getEjectedUntil() <= now)) {
+                round.add(pollServer(endpoint.getUrl()));
+            }
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        if (polled.isConnected()) {
+            modelCatalog.offer(url, polled.getModels());
+        }
+        for (Consumer<List<OllamaServerStatus>> listener : pollListeners) {
+            listener.accept(round);
+        }
+
+        OllamaServerStatus previous = status;
+        status = polled;
+        boolean changed = previous == null || !polled.sameAs(previous);
+        synchronized (this) {
+            quietPolls = changed ? 0 : quietPolls + 1;
+        }
+        if (changed) {
+            publish(polled);
+        }
+        for (CompletableFuture<OllamaServerStatus> waiter : waiting) {
+            waiter.complete(polled);
+        }
+        schedule(nextInterval());
+    }
+
+    /**
+     * Ask one server for its installed and loaded models
+     */
+    private OllamaServerStatus pollServer(String url) {
+        try {
+            List<OllamaModel> models = ollamaClient.fetchModels(url, 1).get();
+            return new OllamaServerStatus(url, models, ollamaClient.fetchMetrics(url, 1).get(), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new OllamaServerStatus(url, Collections.emptyList(), null, "Interrupted");
+        } catch (ExecutionException e) {
+            return new OllamaServerStatus(url, Collections.emptyList(), null, describe(e.getCause()));
+        } catch (RuntimeException e) {
+            // E.g. a full request queue; an exception escaping here would end the polling for good
+            return new OllamaServerStatus(url, Collections.emptyList(), null, describe(e));
+        }
+    }
+
+    private long nextInterval() {
+        List<OllamaEndpoint> endpoints = ollamaClient.getEndpointPool().getEndpoints();
+        if (countInFlight(endpoints) > 0) {
+            return ACTIVE_POLL_MILLIS;
+        }
+        return Math.min(idleInterval(), untilNextReadmission(endpoints));
+    }
+
+    private long idleInterval() {
+        Application application = ApplicationManager.getApplication();
+        if (application != null && !application.isActive()) {
+            return IDLE_POLL_MILLIS;
+        }
+        int doublings;
+        synchronized (this) {
+            doublings = Math.min(quietPolls, 3);
+        }
+        return Math.min(FOCUSED_POLL_MILLIS << doublings, IDLE_POLL_MILLIS);
+    }
+
+    /**
+     * Time until the first ejected endpoint may be tried again, so it is re-admitted without waiting a full interval,
+     * but no less than ACTIVE_POLL_MILLIS so an endpoint that stays down is not polled in a loop
+     */
+    private static long untilNextReadmission(List<OllamaEndpoint> endpoints) {
+        long now = System.currentTimeMillis();
+        long soonest = Long.MAX_VALUE;
+        for (OllamaEndpoint endpoint : endpoints) {
+            if (!endpoint.isHealthy()) {
+                soonest = Math.min(soonest, Math.max(ACTIVE_POLL_MILLIS, endpoint.getEjectedUntil() - now));
+            }
+        }
+        return soonest;
+    }
+
+    private static int countInFlight(List<OllamaEndpoint> endpoints) {
+        int inFlight = 0;
+        for (OllamaEndpoint endpoint : endpoints) {
+            inFlight += endpoint.getInFlight();
+        }
+        return inFlight;
+    }
+
+    private static String describe(Throwable error) {
+        if (error instanceof UncheckedIOException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+    }
+
+    private void publish(OllamaServerStatus snapshot) {
+        Application application = ApplicationManager.getApplication();
+        if (application == null) {
+            return;
+        }
+        application.invokeLater(() ->
+                application.getMessageBus().syncPublisher(OllamaServerStatusListener.TOPIC).statusChanged(snapshot));
+    }
+
+    @Override
+    public void dispose() {
+        poller.shutdownNow();
+    }
+}
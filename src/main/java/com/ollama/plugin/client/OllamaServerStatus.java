@@ -0,0 +1,85 @@
+package com.ollama.plugin.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * One poll of the configured Ollama server: whether it answered, its installed models and what it holds in memory
+ */
+public class OllamaServerStatus {
+    private final String baseUrl;
+    private final List<OllamaModel> models;
+    // Null when the server did not answer
+    private final OllamaMetrics metrics;
+    private final String error;
+    private final long checkedAt;
+
+    public OllamaServerStatus(String baseUrl, List<OllamaModel> models, OllamaMetrics metrics, String error) {
+        this.baseUrl = baseUrl;
+        this.models = Collections.unmodifiableList(new ArrayList<>(models));
+        this.metrics = metrics;
+        this.error = error;
+        this.checkedAt = System.currentTimeMillis();
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public boolean isConnected() {
+        return error == null;
+    }
+
+    /**
+     * Why the server could not be reached, or null if it answered
+     */
+    public String getError() {
+        return error;
+    }
+
+    public List<OllamaModel> getModels() {
+        return models;
+    }
+
+    /**
+     * Loaded models and their memory, or null if the server did not answer
+     */
+    public OllamaMetrics getMetrics() {
+        return metrics;
+    }
+
+    public long getCheckedAt() {
+        return checkedAt;
+    }
+
+    /**
+     * Whether other reports the same server state, ignoring when each was taken
+     */
+    boolean sameAs(OllamaServerStatus other) {
+        return baseUrl.equals(other.baseUrl)
+                && Objects.equals(error, other.error)
+                && modelKeys(models).equals(modelKeys(other.models))
+                && runningKeys(metrics).equals(runningKeys(other.metrics));
+    }
+
+    private static List<String> modelKeys(List<OllamaModel> models) {
+        List<String> keys = new ArrayList<>();
+        for (OllamaModel model : models) {
+            keys.add(model.getName() + "@" + model.getDigest());
+        }
+        return keys;
+    }
+
+    private static List<String> runningKeys(OllamaMetrics metrics) {
+        List<String> keys = new ArrayList<>();
+        if (metrics != null) {
+            // The expiry moves whenever a model is used, so a generation by anyone counts as a change
+            for (OllamaRunningModel model : metrics.getRunningModels()) {
+                keys.add(model.getName() + "@" + model.getSizeVram() + "@" + model.getExpiresAt());
+            }
+        }
+        return keys;
+    }
+}
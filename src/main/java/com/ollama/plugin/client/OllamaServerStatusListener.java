@@ -0,0 +1,12 @@
+package com.ollama.plugin.client;
+
+import com.intellij.util.messages.Topic;
+
+/**
+ * Notified on the EDT when the server monitor finds the connection state, installed or loaded models changed
+ */
+public interface OllamaServerStatusListener {
+    Topic<OllamaServerStatusListener> TOPIC = Topic.create("Ollama server status", OllamaServerStatusListener.class);
+
+    void statusChanged(OllamaServerStatus status);
+}
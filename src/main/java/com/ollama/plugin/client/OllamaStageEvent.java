@@ -0,0 +1,54 @@
+package com.ollama.plugin.client;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a step of the plugin's own work around a request, e.g. building an analysis prompt
+ * or rendering streamed text on the EDT. start() returns null unless a recording has the event enabled, and
+ * finish() accepts that null, so call sites cost nothing while nobody records.
+ */
+@Name("com.ollama.Stage")
+@Label("Ollama Plugin Stage")
+@Category("Ollama")
+@Description("A step of the plugin's own work around an Ollama request")
+@StackTrace(false)
+public class OllamaStageEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(OllamaStageEvent.class);
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Model")
+    String model;
+
+    @Label("Detail")
+    String detail;
+
+    public static OllamaStageEvent start(String stage, String model) {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        OllamaStageEvent event = new OllamaStageEvent();
+        event.stage = stage;
+        event.model = model;
+        event.begin();
+        return event;
+    }
+
+    public static void finish(OllamaStageEvent event, String detail) {
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.detail = detail;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.ollama.plugin.service;
+
+import com.ollama.plugin.settings.ActionProfile;
+
+import java.util.List;
+
+/**
+ * Analysis actions offered by CodeAnalysisService. Their prompts start with the same instructions and end with
+ * the code, so consecutive requests share a long prefix that Ollama can take from its cache instead of
+ * evaluating it again.
+ */
+public enum AnalysisAction {
+    EXPLAIN("explain", "Explain Code", true, new ActionProfile(768, 0.3),
+            "Task: explain what the code below does in simple terms: its purpose, its inputs and outputs, "
+                    + "and anything a reader might find surprising."),
+    REFACTOR("refactor", "Refactor Code", false, new ActionProfile(2048, 0.2),
+            "Task: suggest improvements to the code below for readability, performance and best practices. "
+                    + "Provide a refactored version with an explanation of the changes."),
+    TESTS("tests", "Generate Tests", false, new ActionProfile(2048, 0.2),
+            "Task: generate comprehensive unit tests for the code below, using a common testing framework "
+                    + "for its language."),
+    TYPE_HINTS("typeHints", "Add Type Hints", true, new ActionProfile(1536, 0.1),
+            "Task: add type hints and annotations to the code below. Provide the annotated version."),
+    OPTIMIZE("optimize", "Optimize Code", false, new ActionProfile(2048, 0.2),
+            "Task: optimize the code below for better performance. Provide the optimized version with an "
+                    + "explanation of the changes.");
+
+    // Start of every default template and of the merge prompt, so even different actions share a cached prefix
+    static final String SHARED_INSTRUCTIONS =
+            "You are an experienced software engineer helping a developer inside their IDE.\n"
+                    + "Answer in Markdown and keep the prose short. Put code in fenced blocks tagged with its language.\n"
+                    + "Work only with the code you are given and do not invent functions, classes or files that are "
+                    + "not shown. Related code, when given, is for reference only and must not be changed.\n\n";
+    // Everything that changes from request to request, after the fixed text
+    private static final String VARIABLE_PART =
+            "\n\nLanguage: {{language}}\n{{related}}{{scope}}\n```{{language}}\n{{code}}\n```\n";
+
+    private final String id;
+    private final String displayName;
+    // Simple enough for a small model, so it runs on the fast model unless its profile names one
+    private final boolean quick;
+    // Answer length and temperature when the user has not configured a profile for the action
+    private final ActionProfile defaultProfile;
+    private final String defaultTemplate;
+
+    AnalysisAction(String id, String displayName, boolean quick, ActionProfile defaultProfile, String task) {
+        this.id = id;
+        this.displayName = displayName;
+        this.quick = quick;
+        this.defaultProfile = defaultProfile;
+        this.defaultTemplate = SHARED_INSTRUCTIONS + task + VARIABLE_PART;
+    }
+
+    /**
+     * Action with the given id, or null if there is none
+     */
+    public static AnalysisAction fromId(String id) {
+        for (AnalysisAction action : values()) {
+            if (action.id.equals(id)) {
+                return action;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Template the action uses unless the user edited it in its profile
+     */
+    public String getDefaultTemplate() {
+        return defaultTemplate;
+    }
+
+    /**
+     * The template of profile, or the default one if the profile has none or its template is not valid
+     */
+    public PromptTemplate getTemplate(ActionProfile profile) {
+        String source = profile.promptTemplate;
+        if (source == null || source.trim().isEmpty() || PromptTemplate.validate(source) != null) {
+            source = defaultTemplate;
+        }
+        return PromptTemplate.of(source);
+    }
+
+    /**
+     * Prompt asking the model to perform this action on code
+     */
+    public String buildPrompt(PromptTemplate template, String language, String code) {
+        return template.render(language, "", "", code);
+    }
+
+    /**
+     * Prompt for code together with related code from elsewhere in the project, so the model knows the types
+     * and helpers the code uses
+     */
+    public String buildPrompt(PromptTemplate template, String language, String code, List<EmbeddingIndex.Snippet> related) {
+        if (related.isEmpty()) {
+            return buildPrompt(template, language, code);
+        }
+        StringBuilder text = new StringBuilder("\nRelated code from the same project, for reference only:\n");
+        for (EmbeddingIndex.Snippet snippet : related) {
+            text.append("\n").append(snippet.getPath()).append(':').append(snippet.getLine())
+                    .append("\n```\n").append(snippet.getText()).append("\n```\n");
+        }
+        return template.render(language, text.toString(), "", code);
+    }
+
+    /**
+     * Prompt for one piece of a selection too large for the model's context window
+     */
+    public String buildChunkPrompt(PromptTemplate template, String language, String code, int part, int parts) {
+        String scope = "\nThis is part " + part + " of " + parts + " of a larger " + language
+                + " file; only the code shown is in scope.\n";
+        return template.render(language, "", scope, code);
+    }
+
+    /**
+     * Prompt merging the answers for the pieces of a selection into one; the request and language come after
+     * the fixed instructions so merges of different actions share a prefix too
+     */
+    public String buildReducePrompt(String language, List<String> partials) {
+        StringBuilder prompt = new StringBuilder(SHARED_INSTRUCTIONS)
+                .append("Task: the answers below were written for consecutive parts of one file. Merge them into a ")
+                .append("single coherent answer for the whole file, removing repetition and keeping every code change.")
+                .append("\n\nRequest: ").append(displayName)
+                .append("\nLanguage: ").append(language).append('\n');
+        for (int i = 0; i < partials.size(); i++) {
+            prompt.append("\n### Part ").append(i + 1).append("\n\n").append(partials.get(i)).append('\n');
+        }
+        return prompt.toString();
+    }
+
+    public boolean isQuick() {
+        return quick;
+    }
+
+    /**
+     * A copy of the profile the action uses until the user configures one
+     */
+    public ActionProfile getDefaultProfile() {
+        return defaultProfile.copy();
+    }
+
+    /**
+     * Stable identifier used in cache keys and persisted settings
+     */
+    public String getId() {
+        return id;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,24 @@
+package com.ollama.plugin.service;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.messages.Topic;
+
+/**
+ * Notified on the EDT about the progress of a batch analysis in a project
+ */
+public interface BatchAnalysisListener {
+    Topic<BatchAnalysisListener> TOPIC = Topic.create("Ollama batch analysis", BatchAnalysisListener.class);
+
+    void batchStarted(AnalysisAction action, int totalFiles, int remainingFiles);
+
+    void fileStarted(VirtualFile file);
+
+    void fileToken(VirtualFile file, String token);
+
+    /**
+     * Called once per file; its answer, or the error message if it failed, is then in BatchResultStore
+     */
+    void fileFinished(VirtualFile file, boolean failed);
+
+    void batchFinished(boolean cancelled);
+}
@@ -0,0 +1,18 @@
+package com.ollama.plugin.service;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Continues a batch analysis that was still running when the project was closed
+ */
+public class BatchAnalysisResumer implements StartupActivity.DumbAware {
+
+    @Override
+    public void runActivity(@NotNull Project project) {
+        if (BatchAnalysisState.getInstance(project).isActive()) {
+            BatchAnalysisTask.resume(project);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.ollama.plugin.service;
+
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.components.StoragePathMacros;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.xmlb.XmlSerializerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Files a batch analysis still has to process and those it finished, saved in the workspace so the batch
+ * resumes after a restart without losing what it already found. The answers themselves are in BatchResultStore.
+ */
+@Service(Service.Level.PROJECT)
+@State(
+    name = "OllamaBatchAnalysis",
+    storages = @Storage(StoragePathMacros.WORKSPACE_FILE)
+)
+public final class BatchAnalysisState implements PersistentStateComponent<BatchAnalysisState> {
+
+    // Id of the AnalysisAction being run, empty when no batch is active
+    public String action = "";
+    public List<String> pendingFiles = new ArrayList<>();
+    public int totalFiles = 0;
+    public List<FileResult> completedFiles = new ArrayList<>();
+
+    /**
+     * Outcome of one analyzed file
+     */
+    public static class FileResult {
+        public String url = "";
+        // The stored text is then the error message
+        public boolean failed;
+
+        public FileResult() {
+        }
+
+        FileResult(String url, boolean failed) {
+            this.url = url;
+            this.failed = failed;
+        }
+    }
+
+    public static BatchAnalysisState getInstance(Project project) {
+        return project.getService(BatchAnalysisState.class);
+    }
+
+    @Nullable
+    @Override
+    public synchronized BatchAnalysisState getState() {
+        return this;
+    }
+
+    @Override
+    public synchronized void loadState(@NotNull BatchAnalysisState state) {
+        XmlSerializerUtil.copyBean(state, this);
+    }
+
+    public synchronized boolean isActive() {
+        return !action.isEmpty() && !pendingFiles.isEmpty();
+    }
+
+    synchronized void start(AnalysisAction analysisAction, List<String> fileUrls) {
+        action = analysisAction.getId();
+        pendingFiles = new ArrayList<>(fileUrls);
+        totalFiles = fileUrls.size();
+        completedFiles = new ArrayList<>();
+    }
+
+    synchronized List<String> getPendingFiles() {
+        return new ArrayList<>(pendingFiles);
+    }
+
+    synchronized List<FileResult> getCompletedFiles() {
+        return new ArrayList<>(completedFiles);
+    }
+
+    /**
+     * Take fileUrl off the pending list without a result, for a file that was not analyzed
+     */
+    synchronized void markSkipped(String fileUrl) {
+        pendingFiles.remove(fileUrl);
+    }
+
+    /**
+     * Take fileUrl off the pending list and record it as finished, in one step so a restart sees either both or
+     * neither. Its answer must already be in BatchResultStore.
+     */
+    synchronized void markDone(String fileUrl, boolean failed) {
+        if (pendingFiles.remove(fileUrl)) {
+            completedFiles.add(new FileResult(fileUrl, failed));
+        }
+    }
+
+    synchronized void clear() {
+        action = "";
+        pendingFiles = new ArrayList<>();
+        totalFiles = 0;
+        completedFiles = new ArrayList<>();
+    }
+}
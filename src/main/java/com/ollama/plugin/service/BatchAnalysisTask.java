@@ -0,0 +1,272 @@
+package com.ollama.plugin.service;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.ollama.plugin.client.OllamaClient;
+import com.ollama.plugin.client.OllamaPriority;
+import com.ollama.plugin.client.OllamaRequestHandle;
+import com.ollama.plugin.settings.OllamaSettingsService;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs one analysis over many files in the background. At most batchParallelFiles requests are in flight,
+ * so a whole module never floods the client's queue. A file counts as finished when its callback reports or its
+ * request completes, whichever comes first, so a rejected request whose callback is dropped cannot stall the
+ * batch. Each finished file's answer goes to BatchResultStore, then the file moves from the pending list of the
+ * persisted BatchAnalysisState to its finished list, so a batch interrupted by a restart continues where it
+ * stopped and still shows what it found.
+ */
+public class BatchAnalysisTask extends Task.Backgroundable {
+
+    public static final String TOOL_WINDOW_ID = "Ollama Batch";
+
+    // Larger files are generated, minified or data; analyzing them would take hours and say little
+    private static final long MAX_FILE_BYTES = 256 * 1024;
+    // How long a wait for a file goes before it checks whether the user cancelled
+    private static final long CANCEL_CHECK_MILLIS = 200;
+
+    private final Project project;
+    private final AnalysisAction action;
+    private final List<VirtualFile> roots;
+    private final List<OllamaRequestHandle> handles = new ArrayList<>();
+
+    private BatchAnalysisTask(Project project, AnalysisAction action, List<VirtualFile> roots) {
+        super(project, "Ollama: " + action.getDisplayName(), true);
+        this.project = project;
+        this.action = action;
+        this.roots = roots;
+    }
+
+    /**
+     * Start a new batch over the given files and directories, replacing any unfinished one
+     */
+    public static void start(Project project, AnalysisAction action, List<VirtualFile> roots) {
+        new BatchAnalysisTask(project, action, roots).queue();
+    }
+
+    /**
+     * Continue the batch saved in the project's workspace, if there is one
+     */
+    public static void resume(Project project) {
+        BatchAnalysisState state = BatchAnalysisState.getInstance(project);
+        AnalysisAction action = AnalysisAction.fromId(state.action);
+        if (action == null || !state.isActive()) {
+            state.clear();
+            return;
+        }
+        new BatchAnalysisTask(project, action, null).queue();
+    }
+
+    @Override
+    public void run(@NotNull ProgressIndicator indicator) {
+        BatchAnalysisState state = BatchAnalysisState.getInstance(project);
+        BatchResultStore results = BatchResultStore.getInstance(project);
+        if (roots != null) {
+            indicator.setText("Collecting files");
+            results.clear();
+            state.start(action, ApplicationManager.getApplication().runReadAction(
+                    (Computable<List<String>>) this::collectFiles));
+        }
+
+        List<String> pending = state.getPendingFiles();
+        List<BatchAnalysisState.FileResult> completed = state.getCompletedFiles();
+        int total = Math.max(state.totalFiles, pending.size());
+        int alreadyDone = total - pending.size();
+        ApplicationManager.getApplication().invokeLater(() -> {
+            ToolWindow toolWindow = ToolWindowManager.getInstance(project).getToolWindow(TOOL_WINDOW_ID);
+            if (toolWindow != null) {
+                toolWindow.show();
+            }
+            publisher().batchStarted(action, total, pending.size());
+            // Show what the batch found before it was interrupted
+            for (BatchAnalysisState.FileResult done : completed) {
+                VirtualFile file = VirtualFileManager.getInstance().findFileByUrl(done.url);
+                if (file != null) {
+                    publisher().fileStarted(file);
+                    publisher().fileFinished(file, done.failed);
+                }
+            }
+        });
+
+        CodeAnalysisService analysisService = new CodeAnalysisService(OllamaClient.getInstance(), project);
+        int parallel = Math.max(1, OllamaSettingsService.getInstance().batchParallelFiles);
+        List<CompletableFuture<Void>> inFlight = new ArrayList<>();
+        AtomicInteger finished = new AtomicInteger(alreadyDone);
+        indicator.setIndeterminate(false);
+
+        try {
+            for (String url : pending) {
+                if (!awaitFewerThan(inFlight, parallel, indicator)) {
+                    return;
+                }
+                VirtualFile file = VirtualFileManager.getInstance().findFileByUrl(url);
+                String code = file != null && file.isValid() && file.getLength() <= MAX_FILE_BYTES
+                        ? ApplicationManager.getApplication().runReadAction((Computable<String>) () -> loadText(file))
+                        : null;
+                if (code == null || code.trim().isEmpty()) {
+                    state.markSkipped(url);
+                    finished.incrementAndGet();
+                    continue;
+                }
+
+                indicator.setText2(file.getName());
+                ApplicationManager.getApplication().invokeLater(() -> publisher().fileStarted(file));
+                String language = CodeAnalysisService.detectLanguage(file.getName());
+                // Completed by the callback or, should the callback never come, by the request itself
+                CompletableFuture<Void> fileDone = new CompletableFuture<>();
+                BiConsumer<String, String> finish = (result, error) -> {
+                    if (fileDone.complete(null)) {
+                        results.save(url, error != null ? error : result);
+                        state.markDone(url, error != null);
+                        indicator.setFraction((double) finished.incrementAndGet() / total);
+                        ApplicationManager.getApplication().invokeLater(() -> publisher().fileFinished(file, error != null));
+                    }
+                };
+                OllamaRequestHandle handle = analysisService.analyze(action, OllamaPriority.BACKGROUND, code, language,
+                        new CodeAnalysisService.RefactoringCallback() {
+                            @Override
+                            public void onToken(String token) {
+                                publisher().fileToken(file, token);
+                            }
+
+                            @Override
+                            public void onSuccess(String result) {
+                                finish.accept(result, null);
+                            }
+
+                            @Override
+                            public void onError(String error) {
+                                finish.accept(null, error);
+                            }
+                        });
+                handle.whenComplete((response, error) -> {
+                    if (handle.isCancelled()) {
+                        // Cancelled with the task; a file left pending is picked up again if the batch resumes
+                        fileDone.complete(null);
+                    } else if (error != null) {
+                        finish.accept(null, describe(error));
+                    } else {
+                        finish.accept(response.getResponse(), null);
+                    }
+                });
+                inFlight.add(fileDone);
+                synchronized (handles) {
+                    handles.add(handle);
+                }
+            }
+            // Wait for the last requests
+            awaitFewerThan(inFlight, 1, indicator);
+        } finally {
+            if (indicator.isCanceled()) {
+                cancelRequests();
+            }
+        }
+    }
+
+    /**
+     * Wait until fewer than limit files are in flight, giving up when the user cancels the task
+     */
+    private static boolean awaitFewerThan(List<CompletableFuture<Void>> inFlight, int limit, ProgressIndicator indicator) {
+        inFlight.removeIf(CompletableFuture::isDone);
+        while (inFlight.size() >= limit) {
+            try {
+                CompletableFuture.anyOf(inFlight.toArray(new CompletableFuture<?>[0]))
+                        .get(CANCEL_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // look at the indicator again
+            } catch (ExecutionException e) {
+                // the file futures only complete normally
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (indicator.isCanceled()) {
+                return false;
+            }
+            inFlight.removeIf(CompletableFuture::isDone);
+        }
+        return !indicator.isCanceled();
+    }
+
+    private static String describe(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    private void cancelRequests() {
+        synchronized (handles) {
+            for (OllamaRequestHandle handle : handles) {
+                handle.cancel();
+            }
+        }
+    }
+
+    /**
+     * Source files under the chosen roots that belong to the project and have a known language
+     */
+    private List<String> collectFiles() {
+        ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+        Set<String> urls = new LinkedHashSet<>();
+        for (VirtualFile root : roots) {
+            VfsUtilCore.iterateChildrenRecursively(root,
+                    file -> !file.isDirectory() || !fileIndex.isExcluded(file),
+                    file -> {
+                        if (!file.isDirectory() && fileIndex.isInContent(file)
+                                && !"unknown".equals(CodeAnalysisService.detectLanguage(file.getName()))) {
+                            urls.add(file.getUrl());
+                        }
+                        return true;
+                    });
+        }
+        return new ArrayList<>(urls);
+    }
+
+    private static String loadText(VirtualFile file) {
+        try {
+            return VfsUtilCore.loadText(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private BatchAnalysisListener publisher() {
+        return project.getMessageBus().syncPublisher(BatchAnalysisListener.TOPIC);
+    }
+
+    @Override
+    public void onSuccess() {
+        BatchAnalysisState.getInstance(project).clear();
+        publisher().batchFinished(false);
+    }
+
+    @Override
+    public void onCancel() {
+        // Closing the project cancels the task too; keep the batch then so it resumes on the next start
+        if (!project.isDisposed()) {
+            BatchAnalysisState.getInstance(project).clear();
+            publisher().batchFinished(true);
+        }
+    }
+}
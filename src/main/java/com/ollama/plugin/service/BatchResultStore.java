@@ -0,0 +1,99 @@
+package com.ollama.plugin.service;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Answers of the files a batch analysis finished, one file each under the IDE system directory.
+ * BatchAnalysisState only records which files are done, so long answers stay out of workspace.xml and
+ * the results panel reads an answer when it is shown. The answers of a batch are kept until the next one starts.
+ */
+@Service(Service.Level.PROJECT)
+public final class BatchResultStore {
+
+    private static final Logger LOG = Logger.getInstance(BatchResultStore.class);
+
+    private final Path directory;
+
+    public BatchResultStore(Project project) {
+        this(Paths.get(PathManager.getSystemPath(), "ollama", "batch", project.getLocationHash()));
+    }
+
+    BatchResultStore(Path directory) {
+        this.directory = directory;
+    }
+
+    public static BatchResultStore getInstance(Project project) {
+        return project.getService(BatchResultStore.class);
+    }
+
+    /**
+     * Keep the answer, or the error message, for fileUrl, replacing an earlier one
+     */
+    void save(String fileUrl, String text) {
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "result", ".tmp");
+            Files.write(temp, text.getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, fileFor(fileUrl), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Could not save the batch result of " + fileUrl, e);
+        }
+    }
+
+    /**
+     * The text saved for fileUrl, or null if there is none. Reads a file, so call it off the EDT.
+     */
+    public String load(String fileUrl) {
+        try {
+            return new String(Files.readAllBytes(fileFor(fileUrl)), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOG.warn("Could not read the batch result of " + fileUrl, e);
+            return null;
+        }
+    }
+
+    /**
+     * Delete the answers of the previous batch
+     */
+    void clear() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            LOG.warn("Could not delete old batch results", e);
+        }
+    }
+
+    private Path fileFor(String fileUrl) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest(fileUrl.getBytes(StandardCharsets.UTF_8))) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return directory.resolve(hex + ".txt");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,678 @@
+package com.ollama.plugin.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.ollama.plugin.client.OllamaChatMessage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Chat conversations of a project, kept across IDE restarts.
+ * Messages are appended to messages.log as length-prefixed, checksummed records and never rewritten in place;
+ * a torn record at the end of the log after a crash is cut off on the next load. sessions.idx holds every
+ * session's title and counters plus the log offset of each of its messages, so listing sessions reads no
+ * message text and a page of messages is read with one positional read per message. The index is saved a
+ * few seconds after the last change and records how much of the log it covers; records appended after that
+ * are recovered by scanning only the tail. Deleted and pruned sessions leave dead records behind, and once
+ * they outweigh the live ones the log is rewritten in the background.
+ * Nothing is read before the first call, and all file access runs on one background thread.
+ */
+@Service(Service.Level.PROJECT)
+public final class ChatHistory implements Disposable {
+
+    private static final Logger LOG = Logger.getInstance(ChatHistory.class);
+
+    private static final int LOG_MAGIC = 0x4F43484C;
+    private static final int LOG_VERSION = 1;
+    private static final int INDEX_VERSION = 1;
+    private static final int LOG_HEADER_BYTES = 8;
+    // Record header: payload length and CRC32 of the payload
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final byte SESSION_RECORD = 1;
+    private static final byte MESSAGE_RECORD = 2;
+    private static final byte DELETE_RECORD = 3;
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+    private static final int MAX_TITLE_CHARS = 80;
+    // Oldest sessions beyond this are deleted
+    private static final int MAX_SESSIONS = 500;
+    private static final long COMPACT_MIN_DEAD_BYTES = 1024 * 1024;
+    private static final int INDEX_SAVE_DELAY_SECONDS = 3;
+
+    private final Path directory;
+    private final ScheduledExecutorService worker;
+    private final AtomicLong lastId = new AtomicLong();
+
+    // State below is only touched on the worker thread
+    private final Map<Long, Session> sessions = new LinkedHashMap<>();
+    private FileChannel log;
+    private boolean loaded;
+    private long deadBytes;
+    private ScheduledFuture<?> indexSave;
+
+    public ChatHistory(Project project) {
+        this(Paths.get(PathManager.getSystemPath(), "ollama", "chats", project.getLocationHash()));
+    }
+
+    ChatHistory(Path directory) {
+        this.directory = directory;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "Ollama-Chat-History");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // On dispose, queued writes still run but the delayed index save is left to dispose itself
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.worker = executor;
+    }
+
+    public static ChatHistory getInstance(Project project) {
+        return project.getService(ChatHistory.class);
+    }
+
+    /**
+     * Sessions, most recently updated first
+     */
+    public CompletableFuture<List<SessionInfo>> listSessions() {
+        return submit(() -> {
+            List<SessionInfo> list = new ArrayList<>();
+            for (Session session : sessions.values()) {
+                list.add(session.info());
+            }
+            list.sort(Comparator.comparingLong(SessionInfo::getUpdated).reversed());
+            return list;
+        });
+    }
+
+    /**
+     * Start a session and return its id right away; the record is written in the background
+     */
+    public long createSession(String model, String firstPrompt) {
+        long id = lastId.accumulateAndGet(System.currentTimeMillis(), (last, now) -> Math.max(last + 1, now));
+        String title = firstPrompt.trim().replaceAll("\\s+", " ");
+        String shortTitle = title.length() > MAX_TITLE_CHARS ? title.substring(0, MAX_TITLE_CHARS) + "..." : title;
+        submit(() -> {
+            Session session = new Session(id, model, shortTitle, System.currentTimeMillis());
+            session.bytes += append(sessionPayload(session));
+            sessions.put(id, session);
+            prune();
+            scheduleIndexSave();
+            return null;
+        });
+        return id;
+    }
+
+    public void appendMessages(long sessionId, List<OllamaChatMessage> messages) {
+        submit(() -> {
+            Session session = sessions.get(sessionId);
+            if (session == null) {
+                return null;
+            }
+            long now = System.currentTimeMillis();
+            for (OllamaChatMessage message : messages) {
+                long offset = log.size();
+                session.bytes += append(messagePayload(sessionId, now, message));
+                session.addOffset(offset);
+            }
+            session.updated = now;
+            scheduleIndexSave();
+            return null;
+        });
+    }
+
+    /**
+     * Messages from..from+count of a session, fewer at its end; an empty list if the session is gone
+     */
+    public CompletableFuture<List<OllamaChatMessage>> loadMessages(long sessionId, int from, int count) {
+        return submit(() -> {
+            Session session = sessions.get(sessionId);
+            List<OllamaChatMessage> messages = new ArrayList<>();
+            if (session == null) {
+                return messages;
+            }
+            int end = Math.min(session.messageCount, from + count);
+            for (int i = Math.max(0, from); i < end; i++) {
+                messages.add(readMessage(session.offsets[i]));
+            }
+            return messages;
+        });
+    }
+
+    public CompletableFuture<Void> deleteSession(long sessionId) {
+        return submit(() -> {
+            Session session = sessions.remove(sessionId);
+            if (session != null) {
+                delete(session);
+                compactIfWorthIt();
+                scheduleIndexSave();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Run task on the worker thread, loading the history first if this is the first call
+     */
+    private <T> CompletableFuture<T> submit(IoTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            worker.execute(() -> {
+                try {
+                    ensureLoaded();
+                    future.complete(task.run());
+                } catch (IOException | RuntimeException e) {
+                    LOG.warn("Chat history failed", e);
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private void ensureLoaded() throws IOException {
+        if (loaded) {
+            return;
+        }
+        Files.createDirectories(directory);
+        log = FileChannel.open(logFile(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_BYTES);
+        if (log.size() >= LOG_HEADER_BYTES) {
+            readFully(header, 0);
+            header.flip();
+        }
+        if (!header.equals(logHeader())) {
+            // Missing, unknown or damaged beyond repair: start over
+            log.truncate(0);
+            writeFully(log, logHeader(), 0);
+            Files.deleteIfExists(indexFile());
+        }
+        long covered = readIndex();
+        scan(Math.max(covered, LOG_HEADER_BYTES));
+        for (Long id : sessions.keySet()) {
+            lastId.accumulateAndGet(id, Math::max);
+        }
+        loaded = true;
+    }
+
+    /**
+     * Load sessions from the index and return the log length it covers, or the header length if there is none
+     */
+    private long readIndex() {
+        Path file = indexFile();
+        if (!Files.exists(file)) {
+            return LOG_HEADER_BYTES;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != INDEX_VERSION) {
+                return LOG_HEADER_BYTES;
+            }
+            long covered = in.readLong();
+            long dead = in.readLong();
+            int count = in.readInt();
+            Map<Long, Session> read = new LinkedHashMap<>();
+            for (int s = 0; s < count; s++) {
+                Session session = new Session(in.readLong(), in.readUTF(), in.readUTF(), in.readLong());
+                session.updated = in.readLong();
+                session.bytes = in.readLong();
+                int messages = in.readInt();
+                session.offsets = new long[Math.max(4, messages)];
+                for (int m = 0; m < messages; m++) {
+                    session.offsets[m] = in.readLong();
+                }
+                session.messageCount = messages;
+                read.put(session.id, session);
+            }
+            if (covered > log.size()) {
+                // The log is older than the index, e.g. restored from a backup
+                return LOG_HEADER_BYTES;
+            }
+            sessions.putAll(read);
+            deadBytes = dead;
+            return covered;
+        } catch (IOException e) {
+            // Rebuilt from the log
+            sessions.clear();
+            return LOG_HEADER_BYTES;
+        }
+    }
+
+    /**
+     * Apply the records from position to the end of the log, cutting off a torn or corrupt tail
+     */
+    private void scan(long position) throws IOException {
+        long size = log.size();
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        while (position + RECORD_HEADER_BYTES <= size) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length <= 0 || length > MAX_RECORD_BYTES || position + RECORD_HEADER_BYTES + length > size) {
+                break;
+            }
+            byte[] payload = readPayload(position, length);
+            if (crc(payload) != checksum) {
+                break;
+            }
+            try {
+                apply(position, RECORD_HEADER_BYTES + length, payload);
+            } catch (IOException e) {
+                break;
+            }
+            position += RECORD_HEADER_BYTES + length;
+        }
+        if (position < size) {
+            LOG.info("Dropping " + (size - position) + " bytes of incomplete chat history");
+            log.truncate(position);
+        }
+    }
+
+    private void apply(long offset, int recordBytes, byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        long id = in.readLong();
+        Session session = sessions.get(id);
+        switch (type) {
+            case SESSION_RECORD:
+                long created = in.readLong();
+                session = new Session(id, in.readUTF(), in.readUTF(), created);
+                session.bytes = recordBytes;
+                sessions.put(id, session);
+                break;
+            case MESSAGE_RECORD:
+                if (session == null) {
+                    deadBytes += recordBytes;
+                    break;
+                }
+                session.updated = in.readLong();
+                session.addOffset(offset);
+                session.bytes += recordBytes;
+                break;
+            case DELETE_RECORD:
+                deadBytes += recordBytes;
+                if (session != null) {
+                    sessions.remove(id);
+                    deadBytes += session.bytes;
+                }
+                break;
+            default:
+                throw new IOException("Unknown chat history record " + type);
+        }
+    }
+
+    private OllamaChatMessage readMessage(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        readFully(header, offset);
+        header.flip();
+        int length = header.getInt();
+        header.getInt();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(readPayload(offset, length)));
+        in.readByte();
+        in.readLong();
+        in.readLong();
+        String role = in.readUTF();
+        byte[] content = new byte[in.readInt()];
+        in.readFully(content);
+        return new OllamaChatMessage(role, new String(content, StandardCharsets.UTF_8));
+    }
+
+    private byte[] readPayload(long recordOffset, int length) throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(payload, recordOffset + RECORD_HEADER_BYTES);
+        return payload.array();
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = log.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    /**
+     * Write one record at the end of the log and return its size
+     */
+    private int append(byte[] payload) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length);
+        record.putInt(payload.length).putInt(crc(payload)).put(payload);
+        record.flip();
+        long position = log.size();
+        while (record.hasRemaining()) {
+            position += log.write(record, position);
+        }
+        return RECORD_HEADER_BYTES + payload.length;
+    }
+
+    private static ByteBuffer logHeader() {
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_BYTES).putInt(LOG_MAGIC).putInt(LOG_VERSION);
+        header.flip();
+        return header;
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] sessionPayload(Session session) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(SESSION_RECORD);
+        out.writeLong(session.id);
+        out.writeLong(session.created);
+        out.writeUTF(session.model);
+        out.writeUTF(session.title);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] messagePayload(long sessionId, long timestamp, OllamaChatMessage message) throws IOException {
+        byte[] content = message.getContent().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length + 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(MESSAGE_RECORD);
+        out.writeLong(sessionId);
+        out.writeLong(timestamp);
+        out.writeUTF(message.getRole());
+        out.writeInt(content.length);
+        out.write(content);
+        return bytes.toByteArray();
+    }
+
+    private void delete(Session session) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(DELETE_RECORD);
+        out.writeLong(session.id);
+        deadBytes += append(bytes.toByteArray()) + session.bytes;
+    }
+
+    /**
+     * Delete the least recently updated sessions beyond MAX_SESSIONS
+     */
+    private void prune() throws IOException {
+        while (sessions.size() > MAX_SESSIONS) {
+            Session oldest = sessions.values().stream().min(Comparator.comparingLong(s -> s.updated)).orElseThrow();
+            sessions.remove(oldest.id);
+            delete(oldest);
+        }
+        compactIfWorthIt();
+    }
+
+    private void compactIfWorthIt() throws IOException {
+        long liveBytes = log.size() - LOG_HEADER_BYTES - deadBytes;
+        if (deadBytes >= COMPACT_MIN_DEAD_BYTES && deadBytes > liveBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrite the log with the live sessions only, copying message records byte for byte, then swap it in
+     * together with an index that points into the new file. The old index is deleted before the swap, so a
+     * crash before the new one is saved leaves a log that is recovered by a full scan rather than an index
+     * whose offsets point into the old file.
+     */
+    private void compact() throws IOException {
+        Path temp = Files.createTempFile(directory, "messages", ".tmp");
+        Map<Long, long[]> newOffsets = new LinkedHashMap<>();
+        Map<Long, Long> newBytes = new LinkedHashMap<>();
+        try {
+            copyLiveRecords(temp, newOffsets, newBytes);
+            Files.deleteIfExists(indexFile());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        log.close();
+        try {
+            Files.move(temp, logFile(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            // The old log is still in place and the offsets in memory still point into it
+            Files.deleteIfExists(temp);
+            log = FileChannel.open(logFile(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            throw e;
+        }
+        log = FileChannel.open(logFile(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        for (Session session : sessions.values()) {
+            long[] offsets = newOffsets.get(session.id);
+            session.offsets = Arrays.copyOf(offsets, Math.max(4, offsets.length));
+            session.bytes = newBytes.get(session.id);
+        }
+        deadBytes = 0;
+        saveIndex();
+    }
+
+    /**
+     * Write the records of the live sessions to temp, collecting each session's new message offsets and size
+     */
+    private void copyLiveRecords(Path temp, Map<Long, long[]> newOffsets, Map<Long, Long> newBytes) throws IOException {
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            long position = writeFully(out, logHeader(), 0);
+            for (Session session : sessions.values()) {
+                long start = position;
+                byte[] payload = sessionPayload(session);
+                ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length);
+                record.putInt(payload.length).putInt(crc(payload)).put(payload);
+                record.flip();
+                position += writeFully(out, record, position);
+                long[] offsets = new long[session.messageCount];
+                for (int m = 0; m < session.messageCount; m++) {
+                    ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+                    readFully(recordHeader, session.offsets[m]);
+                    int length = recordHeader.getInt(0);
+                    offsets[m] = position;
+                    // transferTo writes at the channel position, which the positional writes above do not move
+                    out.position(position);
+                    long copied = 0;
+                    while (copied < RECORD_HEADER_BYTES + length) {
+                        long transferred = log.transferTo(session.offsets[m] + copied, RECORD_HEADER_BYTES + length - copied, out);
+                        if (transferred <= 0) {
+                            throw new EOFException("Chat history record at " + session.offsets[m] + " is cut short");
+                        }
+                        copied += transferred;
+                    }
+                    position += copied;
+                }
+                newOffsets.put(session.id, offsets);
+                newBytes.put(session.id, position - start);
+            }
+            out.force(false);
+        }
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    private void scheduleIndexSave() {
+        if (worker.isShutdown()) {
+            // A write queued before dispose; dispose saves the index once the queue has drained
+            return;
+        }
+        if (indexSave == null || indexSave.isDone()) {
+            indexSave = worker.schedule(() -> {
+                try {
+                    saveIndex();
+                } catch (IOException e) {
+                    LOG.warn("Failed to save chat history index", e);
+                }
+            }, INDEX_SAVE_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Replace the index atomically with one covering the whole log as it is now
+     */
+    private void saveIndex() throws IOException {
+        if (!loaded || log == null || !log.isOpen()) {
+            return;
+        }
+        Path temp = Files.createTempFile(directory, "sessions", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(INDEX_VERSION);
+            out.writeLong(log.size());
+            out.writeLong(deadBytes);
+            out.writeInt(sessions.size());
+            for (Session session : sessions.values()) {
+                out.writeLong(session.id);
+                out.writeUTF(session.model);
+                out.writeUTF(session.title);
+                out.writeLong(session.created);
+                out.writeLong(session.updated);
+                out.writeLong(session.bytes);
+                out.writeInt(session.messageCount);
+                for (int m = 0; m < session.messageCount; m++) {
+                    out.writeLong(session.offsets[m]);
+                }
+            }
+        }
+        Files.move(temp, indexFile(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path logFile() {
+        return directory.resolve("messages.log");
+    }
+
+    private Path indexFile() {
+        return directory.resolve("sessions.idx");
+    }
+
+    @Override
+    public void dispose() {
+        worker.shutdown();
+        try {
+            worker.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (loaded && log != null && log.isOpen()) {
+            try {
+                log.force(false);
+                saveIndex();
+                log.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close chat history", e);
+            }
+        }
+    }
+
+    private interface IoTask<T> {
+        T run() throws IOException;
+    }
+
+    private static class Session {
+        final long id;
+        final String model;
+        final String title;
+        final long created;
+        long updated;
+        // Bytes of this session's records in the log, which become dead when it is deleted
+        long bytes;
+        long[] offsets = new long[4];
+        int messageCount;
+
+        Session(long id, String model, String title, long created) {
+            this.id = id;
+            this.model = model;
+            this.title = title;
+            this.created = created;
+            this.updated = created;
+        }
+
+        void addOffset(long offset) {
+            if (messageCount == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[messageCount++] = offset;
+        }
+
+        SessionInfo info() {
+            return new SessionInfo(id, model, title, created, updated, messageCount);
+        }
+    }
+
+    /**
+     * What the session list shows about a conversation, without its messages
+     */
+    public static class SessionInfo {
+        private final long id;
+        private final String model;
+        private final String title;
+        private final long created;
+        private final long updated;
+        private final int messageCount;
+
+        SessionInfo(long id, String model, String title, long created, long updated, int messageCount) {
+            this.id = id;
+            this.model = model;
+            this.title = title;
+            this.created = created;
+            this.updated = updated;
+            this.messageCount = messageCount;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        public long getUpdated() {
+            return updated;
+        }
+
+        public int getMessageCount() {
+            return messageCount;
+        }
+    }
+}
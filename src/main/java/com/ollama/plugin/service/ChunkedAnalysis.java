@@ -0,0 +1,284 @@
+package com.ollama.plugin.service;
+
+import com.ollama.plugin.client.OllamaClient;
+import com.ollama.plugin.client.OllamaPriority;
+import com.ollama.plugin.client.OllamaRequestHandle;
+import com.ollama.plugin.client.OllamaResponse;
+import com.ollama.plugin.settings.ActionProfile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Analysis of a selection that does not fit the model's context window. The code is split between
+ * declarations, each piece is analyzed on its own with a bounded number of requests in flight, and the
+ * partial answers are merged by further requests, in several rounds if they do not fit one prompt either.
+ * Two answers that do not fit one merge prompt are cut short rather than sent over the budget.
+ * Only the final merge streams to the caller; cancelling the returned handle stops every request.
+ */
+class ChunkedAnalysis {
+
+    // Appended to a partial answer cut short to fit the merge prompt
+    private static final String TRUNCATED = "\n[... cut to fit the context window]";
+    // Less room than this per partial answer leaves nothing worth merging
+    private static final int MIN_PARTIAL_CHARS = 64 * PromptBudget.CHARS_PER_TOKEN;
+
+    private final OllamaClient ollamaClient;
+    private final AnalysisAction action;
+    private final OllamaPriority priority;
+    private final String model;
+    // Every map, reduce and final request runs with the action's options
+    private final Map<String, Object> options;
+    private final String keepAlive;
+    private final PromptTemplate template;
+    private final String language;
+    private final PromptBudget budget;
+    private final int maxParallel;
+
+    private final OllamaRequestHandle handle = new OllamaRequestHandle();
+    private final List<OllamaRequestHandle> children = new ArrayList<>();
+    private OllamaClient.OllamaStreamCallback callback;
+    private List<String> chunks;
+    private String[] partials;
+    private int nextChunk;
+    private int running;
+    private int finished;
+    private boolean failed;
+
+    ChunkedAnalysis(OllamaClient ollamaClient, AnalysisAction action, OllamaPriority priority, String model,
+                    ActionProfile profile, String language, PromptBudget budget, int maxParallel) {
+        this.ollamaClient = ollamaClient;
+        this.action = action;
+        this.priority = priority;
+        this.model = model;
+        this.options = profile.toOptions();
+        this.keepAlive = profile.getKeepAlive();
+        this.template = action.getTemplate(profile);
+        this.language = language;
+        this.budget = budget;
+        this.maxParallel = Math.max(1, maxParallel);
+    }
+
+    /**
+     * Split code into pieces that fit the budget and start analyzing them
+     */
+    OllamaRequestHandle run(String code, OllamaClient.OllamaStreamCallback callback) {
+        this.callback = callback;
+        int maxChars = budget.getMaxCodeChars(action.buildChunkPrompt(template, language, "", 99, 99));
+        chunks = CodeChunker.split(code, maxChars);
+        partials = new String[chunks.size()];
+        handle.whenComplete((response, error) -> {
+            if (handle.isCancelled()) {
+                cancelChildren();
+            }
+        });
+        startChunks();
+        return handle;
+    }
+
+    private synchronized void startChunks() {
+        while (!failed && !handle.isCancelled() && running < maxParallel && nextChunk < chunks.size()) {
+            int index = nextChunk++;
+            running++;
+            String prompt = action.buildChunkPrompt(template, language, chunks.get(index), index + 1, chunks.size());
+            children.add(ollamaClient.streamPromptFor(action.getId() + "-map", priority, model, prompt, options, keepAlive,
+                    new StepCallback(result -> chunkFinished(index, result))));
+        }
+    }
+
+    private void chunkFinished(int index, String result) {
+        List<String> results = null;
+        synchronized (this) {
+            partials[index] = result;
+            running--;
+            if (++finished == chunks.size()) {
+                results = Arrays.asList(partials);
+            }
+        }
+        if (results != null) {
+            reduce(results);
+        } else {
+            startChunks();
+        }
+    }
+
+    /**
+     * Merge partial answers, first in groups that each fit one prompt if all of them together do not
+     */
+    private void reduce(List<String> results) {
+        String prompt = action.buildReducePrompt(language, results);
+        if (!budget.fits(prompt) && results.size() <= 2) {
+            prompt = buildShortenedReducePrompt(results);
+            if (prompt == null) {
+                fail(cannotMerge());
+                return;
+            }
+        }
+        if (budget.fits(prompt)) {
+            synchronized (this) {
+                if (failed || handle.isCancelled()) {
+                    return;
+                }
+                OllamaRequestHandle last = ollamaClient.streamPromptFor(action.getId(), priority, model, prompt,
+                        options, keepAlive, callback);
+                children.add(last);
+                handle.follow(last);
+            }
+            return;
+        }
+
+        List<List<String>> groups = group(results);
+        String[] merged = new String[groups.size()];
+        int[] remaining = {groups.size()};
+        for (int i = 0; i < groups.size(); i++) {
+            int index = i;
+            List<String> members = groups.get(i);
+            if (members.size() == 1) {
+                groupFinished(merged, remaining, index, members.get(0));
+                continue;
+            }
+            String groupPrompt = action.buildReducePrompt(language, members);
+            if (!budget.fits(groupPrompt)) {
+                groupPrompt = buildShortenedReducePrompt(members);
+                if (groupPrompt == null) {
+                    fail(cannotMerge());
+                    return;
+                }
+            }
+            synchronized (this) {
+                if (failed || handle.isCancelled()) {
+                    return;
+                }
+                children.add(ollamaClient.streamPromptFor(action.getId() + "-reduce", priority, model,
+                        groupPrompt, options, keepAlive,
+                        new StepCallback(result -> groupFinished(merged, remaining, index, result))));
+            }
+        }
+    }
+
+    private void groupFinished(String[] merged, int[] remaining, int index, String result) {
+        boolean last;
+        synchronized (this) {
+            merged[index] = result;
+            last = --remaining[0] == 0;
+        }
+        if (last) {
+            reduce(Arrays.asList(merged));
+        }
+    }
+
+    /**
+     * Consecutive runs of partial answers whose merge prompt fits the budget, at least two per group when possible
+     */
+    private List<List<String>> group(List<String> results) {
+        List<List<String>> groups = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        for (String result : results) {
+            current.add(result);
+            if (current.size() > 2 && !budget.fits(action.buildReducePrompt(language, current))) {
+                current.remove(current.size() - 1);
+                groups.add(current);
+                current = new ArrayList<>();
+                current.add(result);
+            }
+        }
+        groups.add(current);
+        return groups;
+    }
+
+    /**
+     * Merge prompt for partial answers that do not fit together, with the longest ones cut short: answers under
+     * an equal share of the room keep their length and the others split what is left. Null if the prompt's fixed
+     * text leaves less than MIN_PARTIAL_CHARS for each answer.
+     */
+    private String buildShortenedReducePrompt(List<String> partials) {
+        String fixed = action.buildReducePrompt(language, Collections.nCopies(partials.size(), ""));
+        long room = (budget.getPromptTokens() - PromptBudget.estimateTokens(fixed)) * PromptBudget.CHARS_PER_TOKEN
+                - (long) partials.size() * TRUNCATED.length();
+        if (room < (long) partials.size() * MIN_PARTIAL_CHARS) {
+            return null;
+        }
+
+        List<String> byLength = new ArrayList<>(partials);
+        byLength.sort(Comparator.comparingInt(String::length));
+        long share = room / byLength.size();
+        for (int i = 0; i < byLength.size() && byLength.get(i).length() <= share; i++) {
+            room -= byLength.get(i).length();
+            share = i + 1 < byLength.size() ? room / (byLength.size() - i - 1) : share;
+        }
+
+        List<String> shortened = new ArrayList<>(partials.size());
+        for (String partial : partials) {
+            if (partial.length() <= share) {
+                shortened.add(partial);
+            } else {
+                int end = (int) share;
+                if (Character.isHighSurrogate(partial.charAt(end - 1))) {
+                    end--;
+                }
+                shortened.add(partial.substring(0, end) + TRUNCATED);
+            }
+        }
+        String prompt = action.buildReducePrompt(language, shortened);
+        return budget.fits(prompt) ? prompt : null;
+    }
+
+    private String cannotMerge() {
+        return "The answers for the parts of this selection cannot be merged within the model's context window of "
+                + budget.getContextTokens() + " tokens. Raise the context window of this action or select less code.";
+    }
+
+    private void fail(String error) {
+        synchronized (this) {
+            if (failed) {
+                return;
+            }
+            failed = true;
+        }
+        cancelChildren();
+        if (callback != null) {
+            callback.onError(error);
+        }
+        handle.complete(new OllamaResponse("Error: " + error, 0, 0, 0));
+    }
+
+    private void cancelChildren() {
+        List<OllamaRequestHandle> started;
+        synchronized (this) {
+            started = new ArrayList<>(children);
+        }
+        for (OllamaRequestHandle child : started) {
+            child.cancel();
+        }
+    }
+
+    /**
+     * Callback of an intermediate request, whose tokens are not shown to the user
+     */
+    private class StepCallback implements OllamaClient.OllamaStreamCallback {
+        private final Consumer<String> onResult;
+
+        StepCallback(Consumer<String> onResult) {
+            this.onResult = onResult;
+        }
+
+        @Override
+        public void onToken(String token) {
+        }
+
+        @Override
+        public void onComplete(OllamaResponse response) {
+            onResult.accept(response.getResponse());
+        }
+
+        @Override
+        public void onError(String error) {
+            fail(error);
+        }
+    }
+}
@@ -4,78 +4,218 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.CommandProcessor;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.RangeMarker;
+import com.intellij.openapi.project.Project;
+import com.ollama.plugin.OllamaPluginConstants;
 import com.ollama.plugin.client.OllamaClient;
+import com.ollama.plugin.client.OllamaModelCatalog;
+import com.ollama.plugin.client.OllamaModelInfo;
+import com.ollama.plugin.client.OllamaPriority;
+import com.ollama.plugin.client.OllamaRequestHandle;
 import com.ollama.plugin.client.OllamaResponse;
+import com.ollama.plugin.client.OllamaStageEvent;
+import com.ollama.plugin.settings.ActionProfile;
 import com.ollama.plugin.settings.OllamaSettingsService;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 /**
  * Service for code analysis, refactoring, and suggestions using Ollama
  */
 public class CodeAnalysisService {
+    private static final int MODEL_INFO_TIMEOUT_SECONDS = 5;
+    // Related code may take at most this share of the prompt budget
+    private static final int RELATED_CODE_BUDGET_DIVISOR = 3;
+    // Path, line and fence around each related snippet
+    private static final int SNIPPET_OVERHEAD_CHARS = 120;
+
     private final OllamaClient ollamaClient;
-    private final OllamaSettingsService settingsService;
+    private final ResponseCache responseCache;
+    private final Project project;
 
     public CodeAnalysisService(OllamaClient ollamaClient) {
+        this(ollamaClient, null);
+    }
+
+    /**
+     * Service whose prompts can include related code from project's embedding index
+     */
+    public CodeAnalysisService(OllamaClient ollamaClient, Project project) {
         this.ollamaClient = ollamaClient;
-        this.settingsService = OllamaSettingsService.getInstance();
+        this.responseCache = ResponseCache.getInstance();
+        this.project = project;
     }
 
     /**
      * Get code suggestions for the selected text with callback
      */
-    public void suggestRefactoring(String selectedCode, String language, RefactoringCallback callback) {
-        String prompt = String.format(
-                "Analyze this %s code and suggest improvements for readability, performance, and best practices:\n\n```%s\n%s\n```\n\nProvide a refactored version with explanation.",
-                language, language, selectedCode);
-        performAnalysis(prompt, callback);
+    public OllamaRequestHandle suggestRefactoring(String selectedCode, String language, RefactoringCallback callback) {
+        return performAnalysis(AnalysisAction.REFACTOR, OllamaPriority.EDITOR_ACTION, language, selectedCode, callback);
     }
 
     /**
      * Get explanation for selected code
      */
-    public void explainCode(String selectedCode, String language, RefactoringCallback callback) {
-        String prompt = String.format(
-                "Explain this %s code in simple terms:\n\n```%s\n%s\n```",
-                language, language, selectedCode);
-        performAnalysis(prompt, callback);
+    public OllamaRequestHandle explainCode(String selectedCode, String language, RefactoringCallback callback) {
+        return performAnalysis(AnalysisAction.EXPLAIN, OllamaPriority.EDITOR_ACTION, language, selectedCode, callback);
     }
 
     /**
      * Generate unit tests for the code
      */
-    public void generateTests(String selectedCode, String language, RefactoringCallback callback) {
-        String prompt = String.format(
-                "Generate comprehensive unit tests for this %s code:\n\n```%s\n%s\n```\n\nProvide tests using common testing frameworks.",
-                language, language, selectedCode);
-        performAnalysis(prompt, callback);
+    public OllamaRequestHandle generateTests(String selectedCode, String language, RefactoringCallback callback) {
+        return performAnalysis(AnalysisAction.TESTS, OllamaPriority.EDITOR_ACTION, language, selectedCode, callback);
     }
 
     /**
      * Add type hints/annotations to code
      */
-    public void addTypeHints(String selectedCode, String language, RefactoringCallback callback) {
-        String prompt = String.format(
-                "Add type hints and annotations to this %s code:\n\n```%s\n%s\n```\n\nProvide the annotated version.",
-                language, language, selectedCode);
-        performAnalysis(prompt, callback);
+    public OllamaRequestHandle addTypeHints(String selectedCode, String language, RefactoringCallback callback) {
+        return performAnalysis(AnalysisAction.TYPE_HINTS, OllamaPriority.EDITOR_ACTION, language, selectedCode, callback);
     }
 
     /**
      * Optimize code for performance
      */
-    public void optimizeCode(String selectedCode, String language, RefactoringCallback callback) {
-        String prompt = String.format(
-                "Optimize this %s code for better performance:\n\n```%s\n%s\n```\n\nProvide the optimized version with explanation of changes.",
-                language, language, selectedCode);
-        performAnalysis(prompt, callback);
+    public OllamaRequestHandle optimizeCode(String selectedCode, String language, RefactoringCallback callback) {
+        return performAnalysis(AnalysisAction.OPTIMIZE, OllamaPriority.EDITOR_ACTION, language, selectedCode, callback);
+    }
+
+    /**
+     * Run any analysis action in the given scheduling class, e.g. one chosen by the user for a batch of files
+     */
+    public OllamaRequestHandle analyze(AnalysisAction action, OllamaPriority priority, String code, String language,
+                                       RefactoringCallback callback) {
+        return performAnalysis(action, priority, language, code, callback);
+    }
+
+    private OllamaRequestHandle performAnalysis(AnalysisAction action, OllamaPriority priority, String language,
+                                                String code, RefactoringCallback callback) {
+        OllamaSettingsService settings = OllamaSettingsService.getInstance();
+        ActionProfile profile = settings.getActionProfile(action);
+        String model = settings.getActionModel(action);
+        Map<String, Object> options = profile.toOptions();
+        PromptTemplate template = action.getTemplate(profile);
+        boolean retrieval = isRetrievalEnabled();
+        // Answers generated with other options are not the same answer
+        Map<String, Object> keyOptions = new LinkedHashMap<>(options);
+        if (retrieval) {
+            keyOptions.put("retrieval", true);
+        }
+        if (!template.getSource().equals(action.getDefaultTemplate())) {
+            keyOptions.put("template", template.getSource());
+        }
+        String cacheKey = ResponseCache.key(model, action, language, code, keyOptions);
+
+        String cached = responseCache.getFromMemory(cacheKey);
+        if (cached != null) {
+            deliverCached(cached, callback, null);
+            return OllamaRequestHandle.completed(new OllamaResponse(cached, 0, 0, 0));
+        }
+
+        // Start loading the model now so the weights are in memory by the time the disk lookup misses
+        ollamaClient.getModelLifecycle().warmUp(model, options, profile.getKeepAlive());
+
+        // The disk tier and the generation both run off the EDT; the handle follows whichever answers
+        OllamaRequestHandle handle = new OllamaRequestHandle();
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            OllamaStageEvent cacheEvent = OllamaStageEvent.start("Disk cache lookup", model);
+            String stored = responseCache.getFromDisk(cacheKey);
+            OllamaStageEvent.finish(cacheEvent, stored != null ? "hit" : "miss");
+            if (stored != null) {
+                deliverCached(stored, callback, handle);
+                handle.complete(new OllamaResponse(stored, 0, 0, 0));
+                return;
+            }
+            if (!handle.isCancelled()) {
+                String prompt = action.buildPrompt(template, language, code);
+                OllamaClient.OllamaStreamCallback streamCallback = createStreamCallback(cacheKey, callback);
+                OllamaStageEvent budgetEvent = OllamaStageEvent.start("Context budget", model);
+                PromptBudget budget = getBudget(model, profile);
+                OllamaStageEvent.finish(budgetEvent, budget.getPromptTokens() + " prompt tokens");
+                if (budget.fits(prompt)) {
+                    if (retrieval) {
+                        OllamaStageEvent retrievalEvent = OllamaStageEvent.start("Related code retrieval", model);
+                        int plainLength = prompt.length();
+                        prompt = addRelatedCode(action, template, language, code, prompt, budget);
+                        OllamaStageEvent.finish(retrievalEvent, (prompt.length() - plainLength) + " chars added");
+                    }
+                    handle.follow(ollamaClient.streamPromptFor(action.getId(), priority, model, prompt, options,
+                            profile.getKeepAlive(), streamCallback));
+                } else {
+                    // Ollama would silently drop the start of the prompt, so analyze the selection piece by piece
+                    int parallel = settings.maxParallelChunks;
+                    handle.follow(new ChunkedAnalysis(ollamaClient, action, priority, model, profile, language, budget,
+                            parallel).run(code, streamCallback));
+                }
+            }
+        });
+        return handle;
+    }
+
+    private boolean isRetrievalEnabled() {
+        return project != null && !project.isDisposed() && OllamaSettingsService.getInstance().retrievalEnabled;
+    }
+
+    /**
+     * Prompt with the project code most similar to code in front of it, in whatever room the budget leaves
+     */
+    private String addRelatedCode(AnalysisAction action, PromptTemplate template, String language, String code,
+                                  String prompt, PromptBudget budget) {
+        EmbeddingIndex index = EmbeddingIndex.getInstance(project);
+        index.start();
+        int topK = Math.max(1, OllamaSettingsService.getInstance().retrievalTopK);
+        long freeChars = (budget.getPromptTokens() - PromptBudget.estimateTokens(prompt)) * PromptBudget.CHARS_PER_TOKEN;
+        long maxChars = Math.min(freeChars, budget.getPromptTokens() * PromptBudget.CHARS_PER_TOKEN / RELATED_CODE_BUDGET_DIVISOR)
+                - (long) topK * SNIPPET_OVERHEAD_CHARS;
+        if (maxChars <= 0) {
+            return prompt;
+        }
+        return action.buildPrompt(template, language, code, index.findRelated(code, topK, (int) maxChars));
+    }
+
+    /**
+     * Budget for the context window the server will use for model: the profile's num_ctx if it sets one,
+     * otherwise what /api/show reports, assuming the server default if that does not answer
+     */
+    private PromptBudget getBudget(String model, ActionProfile profile) {
+        if (profile.numCtx > 0) {
+            return new PromptBudget(profile.numCtx);
+        }
+        long contextLength = OllamaPluginConstants.DEFAULT_NUM_CTX;
+        try {
+            OllamaModelInfo info = OllamaModelCatalog.getInstance()
+                    .getModelInfo(OllamaSettingsService.getInstance().getBaseUrl(), model)
+                    .get(MODEL_INFO_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            contextLength = info.getEffectiveContextLength(OllamaPluginConstants.DEFAULT_NUM_CTX);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // Keep the server default
+        }
+        return new PromptBudget(contextLength);
     }
 
-    private void performAnalysis(String prompt, RefactoringCallback callback) {
-        OllamaClient.OllamaResponseCallback wrappedCallback = new OllamaClient.OllamaResponseCallback() {
+    private OllamaClient.OllamaStreamCallback createStreamCallback(String cacheKey, RefactoringCallback callback) {
+        return new OllamaClient.OllamaStreamCallback() {
             @Override
-            public void onSuccess(OllamaResponse response) {
+            public void onToken(String token) {
                 if (callback != null) {
-                    callback.onSuccess(response.getResponse());
+                    callback.onToken(token);
+                }
+            }
+
+            @Override
+            public void onComplete(OllamaResponse response) {
+                String result = response.getResponse();
+                ApplicationManager.getApplication().executeOnPooledThread(() -> responseCache.put(cacheKey, result));
+                if (callback != null) {
+                    callback.onSuccess(result);
                 }
             }
 
@@ -86,9 +226,20 @@ public class CodeAnalysisService {
                 }
             }
         };
+    }
 
-        // Use llama2 as default model
-        ollamaClient.sendPrompt(settingsService.getBaseUrl(), "llama2", prompt, wrappedCallback);
+    /**
+     * Cache hits go through the EDT just like streamed results, so callers see one threading model
+     */
+    private void deliverCached(String result, RefactoringCallback callback, OllamaRequestHandle handle) {
+        if (callback == null) {
+            return;
+        }
+        ApplicationManager.getApplication().invokeLater(() -> {
+            if (handle == null || !handle.isCancelled()) {
+                callback.onSuccess(result);
+            }
+        });
     }
 
     /**
@@ -111,26 +262,41 @@ public class CodeAnalysisService {
     }
 
     /**
-     * Replace selected text with new code
+     * Track the selected range while a suggestion for it is generated, so the suggestion replaces what was
+     * analyzed even if the selection or the text around it changes meanwhile. Dispose it when done.
      */
-    public void replaceSelectedCode(Editor editor, String newCode) {
-        ApplicationManager.getApplication().invokeLater(() -> {
-            CommandProcessor.getInstance().executeCommand(
-                    editor.getProject(),
-                    () -> {
-                        Document document = editor.getDocument();
-                        int start = editor.getSelectionModel().getSelectionStart();
-                        int end = editor.getSelectionModel().getSelectionEnd();
-
-                        if (start < end) {
-                            ApplicationManager.getApplication().runWriteAction(() -> {
-                                document.replaceString(start, end, newCode);
-                            });
-                        }
-                    },
-                    "Replace Code with Ollama Suggestion",
-                    null);
-        });
+    public RangeMarker markSelection(Editor editor) {
+        return editor.getDocument().createRangeMarker(editor.getSelectionModel().getSelectionStart(),
+                editor.getSelectionModel().getSelectionEnd());
+    }
+
+    /**
+     * Replace the code in range with new code, changing only the lines that differ. Untouched lines keep their
+     * folding, markers and highlighting, and the whole change is one undoable command.
+     * Changes nothing and returns false if the range was deleted or no longer holds originalCode. Call on the EDT.
+     */
+    public boolean replaceCode(Editor editor, RangeMarker range, String originalCode, String newCode) {
+        Document document = editor.getDocument();
+        if (!range.isValid() || !document.getText(range.getTextRange()).equals(originalCode)) {
+            return false;
+        }
+        int start = range.getStartOffset();
+        List<LineDiff.Edit> edits = LineDiff.edits(originalCode, newCode);
+        if (edits.isEmpty()) {
+            return true;
+        }
+        CommandProcessor.getInstance().executeCommand(
+                editor.getProject(),
+                () -> ApplicationManager.getApplication().runWriteAction(() -> {
+                    // Back to front, so earlier offsets stay valid
+                    for (int i = edits.size() - 1; i >= 0; i--) {
+                        LineDiff.Edit edit = edits.get(i);
+                        document.replaceString(start + edit.start, start + edit.end, edit.text);
+                    }
+                }),
+                "Replace Code with Ollama Suggestion",
+                null);
+        return true;
     }
 
     /**
@@ -145,8 +311,13 @@ public class CodeAnalysisService {
      * Detect code language
      */
     public String detectLanguage(Editor editor) {
-        String fileName = editor.getVirtualFile() != null ? editor.getVirtualFile().getName() : "";
+        return detectLanguage(editor.getVirtualFile() != null ? editor.getVirtualFile().getName() : "");
+    }
 
+    /**
+     * Detect code language from a file name
+     */
+    public static String detectLanguage(String fileName) {
         if (fileName.endsWith(".java"))
             return "java";
         if (fileName.endsWith(".php"))
@@ -174,5 +345,11 @@ public class CodeAnalysisService {
         void onSuccess(String result);
 
         void onError(String error);
+
+        /**
+         * Called for each streamed token fragment before onSuccess delivers the full result
+         */
+        default void onToken(String token) {
+        }
     }
 }
@@ -0,0 +1,204 @@
+package com.ollama.plugin.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits source code into pieces of bounded size, cutting between top-level declarations or class members
+ * rather than in the middle of a function. Block structure comes from brace depth, skipping braces in strings
+ * and comments, and from indentation, so brace-less languages such as Python split sensibly too.
+ */
+public class CodeChunker {
+
+    private static final int NONE = 0;
+    private static final int MEMBER = 1;
+    private static final int TOP_LEVEL = 2;
+
+    private CodeChunker() {
+    }
+
+    /**
+     * Split code into chunks of at most maxChars characters; a single longer line is split as well
+     */
+    public static List<String> split(String code, int maxChars) {
+        List<String> chunks = new ArrayList<>();
+        if (code.length() <= maxChars) {
+            chunks.add(code);
+            return chunks;
+        }
+
+        String[] lines = code.split("\n", -1);
+        int[] boundary = findBoundaries(lines);
+        long[] offsets = new long[lines.length + 1];
+        for (int i = 0; i < lines.length; i++) {
+            offsets[i + 1] = offsets[i] + lines[i].length() + 1;
+        }
+
+        int start = 0;
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].length() > maxChars) {
+                // A single overlong line (minified code, data): close the chunk before it, then split it by characters
+                if (i > start) {
+                    addChunk(chunks, join(lines, start, i - 1));
+                }
+                for (int from = 0; from < lines[i].length(); from += maxChars) {
+                    chunks.add(lines[i].substring(from, Math.min(lines[i].length(), from + maxChars)));
+                }
+                start = i + 1;
+                continue;
+            }
+            while (offsets[i + 1] - offsets[start] > maxChars && i > start) {
+                int cut = chooseCut(boundary, offsets, start, i - 1, maxChars);
+                chunks.add(join(lines, start, cut));
+                start = cut + 1;
+            }
+        }
+        if (start < lines.length) {
+            addChunk(chunks, join(lines, start, lines.length - 1));
+        }
+        return chunks;
+    }
+
+    private static void addChunk(List<String> chunks, String chunk) {
+        if (!chunk.trim().isEmpty()) {
+            chunks.add(chunk);
+        }
+    }
+
+    /**
+     * Last line to keep in the chunk that starts at start: the latest top-level boundary if that keeps the
+     * chunk at least half full, otherwise the latest member boundary, otherwise the line before the overflow
+     */
+    private static int chooseCut(int[] boundary, long[] offsets, int start, int last, int maxChars) {
+        int member = -1;
+        for (int i = last; i >= start; i--) {
+            if (boundary[i] == TOP_LEVEL && offsets[i + 1] - offsets[start] >= maxChars / 2) {
+                return i;
+            }
+            if (member < 0 && boundary[i] >= MEMBER) {
+                member = i;
+            }
+        }
+        return member >= 0 ? member : last;
+    }
+
+    /**
+     * Classify the gap after each line: TOP_LEVEL if the next statement starts at the outermost level,
+     * MEMBER if it starts one level in (a method in a class), NONE inside a block
+     */
+    private static int[] findBoundaries(String[] lines) {
+        int[] depthAfter = new int[lines.length];
+        int depth = 0;
+        boolean[] inComment = {false};
+        for (int i = 0; i < lines.length; i++) {
+            depth += braceDelta(lines[i], inComment);
+            depthAfter[i] = depth;
+        }
+
+        int minDepth = 0;
+        int maxDepth = 0;
+        int minIndent = Integer.MAX_VALUE;
+        for (int i = 0; i < lines.length; i++) {
+            minDepth = Math.min(minDepth, depthAfter[i]);
+            maxDepth = Math.max(maxDepth, depthAfter[i]);
+            if (!lines[i].trim().isEmpty()) {
+                minIndent = Math.min(minIndent, indentOf(lines[i]));
+            }
+        }
+        // Without braces the level below the top is a function body, not a class member
+        int memberIndent = maxDepth > minDepth ? Integer.MAX_VALUE : -1;
+        for (String line : lines) {
+            int indent = indentOf(line);
+            if (memberIndent >= 0 && !line.trim().isEmpty() && indent > minIndent) {
+                memberIndent = Math.min(memberIndent, indent);
+            }
+        }
+
+        int[] boundary = new int[lines.length];
+        int next = -1;
+        for (int i = lines.length - 1; i >= 0; i--) {
+            // next is the first non-blank line after line i
+            // Never cut between a declaration and the comment or annotation in front of it
+            if (next >= 0 && !isPreamble(lines[i])) {
+                int indent = indentOf(lines[next]);
+                if (depthAfter[i] == minDepth && indent <= minIndent) {
+                    boundary[i] = TOP_LEVEL;
+                } else if (depthAfter[i] <= minDepth + 1 && indent <= memberIndent) {
+                    boundary[i] = MEMBER;
+                }
+            }
+            if (!lines[i].trim().isEmpty()) {
+                next = i;
+            }
+        }
+        return boundary;
+    }
+
+    /**
+     * Net change in brace depth over one line, ignoring braces inside strings and comments
+     */
+    private static int braceDelta(String line, boolean[] inComment) {
+        int delta = 0;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            char next = i + 1 < line.length() ? line.charAt(i + 1) : 0;
+            if (inComment[0]) {
+                if (c == '*' && next == '/') {
+                    inComment[0] = false;
+                    i++;
+                }
+            } else if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '/' && next == '*') {
+                inComment[0] = true;
+                i++;
+            } else if ((c == '/' && next == '/') || c == '#') {
+                break;
+            } else if (c == '"' || c == '\'' || c == '`') {
+                quote = c;
+            } else if (c == '{') {
+                delta++;
+            } else if (c == '}') {
+                delta--;
+            }
+        }
+        return delta;
+    }
+
+    private static boolean isPreamble(String line) {
+        String trimmed = line.trim();
+        return trimmed.startsWith("@") || trimmed.startsWith("/*") || trimmed.startsWith("*")
+                || trimmed.startsWith("//") || trimmed.startsWith("#");
+    }
+
+    private static int indentOf(String line) {
+        int indent = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == ' ') {
+                indent++;
+            } else if (c == '\t') {
+                indent += 4;
+            } else {
+                break;
+            }
+        }
+        return indent;
+    }
+
+    private static String join(String[] lines, int from, int to) {
+        StringBuilder text = new StringBuilder();
+        for (int i = from; i <= to; i++) {
+            text.append(lines[i]);
+            if (i < to) {
+                text.append('\n');
+            }
+        }
+        return text.toString();
+    }
+}
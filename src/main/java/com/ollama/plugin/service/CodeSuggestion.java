@@ -0,0 +1,119 @@
+package com.ollama.plugin.service;
+
+import java.util.List;
+
+/**
+ * The code part of a model answer. Answers usually wrap the code in a fenced block between explanations;
+ * only that block should ever reach the document.
+ */
+public class CodeSuggestion {
+
+    private static final String FENCE = "```";
+
+    private final String code;
+    private final String explanation;
+
+    private CodeSuggestion(String code, String explanation) {
+        this.code = code;
+        this.explanation = explanation;
+    }
+
+    /**
+     * Take the longest fenced code block of response as the code and the rest as explanation;
+     * an answer without a fence is taken to be all code
+     */
+    public static CodeSuggestion parse(String response) {
+        int bestStart = -1;
+        int bestEnd = -1;
+        int blockStart = -1;
+        int bestFenceStart = -1;
+        int bestFenceEnd = -1;
+        int fenceStart = -1;
+        int index = 0;
+        while ((index = response.indexOf(FENCE, index)) >= 0) {
+            // A fence must start a line
+            if (index > 0 && response.charAt(index - 1) != '\n') {
+                index += FENCE.length();
+                continue;
+            }
+            int lineEnd = response.indexOf('\n', index);
+            if (lineEnd < 0) {
+                lineEnd = response.length();
+            }
+            if (blockStart < 0) {
+                fenceStart = index;
+                blockStart = Math.min(lineEnd + 1, response.length());
+            } else {
+                if (index - blockStart > bestEnd - bestStart) {
+                    bestStart = blockStart;
+                    bestEnd = index;
+                    bestFenceStart = fenceStart;
+                    bestFenceEnd = lineEnd;
+                }
+                blockStart = -1;
+            }
+            index = lineEnd;
+        }
+
+        if (bestStart < 0) {
+            return new CodeSuggestion(response.trim(), "");
+        }
+        String explanation = (response.substring(0, bestFenceStart).trim() + "\n\n"
+                + response.substring(bestFenceEnd).trim()).trim();
+        return new CodeSuggestion(response.substring(bestStart, bestEnd), explanation);
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getExplanation() {
+        return explanation;
+    }
+
+    /**
+     * Code shifted to the indentation of original, which models tend to drop when the selection was nested,
+     * and ending with a line break exactly when original does
+     */
+    public String fitTo(String original) {
+        String fitted = code;
+        int shift = commonIndent(original) - commonIndent(code);
+        if (shift > 0) {
+            // A selection that starts at the first token of a line has that line's indentation outside it
+            boolean padFirst = original.startsWith(" ") || original.startsWith("\t");
+            String padding = " ".repeat(shift);
+            StringBuilder shifted = new StringBuilder();
+            boolean first = true;
+            for (String line : LineDiff.lines(code)) {
+                shifted.append(line.trim().isEmpty() || (first && !padFirst) ? line : padding + line);
+                first = false;
+            }
+            fitted = shifted.toString();
+        }
+        boolean originalEndsWithNewline = original.endsWith("\n");
+        while (fitted.endsWith("\n")) {
+            fitted = fitted.substring(0, fitted.length() - 1);
+        }
+        return originalEndsWithNewline ? fitted + "\n" : fitted;
+    }
+
+    /**
+     * Smallest indentation in spaces of the non-blank lines after the first, or of the first if it is the only one
+     */
+    private static int commonIndent(String text) {
+        List<String> lines = LineDiff.lines(text);
+        int indent = Integer.MAX_VALUE;
+        for (int i = lines.size() > 1 ? 1 : 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            int spaces = 0;
+            while (spaces < line.length() && line.charAt(spaces) == ' ') {
+                spaces++;
+            }
+            indent = Math.min(indent, spaces);
+        }
+        return indent == Integer.MAX_VALUE ? 0 : indent;
+    }
+}
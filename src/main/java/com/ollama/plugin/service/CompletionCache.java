@@ -0,0 +1,54 @@
+package com.ollama.plugin.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU of inline completions keyed by the text around the caret. Only the end of the prefix and the start
+ * of the suffix are part of the key, so edits far from the caret do not invalidate an entry. A lookup also
+ * tries shorter prefixes: after typing the first characters of a cached completion, the rest is still a hit.
+ */
+class CompletionCache {
+
+    static final int KEY_PREFIX_CHARS = 1000;
+    static final int KEY_SUFFIX_CHARS = 200;
+    // How far back a lookup searches for a completion the user has started to type
+    static final int MAX_TYPED_THROUGH = 32;
+    private static final int MAX_ENTRIES = 256;
+
+    private final Map<String, String> entries = new LinkedHashMap<String, String>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    synchronized void put(String model, String prefix, String suffix, String completion) {
+        entries.put(key(model, prefix, suffix), completion);
+    }
+
+    /**
+     * Completion for the caret context, or the unfinished rest of one whose beginning was typed since
+     */
+    synchronized String find(String model, String prefix, String suffix) {
+        int limit = Math.min(MAX_TYPED_THROUGH, prefix.length());
+        for (int typed = 0; typed <= limit; typed++) {
+            String completion = entries.get(key(model, prefix.substring(0, prefix.length() - typed), suffix));
+            if (completion != null && completion.length() > typed
+                    && completion.regionMatches(0, prefix, prefix.length() - typed, typed)) {
+                return completion.substring(typed);
+            }
+        }
+        return null;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    private static String key(String model, String prefix, String suffix) {
+        String prefixTail = prefix.substring(Math.max(0, prefix.length() - KEY_PREFIX_CHARS));
+        String suffixHead = suffix.substring(0, Math.min(suffix.length(), KEY_SUFFIX_CHARS));
+        return model + '\u0000' + prefixTail + '\u0000' + suffixHead;
+    }
+}
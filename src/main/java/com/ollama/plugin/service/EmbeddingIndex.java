@@ -0,0 +1,755 @@
+package com.ollama.plugin.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.ollama.plugin.client.Histogram;
+import com.ollama.plugin.client.OllamaClient;
+import com.ollama.plugin.settings.OllamaSettingsService;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * Embedding index of the project's source files, used to put related code next to a selection in analysis
+ * prompts. Files are split with CodeChunker and embedded through /api/embed; the vectors live in a
+ * memory-mapped VectorStore and an LshIndex finds candidates for a query, which are then ranked exactly.
+ * Only slot metadata (file, range, hashes) is kept on the heap; snippet text is read from the file when a
+ * query returns it. The first start indexes the whole project in a background task, after which VFS events
+ * re-embed changed files only, and files whose content hash did not change are never embedded again.
+ */
+@Service(Service.Level.PROJECT)
+public final class EmbeddingIndex implements Disposable {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final int CHUNK_CHARS = 1500;
+    private static final int EMBED_BATCH = 16;
+    private static final long MAX_FILE_BYTES = 256 * 1024;
+    // Below this many vectors an exact scan is as fast as hashing the query
+    private static final int EXACT_SEARCH_LIMIT = 2048;
+    private static final int CANDIDATES_PER_RESULT = 16;
+    private static final int UPDATE_DELAY_SECONDS = 2;
+    private static final int EMBED_TIMEOUT_SECONDS = 60;
+    private static final int QUERY_TIMEOUT_SECONDS = 5;
+
+    private final Project project;
+    private final Path directory;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final Set<String> pendingPaths = new LinkedHashSet<>();
+    private final AtomicBoolean updateScheduled = new AtomicBoolean();
+    private ScheduledExecutorService updater;
+    // Set by dispose(); nothing may open the vector store again after that
+    private volatile boolean disposed;
+    // Progress of the running full build, cancelled by dispose()
+    private volatile ProgressIndicator buildIndicator;
+
+    // Index state, guarded by this
+    private String model;
+    private VectorStore store;
+    private LshIndex lsh;
+    private final Map<String, FileEntry> files = new HashMap<>();
+    private final List<Chunk> chunksBySlot = new ArrayList<>();
+    private final BitSet usedSlots = new BitSet();
+
+    private final Histogram queryLatency = new Histogram();
+    private volatile long lastBuildMillis;
+    private volatile int lastBuildEmbedded;
+    private volatile String lastError;
+
+    public EmbeddingIndex(Project project) {
+        this(project, Paths.get(PathManager.getSystemPath(), "ollama", "embeddings", project.getLocationHash()));
+    }
+
+    EmbeddingIndex(Project project, Path directory) {
+        this.project = project;
+        this.directory = directory;
+    }
+
+    public static EmbeddingIndex getInstance(Project project) {
+        return project.getService(EmbeddingIndex.class);
+    }
+
+    /**
+     * Load the saved index, bring it up to date in the background and follow file changes from then on
+     */
+    public void start() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        updater = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Ollama-Embedding-Index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        project.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                fileChanged(events);
+            }
+        });
+        updater.execute(() -> {
+            load();
+            if (disposed) {
+                return;
+            }
+            new Task.Backgroundable(project, "Indexing project for Ollama", true) {
+                @Override
+                public void run(@NotNull ProgressIndicator indicator) {
+                    buildIndicator = indicator;
+                    try {
+                        if (!disposed) {
+                            build(indicator);
+                        }
+                    } finally {
+                        buildIndicator = null;
+                    }
+                }
+            }.queue();
+        });
+    }
+
+    public boolean isStarted() {
+        return started.get();
+    }
+
+    private String getModel() {
+        return OllamaSettingsService.getInstance().embeddingModel.trim();
+    }
+
+    /**
+     * Embed every source file of the project whose content changed since it was last indexed
+     */
+    private void build(ProgressIndicator indicator) {
+        long startNanos = System.nanoTime();
+        indicator.setText("Collecting files");
+        List<VirtualFile> sources = ApplicationManager.getApplication().runReadAction(
+                (Computable<List<VirtualFile>>) this::collectFiles);
+
+        Set<String> present = new LinkedHashSet<>();
+        for (VirtualFile file : sources) {
+            present.add(file.getPath());
+        }
+        synchronized (this) {
+            for (String path : new ArrayList<>(files.keySet())) {
+                if (!present.contains(path)) {
+                    removeFile(path);
+                }
+            }
+        }
+
+        indicator.setIndeterminate(false);
+        int embedded = 0;
+        lastError = null;
+        try {
+            for (int i = 0; i < sources.size() && !indicator.isCanceled() && !disposed; i++) {
+                VirtualFile file = sources.get(i);
+                indicator.setText2(file.getName());
+                indicator.setFraction((double) i / sources.size());
+                if (indexFile(file)) {
+                    embedded++;
+                }
+            }
+        } catch (IOException e) {
+            // The server or the embedding model is unavailable; what was indexed so far is kept
+            lastError = e.getMessage();
+        } finally {
+            save();
+            lastBuildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            lastBuildEmbedded = embedded;
+        }
+    }
+
+    private List<VirtualFile> collectFiles() {
+        List<VirtualFile> sources = new ArrayList<>();
+        ProjectFileIndex.getInstance(project).iterateContent(file -> {
+            if (isIndexable(file)) {
+                sources.add(file);
+            }
+            return true;
+        });
+        return sources;
+    }
+
+    private boolean isIndexable(VirtualFile file) {
+        return file.isValid() && !file.isDirectory() && file.getLength() <= MAX_FILE_BYTES
+                && !"unknown".equals(CodeAnalysisService.detectLanguage(file.getName()));
+    }
+
+    /**
+     * Re-embed file if its content changed; returns whether it was embedded
+     */
+    private boolean indexFile(VirtualFile file) throws IOException {
+        if (disposed) {
+            return false;
+        }
+        String path = file.getPath();
+        String text = ApplicationManager.getApplication().runReadAction((Computable<String>) () -> loadText(file));
+        if (text == null || text.trim().isEmpty()) {
+            synchronized (this) {
+                removeFile(path);
+            }
+            return false;
+        }
+        String model = getModel();
+        long hash = hash(text);
+        synchronized (this) {
+            FileEntry entry = files.get(path);
+            if (entry != null && entry.hash == hash && model.equals(this.model)) {
+                return false;
+            }
+        }
+
+        List<Chunk> chunks = split(path, text);
+        List<float[]> vectors = new ArrayList<>();
+        for (int from = 0; from < chunks.size(); from += EMBED_BATCH) {
+            List<String> inputs = new ArrayList<>();
+            for (Chunk chunk : chunks.subList(from, Math.min(chunks.size(), from + EMBED_BATCH))) {
+                // The path tells the model which class or module the code belongs to
+                inputs.add(path + "\n" + text.substring(chunk.start, chunk.end));
+            }
+            vectors.addAll(embed(model, inputs, EMBED_TIMEOUT_SECONDS));
+        }
+        return putFile(path, hash, model, chunks, vectors);
+    }
+
+    /**
+     * Replace the chunks of path with the given ones and their vectors; false if the index was disposed meanwhile
+     */
+    synchronized boolean putFile(String path, long hash, String model, List<Chunk> chunks, List<float[]> vectors)
+            throws IOException {
+        if (disposed) {
+            return false;
+        }
+        prepare(model, vectors.get(0).length);
+        removeFile(path);
+        FileEntry entry = new FileEntry(hash);
+        for (int i = 0; i < chunks.size(); i++) {
+            int slot = usedSlots.nextClearBit(0);
+            store.put(slot, vectors.get(i));
+            lsh.add(slot, VectorStore.normalize(vectors.get(i)));
+            usedSlots.set(slot);
+            setChunk(slot, chunks.get(i));
+            entry.slots.add(slot);
+        }
+        files.put(path, entry);
+        return true;
+    }
+
+    /**
+     * Chunks of text with their character ranges; CodeChunker returns consecutive pieces of the text
+     */
+    private static List<Chunk> split(String path, String text) {
+        List<Chunk> chunks = new ArrayList<>();
+        int from = 0;
+        for (String piece : CodeChunker.split(text, CHUNK_CHARS)) {
+            int start = text.indexOf(piece, from);
+            if (start < 0) {
+                continue;
+            }
+            if (!piece.trim().isEmpty()) {
+                chunks.add(new Chunk(path, start, start + piece.length()));
+            }
+            from = start + piece.length();
+        }
+        return chunks;
+    }
+
+    private List<float[]> embed(String model, List<String> inputs, int timeoutSeconds) throws IOException {
+        try {
+            return OllamaClient.getInstance()
+                    .fetchEmbeddings(OllamaSettingsService.getInstance().getBaseUrl(), model, inputs)
+                    .get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null && e.getCause().getCause() != null ? e.getCause().getCause() : e.getCause();
+            throw new IOException(cause != null ? cause.getMessage() : "Embedding failed", cause);
+        } catch (TimeoutException e) {
+            throw new IOException("Embedding timed out", e);
+        }
+    }
+
+    /**
+     * Make sure the store holds vectors of model and dimension, starting over when either changed
+     */
+    private void prepare(String model, int dimension) throws IOException {
+        if (disposed) {
+            throw new IOException("The embedding index is disposed");
+        }
+        if (store != null && model.equals(this.model) && store.getDimension() == dimension) {
+            return;
+        }
+        clear();
+        this.model = model;
+        store = new VectorStore(directory.resolve("vectors.bin"), dimension);
+        lsh = new LshIndex(dimension);
+    }
+
+    private void clear() {
+        closeStore();
+        files.clear();
+        chunksBySlot.clear();
+        usedSlots.clear();
+        lsh = null;
+        model = null;
+    }
+
+    private void setChunk(int slot, Chunk chunk) {
+        while (chunksBySlot.size() <= slot) {
+            chunksBySlot.add(null);
+        }
+        chunksBySlot.set(slot, chunk);
+    }
+
+    private void removeFile(String path) {
+        FileEntry entry = files.remove(path);
+        if (entry == null) {
+            return;
+        }
+        for (int slot : entry.slots) {
+            usedSlots.clear(slot);
+            chunksBySlot.set(slot, null);
+            lsh.remove(slot);
+        }
+    }
+
+    /**
+     * Queue the paths an event batch touched. A deleted, moved or renamed directory is queued by its old path,
+     * which update() removes together with everything indexed below it; a moved or renamed directory also
+     * queues the files now inside it.
+     */
+    /**
+     * Remove path and, if it was a directory, every file indexed below it
+     */
+    private void removeTree(String path) {
+        String prefix = path.endsWith("/") ? path : path + "/";
+        for (String indexed : new ArrayList<>(files.keySet())) {
+            if (indexed.equals(path) || indexed.startsWith(prefix)) {
+                removeFile(indexed);
+            }
+        }
+    }
+
+    private void fileChanged(List<? extends VFileEvent> events) {
+        ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+        List<String> paths = new ArrayList<>();
+        for (VFileEvent event : events) {
+            if (event instanceof VFileDeleteEvent) {
+                paths.add(event.getPath());
+                continue;
+            }
+            if (event instanceof VFileMoveEvent) {
+                paths.add(((VFileMoveEvent) event).getOldPath());
+            } else if (event instanceof VFilePropertyChangeEvent && ((VFilePropertyChangeEvent) event).isRename()) {
+                paths.add(((VFilePropertyChangeEvent) event).getOldPath());
+            }
+            VirtualFile file = event.getFile();
+            if (file == null || !file.isValid() || !fileIndex.isInContent(file)) {
+                continue;
+            }
+            if (file.isDirectory()) {
+                VfsUtilCore.iterateChildrenRecursively(file,
+                        child -> !child.isDirectory() || !fileIndex.isExcluded(child),
+                        child -> {
+                            if (!child.isDirectory()) {
+                                paths.add(child.getPath());
+                            }
+                            return true;
+                        });
+            } else {
+                paths.add(file.getPath());
+            }
+        }
+        if (paths.isEmpty()) {
+            return;
+        }
+        synchronized (pendingPaths) {
+            pendingPaths.addAll(paths);
+        }
+        // Changes arriving within the delay, such as a save of several files, are embedded together
+        if (updateScheduled.compareAndSet(false, true)) {
+            updater.schedule(this::update, UPDATE_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private void update() {
+        updateScheduled.set(false);
+        List<String> paths;
+        synchronized (pendingPaths) {
+            paths = new ArrayList<>(pendingPaths);
+            pendingPaths.clear();
+        }
+        try {
+            for (String path : paths) {
+                VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
+                if (file == null || !isIndexable(file)) {
+                    synchronized (this) {
+                        removeTree(path);
+                    }
+                } else {
+                    indexFile(file);
+                }
+            }
+        } catch (IOException e) {
+            // Unavailable server: the next change or the next start picks the files up again
+            lastError = e.getMessage();
+        }
+        save();
+    }
+
+    /**
+     * Snippets most similar to query, best first, at most topK and maxChars characters in total.
+     * Snippets contained in the query itself, such as the selection's own lines, are skipped.
+     * Blocks for the query's embedding, so call it off the EDT.
+     */
+    public List<Snippet> findRelated(String query, int topK, int maxChars) {
+        List<Snippet> snippets = new ArrayList<>();
+        String model = getModel();
+        synchronized (this) {
+            if (store == null || usedSlots.isEmpty() || !model.equals(this.model)) {
+                return snippets;
+            }
+        }
+        long startNanos = System.nanoTime();
+        float[] vector;
+        try {
+            vector = VectorStore.normalize(embed(model, List.of(query), QUERY_TIMEOUT_SECONDS).get(0));
+        } catch (IOException e) {
+            lastError = e.getMessage();
+            return snippets;
+        }
+
+        // Search for more than topK, since snippets inside the query are dropped below
+        List<Chunk> nearest = search(vector, topK * 2);
+        String trimmedQuery = query.trim();
+        int chars = 0;
+        for (Chunk chunk : nearest) {
+            if (snippets.size() >= topK) {
+                break;
+            }
+            Snippet snippet = readSnippet(chunk);
+            if (snippet == null) {
+                continue;
+            }
+            String text = snippet.getText().trim();
+            if (trimmedQuery.contains(text) || text.contains(trimmedQuery)) {
+                continue;
+            }
+            if (chars + snippet.getText().length() > maxChars) {
+                continue;
+            }
+            chars += snippet.getText().length();
+            snippets.add(snippet);
+        }
+        queryLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+        return snippets;
+    }
+
+    synchronized List<Chunk> search(float[] query, int count) {
+        if (store == null || store.getDimension() != query.length) {
+            return new ArrayList<>();
+        }
+        BitSet candidates = usedSlots.cardinality() <= EXACT_SEARCH_LIMIT
+                ? usedSlots
+                : lsh.candidates(query, count * CANDIDATES_PER_RESULT);
+        PriorityQueue<float[]> best = new PriorityQueue<>(Comparator.comparingDouble(entry -> entry[0]));
+        for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+            if (!usedSlots.get(slot)) {
+                continue;
+            }
+            best.add(new float[]{store.dot(slot, query), slot});
+            if (best.size() > count) {
+                best.poll();
+            }
+        }
+        List<Chunk> nearest = new ArrayList<>();
+        while (!best.isEmpty()) {
+            nearest.add(0, chunksBySlot.get((int) best.poll()[1]));
+        }
+        return nearest;
+    }
+
+    private Snippet readSnippet(Chunk chunk) {
+        VirtualFile file = LocalFileSystem.getInstance().findFileByPath(chunk.path);
+        String text = file == null || !file.isValid() ? null
+                : ApplicationManager.getApplication().runReadAction((Computable<String>) () -> loadText(file));
+        if (text == null) {
+            return null;
+        }
+        // The file may have changed since it was indexed; its update is then already queued
+        int start = Math.min(chunk.start, text.length());
+        int end = Math.min(chunk.end, text.length());
+        if (start >= end) {
+            return null;
+        }
+        int line = 1;
+        for (int i = 0; i < start; i++) {
+            if (text.charAt(i) == '\n') {
+                line++;
+            }
+        }
+        String basePath = project.getBasePath();
+        String path = basePath != null && chunk.path.startsWith(basePath + "/")
+                ? chunk.path.substring(basePath.length() + 1) : chunk.path;
+        return new Snippet(path, line, text.substring(start, end));
+    }
+
+    private static String loadText(VirtualFile file) {
+        try {
+            return VfsUtilCore.loadText(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static long hash(String text) {
+        CRC32 crc = new CRC32();
+        crc.update(text.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue() << 32 | (text.length() & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Read the slot metadata saved by the last session and reopen its vector file
+     */
+    synchronized void load() {
+        Path file = directory.resolve("chunks.bin");
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return;
+            }
+            String savedModel = in.readUTF();
+            int dimension = in.readInt();
+            prepare(savedModel, dimension);
+            int fileCount = in.readInt();
+            for (int f = 0; f < fileCount; f++) {
+                String path = in.readUTF();
+                FileEntry entry = new FileEntry(in.readLong());
+                int chunkCount = in.readInt();
+                for (int c = 0; c < chunkCount; c++) {
+                    int slot = in.readInt();
+                    Chunk chunk = new Chunk(path, in.readInt(), in.readInt());
+                    int[] hashes = new int[LshIndex.TABLES];
+                    for (int t = 0; t < hashes.length; t++) {
+                        hashes[t] = in.readInt();
+                    }
+                    if (slot < store.getCapacity()) {
+                        lsh.add(slot, hashes);
+                        usedSlots.set(slot);
+                        setChunk(slot, chunk);
+                        entry.slots.add(slot);
+                    }
+                }
+                files.put(path, entry);
+            }
+        } catch (IOException e) {
+            // A damaged index is rebuilt from scratch
+            clear();
+        }
+    }
+
+    /**
+     * Write the slot metadata next to the vector file, replacing the previous copy atomically
+     */
+    synchronized void save() {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.flush();
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "chunks", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(model);
+                out.writeInt(store.getDimension());
+                out.writeInt(files.size());
+                for (Map.Entry<String, FileEntry> file : files.entrySet()) {
+                    out.writeUTF(file.getKey());
+                    out.writeLong(file.getValue().hash);
+                    out.writeInt(file.getValue().slots.size());
+                    for (int slot : file.getValue().slots) {
+                        Chunk chunk = chunksBySlot.get(slot);
+                        out.writeInt(slot);
+                        out.writeInt(chunk.start);
+                        out.writeInt(chunk.end);
+                        for (int hash : lsh.getHashes(slot)) {
+                            out.writeInt(hash);
+                        }
+                    }
+                }
+            }
+            Files.move(temp, directory.resolve("chunks.bin"), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            lastError = e.getMessage();
+        }
+    }
+
+    private void closeStore() {
+        if (store != null) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                // nothing left to do with it
+            }
+            store = null;
+        }
+    }
+
+    public synchronized int getFileCount() {
+        return files.size();
+    }
+
+    public synchronized int getChunkCount() {
+        return usedSlots.cardinality();
+    }
+
+    /**
+     * Bytes of the memory-mapped vector file
+     */
+    public synchronized long getSizeBytes() {
+        return store != null ? store.getSizeBytes() : 0;
+    }
+
+    /**
+     * Wall time of the last full pass over the project, in milliseconds
+     */
+    public long getLastBuildMillis() {
+        return lastBuildMillis;
+    }
+
+    /**
+     * Files the last full pass had to embed because they were new or changed
+     */
+    public int getLastBuildEmbedded() {
+        return lastBuildEmbedded;
+    }
+
+    /**
+     * Microseconds per query, embedding the query included
+     */
+    public Histogram getQueryLatency() {
+        return queryLatency;
+    }
+
+    /**
+     * Why the last embedding request failed, or null if it did not
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        ProgressIndicator indicator = buildIndicator;
+        if (indicator != null) {
+            indicator.cancel();
+        }
+        if (updater != null) {
+            updater.shutdownNow();
+        }
+        synchronized (this) {
+            save();
+            closeStore();
+        }
+    }
+
+    /**
+     * Code related to a query: a range of a project file and its text
+     */
+    public static class Snippet {
+        private final String path;
+        private final int line;
+        private final String text;
+
+        Snippet(String path, int line, String text) {
+            this.path = path;
+            this.line = line;
+            this.text = text;
+        }
+
+        /**
+         * Path relative to the project directory when the file is inside it
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * One-based line the snippet starts at
+         */
+        public int getLine() {
+            return line;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+
+    static class Chunk {
+        final String path;
+        final int start;
+        final int end;
+
+        Chunk(String path, int start, int end) {
+            this.path = path;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private static class FileEntry {
+        final long hash;
+        final List<Integer> slots = new ArrayList<>();
+
+        FileEntry(long hash) {
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.ollama.plugin.service;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import com.ollama.plugin.settings.OllamaSettingsService;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Brings the project's embedding index up to date when the project opens, if retrieval is enabled
+ */
+public class EmbeddingIndexStartup implements StartupActivity.DumbAware {
+
+    @Override
+    public void runActivity(@NotNull Project project) {
+        if (OllamaSettingsService.getInstance().retrievalEnabled) {
+            EmbeddingIndex.getInstance(project).start();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.ollama.plugin.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Java Flight Recorder recording of the plugin's Ollama events on top of the JDK's default profile, so a
+ * "the plugin is slow" report can come with a .jfr file that shows where the time went: queueing, connecting,
+ * model load, prompt evaluation, generation or rendering. The Ollama events are only created while this
+ * recording runs. Older data is dropped after MAX_AGE so a forgotten recording does not grow without bound.
+ */
+@Service
+public final class FlightRecording implements Disposable {
+
+    private static final Duration MAX_AGE = Duration.ofMinutes(30);
+    private static final String[] OLLAMA_EVENTS = {
+        "com.ollama.Request", "com.ollama.Http", "com.ollama.FirstToken", "com.ollama.Stage"
+    };
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private Recording recording;
+
+    public static FlightRecording getInstance() {
+        return ApplicationManager.getApplication().getService(FlightRecording.class);
+    }
+
+    public synchronized boolean isRecording() {
+        return recording != null;
+    }
+
+    public synchronized void start() throws IOException, ParseException {
+        if (recording != null) {
+            return;
+        }
+        Recording started = new Recording(Configuration.getConfiguration("default"));
+        started.setName("Ollama");
+        started.setToDisk(true);
+        started.setMaxAge(MAX_AGE);
+        for (String event : OLLAMA_EVENTS) {
+            started.enable(event).withoutThreshold();
+        }
+        started.start();
+        recording = started;
+    }
+
+    /**
+     * Stop the recording and write it to a .jfr file in the IDE log directory, returning that file
+     */
+    public synchronized Path dump() throws IOException {
+        if (recording == null) {
+            throw new IllegalStateException("No flight recording is running");
+        }
+        Path directory = Paths.get(PathManager.getLogPath());
+        Files.createDirectories(directory);
+        Path file = directory.resolve("ollama-" + LocalDateTime.now().format(FILE_TIME) + ".jfr");
+        try {
+            recording.stop();
+            recording.dump(file);
+        } finally {
+            recording.close();
+            recording = null;
+        }
+        return file;
+    }
+
+    @Override
+    public synchronized void dispose() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.ollama.plugin.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.command.CommandProcessor;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.Inlay;
+import com.intellij.openapi.editor.event.CaretEvent;
+import com.intellij.openapi.editor.event.CaretListener;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.editor.event.EditorEventMulticaster;
+import com.intellij.openapi.util.Disposer;
+import com.ollama.plugin.client.Histogram;
+import com.ollama.plugin.client.OllamaClient;
+import com.ollama.plugin.client.OllamaRequestHandle;
+import com.ollama.plugin.client.OllamaResponse;
+import com.ollama.plugin.settings.OllamaSettingsService;
+import com.ollama.plugin.ui.InlineCompletionRenderer;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Inline code completion as the user types. A request starts once typing pauses for the configured delay
+ * and is cancelled by the next keystroke, so at most one completion is generated at a time. The text around
+ * the caret is sent as prompt and suffix for fill-in-the-middle, the answer streams in as gray inlays,
+ * and Tab inserts it. Typing the suggested characters keeps the rest of the suggestion, and completed
+ * suggestions are cached by caret context so retyping or undoing back to it needs no request.
+ * Listener callbacks and all state below run on the EDT.
+ */
+@Service
+public final class InlineCompletionService implements Disposable {
+
+    // Context sent around the caret
+    private static final int PREFIX_CHARS = 4000;
+    private static final int SUFFIX_CHARS = 1000;
+    private static final double TEMPERATURE = 0.2;
+
+    private final OllamaClient ollamaClient;
+    private final OllamaSettingsService settings;
+    private final CompletionCache cache = new CompletionCache();
+    private final Timer debounceTimer;
+
+    private final Histogram displayLatency = new Histogram();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    // Keystrokes that matched the shown suggestion; neither a cache lookup nor a request
+    private final AtomicLong typedThrough = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+
+    private boolean initialized;
+    private boolean applying;
+    private Editor pendingEditor;
+    private long keystrokeNanos;
+    private boolean latencyRecorded;
+    private OllamaRequestHandle inFlight;
+    private int requestOffset = -1;
+    private long generation;
+    private Suggestion shown;
+
+    public InlineCompletionService() {
+        this(OllamaClient.getInstance(), OllamaSettingsService.getInstance());
+    }
+
+    public InlineCompletionService(OllamaClient ollamaClient, OllamaSettingsService settings) {
+        this.ollamaClient = ollamaClient;
+        this.settings = settings;
+        this.debounceTimer = new Timer(settings.completionDebounceMillis, e -> requestCompletion());
+        this.debounceTimer.setRepeats(false);
+    }
+
+    public static InlineCompletionService getInstance() {
+        return ApplicationManager.getApplication().getService(InlineCompletionService.class);
+    }
+
+    /**
+     * Start listening to every editor; called once when the first project opens
+     */
+    public void initialize() {
+        if (initialized) {
+            return;
+        }
+        initialized = true;
+        EditorEventMulticaster multicaster = EditorFactory.getInstance().getEventMulticaster();
+        multicaster.addDocumentListener(new DocumentListener() {
+            @Override
+            public void documentChanged(@NotNull DocumentEvent event) {
+                onDocumentChanged(event);
+            }
+        }, this);
+        multicaster.addCaretListener(new CaretListener() {
+            @Override
+            public void caretPositionChanged(@NotNull CaretEvent event) {
+                onCaretMoved(event.getEditor());
+            }
+        }, this);
+    }
+
+    private void onDocumentChanged(DocumentEvent event) {
+        if (applying) {
+            return;
+        }
+        if (!settings.inlineCompletionEnabled) {
+            dismiss();
+            return;
+        }
+        Editor editor = findFocusedEditor(event.getDocument());
+        if (editor == null) {
+            return;
+        }
+        if (typeThrough(editor, event)) {
+            return;
+        }
+
+        dismiss();
+        pendingEditor = editor;
+        keystrokeNanos = System.nanoTime();
+        latencyRecorded = false;
+        debounceTimer.setInitialDelay(Math.max(0, settings.completionDebounceMillis));
+        debounceTimer.restart();
+    }
+
+    /**
+     * Characters typed that match the start of the shown suggestion shorten it instead of starting a new request
+     */
+    private boolean typeThrough(Editor editor, DocumentEvent event) {
+        if (shown == null || shown.editor != editor || event.getOldFragment().length() != 0
+                || event.getOffset() != shown.offset) {
+            return false;
+        }
+        String typed = event.getNewFragment().toString();
+        if (typed.isEmpty() || typed.length() >= shown.text.length() || !shown.text.startsWith(typed)) {
+            return false;
+        }
+        typedThrough.incrementAndGet();
+        show(editor, shown.offset + typed.length(), shown.text.substring(typed.length()));
+        return true;
+    }
+
+    private void onCaretMoved(Editor editor) {
+        if (applying || (shown == null && inFlight == null)) {
+            return;
+        }
+        Editor current = shown != null ? shown.editor : pendingEditor;
+        int expected = shown != null ? shown.offset : requestOffset;
+        if (editor == current && editor.getCaretModel().getOffset() != expected) {
+            dismiss();
+        }
+    }
+
+    private void requestCompletion() {
+        Editor editor = pendingEditor;
+        String model = settings.getCompletionModel();
+        if (editor == null || editor.isDisposed() || model.isEmpty() || !settings.inlineCompletionEnabled) {
+            return;
+        }
+
+        Document document = editor.getDocument();
+        CharSequence text = document.getCharsSequence();
+        int offset = editor.getCaretModel().getOffset();
+        String prefix = text.subSequence(Math.max(0, offset - PREFIX_CHARS), offset).toString();
+        String suffix = text.subSequence(offset, Math.min(text.length(), offset + SUFFIX_CHARS)).toString();
+        if (prefix.trim().isEmpty()) {
+            return;
+        }
+
+        String cached = cache.find(model, prefix, suffix);
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            show(editor, offset, cached);
+            return;
+        }
+        cacheMisses.incrementAndGet();
+
+        long request = ++generation;
+        requestOffset = offset;
+        StringBuilder received = new StringBuilder();
+        inFlight = ollamaClient.streamCompletion(model, prefix, suffix, buildOptions(), new OllamaClient.OllamaStreamCallback() {
+            @Override
+            public void onToken(String token) {
+                if (request != generation) {
+                    return;
+                }
+                received.append(token);
+                String visible = clean(received.toString());
+                if (!visible.isEmpty()) {
+                    show(editor, offset, visible);
+                }
+            }
+
+            @Override
+            public void onComplete(OllamaResponse response) {
+                String completion = clean(response.getResponse());
+                if (!completion.isEmpty()) {
+                    cache.put(model, prefix, suffix, completion);
+                }
+                if (request == generation) {
+                    inFlight = null;
+                    if (!completion.isEmpty()) {
+                        show(editor, offset, completion);
+                    }
+                }
+            }
+
+            @Override
+            public void onError(String error) {
+                // A failed completion is simply not shown; the next pause in typing tries again
+                if (request == generation) {
+                    inFlight = null;
+                }
+            }
+        });
+    }
+
+    private Map<String, Object> buildOptions() {
+        Map<String, Object> options = new LinkedHashMap<>();
+        options.put("num_predict", Math.max(1, settings.completionMaxTokens));
+        options.put("temperature", TEMPERATURE);
+        return options;
+    }
+
+    /**
+     * Drop trailing whitespace, which would only move the caret to a place the user has not chosen
+     */
+    private static String clean(String completion) {
+        return completion == null ? "" : completion.stripTrailing();
+    }
+
+    private void show(Editor editor, int offset, String text) {
+        disposeInlays();
+        if (editor.isDisposed()) {
+            shown = null;
+            return;
+        }
+        int newline = text.indexOf('\n');
+        String firstLine = newline < 0 ? text : text.substring(0, newline);
+        List<Inlay<?>> inlays = new ArrayList<>();
+        if (!firstLine.isEmpty()) {
+            inlays.add(editor.getInlayModel().addInlineElement(offset, true, new InlineCompletionRenderer(editor, firstLine)));
+        }
+        if (newline >= 0) {
+            inlays.add(editor.getInlayModel().addBlockElement(offset, true, false, 0,
+                    new InlineCompletionRenderer(editor, text.substring(newline + 1))));
+        }
+        shown = new Suggestion(editor, offset, text, inlays);
+
+        if (!latencyRecorded && keystrokeNanos != 0) {
+            latencyRecorded = true;
+            displayLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - keystrokeNanos));
+        }
+    }
+
+    /**
+     * Whether editor currently shows a suggestion that Tab would accept
+     */
+    public boolean hasSuggestion(Editor editor) {
+        return shown != null && shown.editor == editor;
+    }
+
+    /**
+     * Insert the suggestion shown in editor and move the caret behind it
+     */
+    public boolean accept(Editor editor) {
+        if (!hasSuggestion(editor)) {
+            return false;
+        }
+        Suggestion suggestion = shown;
+        dismiss();
+        Document document = editor.getDocument();
+        applying = true;
+        try {
+            CommandProcessor.getInstance().executeCommand(
+                    editor.getProject(),
+                    () -> ApplicationManager.getApplication().runWriteAction(() -> {
+                        document.insertString(suggestion.offset, suggestion.text);
+                        editor.getCaretModel().moveToOffset(suggestion.offset + suggestion.text.length());
+                    }),
+                    "Accept Ollama Completion",
+                    null);
+        } finally {
+            applying = false;
+        }
+        return true;
+    }
+
+    /**
+     * Hide the suggestion and stop waiting for or generating one
+     */
+    public void dismiss() {
+        debounceTimer.stop();
+        generation++;
+        requestOffset = -1;
+        if (inFlight != null) {
+            if (!inFlight.isDone()) {
+                cancelled.incrementAndGet();
+            }
+            inFlight.cancel();
+            inFlight = null;
+        }
+        disposeInlays();
+        shown = null;
+    }
+
+    private void disposeInlays() {
+        if (shown != null) {
+            for (Inlay<?> inlay : shown.inlays) {
+                Disposer.dispose(inlay);
+            }
+            shown.inlays.clear();
+        }
+    }
+
+    private static Editor findFocusedEditor(Document document) {
+        for (Editor editor : EditorFactory.getInstance().getEditors(document)) {
+            if (!editor.isViewer() && editor.getContentComponent().isFocusOwner()) {
+                return editor;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Microseconds from the keystroke that led to a suggestion until its first text was shown, debounce included
+     */
+    public Histogram getDisplayLatency() {
+        return displayLatency;
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    /**
+     * Keystrokes that shortened the shown suggestion instead of asking for a new one
+     */
+    public long getTypedThroughCount() {
+        return typedThrough.get();
+    }
+
+    /**
+     * Requests abandoned because the user kept typing or moved the caret before they finished
+     */
+    public long getCancelledCount() {
+        return cancelled.get();
+    }
+
+    public void resetStats() {
+        displayLatency.reset();
+        cacheHits.set(0);
+        cacheMisses.set(0);
+        typedThrough.set(0);
+        cancelled.set(0);
+    }
+
+    @Override
+    public void dispose() {
+        dismiss();
+        cache.clear();
+    }
+
+    private static class Suggestion {
+        final Editor editor;
+        final int offset;
+        final String text;
+        final List<Inlay<?>> inlays;
+
+        Suggestion(Editor editor, int offset, String text, List<Inlay<?>> inlays) {
+            this.editor = editor;
+            this.offset = offset;
+            this.text = text;
+            this.inlays = inlays;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.ollama.plugin.service;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Hooks inline completion into the editors once the first project is open
+ */
+public class InlineCompletionStartup implements StartupActivity.DumbAware {
+
+    @Override
+    public void runActivity(@NotNull Project project) {
+        InlineCompletionService.getInstance().initialize();
+    }
+}
@@ -0,0 +1,220 @@
+package com.ollama.plugin.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Line diff between two texts using Myers' O(ND) algorithm, so a small edit to a long text costs time in
+ * proportion to the edit. Lines keep their terminators, which makes every hunk map directly to a character range.
+ */
+public final class LineDiff {
+
+    // Beyond this many differing lines the texts have little in common; the middle is replaced as one hunk
+    private static final int MAX_EDIT_DISTANCE = 1000;
+
+    private LineDiff() {
+    }
+
+    /**
+     * A run of lines [fromStart, fromEnd) of the old text replaced by lines [toStart, toEnd) of the new text
+     */
+    public static class Hunk {
+        public final int fromStart;
+        public final int fromEnd;
+        public final int toStart;
+        public final int toEnd;
+
+        Hunk(int fromStart, int fromEnd, int toStart, int toEnd) {
+            this.fromStart = fromStart;
+            this.fromEnd = fromEnd;
+            this.toStart = toStart;
+            this.toEnd = toEnd;
+        }
+    }
+
+    /**
+     * Replacement of the characters [start, end) of the old text
+     */
+    public static class Edit {
+        public final int start;
+        public final int end;
+        public final String text;
+
+        Edit(int start, int end, String text) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Character edits turning from into to, in ascending order: one per changed run of lines, each narrowed
+     * to the characters that actually differ
+     */
+    public static List<Edit> edits(String from, String to) {
+        List<String> fromLines = lines(from);
+        List<String> toLines = lines(to);
+        int[] fromOffsets = offsets(fromLines);
+        int[] toOffsets = offsets(toLines);
+
+        List<Edit> edits = new ArrayList<>();
+        for (Hunk hunk : diff(fromLines, toLines)) {
+            int start = fromOffsets[hunk.fromStart];
+            int end = fromOffsets[hunk.fromEnd];
+            int newStart = toOffsets[hunk.toStart];
+            int newEnd = toOffsets[hunk.toEnd];
+            while (start < end && newStart < newEnd && from.charAt(start) == to.charAt(newStart)) {
+                start++;
+                newStart++;
+            }
+            while (start < end && newStart < newEnd && from.charAt(end - 1) == to.charAt(newEnd - 1)) {
+                end--;
+                newEnd--;
+            }
+            edits.add(new Edit(start, end, to.substring(newStart, newEnd)));
+        }
+        return edits;
+    }
+
+    private static int[] offsets(List<String> lines) {
+        int[] offsets = new int[lines.size() + 1];
+        for (int i = 0; i < lines.size(); i++) {
+            offsets[i + 1] = offsets[i] + lines.get(i).length();
+        }
+        return offsets;
+    }
+
+    /**
+     * Split text into lines, each keeping its trailing '\n'; the last line has none
+     */
+    public static List<String> lines(String text) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines.add(text.substring(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (start < text.length()) {
+            lines.add(text.substring(start));
+        }
+        return lines;
+    }
+
+    /**
+     * Hunks turning from into to, in ascending order
+     */
+    public static List<Hunk> diff(List<String> from, List<String> to) {
+        // Compare integers instead of strings in the inner loop
+        Map<String, Integer> ids = new HashMap<>();
+        int[] a = new int[from.size()];
+        int[] b = new int[to.size()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = ids.computeIfAbsent(from.get(i), key -> ids.size());
+        }
+        for (int i = 0; i < b.length; i++) {
+            b[i] = ids.computeIfAbsent(to.get(i), key -> ids.size());
+        }
+
+        int prefix = 0;
+        while (prefix < a.length && prefix < b.length && a[prefix] == b[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < a.length - prefix && suffix < b.length - prefix
+                && a[a.length - 1 - suffix] == b[b.length - 1 - suffix]) {
+            suffix++;
+        }
+
+        List<Hunk> hunks = new ArrayList<>();
+        int n = a.length - prefix - suffix;
+        int m = b.length - prefix - suffix;
+        if (n == 0 && m == 0) {
+            return hunks;
+        }
+        if (n == 0 || m == 0 || !myers(a, b, prefix, n, m, hunks)) {
+            hunks.clear();
+            hunks.add(new Hunk(prefix, prefix + n, prefix, prefix + m));
+        }
+        return hunks;
+    }
+
+    /**
+     * Shortest edit script between a[offset, offset + n) and b[offset, offset + m), collected as hunks;
+     * false if the texts differ in more than MAX_EDIT_DISTANCE lines
+     */
+    private static boolean myers(int[] a, int[] b, int offset, int n, int m, List<Hunk> hunks) {
+        int max = Math.min(n + m, MAX_EDIT_DISTANCE);
+        // v[off + k] is the furthest x reached on diagonal k = x - y
+        int off = max + 1;
+        int[] v = new int[2 * max + 3];
+        List<int[]> trace = new ArrayList<>();
+        int d;
+        found:
+        for (d = 0; d <= max; d++) {
+            // Backtracking step d only needs diagonals -d-1 .. d+1, so the trace grows with d squared, not d * (n + m)
+            trace.add(Arrays.copyOfRange(v, off - d - 1, off + d + 2));
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[off + k - 1] < v[off + k + 1])) {
+                    x = v[off + k + 1];
+                } else {
+                    x = v[off + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && a[offset + x] == b[offset + y]) {
+                    x++;
+                    y++;
+                }
+                v[off + k] = x;
+                if (x >= n && y >= m) {
+                    break found;
+                }
+            }
+        }
+        if (d > max) {
+            return false;
+        }
+
+        // Walk the trace back from (n, m), turning each insertion or deletion into an edit
+        List<int[]> edits = new ArrayList<>();
+        int x = n;
+        int y = m;
+        for (int step = d; step > 0; step--) {
+            int[] previous = trace.get(step);
+            int base = step + 1;
+            int k = x - y;
+            int prevK = (k == -step || (k != step && previous[base + k - 1] < previous[base + k + 1])) ? k + 1 : k - 1;
+            int prevX = previous[base + prevK];
+            int prevY = prevX - prevK;
+            while (x > prevX && y > prevY) {
+                x--;
+                y--;
+            }
+            // One line deleted (x moved) or inserted (y moved)
+            edits.add(new int[]{prevX, x, prevY, y});
+            x = prevX;
+            y = prevY;
+        }
+
+        // Merge adjacent edits into hunks, in ascending order
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            int[] edit = edits.get(i);
+            int fromStart = offset + edit[0];
+            int fromEnd = offset + edit[1];
+            int toStart = offset + edit[2];
+            int toEnd = offset + edit[3];
+            Hunk last = hunks.isEmpty() ? null : hunks.get(hunks.size() - 1);
+            if (last != null && last.fromEnd == fromStart && last.toEnd == toStart) {
+                hunks.set(hunks.size() - 1, new Hunk(last.fromStart, fromEnd, last.toStart, toEnd));
+            } else {
+                hunks.add(new Hunk(fromStart, fromEnd, toStart, toEnd));
+            }
+        }
+        return true;
+    }
+}
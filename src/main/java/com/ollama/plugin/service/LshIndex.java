@@ -0,0 +1,147 @@
+package com.ollama.plugin.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Approximate nearest-neighbour lookup by random-hyperplane locality sensitive hashing. Each table hashes a
+ * vector to the signs of its projections on BITS random hyperplanes; vectors at a small angle share a bucket
+ * in at least one of the TABLES tables with high probability. A query collects the slots of its buckets,
+ * probing the buckets one bit away when that yields too few, and the caller ranks those candidates exactly.
+ * The hyperplanes come from a fixed seed, so hashes saved with the index stay valid and the tables can be
+ * rebuilt from them on load without projecting every vector again.
+ */
+class LshIndex {
+
+    static final int TABLES = 24;
+    static final int BITS = 10;
+    private static final long SEED = 42;
+
+    private final float[][][] planes;
+    private final List<Map<Integer, Bucket>> tables;
+    private int[] hashes = new int[0];
+
+    LshIndex(int dimension) {
+        Random random = new Random(SEED);
+        planes = new float[TABLES][BITS][dimension];
+        for (float[][] table : planes) {
+            for (float[] plane : table) {
+                for (int i = 0; i < dimension; i++) {
+                    plane[i] = (float) random.nextGaussian();
+                }
+            }
+        }
+        tables = new ArrayList<>(TABLES);
+        for (int t = 0; t < TABLES; t++) {
+            tables.add(new HashMap<>());
+        }
+    }
+
+    private int hash(int table, float[] vector) {
+        int hash = 0;
+        for (int bit = 0; bit < BITS; bit++) {
+            float[] plane = planes[table][bit];
+            float projection = 0;
+            for (int i = 0; i < vector.length; i++) {
+                projection += plane[i] * vector[i];
+            }
+            if (projection >= 0) {
+                hash |= 1 << bit;
+            }
+        }
+        return hash;
+    }
+
+    void add(int slot, float[] vector) {
+        int[] slotHashes = new int[TABLES];
+        for (int t = 0; t < TABLES; t++) {
+            slotHashes[t] = hash(t, vector);
+        }
+        add(slot, slotHashes);
+    }
+
+    /**
+     * Add a slot with hashes computed earlier, e.g. read back from disk
+     */
+    void add(int slot, int[] slotHashes) {
+        if ((slot + 1) * TABLES > hashes.length) {
+            hashes = Arrays.copyOf(hashes, Math.max((slot + 1) * TABLES, hashes.length * 2));
+        }
+        for (int t = 0; t < TABLES; t++) {
+            hashes[slot * TABLES + t] = slotHashes[t];
+            tables.get(t).computeIfAbsent(slotHashes[t], key -> new Bucket()).add(slot);
+        }
+    }
+
+    int[] getHashes(int slot) {
+        return Arrays.copyOfRange(hashes, slot * TABLES, (slot + 1) * TABLES);
+    }
+
+    void remove(int slot) {
+        if ((slot + 1) * TABLES > hashes.length) {
+            return;
+        }
+        for (int t = 0; t < TABLES; t++) {
+            Bucket bucket = tables.get(t).get(hashes[slot * TABLES + t]);
+            if (bucket != null && bucket.remove(slot) && bucket.size == 0) {
+                tables.get(t).remove(hashes[slot * TABLES + t]);
+            }
+        }
+    }
+
+    /**
+     * Slots that may be close to query; at least minCandidates of them if multi-probing finds that many
+     */
+    BitSet candidates(float[] query, int minCandidates) {
+        BitSet candidates = new BitSet();
+        int[] queryHashes = new int[TABLES];
+        for (int t = 0; t < TABLES; t++) {
+            queryHashes[t] = hash(t, query);
+            collect(tables.get(t).get(queryHashes[t]), candidates);
+        }
+        for (int bit = 0; bit < BITS && candidates.cardinality() < minCandidates; bit++) {
+            for (int t = 0; t < TABLES; t++) {
+                collect(tables.get(t).get(queryHashes[t] ^ (1 << bit)), candidates);
+            }
+        }
+        return candidates;
+    }
+
+    private static void collect(Bucket bucket, BitSet candidates) {
+        if (bucket != null) {
+            for (int i = 0; i < bucket.size; i++) {
+                candidates.set(bucket.slots[i]);
+            }
+        }
+    }
+
+    /**
+     * Slots sharing one hash, in an array that grows like an ArrayList without boxing
+     */
+    private static class Bucket {
+        int[] slots = new int[4];
+        int size;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        boolean remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    slots[i] = slots[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
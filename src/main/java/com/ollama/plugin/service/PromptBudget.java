@@ -0,0 +1,53 @@
+package com.ollama.plugin.service;
+
+/**
+ * Token budget of one request against a model's context window.
+ * Ollama silently drops the start of a prompt that does not fit, so prompts are sized before they are sent.
+ * Tokens are estimated from characters; code averages about three characters per token, which errs on the
+ * side of smaller prompts.
+ */
+public class PromptBudget {
+
+    static final int CHARS_PER_TOKEN = 3;
+    private static final int MIN_RESPONSE_TOKENS = 256;
+
+    private final long contextTokens;
+
+    public PromptBudget(long contextTokens) {
+        this.contextTokens = contextTokens;
+    }
+
+    public static long estimateTokens(String text) {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    public long getContextTokens() {
+        return contextTokens;
+    }
+
+    /**
+     * Tokens kept free for the answer, which shares the context window with the prompt
+     */
+    public long getResponseReserve() {
+        return Math.max(MIN_RESPONSE_TOKENS, contextTokens / 4);
+    }
+
+    /**
+     * Tokens a prompt may use
+     */
+    public long getPromptTokens() {
+        return Math.max(0, contextTokens - getResponseReserve());
+    }
+
+    public boolean fits(String prompt) {
+        return estimateTokens(prompt) <= getPromptTokens();
+    }
+
+    /**
+     * Characters of code that fit next to the fixed text of a prompt
+     */
+    public int getMaxCodeChars(String promptWithoutCode) {
+        long tokens = getPromptTokens() - estimateTokens(promptWithoutCode);
+        return (int) Math.max(CHARS_PER_TOKEN * 64L, Math.min(Integer.MAX_VALUE, tokens * CHARS_PER_TOKEN));
+    }
+}
@@ -0,0 +1,172 @@
+package com.ollama.plugin.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A prompt with {{variable}} placeholders, parsed once into literal text and variable slots so rendering is
+ * plain appends. Ollama reuses the prompt evaluation cached for the previous request as far as the two prompts
+ * agree from the start, so templates put their fixed instructions first and the variables after them; the text
+ * before the first variable is the prefix every request rendered from the template shares.
+ */
+public final class PromptTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+    // Compiled templates by source text, so a template is parsed once however often it is rendered
+    private static final Map<String, PromptTemplate> COMPILED = new ConcurrentHashMap<>();
+
+    /**
+     * Values a template can refer to
+     */
+    public enum Variable {
+        // Language of the code, e.g. "php"
+        LANGUAGE("language"),
+        // Related code from elsewhere in the project, empty if there is none
+        RELATED("related"),
+        // Which part of a larger file the code is, empty for a whole selection
+        SCOPE("scope"),
+        // The code to work on
+        CODE("code");
+
+        private final String name;
+
+        Variable(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        static Variable fromName(String name) {
+            for (Variable variable : values()) {
+                if (variable.name.equals(name)) {
+                    return variable;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final int VARIABLE_COUNT = Variable.values().length;
+
+    private final String source;
+    // literals[i] comes before variables[i]; the last literal follows the last variable
+    private final String[] literals;
+    private final Variable[] variables;
+    private final int literalLength;
+
+    private PromptTemplate(String source, String[] literals, Variable[] variables) {
+        this.source = source;
+        this.literals = literals;
+        this.variables = variables;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * The compiled template for source, parsing it only the first time
+     *
+     * @throws IllegalArgumentException if source names an unknown variable or leaves a placeholder open
+     */
+    public static PromptTemplate of(String source) {
+        PromptTemplate template = COMPILED.get(source);
+        if (template == null) {
+            template = compile(source);
+            COMPILED.putIfAbsent(source, template);
+        }
+        return template;
+    }
+
+    private static PromptTemplate compile(String source) {
+        List<String> literals = new ArrayList<>();
+        List<Variable> variables = new ArrayList<>();
+        int position = 0;
+        while (true) {
+            int open = source.indexOf(OPEN, position);
+            if (open < 0) {
+                break;
+            }
+            int close = source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed " + OPEN + " at offset " + open);
+            }
+            String name = source.substring(open + OPEN.length(), close).trim();
+            Variable variable = Variable.fromName(name);
+            if (variable == null) {
+                throw new IllegalArgumentException("Unknown template variable " + OPEN + name + CLOSE);
+            }
+            literals.add(source.substring(position, open));
+            variables.add(variable);
+            position = close + CLOSE.length();
+        }
+        literals.add(source.substring(position));
+        return new PromptTemplate(source, literals.toArray(new String[0]), variables.toArray(new Variable[0]));
+    }
+
+    /**
+     * Why source cannot be used as a template for analysis actions, or null if it can
+     */
+    public static String validate(String source) {
+        try {
+            if (!of(source).uses(Variable.CODE)) {
+                return "The template must contain " + OPEN + Variable.CODE.getName() + CLOSE;
+            }
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    public boolean uses(Variable variable) {
+        for (Variable used : variables) {
+            if (used == variable) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fill in the variables; null counts as empty
+     */
+    public String render(String language, String related, String scope, String code) {
+        String[] values = new String[VARIABLE_COUNT];
+        values[Variable.LANGUAGE.ordinal()] = language;
+        values[Variable.RELATED.ordinal()] = related;
+        values[Variable.SCOPE.ordinal()] = scope;
+        values[Variable.CODE.ordinal()] = code;
+
+        int length = literalLength;
+        for (Variable variable : variables) {
+            length += valueOf(values, variable).length();
+        }
+        StringBuilder prompt = new StringBuilder(length);
+        for (int i = 0; i < variables.length; i++) {
+            prompt.append(literals[i]).append(valueOf(values, variables[i]));
+        }
+        return prompt.append(literals[literals.length - 1]).toString();
+    }
+
+    private static String valueOf(String[] values, Variable variable) {
+        String value = values[variable.ordinal()];
+        return value != null ? value : "";
+    }
+
+    /**
+     * Text every rendering starts with, which the server can serve from its cache after the first request
+     */
+    public String getStablePrefix() {
+        return literals[0];
+    }
+
+    public String getSource() {
+        return source;
+    }
+}
@@ -0,0 +1,283 @@
+package com.ollama.plugin.service;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed cache of analysis results.
+ * Entries are keyed by a SHA-256 of (model, action, language, normalized code, options) and kept in a
+ * size-bounded in-memory LRU, backed by one file per entry under the IDE system directory.
+ */
+@Service
+public class ResponseCache {
+
+    private static final long MAX_MEMORY_CHARS = 4L * 1024 * 1024;
+    private static final int MAX_MEMORY_ENTRIES = 512;
+    private static final long MAX_DISK_BYTES = 64L * 1024 * 1024;
+
+    private final Path directory;
+    private final LinkedHashMap<String, String> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryChars;
+    private long diskBytes = -1;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ResponseCache() {
+        this(Paths.get(PathManager.getSystemPath(), "ollama", "response-cache"));
+    }
+
+    public ResponseCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public static ResponseCache getInstance() {
+        return ApplicationManager.getApplication().getService(ResponseCache.class);
+    }
+
+    /**
+     * Build the cache key for an analysis request
+     */
+    public static String key(String model, AnalysisAction action, String language, String code, Map<String, ?> options) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, model);
+            update(digest, action.getId());
+            update(digest, language);
+            update(digest, normalize(code));
+            // Sorted so that option maps with the same content always hash the same
+            update(digest, options == null ? "{}" : new TreeMap<>(options).toString());
+
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * Ignore differences the model would not care about: line endings, trailing whitespace and surrounding blank lines
+     */
+    static String normalize(String code) {
+        String[] lines = code.replace("\r\n", "\n").replace('\r', '\n').split("\n", -1);
+        StringBuilder normalized = new StringBuilder(code.length());
+        for (String line : lines) {
+            int end = line.length();
+            while (end > 0 && Character.isWhitespace(line.charAt(end - 1))) {
+                end--;
+            }
+            normalized.append(line, 0, end).append('\n');
+        }
+        return normalized.toString().trim();
+    }
+
+    /**
+     * Look up the in-memory tier only; cheap enough to call on the EDT
+     */
+    public synchronized String getFromMemory(String key) {
+        String value = memory.get(key);
+        if (value != null) {
+            memoryHits.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Look up the disk tier, promoting a hit into memory. Performs file I/O, so call it off the EDT.
+     */
+    public String getFromDisk(String key) {
+        Path file = fileFor(key);
+        try {
+            if (Files.exists(file)) {
+                String value = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                // Touch the entry so disk trimming evicts it last
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+                diskHits.incrementAndGet();
+                putInMemory(key, value);
+                return value;
+            }
+        } catch (IOException e) {
+            // unreadable entry, treat as a miss
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Store a result in both tiers. Performs file I/O, so call it off the EDT.
+     */
+    public void put(String key, String value) {
+        putInMemory(key, value);
+        writeToDisk(key, value);
+    }
+
+    private synchronized void putInMemory(String key, String value) {
+        String previous = memory.put(key, value);
+        if (previous != null) {
+            memoryChars -= previous.length();
+        }
+        memoryChars += value.length();
+
+        Iterator<Map.Entry<String, String>> eldest = memory.entrySet().iterator();
+        while ((memoryChars > MAX_MEMORY_CHARS || memory.size() > MAX_MEMORY_ENTRIES) && eldest.hasNext()) {
+            Map.Entry<String, String> entry = eldest.next();
+            if (entry.getKey().equals(key)) {
+                break;
+            }
+            memoryChars -= entry.getValue().length();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void writeToDisk(String key, String value) {
+        Path file = fileFor(key);
+        try {
+            Files.createDirectories(file.getParent());
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            // A rewritten entry replaces the old file, so only the difference counts towards the disk total
+            long replaced = Files.exists(file) ? Files.size(file) : 0;
+            Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+            Files.write(temp, bytes);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            trimDisk(bytes.length - replaced);
+        } catch (IOException e) {
+            // the disk tier is best effort; the memory tier still has the entry
+        }
+    }
+
+    /**
+     * Keep the disk tier under MAX_DISK_BYTES by deleting the least recently used entries
+     */
+    private synchronized void trimDisk(long added) throws IOException {
+        if (diskBytes < 0) {
+            diskBytes = 0;
+            for (Path file : listEntries()) {
+                diskBytes += Files.size(file);
+            }
+        } else {
+            diskBytes += added;
+        }
+        if (diskBytes <= MAX_DISK_BYTES) {
+            return;
+        }
+
+        List<Path> files = listEntries();
+        files.sort((a, b) -> Long.compare(lastModified(a), lastModified(b)));
+        for (Path file : files) {
+            if (diskBytes <= MAX_DISK_BYTES * 3 / 4) {
+                break;
+            }
+            long size = Files.size(file);
+            Files.deleteIfExists(file);
+            diskBytes -= size;
+            evictions.incrementAndGet();
+        }
+    }
+
+    private List<Path> listEntries() throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(directory)) {
+            for (Path shard : shards) {
+                if (Files.isDirectory(shard)) {
+                    try (DirectoryStream<Path> entries = Files.newDirectoryStream(shard, "*.txt")) {
+                        entries.forEach(files::add);
+                    }
+                }
+            }
+        }
+        return files;
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private Path fileFor(String key) {
+        // Shard by the first byte of the hash to keep directories small
+        return directory.resolve(key.substring(0, 2)).resolve(key + ".txt");
+    }
+
+    /**
+     * Drop every entry from both tiers
+     */
+    public synchronized void clear() {
+        memory.clear();
+        memoryChars = 0;
+        try {
+            for (Path file : listEntries()) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            // leftover files are harmless
+        }
+        diskBytes = 0;
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized int getMemoryEntryCount() {
+        return memory.size();
+    }
+
+    public double getHitRate() {
+        long hits = memoryHits.get() + diskHits.get();
+        long total = hits + misses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public String getStatsSummary() {
+        return String.format("Cache: %d memory hits, %d disk hits, %d misses, %d evictions (%.0f%% hit rate)",
+                getMemoryHits(), getDiskHits(), getMisses(), getEvictions(), getHitRate() * 100);
+    }
+}
@@ -0,0 +1,156 @@
+package com.ollama.plugin.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Fixed-size float vectors in a memory-mapped file, addressed by slot. The vectors live off-heap in the page
+ * cache, so a large index costs no Java heap and survives restarts without being parsed. Vectors are stored
+ * normalized, which makes the dot product of two of them their cosine similarity.
+ * The file starts with a header of magic, dimension and capacity; it grows by doubling its capacity.
+ */
+class VectorStore implements Closeable {
+
+    private static final int MAGIC = 0x4F564543;
+    private static final int HEADER_BYTES = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final FileChannel channel;
+    private final int dimension;
+    private MappedByteBuffer buffer;
+    // Float view of the same mapping, indexed in floats from the start of the file
+    private FloatBuffer floats;
+    private int capacity;
+
+    /**
+     * Open the store at file, starting empty if it does not exist or was written for another dimension
+     */
+    VectorStore(Path file, int dimension) throws IOException {
+        this.dimension = dimension;
+        Files.createDirectories(file.getParent());
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() >= HEADER_BYTES) {
+            map(channel.size());
+            if (buffer.getInt(0) == MAGIC && buffer.getInt(4) == dimension) {
+                capacity = buffer.getInt(8);
+                return;
+            }
+        }
+        channel.truncate(0);
+        capacity = INITIAL_CAPACITY;
+        map(bytesFor(capacity));
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, dimension);
+        buffer.putInt(8, capacity);
+    }
+
+    private void map(long size) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        floats = buffer.asFloatBuffer();
+    }
+
+    private long bytesFor(int slots) {
+        return HEADER_BYTES + (long) slots * dimension * Float.BYTES;
+    }
+
+    private int offsetOf(int slot) {
+        return HEADER_BYTES / Float.BYTES + slot * dimension;
+    }
+
+    int getDimension() {
+        return dimension;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    long getSizeBytes() {
+        return bytesFor(capacity);
+    }
+
+    /**
+     * Store vector, normalized, in slot, growing the file if the slot is beyond its capacity
+     */
+    void put(int slot, float[] vector) throws IOException {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected " + dimension + " dimensions, got " + vector.length);
+        }
+        if (slot >= capacity) {
+            int grown = capacity;
+            while (grown <= slot) {
+                grown *= 2;
+            }
+            if (bytesFor(grown) > Integer.MAX_VALUE) {
+                throw new IOException("Vector store is full");
+            }
+            map(bytesFor(grown));
+            capacity = grown;
+            buffer.putInt(8, capacity);
+        }
+        float norm = norm(vector);
+        int offset = offsetOf(slot);
+        for (int i = 0; i < dimension; i++) {
+            floats.put(offset + i, norm == 0 ? 0 : vector[i] / norm);
+        }
+    }
+
+    float[] get(int slot) {
+        float[] vector = new float[dimension];
+        int offset = offsetOf(slot);
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = floats.get(offset + i);
+        }
+        return vector;
+    }
+
+    /**
+     * Cosine similarity between the stored vector and a normalized query
+     */
+    float dot(int slot, float[] normalizedQuery) {
+        int offset = offsetOf(slot);
+        float sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += floats.get(offset + i) * normalizedQuery[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Write dirty pages back to the file
+     */
+    void flush() {
+        buffer.force();
+    }
+
+    static float norm(float[] vector) {
+        double sum = 0;
+        for (float value : vector) {
+            sum += value * value;
+        }
+        return (float) Math.sqrt(sum);
+    }
+
+    static float[] normalize(float[] vector) {
+        float norm = norm(vector);
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = norm == 0 ? 0 : vector[i] / norm;
+        }
+        return normalized;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+}
@@ -0,0 +1,100 @@
+package com.ollama.plugin.settings;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Model and generation options for one analysis action, so quick actions can run on a small model with a short
+ * answer and hard ones on a large model. Empty, zero or negative values leave the choice to the default model
+ * or to the model's own defaults.
+ */
+public class ActionProfile {
+
+    // Empty = the fast model for quick actions, otherwise the default model
+    public String model = "";
+    // Context window in tokens, 0 = the model's default. Ollama reloads a model whose num_ctx changes,
+    // so actions sharing a model should share this value
+    public int numCtx;
+    // Longest answer in tokens, 0 = until the model stops
+    public int numPredict;
+    // Negative = the model's default
+    public double temperature = -1;
+    public List<String> stop = new ArrayList<>();
+    // How long the model stays loaded after the action, e.g. "30m"; empty = the idle unload setting
+    public String keepAlive = "";
+    // Prompt with {{language}}, {{related}}, {{scope}} and {{code}} placeholders; empty = the action's default
+    public String promptTemplate = "";
+
+    public ActionProfile() {
+    }
+
+    public ActionProfile(int numPredict, double temperature) {
+        this.numPredict = numPredict;
+        this.temperature = temperature;
+    }
+
+    public ActionProfile copy() {
+        ActionProfile copy = new ActionProfile();
+        copy.model = model;
+        copy.numCtx = numCtx;
+        copy.numPredict = numPredict;
+        copy.temperature = temperature;
+        copy.stop = new ArrayList<>(stop);
+        copy.keepAlive = keepAlive;
+        copy.promptTemplate = promptTemplate;
+        return copy;
+    }
+
+    /**
+     * The options object of a generate request, holding only the values this profile sets
+     */
+    public Map<String, Object> toOptions() {
+        Map<String, Object> options = new LinkedHashMap<>();
+        if (numCtx > 0) {
+            options.put("num_ctx", numCtx);
+        }
+        if (numPredict > 0) {
+            options.put("num_predict", numPredict);
+        }
+        if (temperature >= 0) {
+            options.put("temperature", temperature);
+        }
+        if (!stop.isEmpty()) {
+            options.put("stop", new ArrayList<>(stop));
+        }
+        return options;
+    }
+
+    /**
+     * keep_alive to send, or null to fall back to the idle unload setting
+     */
+    public String getKeepAlive() {
+        return keepAlive == null || keepAlive.trim().isEmpty() ? null : keepAlive.trim();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ActionProfile)) {
+            return false;
+        }
+        ActionProfile other = (ActionProfile) o;
+        return numCtx == other.numCtx
+                && numPredict == other.numPredict
+                && Double.compare(temperature, other.temperature) == 0
+                && Objects.equals(model, other.model)
+                && Objects.equals(stop, other.stop)
+                && Objects.equals(keepAlive, other.keepAlive)
+                && Objects.equals(promptTemplate, other.promptTemplate);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(model, numCtx, numPredict, temperature, stop, keepAlive, promptTemplate);
+    }
+}
@@ -45,6 +45,9 @@ public class OllamaSettingsConfigurable implements Configurable {
 
     @Override
     public void disposeUIResources() {
+        if (settingsPanel != null) {
+            settingsPanel.dispose();
+        }
         settingsPanel = null;
     }
 }
@@ -1,6 +1,22 @@
 package com.ollama.plugin.settings;
 
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.options.ConfigurationException;
+import com.intellij.util.messages.MessageBusConnection;
+import com.ollama.plugin.client.ModelCatalogListener;
+import com.ollama.plugin.client.OllamaClient;
+import com.ollama.plugin.client.OllamaModel;
+import com.ollama.plugin.client.OllamaModelCatalog;
+import com.ollama.plugin.client.OllamaServerMonitor;
+import com.ollama.plugin.service.AnalysisAction;
+import com.ollama.plugin.service.PromptTemplate;
+
 import javax.swing.*;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class OllamaSettingsPanel {
 
@@ -10,10 +26,45 @@ public class OllamaSettingsPanel {
     private JButton testConnectionButton;
     private JLabel connectionStatusLabel;
     private JCheckBox autoConnectCheckBox;
+    private JComboBox<String> defaultModelCombo;
+    private JTextArea endpointsArea;
+    private JSpinner idleUnloadSpinner;
+    private JSpinner connectTimeoutSpinner;
+    private JSpinner readTimeoutSpinner;
+    private JSpinner parallelChunksSpinner;
+    private JSpinner batchParallelSpinner;
+    private JCheckBox inlineCompletionCheckBox;
+    private JTextField completionModelField;
+    private JSpinner completionDebounceSpinner;
+    private JSpinner completionMaxTokensSpinner;
+    private JCheckBox retrievalCheckBox;
+    private JTextField embeddingModelField;
+    private JSpinner retrievalTopKSpinner;
+    private JTextField fastModelField;
+    private JComboBox<AnalysisAction> profileActionCombo;
+    private JTextField profileModelField;
+    private JSpinner profileNumCtxSpinner;
+    private JSpinner profileNumPredictSpinner;
+    private JSpinner profileTemperatureSpinner;
+    private JTextArea profileStopArea;
+    private JTextField profileKeepAliveField;
+    private JTextArea profileTemplateArea;
+
+    // Profiles being edited, one per action; the fields show the one for the action in the combo box
+    private final Map<AnalysisAction, ActionProfile> profiles = new EnumMap<>(AnalysisAction.class);
+    private AnalysisAction shownProfile;
+
+    private final MessageBusConnection connection;
 
     public OllamaSettingsPanel() {
         createUI();
         reset();
+
+        OllamaModelCatalog catalog = OllamaModelCatalog.getInstance();
+        showModels(catalog.getCachedModels());
+        connection = ApplicationManager.getApplication().getMessageBus().connect();
+        connection.subscribe(ModelCatalogListener.TOPIC, this::showModels);
+        catalog.getModels(OllamaSettingsService.getInstance().getBaseUrl(), false);
     }
 
     private void createUI() {
@@ -40,6 +91,172 @@ public class OllamaSettingsPanel {
 
         mainPanel.add(Box.createVerticalStrut(10));
 
+        // Additional endpoints, one per line
+        JPanel endpointsPanel = new JPanel();
+        endpointsPanel.setLayout(new BoxLayout(endpointsPanel, BoxLayout.X_AXIS));
+        endpointsPanel.add(new JLabel("Additional endpoints (one URL per line):"));
+        endpointsArea = new JTextArea(3, 20);
+        endpointsPanel.add(new JScrollPane(endpointsArea));
+        mainPanel.add(endpointsPanel);
+
+        mainPanel.add(Box.createVerticalStrut(10));
+
+        // Default model; editable so a model can be named before it is pulled
+        JPanel modelPanel = new JPanel();
+        modelPanel.setLayout(new BoxLayout(modelPanel, BoxLayout.X_AXIS));
+        modelPanel.add(new JLabel("Default model:"));
+        defaultModelCombo = new JComboBox<>();
+        defaultModelCombo.setEditable(true);
+        modelPanel.add(defaultModelCombo);
+        mainPanel.add(modelPanel);
+
+        mainPanel.add(Box.createVerticalStrut(10));
+
+        // Idle unload timeout
+        JPanel idlePanel = new JPanel();
+        idlePanel.setLayout(new BoxLayout(idlePanel, BoxLayout.X_AXIS));
+        idlePanel.add(new JLabel("Unload idle models after (minutes, 0 = server default):"));
+        idleUnloadSpinner = new JSpinner(new SpinnerNumberModel(15, 0, 24 * 60, 1));
+        idlePanel.add(idleUnloadSpinner);
+        mainPanel.add(idlePanel);
+
+        mainPanel.add(Box.createVerticalStrut(10));
+
+        // HTTP timeouts
+        JPanel timeoutPanel = new JPanel();
+        timeoutPanel.setLayout(new BoxLayout(timeoutPanel, BoxLayout.X_AXIS));
+        timeoutPanel.add(new JLabel("Connect timeout (seconds):"));
+        connectTimeoutSpinner = new JSpinner(new SpinnerNumberModel(30, 1, 300, 1));
+        timeoutPanel.add(connectTimeoutSpinner);
+        timeoutPanel.add(Box.createHorizontalStrut(10));
+        timeoutPanel.add(new JLabel("Read timeout (seconds):"));
+        readTimeoutSpinner = new JSpinner(new SpinnerNumberModel(60, 1, 3600, 1));
+        timeoutPanel.add(readTimeoutSpinner);
+        mainPanel.add(timeoutPanel);
+
+        mainPanel.add(Box.createVerticalStrut(10));
+
+        // Parallel chunk requests for selections larger than the context window
+        JPanel chunksPanel = new JPanel();
+        chunksPanel.setLayout(new BoxLayout(chunksPanel, BoxLayout.X_AXIS));
+        chunksPanel.add(new JLabel("Parallel requests when analyzing large selections:"));
+        parallelChunksSpinner = new JSpinner(new SpinnerNumberModel(2, 1, 16, 1));
+        chunksPanel.add(parallelChunksSpinner);
+        mainPanel.add(chunksPanel);
+
+        mainPanel.add(Box.createVerticalStrut(10));
+
+        // Parallel files in a batch analysis
+        JPanel batchPanel = new JPanel();
+        batchPanel.setLayout(new BoxLayout(batchPanel, BoxLayout.X_AXIS));
+        batchPanel.add(new JLabel("Files analyzed at once in batch analysis:"));
+        batchParallelSpinner = new JSpinner(new SpinnerNumberModel(2, 1, 16, 1));
+        batchPanel.add(batchParallelSpinner);
+        mainPanel.add(batchPanel);
+
+        mainPanel.add(Box.createVerticalStrut(10));
+
+        // Inline completion
+        inlineCompletionCheckBox = new JCheckBox("Inline code completion while typing (Tab to accept)");
+        mainPanel.add(inlineCompletionCheckBox);
+
+        JPanel completionModelPanel = new JPanel();
+        completionModelPanel.setLayout(new BoxLayout(completionModelPanel, BoxLayout.X_AXIS));
+        completionModelPanel.add(new JLabel("Completion model (empty = default model):"));
+        completionModelField = new JTextField(20);
+        completionModelPanel.add(completionModelField);
+        mainPanel.add(completionModelPanel);
+
+        JPanel completionTuningPanel = new JPanel();
+        completionTuningPanel.setLayout(new BoxLayout(completionTuningPanel, BoxLayout.X_AXIS));
+        completionTuningPanel.add(new JLabel("Delay after typing (ms):"));
+        completionDebounceSpinner = new JSpinner(new SpinnerNumberModel(250, 50, 2000, 10));
+        completionTuningPanel.add(completionDebounceSpinner);
+        completionTuningPanel.add(Box.createHorizontalStrut(10));
+        completionTuningPanel.add(new JLabel("Max tokens:"));
+        completionMaxTokensSpinner = new JSpinner(new SpinnerNumberModel(64, 8, 512, 8));
+        completionTuningPanel.add(completionMaxTokensSpinner);
+        mainPanel.add(completionTuningPanel);
+
+        mainPanel.add(Box.createVerticalStrut(10));
+
+        // Retrieval of related project code
+        retrievalCheckBox = new JCheckBox("Add related project code to analysis prompts (builds an embedding index)");
+        mainPanel.add(retrievalCheckBox);
+
+        JPanel retrievalPanel = new JPanel();
+        retrievalPanel.setLayout(new BoxLayout(retrievalPanel, BoxLayout.X_AXIS));
+        retrievalPanel.add(new JLabel("Embedding model:"));
+        embeddingModelField = new JTextField(20);
+        retrievalPanel.add(embeddingModelField);
+        retrievalPanel.add(Box.createHorizontalStrut(10));
+        retrievalPanel.add(new JLabel("Snippets:"));
+        retrievalTopKSpinner = new JSpinner(new SpinnerNumberModel(5, 1, 20, 1));
+        retrievalPanel.add(retrievalTopKSpinner);
+        mainPanel.add(retrievalPanel);
+
+        mainPanel.add(Box.createVerticalStrut(10));
+
+        JPanel fastModelPanel = new JPanel();
+        fastModelPanel.setLayout(new BoxLayout(fastModelPanel, BoxLayout.X_AXIS));
+        fastModelPanel.add(new JLabel("Fast model for Explain and Add Type Hints (empty = default model):"));
+        fastModelField = new JTextField(20);
+        fastModelPanel.add(fastModelField);
+        mainPanel.add(fastModelPanel);
+
+        // Model and generation options per analysis action
+        JPanel profileActionPanel = new JPanel();
+        profileActionPanel.setLayout(new BoxLayout(profileActionPanel, BoxLayout.X_AXIS));
+        profileActionPanel.add(new JLabel("Action profile:"));
+        profileActionCombo = new JComboBox<>(AnalysisAction.values());
+        profileActionCombo.addActionListener(e -> showProfile((AnalysisAction) profileActionCombo.getSelectedItem()));
+        profileActionPanel.add(profileActionCombo);
+        profileActionPanel.add(Box.createHorizontalStrut(10));
+        profileActionPanel.add(new JLabel("Model (empty = fast or default model):"));
+        profileModelField = new JTextField(15);
+        profileActionPanel.add(profileModelField);
+        mainPanel.add(profileActionPanel);
+
+        JPanel profileOptionsPanel = new JPanel();
+        profileOptionsPanel.setLayout(new BoxLayout(profileOptionsPanel, BoxLayout.X_AXIS));
+        profileOptionsPanel.add(new JLabel("Context (0 = model default):"));
+        profileNumCtxSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 1 << 20, 1024));
+        profileOptionsPanel.add(profileNumCtxSpinner);
+        profileOptionsPanel.add(Box.createHorizontalStrut(10));
+        profileOptionsPanel.add(new JLabel("Max tokens (0 = no limit):"));
+        profileNumPredictSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 1 << 16, 64));
+        profileOptionsPanel.add(profileNumPredictSpinner);
+        profileOptionsPanel.add(Box.createHorizontalStrut(10));
+        profileOptionsPanel.add(new JLabel("Temperature (-1 = model default):"));
+        profileTemperatureSpinner = new JSpinner(new SpinnerNumberModel(-1.0, -1.0, 2.0, 0.05));
+        profileOptionsPanel.add(profileTemperatureSpinner);
+        mainPanel.add(profileOptionsPanel);
+
+        JPanel profileStopPanel = new JPanel();
+        profileStopPanel.setLayout(new BoxLayout(profileStopPanel, BoxLayout.X_AXIS));
+        profileStopPanel.add(new JLabel("Stop sequences (one per line):"));
+        profileStopArea = new JTextArea(2, 15);
+        profileStopPanel.add(new JScrollPane(profileStopArea));
+        profileStopPanel.add(Box.createHorizontalStrut(10));
+        profileStopPanel.add(new JLabel("Keep loaded for (e.g. 30m, empty = idle setting):"));
+        profileKeepAliveField = new JTextField(6);
+        profileStopPanel.add(profileKeepAliveField);
+        mainPanel.add(profileStopPanel);
+
+        // Fixed text first and variables last, so requests share a prefix the server has cached
+        JPanel profileTemplatePanel = new JPanel();
+        profileTemplatePanel.setLayout(new BoxLayout(profileTemplatePanel, BoxLayout.X_AXIS));
+        profileTemplatePanel.add(new JLabel(
+                "<html>Prompt template:<br>{{language}} {{related}}<br>{{scope}} {{code}}</html>"));
+        profileTemplateArea = new JTextArea(6, 40);
+        profileTemplateArea.setLineWrap(true);
+        profileTemplateArea.setToolTipText("Keep instructions before the first variable: that text is shared by every "
+                + "request and the server evaluates it only once. Leave empty for the default.");
+        profileTemplatePanel.add(new JScrollPane(profileTemplateArea));
+        mainPanel.add(profileTemplatePanel);
+
+        mainPanel.add(Box.createVerticalStrut(10));
+
         // Auto-connect checkbox
         autoConnectCheckBox = new JCheckBox("Auto-connect on startup");
         mainPanel.add(autoConnectCheckBox);
@@ -76,22 +293,156 @@ public class OllamaSettingsPanel {
         com.ollama.plugin.ui.SettingsConnectionTest.testConnection(mainPanel, host, port);
     }
 
+    /**
+     * Offer the installed models while keeping whatever the user typed or selected
+     */
+    private void showModels(List<OllamaModel> models) {
+        String current = getSelectedModel();
+        defaultModelCombo.removeAllItems();
+        for (OllamaModel model : models) {
+            defaultModelCombo.addItem(model.getName());
+        }
+        defaultModelCombo.setSelectedItem(current);
+    }
+
+    private List<String> getAdditionalEndpoints() {
+        List<String> endpoints = new ArrayList<>();
+        for (String line : endpointsArea.getText().split("\n")) {
+            if (!line.trim().isEmpty()) {
+                endpoints.add(line.trim());
+            }
+        }
+        return endpoints;
+    }
+
+    /**
+     * Keep the edits to the profile on screen and show the one for action
+     */
+    private void showProfile(AnalysisAction action) {
+        storeShownProfile();
+        shownProfile = action;
+        ActionProfile profile = profiles.get(action);
+        if (profile == null) {
+            return;
+        }
+        profileModelField.setText(profile.model);
+        profileNumCtxSpinner.setValue(profile.numCtx);
+        profileNumPredictSpinner.setValue(profile.numPredict);
+        profileTemperatureSpinner.setValue(profile.temperature);
+        profileStopArea.setText(String.join("\n", profile.stop));
+        profileKeepAliveField.setText(profile.keepAlive);
+        profileTemplateArea.setText(
+                profile.promptTemplate.isEmpty() ? action.getDefaultTemplate() : profile.promptTemplate);
+        profileTemplateArea.setCaretPosition(0);
+    }
+
+    private void storeShownProfile() {
+        ActionProfile profile = shownProfile != null ? profiles.get(shownProfile) : null;
+        if (profile == null) {
+            return;
+        }
+        profile.model = profileModelField.getText().trim();
+        profile.numCtx = (Integer) profileNumCtxSpinner.getValue();
+        profile.numPredict = (Integer) profileNumPredictSpinner.getValue();
+        // Rounded so the spinner's binary fractions do not show up in the request
+        profile.temperature = Math.round((Double) profileTemperatureSpinner.getValue() * 100) / 100.0;
+        profile.stop = new ArrayList<>();
+        for (String line : profileStopArea.getText().split("\n")) {
+            if (!line.isEmpty()) {
+                profile.stop.add(line);
+            }
+        }
+        profile.keepAlive = profileKeepAliveField.getText().trim();
+        String template = profileTemplateArea.getText();
+        profile.promptTemplate = template.trim().isEmpty() || template.equals(shownProfile.getDefaultTemplate()) ? "" : template;
+    }
+
+    /**
+     * The edited profiles that differ from their action's default, keyed by action id
+     */
+    private Map<String, ActionProfile> getActionProfiles() {
+        storeShownProfile();
+        Map<String, ActionProfile> changed = new LinkedHashMap<>();
+        for (Map.Entry<AnalysisAction, ActionProfile> entry : profiles.entrySet()) {
+            if (!entry.getValue().equals(entry.getKey().getDefaultProfile())) {
+                changed.put(entry.getKey().getId(), entry.getValue().copy());
+            }
+        }
+        return changed;
+    }
+
+    private String getSelectedModel() {
+        Object item = defaultModelCombo.getEditor().getItem();
+        return item != null ? item.toString().trim() : "";
+    }
+
     public JComponent getPanel() {
         return mainPanel;
     }
 
+    public void dispose() {
+        connection.disconnect();
+    }
+
     public boolean isModified() {
         OllamaSettingsService settings = OllamaSettingsService.getInstance();
         return !hostField.getText().equals(settings.host) ||
                 !portSpinner.getValue().equals(settings.port) ||
-                autoConnectCheckBox.isSelected() != settings.autoConnect;
+                autoConnectCheckBox.isSelected() != settings.autoConnect ||
+                !getSelectedModel().equals(settings.selectedModel) ||
+                !getAdditionalEndpoints().equals(settings.additionalEndpoints) ||
+                !idleUnloadSpinner.getValue().equals(settings.idleUnloadMinutes) ||
+                !connectTimeoutSpinner.getValue().equals(settings.connectTimeoutSeconds) ||
+                !readTimeoutSpinner.getValue().equals(settings.readTimeoutSeconds) ||
+                !parallelChunksSpinner.getValue().equals(settings.maxParallelChunks) ||
+                !batchParallelSpinner.getValue().equals(settings.batchParallelFiles) ||
+                inlineCompletionCheckBox.isSelected() != settings.inlineCompletionEnabled ||
+                !completionModelField.getText().trim().equals(settings.completionModel) ||
+                !completionDebounceSpinner.getValue().equals(settings.completionDebounceMillis) ||
+                !completionMaxTokensSpinner.getValue().equals(settings.completionMaxTokens) ||
+                retrievalCheckBox.isSelected() != settings.retrievalEnabled ||
+                !embeddingModelField.getText().trim().equals(settings.embeddingModel) ||
+                !retrievalTopKSpinner.getValue().equals(settings.retrievalTopK) ||
+                !fastModelField.getText().trim().equals(settings.fastModel) ||
+                !getActionProfiles().equals(settings.actionProfiles);
     }
 
-    public void apply() {
+    public void apply() throws ConfigurationException {
+        Map<String, ActionProfile> actionProfiles = getActionProfiles();
+        for (AnalysisAction action : AnalysisAction.values()) {
+            ActionProfile profile = actionProfiles.get(action.getId());
+            if (profile == null || profile.promptTemplate.isEmpty()) {
+                continue;
+            }
+            String error = PromptTemplate.validate(profile.promptTemplate);
+            if (error != null) {
+                throw new ConfigurationException(action.getDisplayName() + " prompt template: " + error);
+            }
+        }
+
         OllamaSettingsService settings = OllamaSettingsService.getInstance();
         settings.host = hostField.getText();
         settings.port = (Integer) portSpinner.getValue();
         settings.autoConnect = autoConnectCheckBox.isSelected();
+        settings.selectedModel = getSelectedModel();
+        settings.additionalEndpoints = getAdditionalEndpoints();
+        settings.idleUnloadMinutes = (Integer) idleUnloadSpinner.getValue();
+        settings.connectTimeoutSeconds = (Integer) connectTimeoutSpinner.getValue();
+        settings.readTimeoutSeconds = (Integer) readTimeoutSpinner.getValue();
+        settings.maxParallelChunks = (Integer) parallelChunksSpinner.getValue();
+        settings.batchParallelFiles = (Integer) batchParallelSpinner.getValue();
+        settings.inlineCompletionEnabled = inlineCompletionCheckBox.isSelected();
+        settings.completionModel = completionModelField.getText().trim();
+        settings.completionDebounceMillis = (Integer) completionDebounceSpinner.getValue();
+        settings.completionMaxTokens = (Integer) completionMaxTokensSpinner.getValue();
+        settings.retrievalEnabled = retrievalCheckBox.isSelected();
+        settings.embeddingModel = embeddingModelField.getText().trim();
+        settings.retrievalTopK = (Integer) retrievalTopKSpinner.getValue();
+        settings.fastModel = fastModelField.getText().trim();
+        settings.actionProfiles = actionProfiles;
+        OllamaClient.getInstance().setTimeouts(settings.connectTimeoutSeconds, settings.readTimeoutSeconds);
+        // The address may have changed; the status bar and panels should not wait for the next poll
+        OllamaServerMonitor.getInstance().pollSoon();
     }
 
     public void reset() {
@@ -99,6 +450,26 @@ public class OllamaSettingsPanel {
         hostField.setText(settings.host);
         portSpinner.setValue(settings.port);
         autoConnectCheckBox.setSelected(settings.autoConnect);
+        defaultModelCombo.setSelectedItem(settings.selectedModel);
+        endpointsArea.setText(String.join("\n", settings.additionalEndpoints));
+        idleUnloadSpinner.setValue(settings.idleUnloadMinutes);
+        connectTimeoutSpinner.setValue(settings.connectTimeoutSeconds);
+        readTimeoutSpinner.setValue(settings.readTimeoutSeconds);
+        parallelChunksSpinner.setValue(settings.maxParallelChunks);
+        batchParallelSpinner.setValue(settings.batchParallelFiles);
+        inlineCompletionCheckBox.setSelected(settings.inlineCompletionEnabled);
+        completionModelField.setText(settings.completionModel);
+        completionDebounceSpinner.setValue(settings.completionDebounceMillis);
+        completionMaxTokensSpinner.setValue(settings.completionMaxTokens);
+        retrievalCheckBox.setSelected(settings.retrievalEnabled);
+        embeddingModelField.setText(settings.embeddingModel);
+        retrievalTopKSpinner.setValue(settings.retrievalTopK);
+        fastModelField.setText(settings.fastModel);
+        for (AnalysisAction action : AnalysisAction.values()) {
+            profiles.put(action, settings.getActionProfile(action).copy());
+        }
+        shownProfile = null;
+        showProfile((AnalysisAction) profileActionCombo.getSelectedItem());
         connectionStatusLabel.setText("Not connected");
     }
 }
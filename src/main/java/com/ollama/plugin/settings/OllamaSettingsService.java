@@ -6,9 +6,16 @@ import com.intellij.openapi.components.Service;
 import com.intellij.openapi.components.State;
 import com.intellij.openapi.components.Storage;
 import com.intellij.util.xmlb.XmlSerializerUtil;
+import com.ollama.plugin.OllamaPluginConstants;
+import com.ollama.plugin.service.AnalysisAction;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 @Service
 @State(
     name = "OllamaSettings",
@@ -20,6 +27,30 @@ public class OllamaSettingsService implements PersistentStateComponent<OllamaSet
     public int port = 11434;
     public String selectedModel = "";
     public boolean autoConnect = false;
+    // Further Ollama servers to spread generations over, as base URLs like http://gpu-box:11434
+    public List<String> additionalEndpoints = new ArrayList<>();
+    // Minutes a model may sit unused before it is unloaded; 0 leaves it to the server's keep_alive default
+    public int idleUnloadMinutes = 15;
+    // Chunks of an oversized selection analyzed at the same time
+    public int maxParallelChunks = 2;
+    // Files of a batch analysis in flight at the same time
+    public int batchParallelFiles = 2;
+    // Inline completion as you type; the model is the default model unless one is named here
+    public boolean inlineCompletionEnabled = false;
+    public String completionModel = "";
+    public int completionDebounceMillis = 250;
+    public int completionMaxTokens = 64;
+    // Related project code found through an embedding index is added to analysis prompts
+    public boolean retrievalEnabled = false;
+    public String embeddingModel = "nomic-embed-text";
+    public int retrievalTopK = 5;
+    // HTTP timeouts; a server that cannot be reached within the connect timeout counts as a failure for its circuit breaker
+    public int connectTimeoutSeconds = OllamaPluginConstants.CONNECTION_TIMEOUT_SECONDS;
+    public int readTimeoutSeconds = OllamaPluginConstants.READ_TIMEOUT_SECONDS;
+    // Small model for the quick actions (Explain, Add Type Hints) when their profile names none; empty = the default model
+    public String fastModel = "";
+    // Model and generation options by analysis action id; actions without an entry use their default profile
+    public Map<String, ActionProfile> actionProfiles = new LinkedHashMap<>();
 
     public static OllamaSettingsService getInstance() {
         return ApplicationManager.getApplication().getService(OllamaSettingsService.class);
@@ -36,7 +67,58 @@ public class OllamaSettingsService implements PersistentStateComponent<OllamaSet
         XmlSerializerUtil.copyBean(state, this);
     }
 
+    /**
+     * Model used for inline completion, falling back to the default model
+     */
+    public String getCompletionModel() {
+        return completionModel.trim().isEmpty() ? selectedModel : completionModel.trim();
+    }
+
+    /**
+     * Profile the action runs with: the user's if one is configured, otherwise the action's default
+     */
+    public ActionProfile getActionProfile(AnalysisAction action) {
+        ActionProfile profile = actionProfiles.get(action.getId());
+        return profile != null ? profile : action.getDefaultProfile();
+    }
+
+    /**
+     * Model for an analysis action: the profile's model, else the fast model for a quick action, else the default
+     * model, else llama2
+     */
+    public String getActionModel(AnalysisAction action) {
+        String model = getActionProfile(action).model;
+        if (model != null && !model.trim().isEmpty()) {
+            return model.trim();
+        }
+        if (action.isQuick() && !fastModel.trim().isEmpty()) {
+            return fastModel.trim();
+        }
+        return selectedModel.trim().isEmpty() ? OllamaPluginConstants.FALLBACK_MODEL : selectedModel.trim();
+    }
+
     public String getBaseUrl() {
         return String.format("http://%s:%d", host, port);
     }
+
+    /**
+     * The primary server followed by the additional endpoints, without duplicates or trailing slashes
+     */
+    public List<String> getEndpointUrls() {
+        List<String> urls = new ArrayList<>();
+        urls.add(getBaseUrl());
+        for (String endpoint : additionalEndpoints) {
+            String url = endpoint.trim();
+            while (url.endsWith("/")) {
+                url = url.substring(0, url.length() - 1);
+            }
+            if (!url.isEmpty() && !url.contains("://")) {
+                url = "http://" + url;
+            }
+            if (!url.isEmpty() && !urls.contains(url)) {
+                urls.add(url);
+            }
+        }
+        return urls;
+    }
 }
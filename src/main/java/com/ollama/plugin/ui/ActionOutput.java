@@ -0,0 +1,82 @@
+package com.ollama.plugin.ui;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import com.intellij.ui.content.ContentManager;
+
+/**
+ * Answer of one editor action, streamed into its own tab of the Ollama Output tool window while it is generated,
+ * so a long answer shows up as it is written instead of after a silent wait. Closing the tab disposes the
+ * transcript, which cancels a request registered with cancelOnDispose(getDisposable()).
+ * Beyond MAX_TABS the oldest tabs are closed. All methods must be called on the EDT.
+ */
+public class ActionOutput {
+
+    public static final String TOOL_WINDOW_ID = "Ollama Output";
+
+    private static final int MAX_TABS = 10;
+
+    private final TranscriptView transcript;
+    private boolean streamed;
+
+    private ActionOutput(TranscriptView transcript) {
+        this.transcript = transcript;
+    }
+
+    /**
+     * Open a new tab named after the action and the editor's file, and bring the tool window up
+     */
+    public static ActionOutput open(Project project, String actionName, Editor editor) {
+        String title = actionName + ": " + (editor.getVirtualFile() != null ? editor.getVirtualFile().getName() : "selection");
+        TranscriptView transcript = new TranscriptView(project);
+        ToolWindow toolWindow = ToolWindowManager.getInstance(project).getToolWindow(TOOL_WINDOW_ID);
+        if (toolWindow != null) {
+            ContentManager contents = toolWindow.getContentManager();
+            Content content = ContentFactory.getInstance().createContent(transcript.getComponent(), title, false);
+            content.setDisposer(transcript);
+            content.setCloseable(true);
+            contents.addContent(content);
+            while (contents.getContentCount() > MAX_TABS) {
+                contents.removeContent(contents.getContent(0), true);
+            }
+            contents.setSelectedContent(content);
+            toolWindow.show();
+        } else {
+            Disposer.register(project, transcript);
+        }
+        return new ActionOutput(transcript);
+    }
+
+    public void append(String token) {
+        streamed = true;
+        transcript.append(token);
+    }
+
+    /**
+     * End the stream; an answer that arrived in one piece, like a cached one, is shown whole
+     */
+    public void finish(String result) {
+        if (!streamed) {
+            transcript.append(result);
+        }
+        transcript.endStreaming();
+    }
+
+    public void fail(String error) {
+        transcript.append((streamed ? "\n\n" : "") + "Error: " + error);
+        transcript.endStreaming();
+    }
+
+    /**
+     * Disposed when the tab is closed
+     */
+    public Disposable getDisposable() {
+        return transcript;
+    }
+}
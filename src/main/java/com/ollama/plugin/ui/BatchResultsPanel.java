@@ -0,0 +1,160 @@
+package com.ollama.plugin.ui;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.ollama.plugin.service.AnalysisAction;
+import com.ollama.plugin.service.BatchAnalysisListener;
+import com.ollama.plugin.service.BatchResultStore;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Per-file results of the batch analysis running in a project, filled in as the answers stream in.
+ * Only the answers still streaming are held here; finished ones are read from BatchResultStore when selected.
+ */
+public class BatchResultsPanel implements Disposable, BatchAnalysisListener {
+
+    private final JPanel mainPanel;
+    private final JLabel statusLabel;
+    private final DefaultListModel<FileResult> listModel = new DefaultListModel<>();
+    private final JList<FileResult> fileList;
+    private final JTextArea resultOutput;
+    private final BatchResultStore results;
+
+    public BatchResultsPanel(Project project) {
+        results = BatchResultStore.getInstance(project);
+        mainPanel = new JPanel(new BorderLayout(5, 5));
+
+        resultOutput = new JTextArea();
+        resultOutput.setEditable(false);
+        resultOutput.setLineWrap(true);
+        resultOutput.setWrapStyleWord(true);
+
+        JPanel topPanel = new JPanel();
+        topPanel.setLayout(new BoxLayout(topPanel, BoxLayout.X_AXIS));
+        statusLabel = new JLabel("No batch analysis has run yet");
+        topPanel.add(statusLabel);
+        topPanel.add(Box.createHorizontalGlue());
+        JButton clearButton = new JButton("Clear");
+        clearButton.addActionListener(e -> {
+            listModel.clear();
+            resultOutput.setText("");
+        });
+        topPanel.add(clearButton);
+        mainPanel.add(topPanel, BorderLayout.NORTH);
+
+        fileList = new JList<>(listModel);
+        fileList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        fileList.addListSelectionListener(e -> showSelected());
+
+        JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT,
+                new JScrollPane(fileList), new JScrollPane(resultOutput));
+        splitPane.setResizeWeight(0.3);
+        mainPanel.add(splitPane, BorderLayout.CENTER);
+
+        project.getMessageBus().connect(this).subscribe(BatchAnalysisListener.TOPIC, this);
+    }
+
+    @Override
+    public void batchStarted(AnalysisAction action, int totalFiles, int remainingFiles) {
+        statusLabel.setText(remainingFiles < totalFiles
+                ? String.format("%s: resumed, %d of %d files left", action.getDisplayName(), remainingFiles, totalFiles)
+                : String.format("%s: %d files", action.getDisplayName(), totalFiles));
+    }
+
+    @Override
+    public void fileStarted(VirtualFile file) {
+        listModel.addElement(new FileResult(file));
+    }
+
+    @Override
+    public void fileToken(VirtualFile file, String token) {
+        FileResult result = find(file);
+        if (result != null && result.text != null) {
+            result.text.append(token);
+            if (result == fileList.getSelectedValue()) {
+                resultOutput.append(token);
+            }
+        }
+    }
+
+    @Override
+    public void fileFinished(VirtualFile file, boolean failed) {
+        FileResult entry = find(file);
+        if (entry == null) {
+            return;
+        }
+        entry.status = failed ? "failed" : "done";
+        entry.text = null;
+        int index = listModel.indexOf(entry);
+        listModel.set(index, entry);
+        if (entry == fileList.getSelectedValue()) {
+            showSelected();
+        }
+    }
+
+    @Override
+    public void batchFinished(boolean cancelled) {
+        statusLabel.setText(statusLabel.getText() + (cancelled ? " - cancelled" : " - finished"));
+    }
+
+    private FileResult find(VirtualFile file) {
+        // Search from the end: the files still streaming were added last
+        for (int i = listModel.size() - 1; i >= 0; i--) {
+            if (listModel.get(i).file.equals(file)) {
+                return listModel.get(i);
+            }
+        }
+        return null;
+    }
+
+    private void showSelected() {
+        FileResult selected = fileList.getSelectedValue();
+        if (selected == null || selected.text != null) {
+            showText(selected != null ? selected.text.toString() : "");
+            return;
+        }
+        resultOutput.setText("");
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            String text = results.load(selected.file.getUrl());
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (selected == fileList.getSelectedValue()) {
+                    showText(text == null ? "The result is no longer available"
+                            : "failed".equals(selected.status) ? "Error: " + text : text);
+                }
+            });
+        });
+    }
+
+    private void showText(String text) {
+        resultOutput.setText(text);
+        resultOutput.setCaretPosition(0);
+    }
+
+    public JComponent getPanel() {
+        return mainPanel;
+    }
+
+    @Override
+    public void dispose() {
+    }
+
+    private static class FileResult {
+        private final VirtualFile file;
+        // The answer so far while it streams, null once it is finished and stored
+        private StringBuilder text = new StringBuilder();
+        private String status = "running";
+
+        FileResult(VirtualFile file) {
+            this.file = file;
+        }
+
+        @Override
+        public String toString() {
+            return file.getName() + " (" + status + ")";
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.ollama.plugin.ui;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import org.jetbrains.annotations.NotNull;
+
+public class BatchResultsToolWindowFactory implements ToolWindowFactory {
+
+    @Override
+    public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+        BatchResultsPanel resultsPanel = new BatchResultsPanel(project);
+        ContentFactory contentFactory = ContentFactory.getInstance();
+        Content content = contentFactory.createContent(resultsPanel.getPanel(), "", false);
+        content.setDisposer(resultsPanel);
+        toolWindow.getContentManager().addContent(content);
+    }
+}
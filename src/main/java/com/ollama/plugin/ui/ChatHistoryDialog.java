@@ -0,0 +1,194 @@
+package com.ollama.plugin.ui;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.ollama.plugin.client.OllamaChatMessage;
+import com.ollama.plugin.service.ChatHistory;
+
+import javax.swing.*;
+import java.awt.*;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Browses the project's saved conversations. Only the session list is read up front; the messages of the
+ * selected session are fetched a page at a time as rows scroll into view, so long histories open instantly.
+ */
+public class ChatHistoryDialog extends DialogWrapper {
+
+    private static final int PAGE_SIZE = 50;
+    private static final int PREVIEW_CHARS = 200;
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
+    private final ChatHistory history;
+    private final DefaultListModel<ChatHistory.SessionInfo> sessionModel = new DefaultListModel<>();
+    private JList<ChatHistory.SessionInfo> sessionList;
+    private JList<OllamaChatMessage> messageList;
+    private JTextArea messageText;
+    private JButton deleteButton;
+
+    public ChatHistoryDialog(Project project) {
+        super(project);
+        this.history = ChatHistory.getInstance(project);
+        setTitle("Chat History");
+        setOKButtonText("Continue");
+        init();
+        setOKActionEnabled(false);
+        history.listSessions().thenAccept(sessions -> SwingUtilities.invokeLater(() -> {
+            for (ChatHistory.SessionInfo session : sessions) {
+                sessionModel.addElement(session);
+            }
+            if (!sessions.isEmpty()) {
+                sessionList.setSelectedIndex(0);
+            }
+        }));
+    }
+
+    /**
+     * The session to continue, or null if none is selected
+     */
+    public ChatHistory.SessionInfo getSelectedSession() {
+        return sessionList.getSelectedValue();
+    }
+
+    @Override
+    protected JComponent createCenterPanel() {
+        sessionList = new JList<>(sessionModel);
+        sessionList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        sessionList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                ChatHistory.SessionInfo session = (ChatHistory.SessionInfo) value;
+                String text = String.format("<html><b>%s</b><br>%s &middot; %s &middot; %d messages</html>",
+                        escapeHtml(session.getTitle()), escapeHtml(session.getModel()),
+                        DATE_FORMAT.format(Instant.ofEpochMilli(session.getUpdated())), session.getMessageCount());
+                return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+            }
+        });
+        sessionList.addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                showSession(sessionList.getSelectedValue());
+            }
+        });
+
+        messageList = new JList<>();
+        messageList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        // Fixed cell sizes keep JList from rendering every row just to measure it, which would load every page
+        messageList.setFixedCellHeight(new JLabel("X").getPreferredSize().height + 4);
+        messageList.setFixedCellWidth(400);
+        messageList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                OllamaChatMessage message = (OllamaChatMessage) value;
+                String text = message == null ? "Loading..." : preview(message);
+                return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+            }
+        });
+        messageList.addListSelectionListener(e -> showSelectedMessage());
+
+        messageText = new JTextArea();
+        messageText.setEditable(false);
+        messageText.setLineWrap(true);
+        messageText.setWrapStyleWord(true);
+
+        JSplitPane messagesSplit = new JSplitPane(JSplitPane.VERTICAL_SPLIT,
+                new JScrollPane(messageList), new JScrollPane(messageText));
+        messagesSplit.setResizeWeight(0.5);
+
+        JPanel sessionsPanel = new JPanel(new BorderLayout(5, 5));
+        sessionsPanel.add(new JScrollPane(sessionList), BorderLayout.CENTER);
+        deleteButton = new JButton("Delete");
+        deleteButton.setEnabled(false);
+        deleteButton.addActionListener(e -> deleteSelected());
+        sessionsPanel.add(deleteButton, BorderLayout.SOUTH);
+
+        JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, sessionsPanel, messagesSplit);
+        splitPane.setResizeWeight(0.35);
+        splitPane.setPreferredSize(new Dimension(900, 550));
+        return splitPane;
+    }
+
+    private void showSession(ChatHistory.SessionInfo session) {
+        messageList.setModel(session != null ? new MessagePages(session) : new DefaultListModel<>());
+        messageText.setText("");
+        deleteButton.setEnabled(session != null);
+        setOKActionEnabled(session != null && session.getMessageCount() > 0);
+    }
+
+    private void showSelectedMessage() {
+        OllamaChatMessage message = messageList.getSelectedValue();
+        messageText.setText(message != null ? message.getContent() : "");
+        messageText.setCaretPosition(0);
+    }
+
+    private void deleteSelected() {
+        ChatHistory.SessionInfo session = sessionList.getSelectedValue();
+        if (session == null) {
+            return;
+        }
+        int index = sessionList.getSelectedIndex();
+        history.deleteSession(session.getId());
+        sessionModel.removeElement(session);
+        if (!sessionModel.isEmpty()) {
+            sessionList.setSelectedIndex(Math.min(index, sessionModel.size() - 1));
+        }
+    }
+
+    private static String preview(OllamaChatMessage message) {
+        String content = message.getContent().replaceAll("\\s+", " ").trim();
+        if (content.length() > PREVIEW_CHARS) {
+            content = content.substring(0, PREVIEW_CHARS) + "...";
+        }
+        return (OllamaChatMessage.USER.equals(message.getRole()) ? "You: " : "Assistant: ") + content;
+    }
+
+    private static String escapeHtml(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    /**
+     * Messages of one session, fetched in pages the first time a row of the page is rendered
+     */
+    private class MessagePages extends AbstractListModel<OllamaChatMessage> {
+        private static final long serialVersionUID = 1L;
+
+        private final ChatHistory.SessionInfo session;
+        // Page number to its messages, or to null while the page is being read
+        private final Map<Integer, List<OllamaChatMessage>> pages = new HashMap<>();
+
+        MessagePages(ChatHistory.SessionInfo session) {
+            this.session = session;
+        }
+
+        @Override
+        public int getSize() {
+            return session.getMessageCount();
+        }
+
+        @Override
+        public OllamaChatMessage getElementAt(int index) {
+            int page = index / PAGE_SIZE;
+            if (!pages.containsKey(page)) {
+                pages.put(page, null);
+                history.loadMessages(session.getId(), page * PAGE_SIZE, PAGE_SIZE).thenAccept(messages ->
+                        SwingUtilities.invokeLater(() -> {
+                            pages.put(page, messages);
+                            fireContentsChanged(this, page * PAGE_SIZE, page * PAGE_SIZE + PAGE_SIZE - 1);
+                            if (messageList.getModel() == this && messageList.getSelectedIndex() / PAGE_SIZE == page) {
+                                showSelectedMessage();
+                            }
+                        }));
+            }
+            List<OllamaChatMessage> messages = pages.get(page);
+            int offset = index % PAGE_SIZE;
+            return messages != null && offset < messages.size() ? messages.get(offset) : null;
+        }
+    }
+}
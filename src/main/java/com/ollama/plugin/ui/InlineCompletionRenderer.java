@@ -0,0 +1,64 @@
+package com.ollama.plugin.ui;
+
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorCustomElementRenderer;
+import com.intellij.openapi.editor.Inlay;
+import com.intellij.openapi.editor.colors.EditorFontType;
+import com.intellij.openapi.editor.markup.TextAttributes;
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+
+/**
+ * Gray italic text of an inline completion. The first line is rendered inline after the caret,
+ * further lines by a block inlay below it.
+ */
+public class InlineCompletionRenderer implements EditorCustomElementRenderer {
+
+    private static final Color HINT_COLOR = new Color(128, 128, 128);
+
+    private final Editor editor;
+    private final String[] lines;
+
+    public InlineCompletionRenderer(Editor editor, String text) {
+        this.editor = editor;
+        this.lines = text.replace("\t", "    ").split("\n", -1);
+    }
+
+    private Font getFont() {
+        return editor.getColorsScheme().getFont(EditorFontType.ITALIC);
+    }
+
+    // EditorCustomElementRenderer declares the raw Inlay, and an Inlay<?> parameter would not override it
+    @Override
+    @SuppressWarnings("rawtypes")
+    public int calcWidthInPixels(@NotNull Inlay inlay) {
+        FontMetrics metrics = editor.getContentComponent().getFontMetrics(getFont());
+        int width = 1;
+        for (String line : lines) {
+            width = Math.max(width, metrics.stringWidth(line));
+        }
+        return width;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public int calcHeightInPixels(@NotNull Inlay inlay) {
+        return editor.getLineHeight() * lines.length;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void paint(@NotNull Inlay inlay, @NotNull Graphics g, @NotNull Rectangle targetRegion,
+                      @NotNull TextAttributes textAttributes) {
+        g.setFont(getFont());
+        g.setColor(HINT_COLOR);
+        FontMetrics metrics = g.getFontMetrics();
+        int lineHeight = editor.getLineHeight();
+        int baseline = targetRegion.y + (lineHeight + metrics.getAscent() - metrics.getDescent()) / 2;
+        for (String line : lines) {
+            g.drawString(line, targetRegion.x, baseline);
+            baseline += lineHeight;
+        }
+    }
+}
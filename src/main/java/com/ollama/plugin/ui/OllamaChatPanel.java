@@ -1,40 +1,97 @@
 package com.ollama.plugin.ui;
 
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.messages.MessageBusConnection;
+import com.intellij.openapi.application.ApplicationManager;
+import com.ollama.plugin.client.Histogram;
+import com.ollama.plugin.client.ModelCatalogListener;
+import com.ollama.plugin.client.OllamaChatMessage;
+import com.ollama.plugin.client.OllamaChatSession;
 import com.ollama.plugin.client.OllamaClient;
+import com.ollama.plugin.client.OllamaEndpoint;
+import com.ollama.plugin.client.OllamaEndpointListener;
 import com.ollama.plugin.client.OllamaModel;
+import com.ollama.plugin.client.OllamaModelCatalog;
+import com.ollama.plugin.client.OllamaRequestHandle;
 import com.ollama.plugin.client.OllamaResponse;
+import com.ollama.plugin.client.OllamaServerMonitor;
+import com.ollama.plugin.client.OllamaServerStatus;
+import com.ollama.plugin.client.OllamaServerStatusListener;
+import com.ollama.plugin.client.OllamaStageEvent;
+import com.ollama.plugin.service.ChatHistory;
 import com.ollama.plugin.settings.OllamaSettingsService;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.Arrays;
 import java.util.List;
 
-public class OllamaChatPanel {
+public class OllamaChatPanel implements Disposable {
+
+    private static final String NO_METRICS = "Tokens: - | Tokens/sec: - | First token: -";
 
     private final Project project;
     private final OllamaClient ollamaClient;
     private final OllamaSettingsService settingsService;
+    private final OllamaModelCatalog modelCatalog;
+    private final OllamaServerMonitor serverMonitor;
+    private final ChatHistory chatHistory;
 
     private JPanel mainPanel;
     private JComboBox<OllamaModel> modelSelector;
     private JButton refreshModelsButton;
     private JButton connectButton;
     private JLabel connectionStatusLabel;
+    private JLabel endpointsLabel;
 
     private JTextArea promptInput;
     private JButton sendButton;
+    private JButton stopButton;
+    private JCheckBox conversationCheckBox;
+    private JButton newChatButton;
+    private JButton historyButton;
 
-    private JTextArea resultOutput;
+    private TranscriptView transcript;
     private JLabel metricsLabel;
+    private OllamaMetricsPanel requestMetricsPanel;
 
     private JProgressBar progressBar;
 
+    // Set while showModels() refills the combo box, so that refill does not count as the user picking a model
+    private boolean updatingModels;
+
+    // Only one generation per panel; a new prompt or closing the tool window aborts the previous one
+    private OllamaRequestHandle currentRequest;
+    // Traces the current turn from sending to the end of its stream while a flight recording runs
+    private OllamaStageEvent turnEvent;
+
+    // History of the current conversation while conversation mode is on; replaced when the model changes
+    private OllamaChatSession chatSession;
+    // Id of the conversation in the chat history, 0 until its first turn has been saved
+    private long historySessionId;
+
     public OllamaChatPanel(Project project) {
         this.project = project;
         this.ollamaClient = OllamaClient.getInstance();
         this.settingsService = OllamaSettingsService.getInstance();
+        this.modelCatalog = OllamaModelCatalog.getInstance();
+        this.serverMonitor = OllamaServerMonitor.getInstance();
+        this.chatHistory = ChatHistory.getInstance(project);
         createUI();
+
+        // Show whatever the shared catalog already knows right away, and follow later changes from any panel
+        showModels(modelCatalog.getCachedModels());
+        MessageBusConnection connection = ApplicationManager.getApplication().getMessageBus().connect(this);
+        connection.subscribe(ModelCatalogListener.TOPIC, this::showModels);
+        connection.subscribe(OllamaEndpointListener.TOPIC, this::showEndpoints);
+        showEndpoints(ollamaClient.getEndpointPool().getEndpoints());
+        // Connection state comes from the shared monitor rather than a probe per panel
+        connection.subscribe(OllamaServerStatusListener.TOPIC, this::showStatus);
+        if (serverMonitor.getStatus() != null) {
+            showStatus(serverMonitor.getStatus());
+        }
         initializeModels();
     }
 
@@ -83,16 +140,31 @@ public class OllamaChatPanel {
         modelRow.setLayout(new BoxLayout(modelRow, BoxLayout.X_AXIS));
         modelRow.add(new JLabel("Model:"));
         modelSelector = new JComboBox<>();
+        modelSelector.addActionListener(e -> {
+            if (!updatingModels) {
+                warmUpSelectedModel();
+            }
+        });
         modelRow.add(Box.createHorizontalStrut(5));
         modelRow.add(modelSelector);
         modelRow.add(Box.createHorizontalStrut(5));
         
         refreshModelsButton = new JButton("Refresh Models");
-        refreshModelsButton.addActionListener(e -> refreshModels());
+        refreshModelsButton.addActionListener(e -> loadModels(true));
         modelRow.add(refreshModelsButton);
         modelRow.add(Box.createHorizontalGlue());
         panel.add(modelRow);
 
+        panel.add(Box.createVerticalStrut(5));
+
+        // Per-endpoint routing status
+        JPanel endpointsRow = new JPanel();
+        endpointsRow.setLayout(new BoxLayout(endpointsRow, BoxLayout.X_AXIS));
+        endpointsLabel = new JLabel();
+        endpointsRow.add(endpointsLabel);
+        endpointsRow.add(Box.createHorizontalGlue());
+        panel.add(endpointsRow);
+
         return panel;
     }
 
@@ -116,9 +188,27 @@ public class OllamaChatPanel {
         buttonPanel.add(progressBar);
         
         buttonPanel.add(Box.createHorizontalGlue());
+        conversationCheckBox = new JCheckBox("Conversation");
+        conversationCheckBox.setToolTipText("Send follow-up prompts with the chat history so the server can reuse its cache");
+        conversationCheckBox.addActionListener(e -> newChat());
+        buttonPanel.add(conversationCheckBox);
+        buttonPanel.add(Box.createHorizontalStrut(5));
+        newChatButton = new JButton("New Chat");
+        newChatButton.addActionListener(e -> newChat());
+        buttonPanel.add(newChatButton);
+        buttonPanel.add(Box.createHorizontalStrut(5));
+        historyButton = new JButton("History...");
+        historyButton.addActionListener(e -> openHistory());
+        buttonPanel.add(historyButton);
+        buttonPanel.add(Box.createHorizontalStrut(5));
         sendButton = new JButton("Send");
         sendButton.addActionListener(e -> sendPrompt());
         buttonPanel.add(sendButton);
+        buttonPanel.add(Box.createHorizontalStrut(5));
+        stopButton = new JButton("Stop");
+        stopButton.setEnabled(false);
+        stopButton.addActionListener(e -> stopGeneration());
+        buttonPanel.add(stopButton);
         
         panel.add(buttonPanel, BorderLayout.SOUTH);
 
@@ -134,70 +224,77 @@ public class OllamaChatPanel {
         resultsPanel.setLayout(new BorderLayout(5, 5));
         resultsPanel.setBorder(BorderFactory.createTitledBorder("Results"));
         
-        resultOutput = new JTextArea(8, 40);
-        resultOutput.setEditable(false);
-        resultOutput.setLineWrap(true);
-        resultOutput.setWrapStyleWord(true);
-        JScrollPane resultsScrollPane = new JScrollPane(resultOutput);
-        resultsPanel.add(resultsScrollPane, BorderLayout.CENTER);
+        transcript = new TranscriptView(project);
+        Disposer.register(this, transcript);
+        resultsPanel.add(transcript.getComponent(), BorderLayout.CENTER);
 
         panel.add(resultsPanel, BorderLayout.CENTER);
 
         // Metrics panel
         JPanel metricsPanel = new JPanel();
-        metricsPanel.setLayout(new BoxLayout(metricsPanel, BoxLayout.X_AXIS));
+        metricsPanel.setLayout(new BorderLayout(5, 5));
         metricsPanel.setBorder(BorderFactory.createTitledBorder("Metrics"));
         
-        metricsLabel = new JLabel("Memory: - | CPU: - | Tokens/sec: -");
-        metricsPanel.add(metricsLabel);
-        metricsPanel.add(Box.createHorizontalGlue());
+        metricsLabel = new JLabel(NO_METRICS);
+        metricsPanel.add(metricsLabel, BorderLayout.NORTH);
+
+        // Percentiles over every request the plugin made, including editor actions
+        requestMetricsPanel = new OllamaMetricsPanel(project, ollamaClient);
+        Disposer.register(this, requestMetricsPanel);
+        metricsPanel.add(requestMetricsPanel.getPanel(), BorderLayout.CENTER);
         
         panel.add(metricsPanel, BorderLayout.SOUTH);
 
         return panel;
     }
 
+    /**
+     * Ask the monitor to check the server now and explain a failure, unlike the background polls
+     */
     private void connectToOllama() {
-        String baseUrl = settingsService.getBaseUrl();
         progressBar.setVisible(true);
-        
-        ollamaClient.isConnected(baseUrl).thenAccept(connected -> {
+
+        serverMonitor.refreshNow().thenAccept(status -> {
             SwingUtilities.invokeLater(() -> {
                 progressBar.setVisible(false);
-                if (connected) {
-                    connectionStatusLabel.setText("Connected");
-                    connectionStatusLabel.setForeground(new Color(0, 128, 0));
-                    refreshModels();
-                } else {
-                    connectionStatusLabel.setText("Failed to connect");
-                    connectionStatusLabel.setForeground(Color.RED);
-                    JOptionPane.showMessageDialog(mainPanel, 
-                        "Failed to connect to Ollama at " + baseUrl,
-                        "Connection Error", 
+                showStatus(status);
+                if (!status.isConnected()) {
+                    String openCircuits = ollamaClient.getEndpointPool().describeOpenCircuits();
+                    JOptionPane.showMessageDialog(mainPanel,
+                        openCircuits != null ? openCircuits
+                            : "Failed to connect to Ollama at " + status.getBaseUrl() + ": " + status.getError(),
+                        "Connection Error",
                         JOptionPane.ERROR_MESSAGE);
+                } else if (status.getModels().isEmpty()) {
+                    JOptionPane.showMessageDialog(mainPanel,
+                        "No models found. Please download a model in Ollama first.",
+                        "No Models",
+                        JOptionPane.INFORMATION_MESSAGE);
                 }
             });
-        }).exceptionally(ex -> {
-            SwingUtilities.invokeLater(() -> {
-                progressBar.setVisible(false);
-                connectionStatusLabel.setText("Error");
-                connectionStatusLabel.setForeground(Color.RED);
-            });
-            return null;
         });
     }
 
-    private void refreshModels() {
+    private void showStatus(OllamaServerStatus status) {
+        if (status.isConnected()) {
+            connectionStatusLabel.setText("Connected");
+            connectionStatusLabel.setForeground(new Color(0, 128, 0));
+            connectionStatusLabel.setToolTipText(status.getBaseUrl());
+        } else {
+            connectionStatusLabel.setText("Failed to connect");
+            connectionStatusLabel.setForeground(Color.RED);
+            connectionStatusLabel.setToolTipText(status.getError());
+        }
+    }
+
+    private void loadModels(boolean forceRefresh) {
         String baseUrl = settingsService.getBaseUrl();
         progressBar.setVisible(true);
         
-        ollamaClient.fetchModels(baseUrl).thenAccept(models -> {
+        modelCatalog.getModels(baseUrl, forceRefresh).thenAccept(models -> {
             SwingUtilities.invokeLater(() -> {
                 progressBar.setVisible(false);
-                modelSelector.removeAllItems();
-                for (OllamaModel model : models) {
-                    modelSelector.addItem(model);
-                }
+                showModels(models);
                 if (models.isEmpty()) {
                     JOptionPane.showMessageDialog(mainPanel,
                         "No models found. Please download a model in Ollama first.",
@@ -217,6 +314,59 @@ public class OllamaChatPanel {
         });
     }
 
+    /**
+     * Replace the combo box items, keeping the current selection if that model is still installed and starting
+     * from the default model when nothing is selected yet. The selection only applies to this chat; the default
+     * model is changed in the settings.
+     */
+    private void showModels(List<OllamaModel> models) {
+        OllamaModel selectedModel = (OllamaModel) modelSelector.getSelectedItem();
+        String selected = selectedModel != null ? selectedModel.getName() : settingsService.selectedModel;
+        updatingModels = true;
+        try {
+            modelSelector.removeAllItems();
+            for (OllamaModel model : models) {
+                modelSelector.addItem(model);
+                if (model.getName().equals(selected)) {
+                    modelSelector.setSelectedItem(model);
+                }
+            }
+        } finally {
+            updatingModels = false;
+        }
+    }
+
+    /**
+     * Preload the chosen model so the first prompt does not pay for loading its weights
+     */
+    private void warmUpSelectedModel() {
+        OllamaModel selected = (OllamaModel) modelSelector.getSelectedItem();
+        if (selected == null) {
+            return;
+        }
+        String name = selected.getName();
+        ollamaClient.getModelLifecycle().warmUp(name).thenAccept(loadNanos -> {
+            if (loadNanos > 0) {
+                SwingUtilities.invokeLater(() -> metricsLabel.setText(
+                    String.format("Loaded %s in %.2fs", name, loadNanos / 1_000_000_000.0)));
+            }
+        });
+    }
+
+    private void showEndpoints(List<OllamaEndpoint> endpoints) {
+        StringBuilder text = new StringBuilder("<html>");
+        for (OllamaEndpoint endpoint : endpoints) {
+            text.append(endpoint.isHealthy() ? "&#9679; " : "&#9675; ")
+                .append(escapeHtml(endpoint.getUrl())).append(": ")
+                .append(escapeHtml(endpoint.getStatusText())).append("<br>");
+        }
+        endpointsLabel.setText(text.append("</html>").toString());
+    }
+
+    private static String escapeHtml(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
     private void sendPrompt() {
         if (modelSelector.getSelectedItem() == null) {
             JOptionPane.showMessageDialog(mainPanel,
@@ -236,61 +386,219 @@ public class OllamaChatPanel {
         }
 
         OllamaModel selectedModel = (OllamaModel) modelSelector.getSelectedItem();
-        String baseUrl = settingsService.getBaseUrl();
         
+        cancelCurrentRequest();
+
+        if (conversationCheckBox.isSelected()) {
+            sendChatMessage(selectedModel.getName(), prompt);
+            return;
+        }
+
         progressBar.setVisible(true);
-        sendButton.setEnabled(false);
-        resultOutput.setText("Generating response...");
+        stopButton.setEnabled(true);
+        transcript.clear();
+        transcript.beginStreaming();
+        turnEvent = OllamaStageEvent.start("Prompt", selectedModel.getName());
+
+        // Callbacks arrive on the EDT and are dropped once the request is cancelled or superseded
+        currentRequest = ollamaClient.streamPrompt(selectedModel.getName(), prompt,
+            new OllamaClient.OllamaStreamCallback() {
+                @Override
+                public void onToken(String token) {
+                    transcript.append(token);
+                }
 
-        ollamaClient.sendPrompt(baseUrl, selectedModel.getName(), prompt, 
-            new OllamaClient.OllamaResponseCallback() {
                 @Override
-                public void onSuccess(OllamaResponse response) {
-                    SwingUtilities.invokeLater(() -> {
-                        progressBar.setVisible(false);
-                        sendButton.setEnabled(true);
-                        resultOutput.setText(response.getResponse());
-                        updateMetrics(response);
-                    });
+                public void onComplete(OllamaResponse response) {
+                    finishRequest();
+                    updateMetrics(response);
+                    // A single prompt is saved as a conversation of one turn
+                    saveTurn(0, selectedModel.getName(), prompt, response.getResponse());
                 }
 
                 @Override
                 public void onError(String error) {
-                    SwingUtilities.invokeLater(() -> {
-                        progressBar.setVisible(false);
-                        sendButton.setEnabled(true);
-                        resultOutput.setText("Error: " + error);
-                        metricsLabel.setText("Memory: - | CPU: - | Tokens/sec: -");
-                    });
+                    finishRequest();
+                    transcript.clear();
+                    transcript.append("Error: " + error);
+                    metricsLabel.setText(NO_METRICS);
+                }
+            });
+    }
+
+    /**
+     * Send prompt as the next turn of the conversation, keeping the transcript in the results area
+     */
+    private void sendChatMessage(String model, String prompt) {
+        if (chatSession == null || !chatSession.getModel().equals(model)) {
+            chatSession = new OllamaChatSession(model);
+            historySessionId = 0;
+            transcript.clear();
+        }
+        OllamaChatSession session = chatSession;
+
+        progressBar.setVisible(true);
+        stopButton.setEnabled(true);
+        promptInput.setText("");
+        transcript.append((transcript.isEmpty() ? "" : "\n\n") + "You: " + prompt + "\n\nAssistant: ");
+        transcript.beginStreaming();
+        turnEvent = OllamaStageEvent.start("Chat turn", model);
+
+        currentRequest = ollamaClient.streamChat(model, session.ask(prompt), session.getEndpoint(),
+            new OllamaClient.OllamaStreamCallback() {
+                @Override
+                public void onToken(String token) {
+                    transcript.append(token);
+                }
+
+                @Override
+                public void onComplete(OllamaResponse response) {
+                    session.complete(response);
+                    historySessionId = saveTurn(historySessionId, model, prompt, response.getResponse());
+                    finishRequest();
+                    updateMetrics(response);
+                    metricsLabel.setText(metricsLabel.getText() + String.format(
+                        " | Prompt eval: %d tokens (~%d reused, %d this chat)",
+                        session.getLastPromptEvalCount(), session.getLastReusedTokens(), session.getTotalReusedTokens()));
+                }
+
+                @Override
+                public void onError(String error) {
+                    session.discardPendingQuestion();
+                    finishRequest();
+                    transcript.append("\n[Error: " + error + "]");
                 }
-            }).exceptionally(ex -> {
-            SwingUtilities.invokeLater(() -> {
-                progressBar.setVisible(false);
-                sendButton.setEnabled(true);
-                resultOutput.setText("Exception: " + ex.getMessage());
             });
-            return null;
-        });
+    }
+
+    /**
+     * Forget the conversation so the next prompt starts a new one
+     */
+    private void newChat() {
+        cancelCurrentRequest();
+        finishRequest();
+        chatSession = null;
+        historySessionId = 0;
+        transcript.clear();
+        metricsLabel.setText(NO_METRICS);
+    }
+
+    /**
+     * Append a completed turn to the chat history, starting a new saved conversation if sessionId is 0,
+     * and return the id of the conversation it went to
+     */
+    private long saveTurn(long sessionId, String model, String prompt, String answer) {
+        long id = sessionId != 0 ? sessionId : chatHistory.createSession(model, prompt);
+        chatHistory.appendMessages(id, Arrays.asList(
+            new OllamaChatMessage(OllamaChatMessage.USER, prompt),
+            new OllamaChatMessage(OllamaChatMessage.ASSISTANT, answer)));
+        return id;
+    }
+
+    private void openHistory() {
+        ChatHistoryDialog dialog = new ChatHistoryDialog(project);
+        ChatHistory.SessionInfo selected = dialog.showAndGet() ? dialog.getSelectedSession() : null;
+        if (selected == null) {
+            return;
+        }
+        chatHistory.loadMessages(selected.getId(), 0, selected.getMessageCount()).thenAccept(messages ->
+            SwingUtilities.invokeLater(() -> continueSession(selected, messages)));
+    }
+
+    /**
+     * Make a saved conversation the current one, so the next prompt continues it
+     */
+    private void continueSession(ChatHistory.SessionInfo saved, List<OllamaChatMessage> messages) {
+        cancelCurrentRequest();
+        finishRequest();
+        for (int i = 0; i < modelSelector.getItemCount(); i++) {
+            if (modelSelector.getItemAt(i).getName().equals(saved.getModel())) {
+                modelSelector.setSelectedIndex(i);
+                break;
+            }
+        }
+        conversationCheckBox.setSelected(true);
+        chatSession = new OllamaChatSession(saved.getModel(), messages);
+        historySessionId = saved.getId();
+        transcript.clear();
+        for (OllamaChatMessage message : chatSession.getMessages()) {
+            String speaker = OllamaChatMessage.USER.equals(message.getRole()) ? "You: " : "Assistant: ";
+            transcript.append((transcript.isEmpty() ? "" : "\n\n") + speaker + message.getContent());
+        }
+        transcript.endStreaming();
+        metricsLabel.setText(NO_METRICS);
+    }
+
+    private void stopGeneration() {
+        if (currentRequest != null) {
+            cancelCurrentRequest();
+            finishRequest();
+            transcript.append("\n\n[Stopped]");
+        }
+    }
+
+    private void cancelCurrentRequest() {
+        if (currentRequest != null) {
+            currentRequest.cancel();
+            currentRequest = null;
+            OllamaStageEvent.finish(turnEvent, "cancelled");
+            turnEvent = null;
+            // A cancelled turn never gets an answer, so its question must not stay in the history
+            if (chatSession != null) {
+                chatSession.discardPendingQuestion();
+            }
+        }
+    }
+
+    private void finishRequest() {
+        currentRequest = null;
+        OllamaStageEvent.finish(turnEvent, "finished");
+        turnEvent = null;
+        transcript.endStreaming();
+        progressBar.setVisible(false);
+        stopButton.setEnabled(false);
     }
 
     private void updateMetrics(OllamaResponse response) {
         String tokensPerSec = String.format("%.2f", response.getTokensPerSecond());
+        // Load time is reported apart from generation so a cold model does not look like a slow one
         metricsLabel.setText(String.format(
-            "Tokens: %d | Tokens/sec: %s | Duration: %.2fs",
+            "Tokens: %d | Tokens/sec: %s | First token: %.2fs | Load: %.2fs | Generation: %.2fs | Duration: %.2fs",
             response.getTokenCount(),
             tokensPerSec,
+            response.getTimeToFirstToken() / 1_000_000_000.0,
+            response.getLoadDuration() / 1_000_000_000.0,
+            (response.getTotalDuration() - response.getLoadDuration()) / 1_000_000_000.0,
             response.getTotalDuration() / 1_000_000_000.0
-        ));
+        ) + formatUiLatency());
+    }
+
+    /**
+     * How long the EDT took to run posted events while output streamed in; stays low if rendering keeps up
+     */
+    private String formatUiLatency() {
+        Histogram latency = transcript.getEdtLatency();
+        if (latency.getCount() == 0) {
+            return "";
+        }
+        return String.format(" | UI latency p50/p99/max: %.1f / %.1f / %.1f ms, frame p99: %.1f ms",
+            latency.getPercentile(50) / 1000.0, latency.getPercentile(99) / 1000.0, latency.getMax() / 1000.0,
+            transcript.getFlushTime().getPercentile(99) / 1000.0);
     }
 
     private void initializeModels() {
-        // Try to auto-connect if enabled
+        // Auto-connect starts the shared background polling; its results arrive through showStatus()
         if (settingsService.autoConnect) {
-            connectToOllama();
+            serverMonitor.start();
         }
     }
 
     public JPanel getPanel() {
         return mainPanel;
     }
+
+    @Override
+    public void dispose() {
+        cancelCurrentRequest();
+    }
 }
@@ -14,6 +14,7 @@ public class OllamaChatToolWindowFactory implements ToolWindowFactory {
         OllamaChatPanel chatPanel = new OllamaChatPanel(project);
         ContentFactory contentFactory = ContentFactory.getInstance();
         Content content = contentFactory.createContent(chatPanel.getPanel(), "", false);
+        content.setDisposer(chatPanel);
         toolWindow.getContentManager().addContent(content);
     }
 }
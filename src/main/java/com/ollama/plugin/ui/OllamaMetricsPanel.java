@@ -0,0 +1,255 @@
+package com.ollama.plugin.ui;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.ollama.plugin.client.Histogram;
+import com.ollama.plugin.client.OllamaClient;
+import com.ollama.plugin.client.OllamaMetrics;
+import com.ollama.plugin.client.OllamaPriority;
+import com.ollama.plugin.client.OllamaRequestMetrics;
+import com.ollama.plugin.client.OllamaRunningModel;
+import com.ollama.plugin.client.OllamaServerMonitor;
+import com.ollama.plugin.client.OllamaServerStatus;
+import com.ollama.plugin.client.OllamaServerStatusListener;
+import com.ollama.plugin.service.EmbeddingIndex;
+import com.ollama.plugin.service.InlineCompletionService;
+import com.ollama.plugin.service.ResponseCache;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+/**
+ * Latency percentiles per model or per action, and the models the server currently holds in memory.
+ * Client timings refresh every two seconds; loaded models follow the shared server monitor.
+ */
+public class OllamaMetricsPanel implements Disposable {
+
+    private static final String BY_MODEL = "By model";
+    private static final String BY_ACTION = "By action";
+    private static final int REFRESH_MILLIS = 2000;
+
+    private static final String[] COLUMNS = {
+        "Name", "Requests", "First token p50/p95/p99", "Total p50/p95/p99",
+        "Generation tok/s p50", "Prompt tok/s p50", "Prompt tokens evaluated p50/mean", "Queue wait p95", "Connect p95",
+        "Load p95"
+    };
+
+    private final Project project;
+    private final OllamaClient ollamaClient;
+
+    private final JPanel mainPanel;
+    private final JComboBox<String> groupSelector;
+    private final DefaultTableModel tableModel;
+    private final JLabel residentLabel;
+    private final JLabel coalescedLabel;
+    private final JLabel schedulerLabel;
+    private final JLabel completionLabel;
+    private final JLabel indexLabel;
+    private final JLabel cacheLabel;
+    private final Timer refreshTimer;
+
+    public OllamaMetricsPanel(Project project, OllamaClient ollamaClient) {
+        this.project = project;
+        this.ollamaClient = ollamaClient;
+
+        mainPanel = new JPanel(new BorderLayout(5, 5));
+
+        JPanel controls = new JPanel();
+        controls.setLayout(new BoxLayout(controls, BoxLayout.X_AXIS));
+        groupSelector = new JComboBox<>(new String[]{BY_MODEL, BY_ACTION});
+        groupSelector.addActionListener(e -> refreshTimings());
+        controls.add(groupSelector);
+        controls.add(Box.createHorizontalStrut(5));
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(e -> {
+            ollamaClient.getRequestMetrics().reset();
+            InlineCompletionService.getInstance().resetStats();
+            refreshTimings();
+        });
+        controls.add(resetButton);
+        controls.add(Box.createHorizontalStrut(5));
+        JButton clearCacheButton = new JButton("Clear Cache");
+        clearCacheButton.setToolTipText("Forget every cached analysis result, in memory and on disk");
+        clearCacheButton.addActionListener(e -> ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            ResponseCache.getInstance().clear();
+            SwingUtilities.invokeLater(this::refreshTimings);
+        }));
+        controls.add(clearCacheButton);
+        controls.add(Box.createHorizontalStrut(10));
+        coalescedLabel = new JLabel("Coalesced: 0");
+        coalescedLabel.setToolTipText("Requests that joined an identical generation already running");
+        controls.add(coalescedLabel);
+        controls.add(Box.createHorizontalGlue());
+        mainPanel.add(controls, BorderLayout.NORTH);
+
+        tableModel = new DefaultTableModel(COLUMNS, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable table = new JTable(tableModel);
+        table.setPreferredScrollableViewportSize(new Dimension(600, 80));
+        mainPanel.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JPanel statusPanel = new JPanel();
+        statusPanel.setLayout(new BoxLayout(statusPanel, BoxLayout.Y_AXIS));
+        schedulerLabel = new JLabel("Queue wait p95: -");
+        statusPanel.add(schedulerLabel);
+        completionLabel = new JLabel("Inline completion: -");
+        completionLabel.setToolTipText("Time from keystroke to a visible suggestion, including the typing delay");
+        statusPanel.add(completionLabel);
+        indexLabel = new JLabel("Project index: not built");
+        statusPanel.add(indexLabel);
+        cacheLabel = new JLabel("Cache: -");
+        cacheLabel.setToolTipText("Analysis results served without asking the server");
+        statusPanel.add(cacheLabel);
+        residentLabel = new JLabel("Loaded on server: -");
+        statusPanel.add(residentLabel);
+        mainPanel.add(statusPanel, BorderLayout.SOUTH);
+
+        refreshTimer = new Timer(REFRESH_MILLIS, e -> refreshTimings());
+        refreshTimer.start();
+
+        OllamaServerStatus status = OllamaServerMonitor.getInstance().getStatus();
+        if (status != null) {
+            showServer(status);
+        }
+        ApplicationManager.getApplication().getMessageBus().connect(this)
+            .subscribe(OllamaServerStatusListener.TOPIC, this::showServer);
+    }
+
+    private void refreshTimings() {
+        OllamaRequestMetrics metrics = ollamaClient.getRequestMetrics();
+        Map<String, OllamaRequestMetrics.Timings> rows =
+            BY_ACTION.equals(groupSelector.getSelectedItem()) ? metrics.getByAction() : metrics.getByModel();
+
+        tableModel.setRowCount(0);
+        for (Map.Entry<String, OllamaRequestMetrics.Timings> row : rows.entrySet()) {
+            OllamaRequestMetrics.Timings timings = row.getValue();
+            tableModel.addRow(new Object[]{
+                row.getKey(),
+                timings.getCount(),
+                formatPercentiles(timings.getTimeToFirstToken()),
+                formatPercentiles(timings.getTotal()),
+                formatRate(timings.getGenerationRate()),
+                formatRate(timings.getPromptEvalRate()),
+                formatTokens(timings.getPromptTokens()),
+                formatMicros(timings.getQueueWait().getPercentile(95)),
+                formatMicros(timings.getConnect().getPercentile(95)),
+                formatMicros(timings.getLoad().getPercentile(95))
+            });
+        }
+        coalescedLabel.setText("Coalesced: " + metrics.getCoalescedCount());
+        schedulerLabel.setText(formatQueueWaits(metrics));
+        completionLabel.setText(formatCompletion(InlineCompletionService.getInstance()));
+        indexLabel.setText(formatIndex(EmbeddingIndex.getInstance(project)));
+        ResponseCache cache = ResponseCache.getInstance();
+        cacheLabel.setText(cache.getStatsSummary() + " | " + cache.getMemoryEntryCount() + " entries in memory");
+    }
+
+    private void showServer(OllamaServerStatus status) {
+        residentLabel.setText(status.isConnected() ? formatResident(status.getMetrics()) : "Loaded on server: unavailable");
+    }
+
+    private static String formatResident(OllamaMetrics metrics) {
+        if (metrics.getRunningModels().isEmpty()) {
+            return "Loaded on server: none";
+        }
+        StringBuilder text = new StringBuilder("Loaded on server: ");
+        for (OllamaRunningModel model : metrics.getRunningModels()) {
+            text.append(model.getName()).append(' ')
+                .append(OllamaMetrics.formatBytes(model.getSize()))
+                .append(" (VRAM ").append(OllamaMetrics.formatBytes(model.getSizeVram()))
+                .append(", until ").append(formatExpiry(model.getExpiresAt())).append(")  ");
+        }
+        return text.append("| Total ").append(metrics.getMemoryUsageFormatted())
+            .append(", VRAM ").append(metrics.getVramUsageFormatted()).toString();
+    }
+
+    private static String formatExpiry(String expiresAt) {
+        try {
+            LocalTime local = OffsetDateTime.parse(expiresAt).atZoneSameInstant(ZoneId.systemDefault())
+                .toLocalTime().truncatedTo(ChronoUnit.SECONDS);
+            return local.format(DateTimeFormatter.ISO_LOCAL_TIME);
+        } catch (DateTimeParseException e) {
+            return expiresAt;
+        }
+    }
+
+    private static String formatQueueWaits(OllamaRequestMetrics metrics) {
+        StringBuilder text = new StringBuilder("Queue wait p95:");
+        for (OllamaPriority priority : OllamaPriority.values()) {
+            Histogram wait = metrics.getQueueWait(priority);
+            text.append(' ').append(priority.getDisplayName()).append(' ')
+                .append(wait.getCount() == 0 ? "-" : formatMicros(wait.getPercentile(95))).append(" |");
+        }
+        return text.append(" Preempted: ").append(metrics.getPreemptedCount()).toString();
+    }
+
+    private static String formatCompletion(InlineCompletionService completion) {
+        return "Inline completion p50/p95/p99: " + formatPercentiles(completion.getDisplayLatency())
+            + " | Cache hits: " + completion.getCacheHits()
+            + ", misses: " + completion.getCacheMisses()
+            + " | Typed through: " + completion.getTypedThroughCount()
+            + " | Cancelled: " + completion.getCancelledCount();
+    }
+
+    private static String formatIndex(EmbeddingIndex index) {
+        if (!index.isStarted()) {
+            return "Project index: not built";
+        }
+        String text = "Project index: " + index.getFileCount() + " files, " + index.getChunkCount() + " chunks, "
+            + OllamaMetrics.formatBytes(index.getSizeBytes())
+            + " | Last build: " + formatMicros(index.getLastBuildMillis() * 1000)
+            + " (" + index.getLastBuildEmbedded() + " files embedded)"
+            + " | Query p50/p95/p99: " + formatPercentiles(index.getQueryLatency());
+        return index.getLastError() != null ? text + " | Error: " + index.getLastError() : text;
+    }
+
+    private static String formatPercentiles(Histogram histogram) {
+        if (histogram.getCount() == 0) {
+            return "-";
+        }
+        return formatMicros(histogram.getPercentile(50)) + " / "
+            + formatMicros(histogram.getPercentile(95)) + " / "
+            + formatMicros(histogram.getPercentile(99));
+    }
+
+    private static String formatMicros(long micros) {
+        if (micros < 1_000_000) {
+            return String.format("%.1f ms", micros / 1000.0);
+        }
+        return String.format("%.2f s", micros / 1_000_000.0);
+    }
+
+    private static String formatRate(Histogram histogram) {
+        return histogram.getCount() == 0 ? "-" : String.format("%.1f", histogram.getPercentile(50) / 100.0);
+    }
+
+    /**
+     * Prompt tokens evaluated per request; they drop when consecutive prompts share a cached prefix
+     */
+    private static String formatTokens(Histogram histogram) {
+        return histogram.getCount() == 0 ? "-"
+            : String.format("%d / %.0f", histogram.getPercentile(50), histogram.getMean());
+    }
+
+    public JComponent getPanel() {
+        return mainPanel;
+    }
+
+    @Override
+    public void dispose() {
+        refreshTimer.stop();
+    }
+}
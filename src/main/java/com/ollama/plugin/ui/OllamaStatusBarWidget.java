@@ -0,0 +1,101 @@
+package com.ollama.plugin.ui;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.wm.StatusBar;
+import com.intellij.openapi.wm.StatusBarWidget;
+import com.intellij.util.Consumer;
+import com.ollama.plugin.client.OllamaMetrics;
+import com.ollama.plugin.client.OllamaRunningModel;
+import com.ollama.plugin.client.OllamaServerMonitor;
+import com.ollama.plugin.client.OllamaServerStatus;
+import com.ollama.plugin.client.OllamaServerStatusListener;
+
+import java.awt.*;
+import java.awt.event.MouseEvent;
+
+/**
+ * Status bar text showing whether the Ollama server answers and which models it holds in memory.
+ * It follows the shared server monitor; a click asks for a fresh check.
+ */
+public class OllamaStatusBarWidget implements StatusBarWidget, StatusBarWidget.TextPresentation {
+
+    static final String ID = "OllamaServerStatus";
+
+    private final OllamaServerMonitor serverMonitor;
+    private StatusBar statusBar;
+
+    public OllamaStatusBarWidget() {
+        this.serverMonitor = OllamaServerMonitor.getInstance();
+        ApplicationManager.getApplication().getMessageBus().connect(this)
+            .subscribe(OllamaServerStatusListener.TOPIC, status -> {
+                if (statusBar != null) {
+                    statusBar.updateWidget(ID);
+                }
+            });
+    }
+
+    @Override
+    public String ID() {
+        return ID;
+    }
+
+    @Override
+    public void install(StatusBar statusBar) {
+        this.statusBar = statusBar;
+    }
+
+    @Override
+    public WidgetPresentation getPresentation() {
+        return this;
+    }
+
+    @Override
+    public String getText() {
+        OllamaServerStatus status = serverMonitor.getStatus();
+        if (status == null) {
+            return "Ollama: -";
+        }
+        if (!status.isConnected()) {
+            return "Ollama: offline";
+        }
+        int loaded = status.getMetrics().getRunningModels().size();
+        return loaded == 0 ? "Ollama: idle" : "Ollama: " + loaded + " loaded";
+    }
+
+    @Override
+    public String getTooltipText() {
+        OllamaServerStatus status = serverMonitor.getStatus();
+        if (status == null) {
+            return "Ollama server not checked yet. Click to check now.";
+        }
+        StringBuilder text = new StringBuilder("<html>").append(status.getBaseUrl()).append("<br>");
+        if (!status.isConnected()) {
+            text.append("Unreachable: ").append(status.getError());
+        } else {
+            OllamaMetrics metrics = status.getMetrics();
+            text.append(status.getModels().size()).append(" models installed");
+            for (OllamaRunningModel model : metrics.getRunningModels()) {
+                text.append("<br>").append(model.getName()).append(": ")
+                    .append(OllamaMetrics.formatBytes(model.getSize()))
+                    .append(" (VRAM ").append(OllamaMetrics.formatBytes(model.getSizeVram())).append(')');
+            }
+        }
+        return text.append("<br>Next check in ").append(serverMonitor.getPollIntervalMillis() / 1000)
+            .append(" s. Click to check now.</html>").toString();
+    }
+
+    @Override
+    public float getAlignment() {
+        return Component.LEFT_ALIGNMENT;
+    }
+
+    @Override
+    public Consumer<MouseEvent> getClickConsumer() {
+        return event -> serverMonitor.refreshNow();
+    }
+
+    @Override
+    public void dispose() {
+        statusBar = null;
+    }
+}
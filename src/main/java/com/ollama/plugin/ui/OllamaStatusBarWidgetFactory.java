@@ -0,0 +1,29 @@
+package com.ollama.plugin.ui;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.StatusBarWidget;
+import com.intellij.openapi.wm.StatusBarWidgetFactory;
+import com.ollama.plugin.client.OllamaServerMonitor;
+import com.ollama.plugin.settings.OllamaSettingsService;
+import org.jetbrains.annotations.NotNull;
+
+public class OllamaStatusBarWidgetFactory implements StatusBarWidgetFactory {
+
+    @Override
+    public @NotNull String getId() {
+        return OllamaStatusBarWidget.ID;
+    }
+
+    @Override
+    public @NotNull String getDisplayName() {
+        return "Ollama Server";
+    }
+
+    @Override
+    public @NotNull StatusBarWidget createWidget(@NotNull Project project) {
+        if (OllamaSettingsService.getInstance().autoConnect) {
+            OllamaServerMonitor.getInstance().start();
+        }
+        return new OllamaStatusBarWidget();
+    }
+}
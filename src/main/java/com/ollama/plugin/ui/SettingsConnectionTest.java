@@ -36,28 +36,32 @@ public class SettingsConnectionTest {
         
         // Test connection asynchronously
         OllamaClient.getInstance().isConnected(baseUrl).thenAccept(connected -> {
-            dialog.dispose();
-            if (connected) {
-                JOptionPane.showMessageDialog(parent,
-                    "Successfully connected to Ollama at " + baseUrl,
-                    "Connection Successful",
-                    JOptionPane.INFORMATION_MESSAGE);
-            } else {
+            SwingUtilities.invokeLater(() -> {
+                dialog.dispose();
+                if (connected) {
+                    JOptionPane.showMessageDialog(parent,
+                        "Successfully connected to Ollama at " + baseUrl,
+                        "Connection Successful",
+                        JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    JOptionPane.showMessageDialog(parent,
+                        "Failed to connect to Ollama at " + baseUrl + "\n\n" +
+                        "Please ensure:\n" +
+                        "1. Ollama is running\n" +
+                        "2. Host is correct: " + host + "\n" +
+                        "3. Port is correct: " + port,
+                        "Connection Failed",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            });
+        }).exceptionally(ex -> {
+            SwingUtilities.invokeLater(() -> {
+                dialog.dispose();
                 JOptionPane.showMessageDialog(parent,
-                    "Failed to connect to Ollama at " + baseUrl + "\n\n" +
-                    "Please ensure:\n" +
-                    "1. Ollama is running\n" +
-                    "2. Host is correct: " + host + "\n" +
-                    "3. Port is correct: " + port,
-                    "Connection Failed",
+                    "Error testing connection:\n" + ex.getMessage(),
+                    "Connection Error",
                     JOptionPane.ERROR_MESSAGE);
-            }
-        }).exceptionally(ex -> {
-            dialog.dispose();
-            JOptionPane.showMessageDialog(parent,
-                "Error testing connection:\n" + ex.getMessage(),
-                "Connection Error",
-                JOptionPane.ERROR_MESSAGE);
+            });
             return null;
         });
     }
@@ -0,0 +1,59 @@
+package com.ollama.plugin.ui;
+
+import com.intellij.diff.DiffContentFactory;
+import com.intellij.diff.DiffManager;
+import com.intellij.diff.DiffRequestPanel;
+import com.intellij.diff.requests.SimpleDiffRequest;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Shows a suggested change as a diff against the selection, with the model's explanation above it,
+ * before anything is written to the document
+ */
+public class SuggestionPreviewDialog extends DialogWrapper {
+
+    private final Project project;
+    private final String original;
+    private final String suggested;
+    private final String explanation;
+
+    public SuggestionPreviewDialog(Project project, String title, String original, String suggested, String explanation) {
+        super(project);
+        this.project = project;
+        this.original = original;
+        this.suggested = suggested;
+        this.explanation = explanation;
+        setTitle(title);
+        setOKButtonText("Apply");
+        init();
+    }
+
+    @Override
+    protected JComponent createCenterPanel() {
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+
+        if (!explanation.isEmpty()) {
+            JTextArea explanationArea = new JTextArea(explanation);
+            explanationArea.setEditable(false);
+            explanationArea.setLineWrap(true);
+            explanationArea.setWrapStyleWord(true);
+            JScrollPane explanationScroll = new JScrollPane(explanationArea);
+            explanationScroll.setPreferredSize(new Dimension(800, 120));
+            panel.add(explanationScroll, BorderLayout.NORTH);
+        }
+
+        DiffContentFactory contentFactory = DiffContentFactory.getInstance();
+        DiffRequestPanel diffPanel = DiffManager.getInstance().createRequestPanel(project, getDisposable(), null);
+        diffPanel.setRequest(new SimpleDiffRequest("Suggested Change",
+                contentFactory.create(project, original), contentFactory.create(project, suggested),
+                "Selection", "Suggestion"));
+        JComponent diffComponent = diffPanel.getComponent();
+        diffComponent.setPreferredSize(new Dimension(800, 500));
+        panel.add(diffComponent, BorderLayout.CENTER);
+        return panel;
+    }
+}
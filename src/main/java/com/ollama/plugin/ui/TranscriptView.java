@@ -0,0 +1,573 @@
+package com.ollama.plugin.ui;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.ollama.plugin.client.Histogram;
+import com.ollama.plugin.client.OllamaStageEvent;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only view of streamed model output.
+ * Text handed to append() is buffered and written to the screen at most once per frame, so a fast stream
+ * costs one small document insert per frame instead of one per token. The output is split into segments:
+ * prose goes into wrapped text areas that are closed off every SEGMENT_CHARS, so each insert only
+ * re-wraps the last few paragraphs, and fenced code blocks go into unwrapped monospaced areas that are
+ * only filled while they are on screen. Beyond MAX_RETAINED_CHARS the oldest segments are moved to a
+ * spill file, and the view only follows new output while it is scrolled to the end.
+ * All methods must be called on the EDT.
+ */
+public class TranscriptView implements Disposable {
+
+    private static final Logger LOG = Logger.getInstance(TranscriptView.class);
+
+    // About 30 updates a second
+    private static final int FRAME_MILLIS = 33;
+    // A burst larger than this, like a whole answer arriving at once, is spread over several frames
+    private static final int MAX_FRAME_CHARS = 8 * 1024;
+    private static final int SEGMENT_CHARS = 8 * 1024;
+    private static final int MAX_RETAINED_CHARS = 256 * 1024;
+    private static final int FOLLOW_SLACK_PIXELS = 24;
+    private static final int SEGMENT_GAP = 4;
+    private static final long EDT_PROBE_MILLIS = 20;
+    private static final String FENCE = "```";
+
+    private final Project project;
+    private final JPanel content;
+    private final JScrollPane scrollPane;
+    private final JPanel spillPanel;
+    private final JLabel spillLabel;
+    private final Timer flushTimer;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final StringBuilder pending = new StringBuilder();
+
+    // Start of a line that may still turn out to be a code fence, held back until it is decided
+    private final StringBuilder carry = new StringBuilder();
+    // The rest of the current line is content, whatever it contains
+    private boolean midLine;
+    // The stream ended, so a held back line is written once the queue is drained
+    private boolean streamEnded;
+    private boolean inCode;
+    private ProseSegment currentProse;
+    private CodeSegment currentCode;
+    private long retainedChars;
+
+    private Path spillFile;
+    private long spilledChars;
+
+    // Microseconds between posting a runnable to the EDT and it running, sampled while a stream is shown
+    private final Histogram edtLatency = new Histogram();
+    // Microseconds spent on the EDT writing one frame of text
+    private final Histogram flushTime = new Histogram();
+    private ScheduledExecutorService prober;
+    private ScheduledFuture<?> probe;
+
+    public TranscriptView(Project project) {
+        this.project = project;
+
+        content = new TrackingWidthPanel();
+        content.setLayout(new BoxLayout(content, BoxLayout.Y_AXIS));
+
+        spillPanel = new JPanel();
+        spillPanel.setLayout(new BoxLayout(spillPanel, BoxLayout.X_AXIS));
+        spillPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        spillLabel = new JLabel();
+        spillPanel.add(spillLabel);
+        spillPanel.add(Box.createHorizontalStrut(5));
+        JButton openButton = new JButton("Open");
+        openButton.addActionListener(e -> openSpillFile());
+        spillPanel.add(openButton);
+        spillPanel.add(Box.createHorizontalGlue());
+        spillPanel.setVisible(false);
+        content.add(spillPanel);
+
+        scrollPane = new JScrollPane(content);
+        scrollPane.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(16);
+        scrollPane.getViewport().addChangeListener(e -> syncVisibleCode());
+
+        flushTimer = new Timer(FRAME_MILLIS, e -> render());
+    }
+
+    public JComponent getComponent() {
+        return scrollPane;
+    }
+
+    /**
+     * Queue text for the next frame
+     */
+    public void append(String text) {
+        if (text.isEmpty()) {
+            return;
+        }
+        pending.append(text);
+        if (!flushTimer.isRunning()) {
+            flushTimer.start();
+        }
+    }
+
+    /**
+     * Remove all output, including the spilled part
+     */
+    public void clear() {
+        flushTimer.stop();
+        pending.setLength(0);
+        carry.setLength(0);
+        midLine = false;
+        streamEnded = false;
+        inCode = false;
+        currentProse = null;
+        currentCode = null;
+        for (Segment segment : segments) {
+            content.remove(segment.component);
+        }
+        segments.clear();
+        retainedChars = 0;
+        deleteSpillFile();
+        spilledChars = 0;
+        spillPanel.setVisible(false);
+        content.revalidate();
+        content.repaint();
+    }
+
+    /**
+     * Whether anything has been shown since the last clear()
+     */
+    public boolean isEmpty() {
+        return segments.isEmpty() && pending.length() == 0 && carry.length() == 0 && spilledChars == 0;
+    }
+
+    /**
+     * Sample EDT latency until endStreaming(), starting the statistics afresh
+     */
+    public void beginStreaming() {
+        edtLatency.reset();
+        flushTime.reset();
+        if (prober == null) {
+            prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Ollama-EDT-Probe");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (probe == null) {
+            probe = prober.scheduleWithFixedDelay(() -> {
+                long posted = System.nanoTime();
+                SwingUtilities.invokeLater(() -> edtLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - posted)));
+            }, 0, EDT_PROBE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop sampling; queued text keeps draining frame by frame
+     */
+    public void endStreaming() {
+        streamEnded = true;
+        if (!flushTimer.isRunning()) {
+            flushTimer.start();
+        }
+        if (probe != null) {
+            probe.cancel(false);
+            probe = null;
+        }
+    }
+
+    public Histogram getEdtLatency() {
+        return edtLatency;
+    }
+
+    public Histogram getFlushTime() {
+        return flushTime;
+    }
+
+    /**
+     * Write one frame of queued text; once an ended stream is drained, a line still held back is written too
+     */
+    private void render() {
+        boolean releaseCarry = streamEnded && pending.length() <= MAX_FRAME_CHARS && carry.length() + pending.length() > 0;
+        if (pending.length() == 0 && !releaseCarry) {
+            streamEnded = false;
+            flushTimer.stop();
+            return;
+        }
+        long start = System.nanoTime();
+        OllamaStageEvent frameEvent = OllamaStageEvent.start("Render frame", null);
+        boolean follow = isAtEnd();
+        int take = Math.min(pending.length(), MAX_FRAME_CHARS);
+        String text = pending.substring(0, take);
+        pending.delete(0, take);
+        consume(text);
+        if (releaseCarry && carry.length() > 0) {
+            String line = carry.toString();
+            carry.setLength(0);
+            if (isFence(line)) {
+                toggleCode(line);
+            } else {
+                emit(line);
+                midLine = true;
+            }
+        }
+        if (currentProse != null) {
+            currentProse.commit();
+        }
+        trimHistory(follow);
+        content.revalidate();
+        if (follow) {
+            if (currentCode != null) {
+                currentCode.sync();
+            }
+            scrollPane.validate();
+            JScrollBar bar = scrollPane.getVerticalScrollBar();
+            bar.setValue(bar.getMaximum());
+        }
+        syncVisibleCode();
+        flushTime.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        OllamaStageEvent.finish(frameEvent, take + " chars, " + pending.length() + " queued");
+    }
+
+    private boolean isAtEnd() {
+        JScrollBar bar = scrollPane.getVerticalScrollBar();
+        return bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum() - FOLLOW_SLACK_PIXELS;
+    }
+
+    /**
+     * Split text into lines just far enough to find code fences; a line that starts like a fence is held
+     * back until its end shows whether it is one
+     */
+    private void consume(String text) {
+        int start = 0;
+        while (start < text.length()) {
+            int newline = text.indexOf('\n', start);
+            int end = newline < 0 ? text.length() : newline + 1;
+            String part = text.substring(start, end);
+            start = end;
+            boolean complete = newline >= 0;
+
+            if (midLine) {
+                emit(part);
+                midLine = !complete;
+                continue;
+            }
+            carry.append(part);
+            String line = carry.toString();
+            if (complete && isFence(line)) {
+                carry.setLength(0);
+                toggleCode(line);
+            } else if (complete || !mayBecomeFence(line)) {
+                carry.setLength(0);
+                emit(line);
+                midLine = !complete;
+            }
+        }
+    }
+
+    private static boolean isFence(String line) {
+        return line.trim().startsWith(FENCE);
+    }
+
+    private static boolean mayBecomeFence(String line) {
+        String start = line.stripLeading();
+        return start.length() < FENCE.length() ? FENCE.startsWith(start) : start.startsWith(FENCE);
+    }
+
+    private void toggleCode(String fenceLine) {
+        inCode = !inCode;
+        closeProse();
+        currentCode = null;
+        if (inCode) {
+            currentCode = new CodeSegment(fenceLine.trim().substring(FENCE.length()).trim());
+            add(currentCode);
+        }
+    }
+
+    private void emit(String text) {
+        if (inCode) {
+            if (currentCode == null) {
+                currentCode = new CodeSegment("");
+                add(currentCode);
+            }
+            currentCode.append(text);
+        } else {
+            // Close a long prose segment at a line break so later inserts do not re-wrap all of it
+            if (currentProse != null && currentProse.length() >= SEGMENT_CHARS && text.indexOf('\n') >= 0) {
+                int split = text.indexOf('\n') + 1;
+                currentProse.append(text.substring(0, split));
+                retainedChars += split;
+                text = text.substring(split);
+                closeProse();
+                if (text.isEmpty()) {
+                    return;
+                }
+            }
+            if (currentProse == null) {
+                currentProse = new ProseSegment();
+                add(currentProse);
+            }
+            currentProse.append(text);
+        }
+        retainedChars += text.length();
+    }
+
+    private void closeProse() {
+        if (currentProse != null) {
+            currentProse.commit();
+            currentProse = null;
+        }
+    }
+
+    private void add(Segment segment) {
+        segment.component.setAlignmentX(Component.LEFT_ALIGNMENT);
+        segment.component.setBorder(BorderFactory.createEmptyBorder(SEGMENT_GAP, 0, 0, 0));
+        segments.addLast(segment);
+        content.add(segment.component);
+    }
+
+    /**
+     * Move the oldest segments to the spill file until the retained text fits, keeping the visible text
+     * where it was unless the view follows the end anyway
+     */
+    private void trimHistory(boolean follow) {
+        int removedHeight = 0;
+        while (retainedChars > MAX_RETAINED_CHARS && segments.size() > 1) {
+            Segment oldest = segments.removeFirst();
+            removedHeight += oldest.component.getHeight();
+            content.remove(oldest.component);
+            retainedChars -= oldest.length();
+            spill(oldest.toMarkdown());
+        }
+        if (removedHeight > 0 && !follow) {
+            content.validate();
+            Point position = scrollPane.getViewport().getViewPosition();
+            scrollPane.getViewport().setViewPosition(new Point(position.x, Math.max(0, position.y - removedHeight)));
+        }
+    }
+
+    /**
+     * Append text to the spill file. Spilled segments are at most a few SEGMENT_CHARS, so the write is short.
+     */
+    private void spill(String text) {
+        try {
+            if (spillFile == null) {
+                // In the IDE's temp directory, which it cleans up, rather than in the shared one of the OS
+                Path directory = Paths.get(PathManager.getTempPath(), "ollama");
+                Files.createDirectories(directory);
+                spillFile = Files.createTempFile(directory, "transcript-", ".md");
+            }
+            Files.write(spillFile, text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            LOG.warn("Failed to write transcript spill file", e);
+        }
+        spilledChars += text.length();
+        spillLabel.setText(String.format("%,d earlier characters moved out of the view", spilledChars));
+        spillPanel.setVisible(true);
+    }
+
+    private void openSpillFile() {
+        if (spillFile == null) {
+            return;
+        }
+        VirtualFile file = LocalFileSystem.getInstance().refreshAndFindFileByNioFile(spillFile);
+        if (file != null) {
+            FileEditorManager.getInstance(project).openFile(file, true);
+        }
+    }
+
+    /**
+     * Close the spill file if it is open in an editor and delete it
+     */
+    private void deleteSpillFile() {
+        if (spillFile == null) {
+            return;
+        }
+        VirtualFile file = LocalFileSystem.getInstance().findFileByNioFile(spillFile);
+        if (file != null && !project.isDisposed()) {
+            FileEditorManager.getInstance(project).closeFile(file);
+        }
+        try {
+            Files.deleteIfExists(spillFile);
+        } catch (IOException e) {
+            LOG.warn("Failed to delete transcript spill file " + spillFile, e);
+        }
+        if (file != null) {
+            file.refresh(true, false);
+        }
+        spillFile = null;
+    }
+
+    private void syncVisibleCode() {
+        Rectangle view = scrollPane.getViewport().getViewRect();
+        for (Segment segment : segments) {
+            if (segment instanceof CodeSegment && segment.component.getBounds().intersects(view)) {
+                ((CodeSegment) segment).sync();
+            }
+        }
+    }
+
+    @Override
+    public void dispose() {
+        flushTimer.stop();
+        deleteSpillFile();
+        if (prober != null) {
+            prober.shutdownNow();
+        }
+    }
+
+    private abstract static class Segment {
+        JComponent component;
+
+        abstract int length();
+
+        abstract String toMarkdown();
+    }
+
+    /**
+     * Wrapped prose. Text is collected during a frame and inserted with one append, since every insert
+     * makes the text area re-wrap its last paragraph.
+     */
+    private static class ProseSegment extends Segment {
+        private final JTextArea area = new FittingTextArea();
+        private final StringBuilder uncommitted = new StringBuilder();
+
+        ProseSegment() {
+            area.setEditable(false);
+            area.setLineWrap(true);
+            area.setWrapStyleWord(true);
+            area.setOpaque(false);
+            component = area;
+        }
+
+        void append(String text) {
+            uncommitted.append(text);
+        }
+
+        void commit() {
+            if (uncommitted.length() > 0) {
+                area.append(uncommitted.toString());
+                uncommitted.setLength(0);
+            }
+        }
+
+        @Override
+        int length() {
+            return area.getDocument().getLength() + uncommitted.length();
+        }
+
+        @Override
+        String toMarkdown() {
+            return area.getText() + uncommitted;
+        }
+    }
+
+    /**
+     * A fenced code block. Its text is kept in a builder and copied into the text area only while the
+     * block is on screen, so a long block streaming below the visible part costs no layout at all.
+     */
+    private static class CodeSegment extends Segment {
+        private final String language;
+        private final StringBuilder text = new StringBuilder();
+        private final JTextArea area = new JTextArea();
+        private int synced;
+
+        CodeSegment(String language) {
+            this.language = language;
+            area.setEditable(false);
+            area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, area.getFont().getSize()));
+            JScrollPane scroll = new JScrollPane(area,
+                    ScrollPaneConstants.VERTICAL_SCROLLBAR_NEVER, ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+            JPanel panel = new JPanel(new BorderLayout()) {
+                @Override
+                public Dimension getMaximumSize() {
+                    return new Dimension(Integer.MAX_VALUE, getPreferredSize().height);
+                }
+            };
+            if (!language.isEmpty()) {
+                panel.add(new JLabel(language), BorderLayout.NORTH);
+            }
+            panel.add(scroll, BorderLayout.CENTER);
+            component = panel;
+        }
+
+        void append(String more) {
+            text.append(more);
+        }
+
+        void sync() {
+            if (synced < text.length()) {
+                area.append(text.substring(synced));
+                synced = text.length();
+            }
+        }
+
+        @Override
+        int length() {
+            return text.length();
+        }
+
+        @Override
+        String toMarkdown() {
+            return FENCE + language + "\n" + text + (text.length() == 0 || text.charAt(text.length() - 1) == '\n' ? "" : "\n") + FENCE + "\n";
+        }
+    }
+
+    /**
+     * Wrapped text area that BoxLayout does not stretch beyond the height of its text
+     */
+    private static class FittingTextArea extends JTextArea {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Dimension getMaximumSize() {
+            return new Dimension(Integer.MAX_VALUE, getPreferredSize().height);
+        }
+    }
+
+    /**
+     * Content panel as wide as the viewport, so prose wraps instead of scrolling sideways
+     */
+    private static class TrackingWidthPanel extends JPanel implements Scrollable {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Dimension getPreferredScrollableViewportSize() {
+            return new Dimension(400, 160);
+        }
+
+        @Override
+        public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+            return 16;
+        }
+
+        @Override
+        public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+            return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+        }
+
+        @Override
+        public boolean getScrollableTracksViewportWidth() {
+            return true;
+        }
+
+        @Override
+        public boolean getScrollableTracksViewportHeight() {
+            return false;
+        }
+    }
+}
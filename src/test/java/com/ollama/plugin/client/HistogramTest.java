@@ -0,0 +1,100 @@
+package com.ollama.plugin.client;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+public class HistogramTest {
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99), 0);
+        assertEquals(0, histogram.getMean(), 0);
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        for (long value = 0; value < 8; value++) {
+            histogram.record(value);
+        }
+        assertEquals(3, histogram.getPercentile(50));
+        assertEquals(7, histogram.getPercentile(100));
+        assertEquals(3.5, histogram.getMean(), 0);
+    }
+
+    @Test
+    public void percentilesStayWithinTheBucketError() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value);
+        }
+        assertWithinBucketError(5_000, histogram.getPercentile(50));
+        assertWithinBucketError(9_000, histogram.getPercentile(90));
+        assertWithinBucketError(9_900, histogram.getPercentile(99));
+        assertEquals(10_000, histogram.getMax());
+        assertEquals(10_000, histogram.getCount());
+    }
+
+    @Test
+    public void percentileNeverExceedsMax() {
+        Histogram histogram = new Histogram();
+        histogram.record(1_000_001);
+        assertEquals(1_000_001, histogram.getPercentile(100));
+        histogram.record(Long.MAX_VALUE);
+        assertWithinBucketError(Long.MAX_VALUE, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void negativeValuesAreIgnored() {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+        assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        Histogram histogram = new Histogram();
+        histogram.record(42);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws Exception {
+        Histogram histogram = new Histogram();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    for (long value = 1; value <= 25_000; value++) {
+                        histogram.record(value);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(25_000, histogram.getMax());
+        assertEquals(12_500.5, histogram.getMean(), 0);
+    }
+
+    private static void assertWithinBucketError(long expected, long actual) {
+        assertEquals(expected, actual, expected * 0.0625);
+    }
+}
@@ -0,0 +1,197 @@
+package com.ollama.plugin.client;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Routing across two local stand-ins for Ollama servers
+ */
+public class OllamaEndpointPoolTest {
+
+    private static final String MODEL = "llama3:latest";
+
+    private final List<MockWebServer> servers = new ArrayList<>();
+    private final List<OllamaServerStub> stubs = new ArrayList<>();
+    private final List<String> urls = new ArrayList<>();
+    private OllamaExecutor executor;
+    private OllamaClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        for (int i = 0; i < 2; i++) {
+            OllamaServerStub stub = new OllamaServerStub();
+            MockWebServer server = new MockWebServer();
+            server.setDispatcher(stub);
+            server.start();
+            servers.add(server);
+            stubs.add(stub);
+            urls.add(urlOf(server));
+        }
+        executor = new OllamaExecutor(8, 16);
+        client = new OllamaClient(executor, Runnable::run, () -> urls);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (OllamaServerStub stub : stubs) {
+            stub.release.countDown();
+        }
+        client.dispose();
+        for (MockWebServer server : servers) {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void concurrentGenerationsSpreadOverBothServers() throws Exception {
+        CountDownLatch arrived = new CountDownLatch(2);
+        for (OllamaServerStub stub : stubs) {
+            stub.arrived = arrived;
+            stub.release = new CountDownLatch(1);
+        }
+
+        OllamaRequestHandle first = client.streamPromptFor("test", MODEL, "first", null);
+        OllamaRequestHandle second = client.streamPromptFor("test", MODEL, "second", null);
+
+        assertTrue("both generations should be in flight at once", arrived.await(10, TimeUnit.SECONDS));
+        assertEquals(1, stubs.get(0).generations.get());
+        assertEquals(1, stubs.get(1).generations.get());
+        for (OllamaServerStub stub : stubs) {
+            stub.release.countDown();
+        }
+        assertEquals("ok", first.get(10, TimeUnit.SECONDS).getResponse());
+        assertEquals("ok", second.get(10, TimeUnit.SECONDS).getResponse());
+        for (OllamaEndpoint endpoint : client.getEndpointPool().getEndpoints()) {
+            assertEquals(0, endpoint.getInFlight());
+        }
+    }
+
+    @Test
+    public void serverWithTheModelLoadedIsPreferred() throws Exception {
+        endpoint(1).updateModels(Collections.singleton(MODEL), Collections.singleton(MODEL));
+        endpoint(0).updateModels(Collections.singleton(MODEL), Collections.emptySet());
+
+        for (int i = 0; i < 3; i++) {
+            generate("prompt " + i);
+        }
+
+        assertEquals(0, stubs.get(0).generations.get());
+        assertEquals(3, stubs.get(1).generations.get());
+    }
+
+    @Test
+    public void serverWithTheModelInstalledBeatsOneWithout() throws Exception {
+        endpoint(0).updateModels(Collections.singleton("mistral:latest"), Collections.emptySet());
+        endpoint(1).updateModels(Collections.singleton(MODEL), Collections.emptySet());
+
+        generate("prompt");
+
+        assertEquals(0, stubs.get(0).generations.get());
+        assertEquals(1, stubs.get(1).generations.get());
+    }
+
+    @Test
+    public void failsOverWhenAServerGoesDownAndReadmitsItOnceItAnswers() throws Exception {
+        int port = servers.get(0).getPort();
+        servers.get(0).shutdown();
+
+        assertEquals("ok", generate("first").getResponse());
+        OllamaEndpoint down = endpoint(0);
+        assertFalse(down.isHealthy());
+        assertEquals(1, down.getConsecutiveFailures());
+        assertTrue(down.getEjectedUntil() > System.currentTimeMillis());
+        assertEquals(1, stubs.get(1).generations.get());
+
+        // While ejected the server is not tried at all
+        generate("second");
+        assertEquals(1, down.getConsecutiveFailures());
+        assertEquals(2, stubs.get(1).generations.get());
+
+        OllamaServerStub revivedStub = new OllamaServerStub();
+        MockWebServer revived = new MockWebServer();
+        revived.setDispatcher(revivedStub);
+        revived.start(InetAddress.getByName(servers.get(0).getHostName()), port);
+        servers.set(0, revived);
+        stubs.set(0, revivedStub);
+
+        // A successful poll, as the server monitor sends it, re-admits the endpoint
+        assertTrue(client.isConnected(urls.get(0)).get(10, TimeUnit.SECONDS));
+        assertTrue(down.isHealthy());
+        assertEquals(0, down.getEjectedUntil());
+
+        // With the model loaded on both, the first server in configuration order wins the tie again
+        down.updateModels(Collections.singleton(MODEL), Collections.singleton(MODEL));
+        generate("third");
+        assertEquals(1, revivedStub.generations.get());
+    }
+
+    @Test
+    public void everyServerDownReportsTheLastError() throws Exception {
+        for (MockWebServer server : servers) {
+            server.shutdown();
+        }
+
+        OllamaResponse response = generate("prompt");
+
+        assertTrue(response.getResponse(), response.getResponse().startsWith("Error: "));
+        for (OllamaEndpoint endpoint : client.getEndpointPool().getEndpoints()) {
+            assertFalse(endpoint.isHealthy());
+        }
+    }
+
+    private OllamaResponse generate(String prompt) throws Exception {
+        return client.streamPromptFor("test", MODEL, prompt, null).get(10, TimeUnit.SECONDS);
+    }
+
+    private OllamaEndpoint endpoint(int index) {
+        return client.getEndpointPool().getEndpoints().get(index);
+    }
+
+    private static String urlOf(MockWebServer server) {
+        return "http://" + server.getHostName() + ":" + server.getPort();
+    }
+
+    /**
+     * Answers /api/tags and streams a one-token generation, optionally holding generations until released
+     */
+    private static class OllamaServerStub extends Dispatcher {
+        final AtomicInteger generations = new AtomicInteger();
+        volatile CountDownLatch arrived = new CountDownLatch(0);
+        volatile CountDownLatch release = new CountDownLatch(0);
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            if ("/api/tags".equals(request.getPath())) {
+                return new MockResponse().setBody("{\"models\":[]}");
+            }
+            if (!"/api/generate".equals(request.getPath())) {
+                return new MockResponse().setResponseCode(404).setBody("{\"error\":\"not found\"}");
+            }
+            generations.incrementAndGet();
+            arrived.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return new MockResponse().setBody(String.join("\n", Arrays.asList(
+                    "{\"response\":\"ok\",\"done\":false}",
+                    "{\"response\":\"\",\"done\":true,\"eval_count\":1,\"eval_duration\":1000}")) + "\n");
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.ollama.plugin.client;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import okio.Buffer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OllamaJsonCodecTest {
+
+    private final OllamaJsonCodec codec = new OllamaJsonCodec(new Gson());
+
+    @Test
+    public void readModelsSkipsUnknownFields() throws IOException {
+        List<OllamaModel> models = codec.readModels(source("{\"models\":[{"
+                + "\"name\":\"llama3:8b\",\"model\":\"llama3:8b\",\"size\":4661224676,\"digest\":\"365c0bd3\","
+                + "\"modified_at\":\"2024-05-01T10:00:00Z\",\"extra\":{\"nested\":[1,2,3]},"
+                + "\"details\":{\"format\":\"gguf\",\"family\":\"llama\",\"parameter_size\":\"8.0B\","
+                + "\"quantization_level\":\"Q4_0\"}},{\"name\":\"tiny\",\"size\":1}]}"));
+
+        assertEquals(2, models.size());
+        OllamaModel model = models.get(0);
+        assertEquals("llama3:8b", model.getName());
+        assertEquals(4661224676L, model.getSize());
+        assertEquals("365c0bd3", model.getDigest());
+        assertEquals("2024-05-01T10:00:00Z", model.getModifiedAt());
+        assertEquals("llama", model.getFamily());
+        assertEquals("8.0B", model.getParameterSize());
+        assertEquals("Q4_0", model.getQuantizationLevel());
+        assertEquals("", models.get(1).getFamily());
+    }
+
+    @Test
+    public void readModelsOfAnEmptyServer() throws IOException {
+        assertTrue(codec.readModels(source("{\"models\":[]}")).isEmpty());
+        assertTrue(codec.readModels(source("{\"models\":null}")).isEmpty());
+    }
+
+    @Test
+    public void readGenerateChunkStreamsNdjsonAndResetsTheChunk() throws IOException {
+        JsonReader reader = codec.openReader(source(
+                "{\"model\":\"llama3\",\"response\":\"Hel\",\"done\":false}\n"
+                        + "{\"model\":\"llama3\",\"response\":\"lo\",\"done\":false}\n"
+                        + "{\"response\":\"\",\"done\":true,\"context\":[1,2,3],\"eval_count\":12,"
+                        + "\"eval_duration\":3400,\"total_duration\":9000,\"prompt_eval_count\":5,"
+                        + "\"prompt_eval_duration\":700,\"load_duration\":100}\n"));
+        OllamaGenerateChunk chunk = new OllamaGenerateChunk();
+
+        assertTrue(codec.readGenerateChunk(reader, chunk));
+        assertEquals("Hel", chunk.response);
+        assertFalse(chunk.done);
+        assertTrue(codec.readGenerateChunk(reader, chunk));
+        assertEquals("lo", chunk.response);
+        assertTrue(codec.readGenerateChunk(reader, chunk));
+        assertTrue(chunk.done);
+        assertEquals(12, chunk.evalCount);
+        assertEquals(3400, chunk.evalDuration);
+        assertEquals(9000, chunk.totalDuration);
+        assertEquals(5, chunk.promptEvalCount);
+        assertEquals(700, chunk.promptEvalDuration);
+        assertEquals(100, chunk.loadDuration);
+        assertFalse(codec.readGenerateChunk(reader, chunk));
+    }
+
+    @Test
+    public void readGenerateChunkTakesChatContentAndErrors() throws IOException {
+        JsonReader reader = codec.openReader(source(
+                "{\"message\":{\"role\":\"assistant\",\"content\":\"Hi\"},\"done\":false}\n"
+                        + "{\"error\":\"model not found\"}\n"));
+        OllamaGenerateChunk chunk = new OllamaGenerateChunk();
+
+        assertTrue(codec.readGenerateChunk(reader, chunk));
+        assertEquals("Hi", chunk.response);
+        assertTrue(codec.readGenerateChunk(reader, chunk));
+        assertNull(chunk.response);
+        assertEquals("model not found", chunk.error);
+    }
+
+    @Test
+    public void encodeWritesTheGenerateRequest() throws IOException {
+        Map<String, Object> options = new LinkedHashMap<>();
+        options.put("num_predict", 256);
+        options.put("temperature", 0.2);
+        options.put("stop", Arrays.asList("```", "\n\n"));
+        String prompt = "Explain \"this\" \u2014 na\u00efve caf\u00e9 \ud83d\ude80\n\tcode";
+        OllamaGenerateRequest request = new OllamaGenerateRequest("llama3", prompt, "}", options, true, "30m");
+
+        JsonObject json = encode(request);
+
+        assertEquals("llama3", json.get("model").getAsString());
+        assertEquals(prompt, json.get("prompt").getAsString());
+        assertEquals("}", json.get("suffix").getAsString());
+        assertTrue(json.get("stream").getAsBoolean());
+        assertEquals("30m", json.get("keep_alive").getAsString());
+        JsonObject encodedOptions = json.getAsJsonObject("options");
+        assertEquals(256, encodedOptions.get("num_predict").getAsInt());
+        assertEquals(0.2, encodedOptions.get("temperature").getAsDouble(), 0);
+        assertEquals("\n\n", encodedOptions.getAsJsonArray("stop").get(1).getAsString());
+    }
+
+    @Test
+    public void encodeLeavesOutUnsetFields() throws IOException {
+        JsonObject json = encode(new OllamaGenerateRequest("llama3", "hi", false));
+
+        assertFalse(json.has("suffix"));
+        assertFalse(json.has("keep_alive"));
+        assertFalse(json.has("options"));
+        assertFalse(json.get("stream").getAsBoolean());
+    }
+
+    @Test
+    public void readErrorOfJsonAndPlainBodies() {
+        assertEquals("out of memory", codec.readError(source("{\"error\":\"out of memory\"}")));
+        assertNull(codec.readError(source("502 Bad Gateway")));
+    }
+
+    @Test
+    public void readEmbeddingsGrowsVectorsPastTheInitialCapacity() throws IOException {
+        StringBuilder vector = new StringBuilder("[");
+        for (int i = 0; i < 100; i++) {
+            vector.append(i > 0 ? "," : "").append(i);
+        }
+        vector.append(']');
+        List<float[]> embeddings = codec.readEmbeddings(source(
+                "{\"model\":\"nomic\",\"embeddings\":[[0.5,-1.25]," + vector + "]}"));
+
+        assertEquals(2, embeddings.size());
+        assertArrayEquals(new float[]{0.5f, -1.25f}, embeddings.get(0), 0);
+        assertEquals(100, embeddings.get(1).length);
+        assertEquals(99f, embeddings.get(1)[99], 0);
+    }
+
+    private JsonObject encode(OllamaGenerateRequest request) throws IOException {
+        Buffer sink = new Buffer();
+        codec.encode(request).writeTo(sink);
+        return JsonParser.parseString(sink.readUtf8()).getAsJsonObject();
+    }
+
+    private static Buffer source(String json) {
+        return new Buffer().writeUtf8(json);
+    }
+}
@@ -0,0 +1,152 @@
+package com.ollama.plugin.client;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class OllamaRequestCoalescerTest {
+
+    private final OllamaRequestMetrics metrics = new OllamaRequestMetrics();
+    private final OllamaRequestCoalescer coalescer = new OllamaRequestCoalescer(Runnable::run, metrics);
+    private final List<OllamaClient.OllamaStreamCallback> started = new ArrayList<>();
+    private final List<OllamaRequestHandle> startedHandles = new ArrayList<>();
+
+    @Test
+    public void identicalRequestJoinsAndReplaysTheTextSoFar() {
+        RecordingCallback first = new RecordingCallback();
+        RecordingCallback second = new RecordingCallback();
+        OllamaRequestHandle firstHandle = coalescer.execute(key("explain this"), first, this::start);
+        started.get(0).onToken("Hel");
+        OllamaRequestHandle secondHandle = coalescer.execute(key("explain this"), second, this::start);
+        started.get(0).onToken("lo");
+        OllamaResponse response = new OllamaResponse("Hello", 2, 0, 0);
+        started.get(0).onComplete(response);
+        startedHandles.get(0).complete(response);
+
+        assertEquals(1, started.size());
+        assertEquals(1, metrics.getCoalescedCount());
+        assertEquals("Hello", first.text.toString());
+        assertEquals("Hello", second.text.toString());
+        assertSame(response, first.completed);
+        assertSame(response, second.completed);
+        assertSame(response, firstHandle.join());
+        assertSame(response, secondHandle.join());
+        assertNotSame(firstHandle, secondHandle);
+    }
+
+    @Test
+    public void differentPromptsStartTheirOwnGeneration() {
+        coalescer.execute(key("explain this"), new RecordingCallback(), this::start);
+        coalescer.execute(key("explain that"), new RecordingCallback(), this::start);
+
+        assertEquals(2, started.size());
+        assertEquals(0, metrics.getCoalescedCount());
+    }
+
+    @Test
+    public void lateSubscriberGetsTheOutcomeOfAFinishedStream() {
+        RecordingCallback late = new RecordingCallback();
+        coalescer.execute(key("explain this"), new RecordingCallback(), this::start);
+        started.get(0).onToken("partial");
+        started.get(0).onError("model crashed");
+        coalescer.execute(key("explain this"), late, this::start);
+
+        assertEquals(1, started.size());
+        assertEquals("partial", late.text.toString());
+        assertEquals("model crashed", late.error);
+    }
+
+    @Test
+    public void finishedGenerationIsNotJoined() {
+        coalescer.execute(key("explain this"), new RecordingCallback(), this::start);
+        startedHandles.get(0).complete(new OllamaResponse("done", 1, 0, 0));
+        coalescer.execute(key("explain this"), new RecordingCallback(), this::start);
+
+        assertEquals(2, started.size());
+    }
+
+    @Test
+    public void generationIsCancelledOnlyWhenEverySubscriberCancelled() {
+        OllamaRequestHandle first = coalescer.execute(key("explain this"), new RecordingCallback(), this::start);
+        RecordingCallback remaining = new RecordingCallback();
+        OllamaRequestHandle second = coalescer.execute(key("explain this"), remaining, this::start);
+
+        first.cancel();
+        assertFalse(startedHandles.get(0).isCancelled());
+        started.get(0).onToken("still here");
+        assertEquals("still here", remaining.text.toString());
+
+        second.cancel();
+        assertTrue(startedHandles.get(0).isCancelled());
+        coalescer.execute(key("explain this"), new RecordingCallback(), this::start);
+        assertEquals(2, started.size());
+    }
+
+    @Test
+    public void subscribersAreCalledWithoutHoldingTheGenerationLock() throws Exception {
+        AtomicReference<CompletableFuture<OllamaRequestHandle>> joined = new AtomicReference<>();
+        RecordingCallback blocking = new RecordingCallback() {
+            @Override
+            public void onToken(String token) {
+                super.onToken(token);
+                // Stands in for a modal dialog: the callback waits for another thread that needs the generation
+                CompletableFuture<OllamaRequestHandle> join = CompletableFuture.supplyAsync(
+                        () -> coalescer.execute(key("explain this"), new RecordingCallback(),
+                                OllamaRequestCoalescerTest.this::start));
+                joined.set(join);
+                try {
+                    join.get(5, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new AssertionError("joining blocked on the generation lock", e);
+                }
+            }
+        };
+        coalescer.execute(key("explain this"), blocking, this::start);
+        started.get(0).onToken("token");
+
+        assertTrue(joined.get().isDone());
+        assertEquals(1, started.size());
+    }
+
+    private synchronized OllamaRequestHandle start(OllamaClient.OllamaStreamCallback callback) {
+        OllamaRequestHandle handle = new OllamaRequestHandle();
+        started.add(callback);
+        startedHandles.add(handle);
+        return handle;
+    }
+
+    private static OllamaRequestCoalescer.Key key(String prompt) {
+        return new OllamaRequestCoalescer.Key(null, "/api/generate", new OllamaGenerateRequest("llama3", prompt, true));
+    }
+
+    private static class RecordingCallback implements OllamaClient.OllamaStreamCallback {
+        final StringBuilder text = new StringBuilder();
+        OllamaResponse completed;
+        String error;
+
+        @Override
+        public void onToken(String token) {
+            text.append(token);
+        }
+
+        @Override
+        public void onComplete(OllamaResponse response) {
+            completed = response;
+        }
+
+        @Override
+        public void onError(String message) {
+            error = message;
+        }
+    }
+}
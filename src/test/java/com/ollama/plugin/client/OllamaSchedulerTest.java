@@ -0,0 +1,176 @@
+package com.ollama.plugin.client;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OllamaSchedulerTest {
+
+    private static final long AGING_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    // Tasks handed to the executor, run one at a time by the test
+    private final Deque<Runnable> executor = new ArrayDeque<>();
+    private final OllamaRequestMetrics metrics = new OllamaRequestMetrics();
+    private final List<String> order = new ArrayList<>();
+    private final List<String> rejections = new ArrayList<>();
+    private long now;
+    private int capacity = 1;
+    private boolean executorRejects;
+
+    private final OllamaScheduler scheduler = new OllamaScheduler(command -> {
+        if (executorRejects) {
+            throw new RejectedExecutionException("executor shut down");
+        }
+        executor.add(command);
+    }, () -> capacity, 3, metrics, () -> now);
+
+    @Test
+    public void higherPriorityRunsFirst() {
+        submit(OllamaPriority.BACKGROUND, "running");
+        submit(OllamaPriority.PREFETCH, "prefetch");
+        submit(OllamaPriority.BACKGROUND, "background");
+        submit(OllamaPriority.EDITOR_ACTION, "editor");
+
+        runAll();
+
+        assertEquals(List.of("running", "editor", "background", "prefetch"), order);
+    }
+
+    @Test
+    public void waitingRequestsAgeTowardsTheFront() {
+        submit(OllamaPriority.BACKGROUND, "running");
+        submit(OllamaPriority.PREFETCH, "prefetch");
+        now += 2 * AGING_NANOS;
+        submit(OllamaPriority.EDITOR_ACTION, "editor");
+
+        runAll();
+
+        // Two aging steps lift the prefetch to the editor action's class, where it arrived first
+        assertEquals(List.of("running", "prefetch", "editor"), order);
+    }
+
+    @Test
+    public void eachClassStaysWithinItsOwnLimit() {
+        capacity = 4;
+        submit(OllamaPriority.BACKGROUND, "first");
+        submit(OllamaPriority.BACKGROUND, "second");
+        submit(OllamaPriority.EDITOR_ACTION, "editor");
+
+        assertEquals(2, executor.size());
+        runAll();
+        assertEquals(List.of("first", "editor", "second"), order);
+    }
+
+    @Test
+    public void interactiveRequestPreemptsABackgroundGenerationThatHasNotStreamed() {
+        OllamaRequestHandle background = submit(OllamaPriority.BACKGROUND, "background");
+        OllamaRequestHandle interactive = submit(OllamaPriority.INTERACTIVE, "interactive");
+
+        assertTrue(background.isPreempted());
+        runAll();
+
+        assertEquals(List.of("interactive", "background"), order);
+        assertTrue(interactive.isDone());
+        assertTrue(background.isDone());
+        assertFalse(background.isCompletedExceptionally());
+        assertEquals(1, metrics.getPreemptedCount());
+    }
+
+    @Test
+    public void streamingBackgroundGenerationIsNotPreempted() {
+        OllamaRequestHandle background = submit(OllamaPriority.BACKGROUND, "background");
+        assertTrue(background.markStreaming());
+        submit(OllamaPriority.INTERACTIVE, "interactive");
+
+        assertFalse(background.isPreempted());
+        runAll();
+
+        assertEquals(List.of("background", "interactive"), order);
+        assertEquals(0, metrics.getPreemptedCount());
+    }
+
+    @Test
+    public void interactiveRequestCancelsAPrefetch() {
+        OllamaRequestHandle prefetch = submit(OllamaPriority.PREFETCH, "prefetch");
+        submit(OllamaPriority.INTERACTIVE, "interactive");
+
+        assertTrue(prefetch.isCancelled());
+        runAll();
+
+        assertEquals("interactive", order.get(order.size() - 1));
+        assertEquals(1, metrics.getPreemptedCount());
+    }
+
+    @Test
+    public void fullQueueRejectsNewRequests() {
+        submit(OllamaPriority.BACKGROUND, "running");
+        submit(OllamaPriority.BACKGROUND, "1");
+        submit(OllamaPriority.BACKGROUND, "2");
+        submit(OllamaPriority.BACKGROUND, "3");
+        try {
+            submit(OllamaPriority.BACKGROUND, "4");
+            fail("queue should be full");
+        } catch (RejectedExecutionException e) {
+            assertTrue(e.getMessage().contains("3 waiting"));
+        }
+    }
+
+    @Test
+    public void cancelledWaitingRequestLeavesTheQueue() {
+        submit(OllamaPriority.BACKGROUND, "running");
+        OllamaRequestHandle cancelled = submit(OllamaPriority.BACKGROUND, "cancelled");
+        submit(OllamaPriority.BACKGROUND, "next");
+        cancelled.cancel();
+
+        runAll();
+
+        assertEquals(List.of("running", "next"), order);
+    }
+
+    @Test
+    public void executorRejectionIsReportedAndFailsTheHandle() {
+        executorRejects = true;
+        OllamaRequestHandle handle = submit(OllamaPriority.EDITOR_ACTION, "rejected");
+
+        assertEquals(List.of("executor shut down"), rejections);
+        assertTrue(handle.isCompletedExceptionally());
+        try {
+            handle.join();
+            fail("handle should have failed");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    private OllamaRequestHandle submit(OllamaPriority priority, String name) {
+        OllamaRequestHandle handle = new OllamaRequestHandle();
+        Supplier<OllamaResponse> work = () -> {
+            if (handle.isPreempted()) {
+                // What the client does when the aborted HTTP call fails
+                throw new OllamaPreemptedException();
+            }
+            order.add(name);
+            return new OllamaResponse(name, 1, 0, 0);
+        };
+        scheduler.submit(priority, handle, work, rejections::add);
+        return handle;
+    }
+
+    private void runAll() {
+        while (!executor.isEmpty()) {
+            executor.poll().run();
+        }
+    }
+}
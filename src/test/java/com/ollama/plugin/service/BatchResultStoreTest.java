@@ -0,0 +1,67 @@
+package com.ollama.plugin.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BatchResultStoreTest {
+
+    private static final String URL = "file:///project/src/Main.java";
+
+    private Path directory;
+    private BatchResultStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("batch-result-test");
+        store = new BatchResultStore(directory.resolve("results"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void savedAnswerLoadsBack() {
+        String answer = "Line 3: the loop never ends\n\u00e9\u4e2d";
+        store.save(URL, answer);
+
+        assertEquals(answer, store.load(URL));
+        assertNull(store.load("file:///project/src/Other.java"));
+    }
+
+    @Test
+    public void laterAnswerReplacesTheEarlierOne() {
+        store.save(URL, "first");
+        store.save(URL, "second");
+
+        assertEquals("second", store.load(URL));
+    }
+
+    @Test
+    public void clearDeletesEveryAnswer() throws IOException {
+        store.save(URL, "answer");
+        store.save("file:///project/src/Other.java", "other");
+
+        store.clear();
+
+        assertNull(store.load(URL));
+        try (Stream<Path> files = Files.list(directory.resolve("results"))) {
+            assertEquals(0, files.count());
+        }
+        // Nothing to clear is fine too
+        new BatchResultStore(directory.resolve("missing")).clear();
+    }
+}
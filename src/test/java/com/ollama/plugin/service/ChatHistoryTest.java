@@ -0,0 +1,269 @@
+package com.ollama.plugin.service;
+
+import com.ollama.plugin.client.OllamaChatMessage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChatHistoryTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("chat-history-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void sessionsAndMessagesSurviveARestart() throws Exception {
+        long id = writeSession("How do I sort a map by value?", "user:question", "assistant:answer");
+
+        ChatHistory history = new ChatHistory(directory);
+        try {
+            List<ChatHistory.SessionInfo> sessions = history.listSessions().get();
+            assertEquals(1, sessions.size());
+            assertEquals(id, sessions.get(0).getId());
+            assertEquals("How do I sort a map by value?", sessions.get(0).getTitle());
+            assertEquals(2, sessions.get(0).getMessageCount());
+            assertMessages(history.loadMessages(id, 0, 10).get(), "user:question", "assistant:answer");
+            assertMessages(history.loadMessages(id, 1, 10).get(), "assistant:answer");
+        } finally {
+            history.dispose();
+        }
+    }
+
+    @Test
+    public void tornRecordAtTheEndIsCutOff() throws Exception {
+        long id = writeSession("prompt", "user:one", "assistant:two");
+        long intactSize = Files.size(log());
+        // A record header promising more bytes than the crash left behind
+        Files.write(log(), new byte[]{0, 0, 1, 0, 1, 2, 3, 4, 'p', 'a', 'r'}, StandardOpenOption.APPEND);
+
+        ChatHistory history = new ChatHistory(directory);
+        try {
+            assertMessages(history.loadMessages(id, 0, 10).get(), "user:one", "assistant:two");
+            assertEquals(intactSize, Files.size(log()));
+
+            history.appendMessages(id, Arrays.asList(message("user:three")));
+            assertMessages(history.loadMessages(id, 0, 10).get(), "user:one", "assistant:two", "user:three");
+        } finally {
+            history.dispose();
+        }
+    }
+
+    @Test
+    public void corruptRecordEndsTheLogWhenRebuildingWithoutAnIndex() throws Exception {
+        long id = writeSession("prompt", "user:one", "assistant:two");
+        Files.delete(index());
+        try (RandomAccessFile file = new RandomAccessFile(log().toFile(), "rw")) {
+            // Last byte of the last message's content
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xFF);
+        }
+
+        ChatHistory history = new ChatHistory(directory);
+        try {
+            assertMessages(history.loadMessages(id, 0, 10).get(), "user:one");
+            assertEquals(1, history.listSessions().get().get(0).getMessageCount());
+        } finally {
+            history.dispose();
+        }
+    }
+
+    @Test
+    public void recordsAppendedAfterTheIndexWasSavedAreRecovered() throws Exception {
+        long id = writeSession("prompt", "user:one");
+        Path staleIndex = directory.resolve("stale.idx");
+        Files.copy(index(), staleIndex);
+
+        ChatHistory second = new ChatHistory(directory);
+        second.appendMessages(id, Arrays.asList(message("assistant:two")));
+        long other = second.createSession("llama3", "another chat");
+        second.appendMessages(other, Arrays.asList(message("user:three")));
+        second.dispose();
+        // As if the IDE crashed before the index covering those records was written
+        Files.move(staleIndex, index(), StandardCopyOption.REPLACE_EXISTING);
+
+        ChatHistory history = new ChatHistory(directory);
+        try {
+            assertEquals(2, history.listSessions().get().size());
+            assertMessages(history.loadMessages(id, 0, 10).get(), "user:one", "assistant:two");
+            assertMessages(history.loadMessages(other, 0, 10).get(), "user:three");
+        } finally {
+            history.dispose();
+        }
+    }
+
+    @Test
+    public void unreadableIndexIsRebuiltFromTheLog() throws Exception {
+        long id = writeSession("prompt", "user:one", "assistant:two");
+        Files.write(index(), new byte[]{0, 0, 0, 1, 0, 0});
+
+        ChatHistory history = new ChatHistory(directory);
+        try {
+            assertMessages(history.loadMessages(id, 0, 10).get(), "user:one", "assistant:two");
+        } finally {
+            history.dispose();
+        }
+    }
+
+    @Test
+    public void unknownLogHeaderStartsOver() throws Exception {
+        writeSession("prompt", "user:one");
+        try (RandomAccessFile file = new RandomAccessFile(log().toFile(), "rw")) {
+            file.writeInt(0x12345678);
+        }
+
+        ChatHistory history = new ChatHistory(directory);
+        try {
+            assertTrue(history.listSessions().get().isEmpty());
+            long id = history.createSession("llama3", "fresh start");
+            history.appendMessages(id, Arrays.asList(message("user:hello")));
+            assertMessages(history.loadMessages(id, 0, 10).get(), "user:hello");
+        } finally {
+            history.dispose();
+        }
+    }
+
+    @Test
+    public void deletedSessionStaysDeleted() throws Exception {
+        long kept = writeSession("kept", "user:one");
+        ChatHistory history = new ChatHistory(directory);
+        long deleted = history.createSession("llama3", "deleted");
+        history.appendMessages(deleted, Arrays.asList(message("user:gone")));
+        history.deleteSession(deleted).get();
+        history.dispose();
+        Files.delete(index());
+
+        ChatHistory reopened = new ChatHistory(directory);
+        try {
+            List<ChatHistory.SessionInfo> sessions = reopened.listSessions().get();
+            assertEquals(1, sessions.size());
+            assertEquals(kept, sessions.get(0).getId());
+            assertTrue(reopened.loadMessages(deleted, 0, 10).get().isEmpty());
+        } finally {
+            reopened.dispose();
+        }
+    }
+
+    @Test
+    public void crashAfterTheCompactedLogIsSwappedInFallsBackToAFullScan() throws Exception {
+        long kept = writeSession("kept", "user:one", "assistant:two");
+        ChatHistory history = new ChatHistory(directory);
+        long large = history.createSession("llama3", "large");
+        history.appendMessages(large, Arrays.asList(message("assistant:" + "x".repeat(1_200_000))));
+        history.listSessions().get();
+        long logBeforeCompaction = Files.size(log());
+        history.deleteSession(large).get();
+        assertTrue(Files.size(log()) < logBeforeCompaction / 10);
+        history.dispose();
+        // What a crash between the swap and the index save leaves behind: the compacted log and no index
+        Files.delete(index());
+
+        ChatHistory reopened = new ChatHistory(directory);
+        try {
+            assertEquals(1, reopened.listSessions().get().size());
+            assertMessages(reopened.loadMessages(kept, 0, 10).get(), "user:one", "assistant:two");
+        } finally {
+            reopened.dispose();
+        }
+        assertEquals(0, temporaryFiles());
+    }
+
+    @Test
+    public void failedCompactionKeepsTheOldLogUsable() throws Exception {
+        long kept = writeSession("kept", "user:one");
+        ChatHistory history = new ChatHistory(directory);
+        try {
+            long large = history.createSession("llama3", "large");
+            history.appendMessages(large, Arrays.asList(message("assistant:" + "x".repeat(1_200_000))));
+            history.listSessions().get();
+            // A non-empty directory where the index should be makes the compaction fail before the swap
+            Files.delete(index());
+            Files.createDirectories(index().resolve("blocked"));
+
+            try {
+                history.deleteSession(large).get();
+                fail("compaction should have failed");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+
+            assertEquals(0, temporaryFiles());
+            assertMessages(history.loadMessages(kept, 0, 10).get(), "user:one");
+            history.appendMessages(kept, Arrays.asList(message("assistant:two")));
+            assertMessages(history.loadMessages(kept, 0, 10).get(), "user:one", "assistant:two");
+            Files.delete(index().resolve("blocked"));
+            Files.delete(index());
+        } finally {
+            history.dispose();
+        }
+    }
+
+    /**
+     * Write a session with messages given as "role:content" and close the history, saving its index
+     */
+    private long writeSession(String prompt, String... messages) throws Exception {
+        ChatHistory history = new ChatHistory(directory);
+        long id = history.createSession("llama3", prompt);
+        OllamaChatMessage[] chatMessages = new OllamaChatMessage[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            chatMessages[i] = message(messages[i]);
+        }
+        history.appendMessages(id, Arrays.asList(chatMessages));
+        history.listSessions().get();
+        history.dispose();
+        return id;
+    }
+
+    private static OllamaChatMessage message(String roleAndContent) {
+        int colon = roleAndContent.indexOf(':');
+        return new OllamaChatMessage(roleAndContent.substring(0, colon), roleAndContent.substring(colon + 1));
+    }
+
+    private static void assertMessages(List<OllamaChatMessage> actual, String... expected) {
+        assertEquals(expected.length, actual.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual.get(i).getRole() + ":" + actual.get(i).getContent());
+        }
+    }
+
+    private long temporaryFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".tmp")).count();
+        }
+    }
+
+    private Path log() {
+        return directory.resolve("messages.log");
+    }
+
+    private Path index() {
+        return directory.resolve("sessions.idx");
+    }
+}
@@ -0,0 +1,170 @@
+package com.ollama.plugin.service;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CodeChunkerTest {
+
+    @Test
+    public void shortCodeIsOneChunk() {
+        String code = "int x = 1;\nint y = 2;";
+        assertEquals(Collections.singletonList(code), CodeChunker.split(code, 100));
+    }
+
+    @Test
+    public void splitsBetweenMethodsAndKeepsEveryLine() {
+        StringBuilder code = new StringBuilder("public class Orders {\n");
+        for (int i = 0; i < 6; i++) {
+            code.append("\n")
+                    .append("    // Total of batch ").append(i).append('\n')
+                    .append("    public int total").append(i).append("(int[] items) {\n")
+                    .append("        int sum = 0;\n")
+                    .append("        for (int item : items) {\n")
+                    .append("            sum += item;\n")
+                    .append("        }\n")
+                    .append("        return sum;\n")
+                    .append("    }\n");
+        }
+        code.append("}");
+
+        List<String> chunks = CodeChunker.split(code.toString(), 400);
+
+        assertTrue(chunks.size() > 1);
+        assertEquals(code.toString(), String.join("\n", chunks));
+        for (String chunk : chunks) {
+            assertTrue(chunk.length() <= 400);
+            String last = lastNonBlankLine(chunk);
+            assertTrue("cut inside a method: " + last, last.equals("    }") || last.equals("}")
+                    || last.equals("public class Orders {"));
+        }
+    }
+
+    @Test
+    public void doesNotSeparateACommentFromItsDeclaration() {
+        StringBuilder code = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            code.append("/** Doc ").append(i).append(" */\n")
+                    .append("function f").append(i).append("() {\n")
+                    .append("    return ").append(i).append(";\n")
+                    .append("}\n");
+        }
+
+        for (String chunk : CodeChunker.split(code.toString(), 100)) {
+            assertTrue(chunk, chunk.trim().isEmpty() || chunk.startsWith("/** Doc"));
+        }
+    }
+
+    @Test
+    public void ignoresBracesInStringsAndComments() {
+        StringBuilder code = new StringBuilder();
+        for (int i = 0; i < 4; i++) {
+            code.append("function f").append(i).append("() {\n")
+                    .append("    var open = \"{{\"; // }\n")
+                    .append("    /* { */ return open;\n")
+                    .append("}\n");
+        }
+
+        List<String> chunks = CodeChunker.split(code.toString(), 130);
+
+        assertTrue(chunks.size() > 1);
+        for (String chunk : chunks) {
+            assertTrue(chunk, chunk.startsWith("function f"));
+        }
+    }
+
+    @Test
+    public void splitsBracelessCodeByIndentation() {
+        StringBuilder code = new StringBuilder();
+        for (int i = 0; i < 4; i++) {
+            code.append("def f").append(i).append("(items):\n")
+                    .append("    total = 0\n")
+                    .append("    for item in items:\n")
+                    .append("        total += item\n")
+                    .append("    return total\n")
+                    .append("\n");
+        }
+
+        List<String> chunks = CodeChunker.split(code.toString(), 150);
+
+        assertTrue(chunks.size() > 1);
+        for (String chunk : chunks) {
+            assertTrue(chunk, chunk.startsWith("def f"));
+        }
+    }
+
+    @Test
+    public void splitsAnOverlongLineByCharacters() {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 250; i++) {
+            line.append((char) ('a' + i % 26));
+        }
+
+        List<String> chunks = CodeChunker.split(line.toString(), 100);
+
+        assertEquals(3, chunks.size());
+        assertEquals(line.toString(), String.join("", chunks));
+    }
+
+    @Test
+    public void overlongLineAfterAnEarlierCutIsSplitToo() {
+        StringBuilder code = new StringBuilder();
+        for (int i = 0; i < 6; i++) {
+            code.append("f").append(i).append("() {}\n");
+        }
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            literal.append((char) ('a' + i % 26));
+        }
+        code.append("g() {\n    s = \"").append(literal).append("\";\n}");
+
+        List<String> chunks = CodeChunker.split(code.toString(), 100);
+
+        for (String chunk : chunks) {
+            assertTrue(chunk.length() + " chars: " + chunk, chunk.length() <= 100);
+        }
+        assertTrue(String.join("", chunks).contains(literal.substring(0, 80)));
+    }
+
+    @Test
+    public void chunksNeverExceedTheLimit() {
+        Random random = new Random(7);
+        for (int round = 0; round < 100; round++) {
+            StringBuilder code = new StringBuilder();
+            int lines = 1 + random.nextInt(80);
+            for (int i = 0; i < lines; i++) {
+                int kind = random.nextInt(10);
+                if (kind == 0) {
+                    code.append("function f").append(i).append("() {\n");
+                } else if (kind == 1) {
+                    code.append("}\n");
+                } else {
+                    for (int c = random.nextInt(kind == 2 ? 400 : 60); c > 0; c--) {
+                        code.append('x');
+                    }
+                    code.append('\n');
+                }
+            }
+            int maxChars = 50 + random.nextInt(150);
+
+            for (String chunk : CodeChunker.split(code.toString(), maxChars)) {
+                assertTrue(chunk.length() + " > " + maxChars, chunk.length() <= maxChars);
+            }
+        }
+    }
+
+    private static String lastNonBlankLine(String chunk) {
+        String[] lines = chunk.split("\n");
+        for (int i = lines.length - 1; i >= 0; i--) {
+            if (!lines[i].trim().isEmpty()) {
+                return lines[i];
+            }
+        }
+        return "";
+    }
+}
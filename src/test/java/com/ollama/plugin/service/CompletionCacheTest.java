@@ -0,0 +1,76 @@
+package com.ollama.plugin.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CompletionCacheTest {
+
+    private static final String MODEL = "qwen2.5-coder:1.5b";
+    private static final String PREFIX = "public int total(int[] items) {\n    int sum = ";
+    private static final String SUFFIX = "\n}";
+
+    private final CompletionCache cache = new CompletionCache();
+
+    @Test
+    public void sameContextIsAHit() {
+        cache.put(MODEL, PREFIX, SUFFIX, "0;");
+
+        assertEquals("0;", cache.find(MODEL, PREFIX, SUFFIX));
+        assertNull(cache.find("other-model", PREFIX, SUFFIX));
+        assertNull(cache.find(MODEL, PREFIX, "\n}\n}"));
+    }
+
+    @Test
+    public void deletingAndRetypingIsAHit() {
+        cache.put(MODEL, PREFIX, SUFFIX, "0;");
+        String shorter = PREFIX.substring(0, PREFIX.length() - 2);
+        assertNull(cache.find(MODEL, shorter, SUFFIX));
+
+        assertEquals("0;", cache.find(MODEL, PREFIX, SUFFIX));
+    }
+
+    @Test
+    public void typingTheStartOfACompletionLeavesTheRest() {
+        cache.put(MODEL, PREFIX, SUFFIX, "Arrays.stream(items).sum();");
+
+        assertEquals("stream(items).sum();", cache.find(MODEL, PREFIX + "Arrays.", SUFFIX));
+        // Typed text that differs from the completion, or covers all of it, is no hit
+        assertNull(cache.find(MODEL, PREFIX + "Array.", SUFFIX));
+        assertNull(cache.find(MODEL, PREFIX + "Arrays.stream(items).sum();", SUFFIX));
+    }
+
+    @Test
+    public void editsFarFromTheCaretKeepTheEntry() {
+        String longPrefix = "x".repeat(2 * CompletionCache.KEY_PREFIX_CHARS) + PREFIX;
+        cache.put(MODEL, longPrefix, SUFFIX, "0;");
+
+        assertEquals("0;", cache.find(MODEL, "y" + longPrefix.substring(1), SUFFIX));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvicted() {
+        cache.put(MODEL, "prefix 0", SUFFIX, "completion 0");
+        for (int i = 1; i <= 256; i++) {
+            cache.put(MODEL, "prefix " + i, SUFFIX, "completion " + i);
+            if (i == 128) {
+                // Used recently, so it outlives the entries added before it
+                cache.find(MODEL, "prefix 0", SUFFIX);
+            }
+        }
+
+        assertEquals("completion 0", cache.find(MODEL, "prefix 0", SUFFIX));
+        assertNull(cache.find(MODEL, "prefix 1", SUFFIX));
+        assertEquals("completion 2", cache.find(MODEL, "prefix 2", SUFFIX));
+        assertEquals("completion 256", cache.find(MODEL, "prefix 256", SUFFIX));
+    }
+
+    @Test
+    public void clearDropsEverything() {
+        cache.put(MODEL, PREFIX, SUFFIX, "0;");
+        cache.clear();
+
+        assertNull(cache.find(MODEL, PREFIX, SUFFIX));
+    }
+}
@@ -0,0 +1,145 @@
+package com.ollama.plugin.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EmbeddingIndexTest {
+
+    private static final String MODEL = "nomic-embed-text";
+
+    private final Random random = new Random(11);
+    private Path directory;
+    private final List<EmbeddingIndex> opened = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("embedding-index-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        opened.forEach(EmbeddingIndex::dispose);
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void savedIndexLoadsBackWithItsChunks() throws IOException {
+        EmbeddingIndex index = open();
+        index.putFile("/project/A.java", 1, MODEL, Arrays.asList(chunk("/project/A.java", 0, 40),
+                chunk("/project/A.java", 40, 90)), Arrays.asList(vector(1, 0, 0), vector(0, 1, 0)));
+        index.putFile("/project/B.java", 2, MODEL, Collections.singletonList(chunk("/project/B.java", 0, 70)),
+                Collections.singletonList(vector(0, 0, 1)));
+        index.dispose();
+
+        EmbeddingIndex reopened = open();
+        reopened.load();
+
+        assertEquals(2, reopened.getFileCount());
+        assertEquals(3, reopened.getChunkCount());
+        EmbeddingIndex.Chunk nearest = reopened.search(VectorStore.normalize(vector(0.1f, 1, 0)), 1).get(0);
+        assertEquals("/project/A.java", nearest.path);
+        assertEquals(40, nearest.start);
+        assertEquals(90, nearest.end);
+    }
+
+    @Test
+    public void reindexingAFileReplacesItsChunks() throws IOException {
+        EmbeddingIndex index = open();
+        index.putFile("/project/A.java", 1, MODEL, Arrays.asList(chunk("/project/A.java", 0, 40),
+                chunk("/project/A.java", 40, 90)), Arrays.asList(vector(1, 0, 0), vector(0, 1, 0)));
+
+        index.putFile("/project/A.java", 3, MODEL, Collections.singletonList(chunk("/project/A.java", 0, 20)),
+                Collections.singletonList(vector(0, 0, 1)));
+
+        assertEquals(1, index.getFileCount());
+        assertEquals(1, index.getChunkCount());
+        assertEquals(20, index.search(VectorStore.normalize(vector(0, 1, 0)), 5).get(0).end);
+    }
+
+    @Test
+    public void anotherDimensionStartsOver() throws IOException {
+        EmbeddingIndex index = open();
+        index.putFile("/project/A.java", 1, MODEL, Collections.singletonList(chunk("/project/A.java", 0, 40)),
+                Collections.singletonList(vector(1, 0, 0)));
+        index.dispose();
+
+        EmbeddingIndex reopened = open();
+        reopened.load();
+        reopened.putFile("/project/B.java", 2, MODEL, Collections.singletonList(chunk("/project/B.java", 0, 10)),
+                Collections.singletonList(vector(1, 0, 0, 0)));
+
+        assertEquals(1, reopened.getFileCount());
+        assertTrue(reopened.search(VectorStore.normalize(vector(1, 0, 0)), 1).isEmpty());
+        assertEquals("/project/B.java", reopened.search(VectorStore.normalize(vector(1, 0, 0, 0)), 1).get(0).path);
+    }
+
+    @Test
+    public void loadedHashesKeepApproximateSearchWorking() throws IOException {
+        // Enough chunks that search goes through the LSH tables rather than a full scan
+        int dimension = 32;
+        int files = 60;
+        int chunksPerFile = 50;
+        List<float[]> all = new ArrayList<>();
+        EmbeddingIndex index = open();
+        for (int f = 0; f < files; f++) {
+            List<EmbeddingIndex.Chunk> chunks = new ArrayList<>();
+            List<float[]> vectors = new ArrayList<>();
+            for (int c = 0; c < chunksPerFile; c++) {
+                chunks.add(chunk("/project/F" + f + ".java", c * 100, c * 100 + 100));
+                vectors.add(randomVector(dimension));
+            }
+            index.putFile("/project/F" + f + ".java", f, MODEL, chunks, vectors);
+            all.addAll(vectors);
+        }
+        index.dispose();
+
+        EmbeddingIndex reopened = open();
+        reopened.load();
+
+        assertEquals(files * chunksPerFile, reopened.getChunkCount());
+        for (int i = 0; i < all.size(); i += 97) {
+            EmbeddingIndex.Chunk nearest = reopened.search(VectorStore.normalize(all.get(i)), 1).get(0);
+            assertEquals("/project/F" + i / chunksPerFile + ".java", nearest.path);
+            assertEquals(i % chunksPerFile * 100, nearest.start);
+        }
+    }
+
+    private EmbeddingIndex open() {
+        EmbeddingIndex index = new EmbeddingIndex(null, directory);
+        opened.add(index);
+        return index;
+    }
+
+    private static EmbeddingIndex.Chunk chunk(String path, int start, int end) {
+        return new EmbeddingIndex.Chunk(path, start, end);
+    }
+
+    private static float[] vector(float... values) {
+        return values;
+    }
+
+    private float[] randomVector(int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
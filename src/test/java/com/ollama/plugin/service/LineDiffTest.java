@@ -0,0 +1,130 @@
+package com.ollama.plugin.service;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LineDiffTest {
+
+    @Test
+    public void linesKeepTheirTerminators() {
+        assertEquals(Arrays.asList("a\n", "b\n", "c"), LineDiff.lines("a\nb\nc"));
+        assertEquals(Arrays.asList("a\n", "\n"), LineDiff.lines("a\n\n"));
+        assertTrue(LineDiff.lines("").isEmpty());
+    }
+
+    @Test
+    public void identicalTextsHaveNoEdits() {
+        String text = "a\nb\nc\n";
+        assertTrue(LineDiff.edits(text, text).isEmpty());
+    }
+
+    @Test
+    public void changedLineIsNarrowedToTheDifferingCharacters() {
+        String from = numberedLines(200);
+        String to = from.replace("line 120\n", "line 12O\n");
+
+        List<LineDiff.Edit> edits = LineDiff.edits(from, to);
+
+        assertEquals(1, edits.size());
+        LineDiff.Edit edit = edits.get(0);
+        assertEquals("O", edit.text);
+        assertEquals(1, edit.end - edit.start);
+        assertEquals("0", from.substring(edit.start, edit.end));
+    }
+
+    @Test
+    public void separateChangesBecomeSeparateHunks() {
+        List<String> from = LineDiff.lines("a\nb\nc\nd\ne\nf\n");
+        List<String> to = LineDiff.lines("a\nB\nc\nd\nx\ne\nf\n");
+
+        List<LineDiff.Hunk> hunks = LineDiff.diff(from, to);
+
+        assertEquals(2, hunks.size());
+        assertHunk(hunks.get(0), 1, 2, 1, 2);
+        assertHunk(hunks.get(1), 4, 4, 4, 5);
+    }
+
+    @Test
+    public void insertionAndDeletionAtTheEnds() {
+        assertEquals("x\na\nb", apply("a\nb", LineDiff.edits("a\nb", "x\na\nb")));
+        assertEquals("a", apply("a\nb\n", LineDiff.edits("a\nb\n", "a")));
+        assertEquals("new", apply("", LineDiff.edits("", "new")));
+        assertEquals("", apply("old\n", LineDiff.edits("old\n", "")));
+    }
+
+    @Test
+    public void editsReproduceTheNewTextForRandomChanges() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            List<String> lines = new ArrayList<>(LineDiff.lines(numberedLines(1 + random.nextInt(60))));
+            String from = String.join("", lines);
+            int changes = random.nextInt(8);
+            for (int i = 0; i < changes; i++) {
+                int at = random.nextInt(lines.size() + 1);
+                int kind = random.nextInt(3);
+                if (kind == 0 || lines.isEmpty()) {
+                    lines.add(at, "inserted " + random.nextInt(5) + "\n");
+                } else if (kind == 1) {
+                    lines.remove(Math.min(at, lines.size() - 1));
+                } else {
+                    lines.set(Math.min(at, lines.size() - 1), "changed " + random.nextInt(5) + "\n");
+                }
+            }
+            String to = String.join("", lines);
+
+            assertEquals(to, apply(from, LineDiff.edits(from, to)));
+        }
+    }
+
+    @Test
+    public void textsWithNothingInCommonAreReplacedAsOneHunk() {
+        StringBuilder from = new StringBuilder();
+        StringBuilder to = new StringBuilder();
+        for (int i = 0; i < 1500; i++) {
+            from.append("old ").append(i).append('\n');
+            to.append("new ").append(i).append('\n');
+        }
+
+        List<LineDiff.Edit> edits = LineDiff.edits(from.toString(), to.toString());
+
+        assertEquals(1, edits.size());
+        assertEquals(to.toString(), apply(from.toString(), edits));
+    }
+
+    /**
+     * Apply edits back to front so earlier offsets stay valid
+     */
+    private static String apply(String text, List<LineDiff.Edit> edits) {
+        StringBuilder result = new StringBuilder(text);
+        int previousStart = Integer.MAX_VALUE;
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            LineDiff.Edit edit = edits.get(i);
+            assertTrue("edits overlap or are out of order", edit.end <= previousStart);
+            result.replace(edit.start, edit.end, edit.text);
+            previousStart = edit.start;
+        }
+        return result.toString();
+    }
+
+    private static void assertHunk(LineDiff.Hunk hunk, int fromStart, int fromEnd, int toStart, int toEnd) {
+        assertEquals(fromStart, hunk.fromStart);
+        assertEquals(fromEnd, hunk.fromEnd);
+        assertEquals(toStart, hunk.toStart);
+        assertEquals(toEnd, hunk.toEnd);
+    }
+
+    private static String numberedLines(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        return text.toString();
+    }
+}
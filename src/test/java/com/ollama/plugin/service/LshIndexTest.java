@@ -0,0 +1,97 @@
+package com.ollama.plugin.service;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LshIndexTest {
+
+    private static final int DIMENSION = 64;
+    private static final int SLOTS = 5000;
+
+    private final Random random = new Random(7);
+
+    @Test
+    public void nearVectorsAreAmongTheCandidates() {
+        LshIndex index = new LshIndex(DIMENSION);
+        float[][] vectors = new float[SLOTS][];
+        for (int slot = 0; slot < SLOTS; slot++) {
+            vectors[slot] = randomVector();
+            index.add(slot, vectors[slot]);
+        }
+
+        for (int slot = 0; slot < SLOTS; slot += 100) {
+            BitSet candidates = index.candidates(nearby(vectors[slot]), 16);
+            assertTrue("slot " + slot, candidates.get(slot));
+            // The point of the index: far fewer candidates than vectors
+            assertTrue(candidates.cardinality() < SLOTS / 5);
+        }
+    }
+
+    @Test
+    public void multiProbingFindsAtLeastTheRequestedNumberOfCandidates() {
+        LshIndex index = new LshIndex(DIMENSION);
+        for (int slot = 0; slot < SLOTS; slot++) {
+            index.add(slot, randomVector());
+        }
+
+        assertTrue(index.candidates(randomVector(), 200).cardinality() >= 200);
+    }
+
+    @Test
+    public void removedSlotIsNoLongerACandidate() {
+        LshIndex index = new LshIndex(DIMENSION);
+        float[] vector = randomVector();
+        index.add(0, vector);
+        index.add(1, vector);
+        index.add(2, randomVector());
+
+        index.remove(1);
+
+        BitSet candidates = index.candidates(vector, 1);
+        assertTrue(candidates.get(0));
+        assertFalse(candidates.get(1));
+        // Removing a slot that was never added is harmless
+        index.remove(100);
+        assertEquals(candidates, index.candidates(vector, 1));
+    }
+
+    @Test
+    public void savedHashesRebuildTheSameTables() {
+        LshIndex original = new LshIndex(DIMENSION);
+        LshIndex restored = new LshIndex(DIMENSION);
+        for (int slot = 0; slot < 500; slot++) {
+            original.add(slot, randomVector());
+            restored.add(slot, original.getHashes(slot));
+        }
+
+        float[] query = randomVector();
+        assertEquals(original.candidates(query, 32), restored.candidates(query, 32));
+        assertArrayEquals(original.getHashes(42), restored.getHashes(42));
+    }
+
+    private float[] randomVector() {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return VectorStore.normalize(vector);
+    }
+
+    /**
+     * A vector about 0.1 radians away from vector
+     */
+    private float[] nearby(float[] vector) {
+        float[] near = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            near[i] = vector[i] + (float) random.nextGaussian() * 0.1f / (float) Math.sqrt(DIMENSION);
+        }
+        return VectorStore.normalize(near);
+    }
+}
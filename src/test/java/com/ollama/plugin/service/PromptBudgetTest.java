@@ -0,0 +1,62 @@
+package com.ollama.plugin.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PromptBudgetTest {
+
+    @Test
+    public void estimateRoundsUp() {
+        assertEquals(0, PromptBudget.estimateTokens(""));
+        assertEquals(1, PromptBudget.estimateTokens("a"));
+        assertEquals(1, PromptBudget.estimateTokens("abc"));
+        assertEquals(2, PromptBudget.estimateTokens("abcd"));
+    }
+
+    @Test
+    public void reservesAQuarterOfTheContextForTheAnswer() {
+        PromptBudget budget = new PromptBudget(8192);
+        assertEquals(2048, budget.getResponseReserve());
+        assertEquals(6144, budget.getPromptTokens());
+    }
+
+    @Test
+    public void smallContextsStillReserveRoomForAnAnswer() {
+        assertEquals(256, new PromptBudget(512).getResponseReserve());
+        assertEquals(256, new PromptBudget(512).getPromptTokens());
+        assertEquals(0, new PromptBudget(100).getPromptTokens());
+    }
+
+    @Test
+    public void fitsComparesTheEstimateWithThePromptTokens() {
+        PromptBudget budget = new PromptBudget(2048);
+        assertTrue(budget.fits(repeat(1536 * PromptBudget.CHARS_PER_TOKEN)));
+        assertFalse(budget.fits(repeat(1536 * PromptBudget.CHARS_PER_TOKEN + 1)));
+    }
+
+    @Test
+    public void maxCodeCharsLeavesRoomForTheFixedText() {
+        PromptBudget budget = new PromptBudget(2048);
+        String instructions = repeat(300);
+        assertEquals((1536 - 100) * PromptBudget.CHARS_PER_TOKEN, budget.getMaxCodeChars(instructions));
+        String prompt = instructions + repeat(budget.getMaxCodeChars(instructions));
+        assertTrue(budget.fits(prompt));
+    }
+
+    @Test
+    public void maxCodeCharsHasAFloor() {
+        PromptBudget budget = new PromptBudget(512);
+        assertEquals(64 * PromptBudget.CHARS_PER_TOKEN, budget.getMaxCodeChars(repeat(10_000)));
+    }
+
+    private static String repeat(int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append('x');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,83 @@
+package com.ollama.plugin.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PromptTemplateTest {
+
+    @Test
+    public void rendersEveryVariable() {
+        PromptTemplate template = PromptTemplate.of("Review this {{language}} code{{scope}}.\n{{related}}\n{{code}}");
+
+        assertEquals("Review this php code in class Cart.\nclass Item {}\n$a = 1;",
+                template.render("php", "class Item {}", " in class Cart", "$a = 1;"));
+    }
+
+    @Test
+    public void nullValuesRenderEmpty() {
+        PromptTemplate template = PromptTemplate.of("[{{related}}]{{code}}");
+        assertEquals("[]x", template.render("php", null, null, "x"));
+    }
+
+    @Test
+    public void variablesMayRepeatAndAllowSpaces() {
+        PromptTemplate template = PromptTemplate.of("{{ code }} and {{code}}");
+        assertEquals("a and a", template.render(null, null, null, "a"));
+    }
+
+    @Test
+    public void templateWithoutVariablesRendersAsIs() {
+        PromptTemplate template = PromptTemplate.of("Say hi");
+        assertEquals("Say hi", template.render("php", "r", "s", "c"));
+        assertFalse(template.uses(PromptTemplate.Variable.CODE));
+    }
+
+    @Test
+    public void stablePrefixIsTheTextBeforeTheFirstVariable() {
+        PromptTemplate template = PromptTemplate.of("Explain the code.\n\n{{language}}:\n{{code}}");
+
+        assertEquals("Explain the code.\n\n", template.getStablePrefix());
+        assertTrue(template.render("java", null, null, "int a;").startsWith(template.getStablePrefix()));
+    }
+
+    @Test
+    public void usesReportsTheVariablesInTheTemplate() {
+        PromptTemplate template = PromptTemplate.of("{{language}} {{code}}");
+
+        assertTrue(template.uses(PromptTemplate.Variable.LANGUAGE));
+        assertTrue(template.uses(PromptTemplate.Variable.CODE));
+        assertFalse(template.uses(PromptTemplate.Variable.RELATED));
+        assertFalse(template.uses(PromptTemplate.Variable.SCOPE));
+    }
+
+    @Test
+    public void compiledTemplatesAreShared() {
+        String source = "Shared {{code}}";
+        assertSame(PromptTemplate.of(source), PromptTemplate.of(source));
+        assertEquals(source, PromptTemplate.of(source).getSource());
+    }
+
+    @Test
+    public void unknownVariableIsRejected() {
+        try {
+            PromptTemplate.of("{{cod}}");
+            fail("unknown variable accepted");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unknown template variable {{cod}}", e.getMessage());
+        }
+    }
+
+    @Test
+    public void validateExplainsWhatIsWrong() {
+        assertNull(PromptTemplate.validate("Fix {{code}}"));
+        assertEquals("The template must contain {{code}}", PromptTemplate.validate("Fix {{language}}"));
+        assertEquals("Unclosed {{ at offset 4", PromptTemplate.validate("Fix {{code"));
+        assertEquals("Unknown template variable {{file}}", PromptTemplate.validate("{{file}} {{code}}"));
+    }
+}
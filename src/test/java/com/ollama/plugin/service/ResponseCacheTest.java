@@ -0,0 +1,109 @@
+package com.ollama.plugin.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class ResponseCacheTest {
+
+    private static final String CODE = "function total($items) {\n    return array_sum($items);\n}";
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("response-cache-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void normalizeIgnoresLineEndingsTrailingWhitespaceAndSurroundingBlankLines() {
+        String messy = "\r\n\n" + CODE.replace("\n", "  \r\n") + "\t\n\n";
+        assertEquals(ResponseCache.normalize(CODE), ResponseCache.normalize(messy));
+    }
+
+    @Test
+    public void normalizeKeepsIndentation() {
+        assertNotEquals(ResponseCache.normalize("a\n  b"), ResponseCache.normalize("a\nb"));
+    }
+
+    @Test
+    public void keyIgnoresFormattingTheModelDoesNotSee() {
+        String messy = CODE.replace("\n", "\r\n") + "\n\n";
+        assertEquals(key("llama3", AnalysisAction.EXPLAIN, CODE, null),
+                key("llama3", AnalysisAction.EXPLAIN, messy, null));
+    }
+
+    @Test
+    public void keyDependsOnModelActionLanguageAndCode() {
+        String base = key("llama3", AnalysisAction.EXPLAIN, CODE, null);
+        assertNotEquals(base, key("mistral", AnalysisAction.EXPLAIN, CODE, null));
+        assertNotEquals(base, key("llama3", AnalysisAction.REFACTOR, CODE, null));
+        assertNotEquals(base, ResponseCache.key("llama3", AnalysisAction.EXPLAIN, "javascript", CODE, null));
+        assertNotEquals(base, key("llama3", AnalysisAction.EXPLAIN, CODE + "\n// changed", null));
+    }
+
+    @Test
+    public void keyIgnoresOptionOrderButNotOptionValues() {
+        Map<String, Object> options = new LinkedHashMap<>();
+        options.put("temperature", 0.2);
+        options.put("num_predict", 512);
+        Map<String, Object> reordered = new LinkedHashMap<>();
+        reordered.put("num_predict", 512);
+        reordered.put("temperature", 0.2);
+        Map<String, Object> changed = new LinkedHashMap<>(options);
+        changed.put("temperature", 0.7);
+
+        String key = key("llama3", AnalysisAction.EXPLAIN, CODE, options);
+        assertEquals(key, key("llama3", AnalysisAction.EXPLAIN, CODE, reordered));
+        assertNotEquals(key, key("llama3", AnalysisAction.EXPLAIN, CODE, changed));
+        assertNotEquals(key, key("llama3", AnalysisAction.EXPLAIN, CODE, null));
+    }
+
+    @Test
+    public void diskTierSurvivesANewInstance() {
+        String key = key("llama3", AnalysisAction.EXPLAIN, CODE, null);
+        new ResponseCache(directory).put(key, "Sums the items.");
+
+        ResponseCache reopened = new ResponseCache(directory);
+        assertNull(reopened.getFromMemory(key));
+        assertEquals("Sums the items.", reopened.getFromDisk(key));
+        assertEquals("Sums the items.", reopened.getFromMemory(key));
+        assertEquals(1, reopened.getDiskHits());
+        assertEquals(1, reopened.getMemoryHits());
+    }
+
+    @Test
+    public void clearEmptiesBothTiers() {
+        ResponseCache cache = new ResponseCache(directory);
+        String key = key("llama3", AnalysisAction.EXPLAIN, CODE, null);
+        cache.put(key, "Sums the items.");
+        cache.clear();
+
+        assertNull(cache.getFromMemory(key));
+        assertNull(cache.getFromDisk(key));
+        assertEquals(1, cache.getMisses());
+    }
+
+    private static String key(String model, AnalysisAction action, String code, Map<String, ?> options) {
+        return ResponseCache.key(model, action, "php", code, options);
+    }
+}
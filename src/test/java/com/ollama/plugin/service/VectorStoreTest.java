@@ -0,0 +1,106 @@
+package com.ollama.plugin.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class VectorStoreTest {
+
+    private static final float DELTA = 1e-6f;
+
+    private Path directory;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("vector-store-test");
+        file = directory.resolve("vectors.bin");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void storesNormalizedVectors() throws IOException {
+        try (VectorStore store = new VectorStore(file, 2)) {
+            store.put(0, new float[]{3, 4});
+            store.put(1, new float[]{0, 0});
+
+            assertArrayEquals(new float[]{0.6f, 0.8f}, store.get(0), DELTA);
+            assertArrayEquals(new float[]{0, 0}, store.get(1), DELTA);
+            assertEquals(1f, store.dot(0, VectorStore.normalize(new float[]{6, 8})), DELTA);
+            assertEquals(0.8f, store.dot(0, new float[]{0, 1}), DELTA);
+        }
+    }
+
+    @Test
+    public void growsByDoublingBeyondItsCapacity() throws IOException {
+        try (VectorStore store = new VectorStore(file, 4)) {
+            int initial = store.getCapacity();
+            long initialBytes = store.getSizeBytes();
+            store.put(3, new float[]{1, 0, 0, 0});
+
+            store.put(initial * 2 + 1, new float[]{0, 1, 0, 0});
+
+            assertEquals(initial * 4, store.getCapacity());
+            assertTrue(store.getSizeBytes() > initialBytes * 3);
+            assertArrayEquals(new float[]{1, 0, 0, 0}, store.get(3), DELTA);
+            assertArrayEquals(new float[]{0, 1, 0, 0}, store.get(initial * 2 + 1), DELTA);
+        }
+    }
+
+    @Test
+    public void reopeningWithTheSameDimensionKeepsTheVectors() throws IOException {
+        int slot;
+        try (VectorStore store = new VectorStore(file, 3)) {
+            slot = store.getCapacity() + 5;
+            store.put(slot, new float[]{0, 0, 2});
+        }
+
+        try (VectorStore store = new VectorStore(file, 3)) {
+            assertTrue(store.getCapacity() > slot);
+            assertArrayEquals(new float[]{0, 0, 1}, store.get(slot), DELTA);
+        }
+    }
+
+    @Test
+    public void reopeningWithAnotherDimensionStartsEmpty() throws IOException {
+        int initial;
+        try (VectorStore store = new VectorStore(file, 3)) {
+            initial = store.getCapacity();
+            store.put(0, new float[]{1, 2, 3});
+            store.put(initial, new float[]{1, 2, 3});
+        }
+
+        try (VectorStore store = new VectorStore(file, 2)) {
+            assertEquals(2, store.getDimension());
+            assertEquals(initial, store.getCapacity());
+            assertArrayEquals(new float[]{0, 0}, store.get(0), DELTA);
+        }
+    }
+
+    @Test
+    public void rejectsVectorsOfAnotherDimension() throws IOException {
+        try (VectorStore store = new VectorStore(file, 3)) {
+            store.put(0, new float[]{1, 2});
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // the store stays as it was
+        }
+    }
+}
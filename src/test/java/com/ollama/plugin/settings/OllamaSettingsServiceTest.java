@@ -0,0 +1,40 @@
+package com.ollama.plugin.settings;
+
+import com.ollama.plugin.service.AnalysisAction;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class OllamaSettingsServiceTest {
+
+    private final OllamaSettingsService settings = new OllamaSettingsService();
+
+    @Test
+    public void quickActionsRunOnTheFastModel() {
+        settings.selectedModel = "llama3.1:70b";
+        settings.fastModel = "llama3.2:3b";
+
+        assertEquals("llama3.2:3b", settings.getActionModel(AnalysisAction.EXPLAIN));
+        assertEquals("llama3.2:3b", settings.getActionModel(AnalysisAction.TYPE_HINTS));
+        assertEquals("llama3.1:70b", settings.getActionModel(AnalysisAction.REFACTOR));
+    }
+
+    @Test
+    public void profileModelWinsOverTheFastModel() {
+        settings.fastModel = "llama3.2:3b";
+        ActionProfile profile = AnalysisAction.EXPLAIN.getDefaultProfile();
+        profile.model = "qwen2.5-coder:7b";
+        settings.actionProfiles.put(AnalysisAction.EXPLAIN.getId(), profile);
+
+        assertEquals("qwen2.5-coder:7b", settings.getActionModel(AnalysisAction.EXPLAIN));
+    }
+
+    @Test
+    public void withoutAFastModelQuickActionsUseTheDefaultModel() {
+        settings.selectedModel = "mistral";
+        assertEquals("mistral", settings.getActionModel(AnalysisAction.EXPLAIN));
+
+        settings.selectedModel = "";
+        assertEquals("llama2", settings.getActionModel(AnalysisAction.EXPLAIN));
+    }
+}